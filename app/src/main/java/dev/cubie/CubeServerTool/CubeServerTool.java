@@ -1,13 +1,19 @@
 package dev.cubie.CubeServerTool;
 
 import dev.cubie.CubeServerTool.Data.Config;
+import dev.cubie.CubeServerTool.Utils.ArtifactStore;
 import dev.cubie.CubeServerTool.Utils.ConfigHandler;
+import dev.cubie.CubeServerTool.Utils.InstanceManager;
 import dev.cubie.CubeServerTool.Utils.LoggerUtility;
 import dev.cubie.CubeServerTool.Data.InstallerUI;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.Logger;
 
 // https://chatgpt.com/c/69609c43-014f-47da-8556-cb95b05d6f38
@@ -42,6 +48,12 @@ public class CubeServerTool {
 
         logger.info("Starting the CubeServerTool...");
 
+        // Daemon-Modus: viele Server aus einem Prozess verwalten, ohne Installations-Assistent
+        if (Arrays.asList(args).contains("--daemon")) {
+            runDaemon(logger);
+            return;
+        }
+
         try {
             // 1. Load internal installers
             logger.info("Loading internal Installer-Modules...");
@@ -85,6 +97,9 @@ public class CubeServerTool {
             Config.selectedInstaller.install();
             Config.selectedInstaller.start();
 
+            // Drop shared artifacts that no server directory uses anymore
+            ArtifactStore.getDefault().gc();
+
 
         } catch (Exception e) {
             logger.severe("An error occurred: " + e.getMessage());
@@ -95,6 +110,59 @@ public class CubeServerTool {
         }
     }
 
+    // Runs all instances from cst_data/instances and reads management commands from the console
+    // Without a console (e.g. as a service) it keeps running until the process is stopped; the supervisor's shutdown
+    // hook then stops all servers gracefully.
+    private static void runDaemon(Logger logger) {
+        try (InstanceManager manager = new InstanceManager()) {
+            manager.loadAll(Config.instancesFolder).startMonitoring(30);
+            manager.startAutostart();
+            logger.info("Daemon mode, commands: list, start|stop|restart <name>, send <name> <command>, tail <name>, exit");
+
+            BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+            String line;
+            while ((line = console.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+", 3);
+                String name = parts.length > 1 ? parts[1] : "";
+                switch (parts[0].toLowerCase()) {
+                    case "":
+                        break;
+                    case "list":
+                        manager.status().forEach(System.out::println);
+                        break;
+                    case "start":
+                        manager.start(name);
+                        break;
+                    case "stop":
+                        manager.stop(name);
+                        break;
+                    case "restart":
+                        manager.restart(name);
+                        break;
+                    case "send":
+                        if (parts.length < 3 || !manager.send(name, parts[2])) {
+                            logger.warning("Usage: send <name> <command> (instance must be running)");
+                        }
+                        break;
+                    case "tail":
+                        manager.tail(name, 20).forEach(System.out::println);
+                        break;
+                    case "exit":
+                        logger.info("Stopping all instances...");
+                        return;
+                    default:
+                        logger.warning("Unknown command: " + parts[0]);
+                }
+            }
+            // Keine Konsole: weiterlaufen bis zum Beenden des Prozesses
+            new CountDownLatch(1).await();
+        } catch (IOException e) {
+            logger.severe("Daemon failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public static String centerText(String text, int width) {
         if (text.length() >= width) {
             return text.substring(0, width); // Kürzt, wenn der Text zu lang ist
@@ -7,6 +7,8 @@ import dev.cubie.CubeServerTool.Utils.LoggerUtility;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Logger;
 
 public class Config {
@@ -36,6 +38,8 @@ public class Config {
     public static Path logFolder = dataFolder.resolve("logs");
     public static Path modulesFolder = dataFolder.resolve("modules");
     public static Path tempFolder = dataFolder.resolve("temp");
+    public static Path storeFolder = dataFolder.resolve("store");
+    public static Path instancesFolder = dataFolder.resolve("instances");  // Server definitions for daemon mode
 
     // Define paths based on the subfolders
     public static Path configFilePath = configFolder.resolve("cst.conf");
@@ -46,6 +50,19 @@ public class Config {
     public static String logLevelConsole = "DEBUG";
     public static String logLevelCSV = "DEBUG";
     public static boolean detailedLog = false;
+    public static boolean asyncLogging = false;
+    public static int logQueueSize = 8192;
+    public static long logFlushInterval = 200;  // Milliseconds
+    public static String logQueueFullPolicy = "DROP_DEBUG";
+    public static long logMaxSizeMb = 50;  // 0 = no size limit
+    public static boolean logRotateDaily = true;
+    public static long logRetentionMb = 500;  // 0 = keep all rotated logs
+    public static boolean logSuppressRepeats = true;
+    public static int logRepeatLimit = 20;  // Repeats of a message passed per window
+    public static long logRepeatWindow = 10;  // Seconds
+    public static boolean eventLog = true;  // Binary capture of the server consoles in daemon mode
+    public static int eventLogSegments = 32;  // 16 MB each
+    public static Map<String, String> logLevels = new TreeMap<>();  // "logLevel.<package or class>" entries
 
     static {
         // Automatically create directories when the class is loaded
@@ -0,0 +1,168 @@
+package dev.cubie.CubeServerTool.Data;
+
+import dev.cubie.CubeServerTool.Utils.HashAlgorithm;
+import dev.cubie.CubeServerTool.Utils.JvmTuningProfile;
+import dev.cubie.CubeServerTool.Utils.ProcessHandler;
+import dev.cubie.CubeServerTool.Utils.ProcessSupervisor.RestartPolicy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+// Definition of one server managed in daemon mode, read from cst_data/instances/<name>.properties
+//   workDir=servers/lobby       Working directory, relative to the root folder (default: servers/<name>)
+//   jar=server.jar              Server jar, relative to the working directory
+//   jarUrl=https://...          Where to download the jar if it is missing (optional)
+//   jarHash=<sha1 or sha256>    Published hash of jarUrl; verified jars are shared through the artifact store
+//   memoryMb=2048               Memory budget for the JVM tuning profile (0 = no profile)
+//   jvmArgs=-Dfoo=bar           Extra JVM arguments, separated by spaces (override the profile)
+//   parameters=nogui            Server arguments, separated by spaces
+//   restart=on-failure          never, always, on-failure or backoff
+//   maxCrashes=5                Give up after this many crashes or early exits within 10 minutes (0 = never)
+//   autostart=true              Start together with the daemon
+public class ServerInstance {
+
+    private final String name;
+    private final Path workDir;
+    private final String jar;
+    private final String jarUrl;  // null = the jar is put there by hand
+    private final String jarHash;  // null = not verified
+    private final long memoryMb;
+    private final List<String> jvmArgs;
+    private final List<String> parameters;
+    private final String restart;
+    private final int maxCrashes;
+    private final boolean autostart;
+
+    // Constructor
+    public ServerInstance(String name, Path workDir, String jar, String jarUrl, String jarHash, long memoryMb,
+                          List<String> jvmArgs, List<String> parameters, String restart, int maxCrashes, boolean autostart) {
+        this.name = name;
+        this.workDir = workDir;
+        this.jar = jar;
+        this.jarUrl = jarUrl;
+        this.jarHash = jarHash;
+        this.memoryMb = memoryMb;
+        this.jvmArgs = jvmArgs;
+        this.parameters = parameters;
+        this.restart = restart;
+        this.maxCrashes = maxCrashes;
+        this.autostart = autostart;
+    }
+
+    // Reads an instance file; the file name without ".properties" is the instance name
+    public static ServerInstance load(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        String name = fileName.endsWith(".properties") ? fileName.substring(0, fileName.length() - 11) : fileName;
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        String jarUrl = emptyToNull(properties.getProperty("jarUrl"));
+        String jarHash = emptyToNull(properties.getProperty("jarHash"));
+        if (jarHash != null && HashAlgorithm.fromHexLength(jarHash.length()) == null) {
+            throw new IOException("Invalid jarHash in " + file + ": neither SHA-1, SHA-256 nor SHA-512");
+        }
+        try {
+            return new ServerInstance(name,
+                    Config.rootFolder.resolve(properties.getProperty("workDir", "servers/" + name)).normalize(),
+                    properties.getProperty("jar", "server.jar"),
+                    jarUrl,
+                    jarHash,
+                    Long.parseLong(properties.getProperty("memoryMb", "0").trim()),
+                    split(properties.getProperty("jvmArgs", "")),
+                    split(properties.getProperty("parameters", "nogui")),
+                    properties.getProperty("restart", "on-failure").trim().toLowerCase(),
+                    Integer.parseInt(properties.getProperty("maxCrashes", "5").trim()),
+                    Boolean.parseBoolean(properties.getProperty("autostart", "true").trim()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number in " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Builds a fresh ProcessHandler for one start of this instance
+    public ProcessHandler newProcessHandler() {
+        // No create(): the daemon runs with a small heap of its own, which the servers must not inherit
+        ProcessHandler handler = new ProcessHandler(getJarPath().toString())
+                .workDir(workDir)
+                .useConsole(false)
+                .useLogger("void")  // Console lines stay in the buffer; logging dozens of servers would flood the log
+                .disableInput();
+        if (memoryMb > 0) {
+            handler.tuning(JvmTuningProfile.forHost().memoryBudgetMb(memoryMb));
+        }
+        for (String argument : jvmArgs) {
+            handler.addJvmArgument(argument);
+        }
+        for (String parameter : parameters) {
+            handler.addParameter(parameter);
+        }
+        return handler;
+    }
+
+    // Restart policy from the "restart" and "maxCrashes" settings
+    public RestartPolicy restartPolicy() {
+        RestartPolicy policy;
+        switch (restart) {
+            case "never":
+                return RestartPolicy.never();
+            case "always":
+                policy = RestartPolicy.always();
+                break;
+            case "backoff":
+                policy = RestartPolicy.backoff(1000, 5 * 60 * 1000);
+                break;
+            case "on-failure":
+            default:
+                policy = RestartPolicy.onFailure();
+                break;
+        }
+        return maxCrashes > 0 ? policy.maxCrashes(maxCrashes, 10 * 60 * 1000) : policy;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getWorkDir() {
+        return workDir;
+    }
+
+    public Path getJarPath() {
+        return workDir.resolve(jar);
+    }
+
+    // Download URL of the jar, or null
+    public String getJarUrl() {
+        return jarUrl;
+    }
+
+    // Published hash of the jar, or null
+    public String getJarHash() {
+        return jarHash;
+    }
+
+    public long getMemoryMb() {
+        return memoryMb;
+    }
+
+    public boolean isAutostart() {
+        return autostart;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static List<String> split(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(trimmed.split("\\s+")));
+    }
+}
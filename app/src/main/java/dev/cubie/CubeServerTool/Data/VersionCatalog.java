@@ -0,0 +1,267 @@
+package dev.cubie.CubeServerTool.Data;
+
+import dev.cubie.CubeServerTool.Utils.LoggerUtility;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+// Parsed version list of a module (e.g. Mojang's version_manifest.json), built once and shared per run
+// Lookups by id go through a hash index, and the lists per type (release, snapshot, ...) are split up front.
+public class VersionCatalog {
+
+    private static final Logger logger = LoggerUtility.getLogger(VersionCatalog.class);
+
+    // Catalogs of all modules, keyed by module name
+    private static final Map<String, VersionCatalog> catalogs = new ConcurrentHashMap<>();
+
+    // Catalogs that are being loaded right now, so concurrent callers wait for one load
+    private static final Map<String, FutureTask<VersionCatalog>> loading = new ConcurrentHashMap<>();
+
+    // Modules whose catalog is being refreshed in the background
+    private static final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final List<Entry> entries;
+    private final Map<String, Entry> byId;
+    private final Map<String, List<Entry>> byType;
+    private final Map<String, String[]> idsByType = new ConcurrentHashMap<>();
+    private final long createdAt;  // When the data was loaded from its source (kept across snapshots)
+
+    // One version in the catalog
+    public static class Entry {
+        public final String id;
+        public final String type;
+        public final String url;
+        public final String time;
+        public final String releaseTime;
+        public final String sha1;  // Hash of the document behind url, null if the source doesn't publish one
+
+        public Entry(String id, String type, String url, String time, String releaseTime) {
+            this(id, type, url, time, releaseTime, null);
+        }
+
+        public Entry(String id, String type, String url, String time, String releaseTime, String sha1) {
+            this.id = id;
+            this.type = type;
+            this.url = url;
+            this.time = time;
+            this.releaseTime = releaseTime;
+            this.sha1 = sha1;
+        }
+    }
+
+    private VersionCatalog(List<Entry> entries, long createdAt) {
+        Map<String, Entry> ids = new HashMap<>(entries.size() * 2);
+        Map<String, List<Entry>> types = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            ids.putIfAbsent(entry.id, entry);
+            types.computeIfAbsent(entry.type.toLowerCase(Locale.ROOT), type -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<String, List<Entry>> type : types.entrySet()) {
+            type.setValue(Collections.unmodifiableList(type.getValue()));
+        }
+
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        this.byId = ids;
+        this.byType = types;
+        this.createdAt = createdAt;
+    }
+
+    // Returns the catalog of a module, loading it only the first time (thread-safe)
+    // If the loader returns null (e.g. download failed), nothing is cached and null is returned
+    public static VersionCatalog get(String key, Supplier<VersionCatalog> loader) {
+        return load(key, loader);
+    }
+
+    // Returns the catalog of a module, backed by a binary snapshot in Config.tempFolder (see VersionCatalogSnapshot)
+    // On a cold start the snapshot is used right away; if it is older than maxAgeMillis, the loader refreshes it
+    // in the background and the fresh catalog replaces the cached one once it is ready.
+    public static VersionCatalog get(String key, long maxAgeMillis, Supplier<VersionCatalog> loader) {
+        return load(key, () -> {
+            VersionCatalog snapshot = VersionCatalogSnapshot.read(snapshotPath(key));
+            if (snapshot != null) {
+                if (snapshot.isOlderThan(maxAgeMillis)) {
+                    refreshInBackground(key, loader);
+                }
+                return snapshot;
+            }
+            VersionCatalog catalog = loader.get();
+            if (catalog != null) {
+                writeSnapshot(key, catalog);
+            }
+            return catalog;
+        });
+    }
+
+    // Helper method to load a catalog once per key
+    // The loader downloads and parses, so it runs on the first caller's thread and not inside the map (where it would
+    // hold a bin lock); later callers for the same key wait for that result, other keys are not held up.
+    private static VersionCatalog load(String key, Supplier<VersionCatalog> loader) {
+        VersionCatalog cached = catalogs.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        FutureTask<VersionCatalog> task = new FutureTask<>(() -> {
+            VersionCatalog loaded = catalogs.get(key);  // Another caller may have finished in the meantime
+            if (loaded == null) {
+                loaded = loader.get();
+                if (loaded != null) {
+                    VersionCatalog existing = catalogs.putIfAbsent(key, loaded);
+                    loaded = existing != null ? existing : loaded;
+                }
+            }
+            return loaded;
+        });
+        FutureTask<VersionCatalog> running = loading.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                loading.remove(key, task);
+            }
+        }
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // Helper method to reload a catalog on a daemon thread, at most once at a time per module
+    private static void refreshInBackground(String key, Supplier<VersionCatalog> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                VersionCatalog catalog = loader.get();
+                if (catalog != null) {
+                    put(key, catalog);
+                    writeSnapshot(key, catalog);
+                    logger.fine(() -> "Version catalog of " + key + " refreshed (" + catalog.size() + " versions).");
+                }
+            } finally {
+                refreshing.remove(key);
+            }
+        }, "cst-catalog-refresh");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void writeSnapshot(String key, VersionCatalog catalog) {
+        try {
+            VersionCatalogSnapshot.write(catalog, snapshotPath(key));
+        } catch (IOException e) {
+            logger.warning("Failed to write version snapshot of " + key + ": " + e.getMessage());
+        }
+    }
+
+    // Returns the snapshot file of a module
+    public static Path snapshotPath(String key) {
+        return Config.tempFolder.resolve(key + "_versions.bin");
+    }
+
+    // Method to drop a cached catalog, so the next get() loads it again
+    public static void invalidate(String key) {
+        catalogs.remove(key);
+    }
+
+    // Method to replace a cached catalog (e.g. after a background refresh)
+    public static void put(String key, VersionCatalog catalog) {
+        catalogs.put(key, catalog);
+    }
+
+    // Returns the version with this id, or null
+    public Entry get(String id) {
+        return byId.get(id);
+    }
+
+    // Returns all versions in catalog order
+    public List<Entry> getAll() {
+        return entries;
+    }
+
+    // Returns the versions of a type ("release", "snapshot", ...); "all" returns every version
+    public List<Entry> getByType(String type) {
+        if (type == null || "all".equalsIgnoreCase(type)) {
+            return entries;
+        }
+        List<Entry> list = byType.get(type.toLowerCase(Locale.ROOT));
+        return list != null ? list : Collections.<Entry>emptyList();
+    }
+
+    // Returns the version ids of a type, as needed by CubeServerModule.getAvailableVersions()
+    public String[] getIds(String type) {
+        String key = type == null ? "all" : type.toLowerCase(Locale.ROOT);
+        return idsByType.computeIfAbsent(key, ignored -> {
+            List<Entry> list = getByType(key);
+            String[] ids = new String[list.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = list.get(i).id;
+            }
+            return ids;
+        }).clone();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Getter for the time the catalog was loaded from its source
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    // Returns true if the catalog was loaded from its source more than maxAgeMillis ago
+    public boolean isOlderThan(long maxAgeMillis) {
+        return System.currentTimeMillis() - createdAt > maxAgeMillis;
+    }
+
+    // Builder to collect entries while parsing
+    public static class Builder {
+        private final List<Entry> entries = new ArrayList<>();
+        private long createdAt = System.currentTimeMillis();
+
+        public Builder add(String id, String type, String url, String time, String releaseTime) {
+            return add(id, type, url, time, releaseTime, null);
+        }
+
+        public Builder add(String id, String type, String url, String time, String releaseTime, String sha1) {
+            entries.add(new Entry(id, type, url, time, releaseTime, sha1));
+            return this;
+        }
+
+        // Method to keep the original load time, e.g. when a catalog is read back from a snapshot
+        public Builder createdAt(long createdAt) {
+            this.createdAt = createdAt;
+            return this;
+        }
+
+        public VersionCatalog build() {
+            return new VersionCatalog(entries, createdAt);
+        }
+    }
+}
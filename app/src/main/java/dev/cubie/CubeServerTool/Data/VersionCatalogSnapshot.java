@@ -0,0 +1,239 @@
+package dev.cubie.CubeServerTool.Data;
+
+import dev.cubie.CubeServerTool.Utils.HashAlgorithm;
+import dev.cubie.CubeServerTool.Utils.LoggerUtility;
+import dev.cubie.CubeServerTool.Utils.MappedBuffers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+// Compact binary copy of a VersionCatalog, so a cold start can show the version list without network or JSON parsing
+// The file is memory-mapped and decoded in one pass. Layout (big endian):
+//   int magic "CSTV", short format, long createdAt, int entries, int crc32 of everything after the header
+//   byte types, then each type as string
+//   per entry: string id, byte type index, short url prefix shared with the previous url, string url suffix,
+//              string time, string releaseTime, byte sha1 length (0 or 20), sha1 bytes
+// Strings are an unsigned short length followed by UTF-8 bytes. Version URLs mostly differ only in their hash
+// path segment, so front coding against the previous URL keeps the file at a fraction of the JSON size.
+public class VersionCatalogSnapshot {
+
+    private static final Logger logger = LoggerUtility.getLogger(VersionCatalogSnapshot.class);
+
+    private static final int MAGIC = 0x43535456;  // "CSTV"
+    private static final short FORMAT = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 4 + 4;
+
+    // Reads a snapshot; returns null if there is none or it is unreadable (the caller then loads the catalog normally)
+    public static VersionCatalog read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        MappedByteBuffer buffer = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Ignoring unreadable version snapshot: " + file + " (" + e.getMessage() + ")");
+            return null;
+        } finally {
+            if (buffer != null) {
+                // On Windows a mapped file can't be replaced, which would block the next write(). The buffer never
+                // leaves read().
+                MappedBuffers.unmap(buffer);
+            }
+        }
+    }
+
+    // Writes a snapshot (to a temp file first, so a reader never maps half a file)
+    public static void write(VersionCatalog catalog, Path file) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(catalog.size() * 96);
+        DataOutputStream out = new DataOutputStream(body);
+
+        Map<String, Integer> types = new LinkedHashMap<>();
+        for (VersionCatalog.Entry entry : catalog.getAll()) {
+            types.putIfAbsent(entry.type, types.size());
+        }
+        if (types.size() > 255) {
+            throw new IOException("Too many version types for a snapshot: " + types.size());
+        }
+        out.writeByte(types.size());
+        for (String type : types.keySet()) {
+            writeString(out, type);
+        }
+
+        String previousUrl = "";
+        for (VersionCatalog.Entry entry : catalog.getAll()) {
+            writeString(out, entry.id);
+            out.writeByte(types.get(entry.type));
+            int shared = sharedPrefix(previousUrl, entry.url);
+            out.writeShort(shared);
+            writeString(out, entry.url.substring(shared));
+            writeString(out, entry.time);
+            writeString(out, entry.releaseTime);
+            byte[] sha1 = parseHex(entry.sha1);
+            out.writeByte(sha1.length);
+            out.write(sha1);
+            previousUrl = entry.url;
+        }
+        out.flush();
+        byte[] bytes = body.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(FORMAT).putLong(catalog.getCreatedAt()).putInt(catalog.size()).putInt((int) crc.getValue());
+        header.flip();
+
+        Files.createDirectories(file.getParent());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(new ByteBuffer[] {header, ByteBuffer.wrap(bytes)});
+        }
+        try {
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Helper method to decode the mapped file
+    // The mapping is copied out in one bulk get and decoded from a plain array: per-field reads on a mapped buffer
+    // are cheap once compiled, but on a cold JVM they run interpreted and cost more than the copy.
+    private static VersionCatalog decode(MappedByteBuffer mapped) throws IOException {
+        if (mapped.remaining() < HEADER_SIZE || mapped.getInt() != MAGIC) {
+            throw new IOException("not a version snapshot");
+        }
+        if (mapped.getShort() != FORMAT) {
+            throw new IOException("unsupported snapshot format");
+        }
+        long createdAt = mapped.getLong();
+        int count = mapped.getInt();
+        int expectedCrc = mapped.getInt();
+
+        byte[] body = new byte[mapped.remaining()];
+        mapped.get(body);
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("checksum mismatch");
+        }
+
+        try {
+            Cursor in = new Cursor(body);
+            String[] types = new String[in.readByte()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = in.readString();
+            }
+
+            VersionCatalog.Builder builder = new VersionCatalog.Builder().createdAt(createdAt);
+            String previousUrl = "";
+            for (int i = 0; i < count; i++) {
+                String id = in.readString();
+                String type = types[in.readByte()];
+                int shared = in.readShort();
+                String url = previousUrl.substring(0, shared) + in.readString();
+                String time = in.readString();
+                String releaseTime = in.readString();
+                byte[] sha1 = in.readBytes(in.readByte());
+                builder.add(id, type, url, time, releaseTime, sha1.length > 0 ? HashAlgorithm.toHex(sha1) : null);
+                previousUrl = url;
+            }
+            return builder.build();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("truncated snapshot");
+        }
+    }
+
+    // Read position in the snapshot body
+    private static class Cursor {
+        private final byte[] bytes;
+        private int pos = 0;
+
+        Cursor(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            checkRemaining(1);
+            return bytes[pos++] & 0xFF;
+        }
+
+        int readShort() {
+            checkRemaining(2);
+            int value = ((bytes[pos] & 0xFF) << 8) | (bytes[pos + 1] & 0xFF);
+            pos += 2;
+            return value;
+        }
+
+        byte[] readBytes(int length) {
+            checkRemaining(length);
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, pos, result, 0, length);
+            pos += length;
+            return result;
+        }
+
+        String readString() {
+            int length = readShort();
+            checkRemaining(length);
+            String value = new String(bytes, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        private void checkRemaining(int length) {
+            if (pos + length > bytes.length) {
+                throw new IndexOutOfBoundsException("Read past the end of the snapshot");
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String too long for a snapshot");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static int sharedPrefix(String a, String b) {
+        int max = Math.min(Math.min(a.length(), b.length()), 0xFFFF);
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // Helper method to turn a hex hash into bytes; anything that is not a 40 char hex string is not stored
+    private static byte[] parseHex(String hex) {
+        if (hex == null || hex.length() != 40) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[20];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return new byte[0];
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
@@ -2,16 +2,17 @@ package dev.cubie.CubeServerTool.Modules.MinecraftVanilla;
 
 import dev.cubie.CubeServerTool.CubeServerModule;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import dev.cubie.CubeServerTool.Data.Config;
+import dev.cubie.CubeServerTool.Data.VersionCatalog;
+import dev.cubie.CubeServerTool.Utils.ArtifactStore;
 import dev.cubie.CubeServerTool.Utils.FileOperation;
+import dev.cubie.CubeServerTool.Utils.HashAlgorithm;
+import dev.cubie.CubeServerTool.Utils.JsonReader;
 import dev.cubie.CubeServerTool.Utils.LoggerUtility;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import static dev.cubie.CubeServerTool.Utils.FileOperation.resolveBaseToFolder;
 
@@ -23,10 +24,14 @@ public class MinecraftVanilla implements CubeServerModule {
     // Statische Variable für die Sichtbarkeit
     public static boolean isPublic = true;
 
-    // Definiere den Pfad zur Cache-Datei
-    String cacheFile = Config.tempFolder.resolve( className + "_versions.json").toAbsolutePath().toString();
+    // Definiere den Pfad zur Cache-Datei (eigene Datei für das v2-Manifest, die alte enthält noch v1)
+    String cacheFile = Config.tempFolder.resolve( className + "_versions_v2.json").toAbsolutePath().toString();
 
-    String versionFileURL = "https://piston-meta.mojang.com/mc/game/version_manifest.json";
+    // v2 des Manifests enthält zusätzlich die SHA-1 der Versionsdetails
+    String versionFileURL = "https://piston-meta.mojang.com/mc/game/version_manifest_v2.json";
+
+    // Ab diesem Alter wird der Binär-Snapshot des Katalogs im Hintergrund erneuert
+    long snapshotMaxAge = 10 * 60 * 1000;
 
     // Initialize LoggerUtility after the config is loaded
     Logger logger = LoggerUtility.getLogger(MinecraftVanilla.class);
@@ -49,10 +54,48 @@ public class MinecraftVanilla implements CubeServerModule {
     @Override
     public String[] getAvailableVersions() {
 
-        // Verwende FileOperation, um die Datei herunterzuladen und zu cachen
+        // Das Manifest wird nur einmal pro Lauf geladen und geparst
+        VersionCatalog catalog = getCatalog();
+        if (catalog == null) {
+            return new String[0];
+        }
+
+        // Vorab nach Typ aufgeteilte Liste, gefiltert über den globalen Filter Config.selectedType
+        return catalog.getIds(Config.selectedType);
+    }
+
+    // Liefert den geteilten Versionskatalog; beim Kaltstart kommt er aus dem Binär-Snapshot, sonst wird das Manifest geladen
+    private VersionCatalog getCatalog() {
+        VersionCatalog catalog = VersionCatalog.get(className, snapshotMaxAge, this::loadCatalog);
+        if (catalog == null) {
+            logger.severe("Version manifest is not available.");
+        }
+        return catalog;
+    }
+
+    // Lädt das Manifest (über den HTTP-Cache) und baut daraus den Katalog
+    private VersionCatalog loadCatalog() {
+
+        VersionCatalog.Builder builder = new VersionCatalog.Builder();
+
+        // Manifest direkt aus dem Stream lesen (über den HTTP-Cache), ohne String und ohne JSON-Baum
         FileOperation downloadResult = FileOperation.getFile(versionFileURL)
-                .fetch()
-                .cache(60000, cacheFile);  // Prüft den Cache und lädt die Datei nur neu, wenn der Cache abgelaufen ist
+                .cache(60000, cacheFile)  // Prüft den Cache vor dem Download und fragt bei abgelaufenem Cache nur per ETag nach
+                .fetchJson(reader -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("versions")) {
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                readVersion(reader, builder);
+                            }
+                            reader.endArray();
+                        } else {
+                            reader.skipValue();  // z. B. "latest" wird nicht gebraucht
+                        }
+                    }
+                    reader.endObject();
+                });
 
         // Überprüfe den ResponseCode, um zu sehen, ob die Datei aus dem Cache oder von der URL geladen wurde
         if (downloadResult.getResponseCode() == 200) {
@@ -61,28 +104,97 @@ public class MinecraftVanilla implements CubeServerModule {
             logger.info("File loaded from cache.");
         } else {
             logger.severe("Failed to fetch the file. Response code: " + downloadResult.getResponseCode());
+            return null;
         }
+        return builder.build();
+    }
 
-        // JSON parsen und "versions" Array extrahieren
-        JSONObject jsonObj = new JSONObject(downloadResult.getContent());
-        JSONArray versionsArray = jsonObj.getJSONArray("versions");
+    // Liest einen Eintrag aus dem "versions" Array, alle anderen Felder werden übersprungen
+    private static void readVersion(JsonReader reader, VersionCatalog.Builder builder) throws IOException {
+        String id = null;
+        String type = null;
+        String url = null;
+        String time = "";
+        String releaseTime = "";
+        String sha1 = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "type":
+                    type = reader.nextString();
+                    break;
+                case "url":
+                    url = reader.nextString();
+                    break;
+                case "time":
+                    time = reader.nextString();
+                    break;
+                case "releaseTime":
+                    releaseTime = reader.nextString();
+                    break;
+                case "sha1":
+                    sha1 = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
 
-        // Verwende eine dynamische Liste anstelle eines Arrays
-        List<String> versionIds = new ArrayList<>();
+        if (id == null || type == null || url == null) {
+            throw new IOException("Incomplete entry in the version manifest");
+        }
+        builder.add(id, type, url, time, releaseTime, sha1);
+    }
 
-        // Durch das "versions" Array iterieren und die "id" Werte extrahieren
-        for (int i = 0; i < versionsArray.length(); i++) {
-            JSONObject versionObj = versionsArray.getJSONObject(i);
-            String type = versionObj.getString("type");
+    // Server-Download aus den Versionsdetails ("downloads -> server")
+    private static class ServerDownload {
+        boolean hasDownloads = false;
+        String url;
+        String sha1;
+        long size = -1;
+    }
 
-            // Überprüfe den globalen Filter Config.selectedType
-            if ("all".equalsIgnoreCase(Config.selectedType) || type.equalsIgnoreCase(Config.selectedType)) {
-                versionIds.add(versionObj.getString("id"));  // Dynamisch in die Liste einfügen
+    // Liest nur "downloads -> server" aus den Versionsdetails, der Rest (Libraries, Assets, ...) wird übersprungen
+    private static void readServerDownload(JsonReader reader, ServerDownload server) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("downloads")) {
+                reader.skipValue();
+                continue;
             }
-
+            server.hasDownloads = true;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("server")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "url":
+                            server.url = reader.nextString();
+                            break;
+                        case "sha1":
+                            server.sha1 = reader.nextString();
+                            break;
+                        case "size":
+                            server.size = reader.nextLong();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
         }
-        // Konvertiere die dynamische Liste in ein Array und gib es zurück
-        return versionIds.toArray(new String[0]);
+        reader.endObject();
     }
 
     @Override
@@ -100,65 +212,58 @@ public class MinecraftVanilla implements CubeServerModule {
     public void install() {
          logger.info("Installing Vanilla Minecraft version: " + Config.selectedVersion);
 
-        // Verwende FileOperation, um die Datei herunterzuladen und zu cachen
-        FileOperation downloadResult = FileOperation.getFile("https://piston-meta.mojang.com/mc/game/version_manifest.json")
-                .fetch()
-                .cache(60000, cacheFile );  // Prüft den Cache und lädt die Datei nur neu, wenn der Cache abgelaufen ist
+        VersionCatalog catalog = getCatalog();
+        if (catalog == null) {
+            return;
+        }
 
-        // Überprüfe den ResponseCode
-        if (downloadResult.getResponseCode() != 200 && downloadResult.getResponseCode() != 304) {
-            logger.severe ("Failed to fetch the version manifest file. Response code: " + downloadResult.getResponseCode());
+        // Direkter Zugriff über den Index statt Suche im "versions" Array
+        VersionCatalog.Entry version = catalog.get(Config.selectedVersion);
+        if (version == null) {
+            logger.severe("Version not found in the version manifest: " + Config.selectedVersion);
             return;
         }
 
-        // JSON parsen und das "versions" Array extrahieren
-        JSONObject jsonObj = new JSONObject(downloadResult.getContent());
-        JSONArray versionsArray = jsonObj.getJSONArray("versions");
-
-        // Durch das "versions" Array iterieren, um die passende Version zu finden
-        for (int i = 0; i < versionsArray.length(); i++) {
-            JSONObject versionObj = versionsArray.getJSONObject(i);
-
-            // Wenn die "id" der gesuchten Version entspricht
-            if (versionObj.getString("id").equals(Config.selectedVersion)) {
-                String type = versionObj.getString("type");
-                String versionUrl = versionObj.getString("url");
-                String time = versionObj.getString("time");
-                String releaseTime = versionObj.getString("releaseTime");
-
-                System.out.println("Version ID: " + Config.selectedVersion);
-                System.out.println("Type: " + type);
-                System.out.println("URL: " + versionUrl);
-                System.out.println("Time: " + time);
-                System.out.println("Release Time: " + releaseTime);
-
-                // Jetzt die URL aufrufen, um weitere Daten zu holen
-                FileOperation versionDetailsDownload = FileOperation.getFile(versionUrl).fetch();
-
-                if (versionDetailsDownload.getResponseCode() == 200) {
-                    JSONObject versionDetails = new JSONObject(versionDetailsDownload.getContent());
-
-                    // Beispiel: Die "downloads -> server -> url" Information extrahieren
-                    if (versionDetails.has("downloads")) {
-                        JSONObject downloads = versionDetails.getJSONObject("downloads");
-                        if (downloads.has("server")) {
-                            String serverDownloadUrl = downloads.getJSONObject("server").getString("url");
-                            logger.info("Server download URL: " + serverDownloadUrl);
-
-                            String targetFile = resolveBaseToFolder(Config.rootFolder, serverDownloadUrl);
-                            // Lade die Datei herunter und speichere sie im richtigen Verzeichnis
-                            FileOperation.getFile(serverDownloadUrl).fetchBinaryWithProgressBar().saveTo( targetFile );
-                        } else {
-                            logger.warning("No server download available for this version.");
-                        }
-                    } else {
-                        logger.warning("No downloads section available in the version details.");
-                    }
+        String type = version.type;
+        String versionUrl = version.url;
+
+        System.out.println("Version ID: " + Config.selectedVersion);
+        System.out.println("Type: " + type);
+        System.out.println("URL: " + versionUrl);
+        System.out.println("Time: " + version.time);
+        System.out.println("Release Time: " + version.releaseTime);
+
+        // Jetzt die URL aufrufen, um weitere Daten zu holen
+        ServerDownload server = new ServerDownload();
+        FileOperation versionDetailsDownload = FileOperation.getFile(versionUrl)
+                .fetchJson(reader -> readServerDownload(reader, server));
+
+        if (versionDetailsDownload.getResponseCode() == 200) {
+
+            // Beispiel: Die "downloads -> server -> url" Information extrahieren
+            if (server.hasDownloads) {
+                if (server.url != null) {
+                    String serverDownloadUrl = server.url;
+                    logger.info("Server download URL: " + serverDownloadUrl);
+
+                    String targetFile = resolveBaseToFolder(Config.rootFolder, serverDownloadUrl);
+                    // Lade die Datei herunter, prüfe SHA-1 und Größe und speichere sie im richtigen Verzeichnis
+                    FileOperation.getFile(serverDownloadUrl)
+                            .verify(HashAlgorithm.SHA1, server.sha1)
+                            .expectSize(server.size)
+                            .skipIfMatches(targetFile)
+                            .useStore(ArtifactStore.getDefault())
+                            .streaming().segments(4).retries(3)
+                            .fetchBinaryWithProgressBar()
+                            .saveTo( targetFile );
                 } else {
-                    logger.severe("Failed to fetch version details. Response code: " + versionDetailsDownload.getResponseCode());
+                    logger.warning("No server download available for this version.");
                 }
-                break;  // Version gefunden, Schleife abbrechen
+            } else {
+                logger.warning("No downloads section available in the version details.");
             }
+        } else {
+            logger.severe("Failed to fetch version details. Response code: " + versionDetailsDownload.getResponseCode());
         }
     }
 
@@ -0,0 +1,371 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import dev.cubie.CubeServerTool.Data.Config;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+// Content-addressed store for downloaded artifacts, shared by all server directories on this host
+// Objects live under <store>/<algorithm>/<first two hex chars>/<hash> and are materialized into server
+// directories as hard links (copies if the file system can't link). Every materialized path is recorded
+// in <store>/refs, and gc() removes objects that no server directory refers to anymore. Since links share the
+// object's content, objects are checked against a size and mtime stamp before they are used.
+public class ArtifactStore {
+
+    private static final Logger logger = LoggerUtility.getLogger(ArtifactStore.class);
+
+    private static ArtifactStore defaultStore;
+
+    private final Path root;
+    private final Path refsFolder;
+    private final Path lockFile;
+
+    // Constructor
+    public ArtifactStore(Path root) {
+        this.root = root;
+        this.refsFolder = root.resolve("refs");
+        this.lockFile = root.resolve(".lock");
+    }
+
+    // Get the store in Config.storeFolder
+    public static synchronized ArtifactStore getDefault() {
+        if (defaultStore == null) {
+            defaultStore = new ArtifactStore(Config.storeFolder);
+        }
+        return defaultStore;
+    }
+
+    // Returns the path of an object in the store (whether it exists or not)
+    public Path objectPath(HashAlgorithm algorithm, String hash) {
+        String key = hash.toLowerCase();
+        return root.resolve(algorithmFolder(algorithm)).resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    // Returns true if the store has an intact object with this hash; a modified object is removed
+    public synchronized boolean contains(HashAlgorithm algorithm, String hash) throws IOException {
+        Path object = objectPath(algorithm, hash);
+        if (!Files.isRegularFile(object)) {
+            return false;
+        }
+        FileLock lock = lock();
+        try {
+            return keepIfIntact(algorithm, hash, object);
+        } finally {
+            lock.release();
+        }
+    }
+
+    // Moves a file into the store after checking that its content matches the hash; if the object already exists,
+    // the file is simply deleted
+    public synchronized Path add(Path file, HashAlgorithm algorithm, String hash) throws IOException {
+        checkHash(file, algorithm, hash);
+        FileLock lock = lock();
+        try {
+            return addLocked(file, algorithm, hash);
+        } finally {
+            lock.release();
+        }
+    }
+
+    // Puts an object at the target path, as a hard link if possible, and records the reference
+    public synchronized void materialize(HashAlgorithm algorithm, String hash, Path target) throws IOException {
+        FileLock lock = lock();
+        try {
+            materializeLocked(algorithm, hash, target);
+        } finally {
+            lock.release();
+        }
+    }
+
+    // Method to add a file and materialize it under one store lock, so a gc() in another process can't remove the
+    // new object before it is referenced
+    public synchronized Path addAndMaterialize(Path file, HashAlgorithm algorithm, String hash, Path target) throws IOException {
+        checkHash(file, algorithm, hash);
+        FileLock lock = lock();
+        try {
+            Path object = addLocked(file, algorithm, hash);
+            materializeLocked(algorithm, hash, target);
+            return object;
+        } finally {
+            lock.release();
+        }
+    }
+
+    // Helper method to check a file before it goes into the store; done before locking, hashing takes a while
+    private static void checkHash(Path file, HashAlgorithm algorithm, String hash) throws IOException {
+        // Objects are trusted by name from then on, so nothing gets in under a hash it doesn't have
+        String actual = algorithm.hash(file);
+        if (!actual.equalsIgnoreCase(hash)) {
+            throw new IOException("Not adding " + file.getFileName() + " to the artifact store: " + algorithm + " is " + actual + ", expected " + hash);
+        }
+    }
+
+    // Helper method for add(), called with the store lock held
+    private Path addLocked(Path file, HashAlgorithm algorithm, String hash) throws IOException {
+        Path object = objectPath(algorithm, hash);
+        if (Files.isRegularFile(object) && keepIfIntact(algorithm, hash, object)) {
+            Files.deleteIfExists(file);
+        } else {
+            Files.createDirectories(object.getParent());
+            moveAtomically(file, object);
+            writeStamp(algorithm, hash, object);
+            logger.fine(() -> "Added " + hash + " to the artifact store.");
+        }
+        return object;
+    }
+
+    // Helper method for materialize(), called with the store lock held
+    private void materializeLocked(HashAlgorithm algorithm, String hash, Path target) throws IOException {
+        Path object = objectPath(algorithm, hash);
+        Path absoluteTarget = target.toAbsolutePath().normalize();
+
+        if (!Files.isRegularFile(object)) {
+            throw new IOException("Artifact not in store: " + hash);
+        }
+        if (!keepIfIntact(algorithm, hash, object)) {
+            throw new IOException("Artifact in store was modified and has been removed: " + hash);
+        }
+        // Hard links share the read-only flag of the file, and a server couldn't replace a read-only jar on
+        // Windows; objects added by older versions may still have it
+        if (!Files.isWritable(object)) {
+            object.toFile().setWritable(true);
+        }
+        if (Files.exists(absoluteTarget) && Files.isSameFile(object, absoluteTarget)) {
+            addReference(algorithm, hash, absoluteTarget);  // Already linked
+            return;
+        }
+
+        Files.createDirectories(absoluteTarget.getParent());
+        Path temp = absoluteTarget.resolveSibling(absoluteTarget.getFileName() + ".link");
+        Files.deleteIfExists(temp);
+        try {
+            Files.createLink(temp, object);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Different file system or no hard link support: fall back to a copy
+            logger.fine(() -> "Hard link not possible, copying " + hash + " (" + e.getMessage() + ")");
+            Files.copy(object, temp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        moveAtomically(temp, absoluteTarget);
+        addReference(algorithm, hash, absoluteTarget);
+    }
+
+    // Removes all objects that are no longer referenced by any existing file; returns the number of removed objects
+    public synchronized int gc() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        int removed = 0;
+        long freedBytes = 0;
+
+        FileLock lock = lock();
+        try {
+            for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+                Path algorithmRoot = root.resolve(algorithmFolder(algorithm));
+                if (!Files.isDirectory(algorithmRoot)) {
+                    continue;
+                }
+                for (Path object : listObjects(algorithmRoot)) {
+                    String hash = object.getFileName().toString();
+                    // A hard link only counts as a reference while the object still has the content of its hash
+                    boolean intact = isIntact(algorithm, hash, object);
+                    Set<Path> liveReferences = intact ? liveReferences(algorithm, hash, object) : new LinkedHashSet<>();
+
+                    if (liveReferences.isEmpty()) {
+                        freedBytes += Files.size(object);
+                        object.toFile().setWritable(true);
+                        Files.delete(object);
+                        Files.deleteIfExists(referencesFile(algorithm, hash));
+                        Files.deleteIfExists(stampFile(algorithm, hash));
+                        try {
+                            Files.delete(object.getParent());
+                        } catch (DirectoryNotEmptyException e) {
+                            // Other objects share this prefix folder
+                        }
+                        removed++;
+                    } else {
+                        writeReferences(algorithm, hash, liveReferences);
+                    }
+                }
+            }
+        } finally {
+            lock.release();
+        }
+
+        if (removed > 0) {
+            logger.info("Artifact store: removed " + removed + " unused objects (" + (freedBytes / (1024 * 1024)) + " MB).");
+        }
+        return removed;
+    }
+
+    // Helper method to collect the references of an object that still point at its content
+    private Set<Path> liveReferences(HashAlgorithm algorithm, String hash, Path object) throws IOException {
+        Set<Path> live = new LinkedHashSet<>();
+        Path refs = referencesFile(algorithm, hash);
+        if (!Files.exists(refs)) {
+            return live;
+        }
+        long size = Files.size(object);
+        for (String line : Files.readAllLines(refs, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            Path reference = Paths.get(line);
+            if (!Files.isRegularFile(reference)) {
+                continue;  // Server directory or file was deleted
+            }
+            // A hard link is still ours if it is the same file; a copy only if it still has the same content
+            if (Files.isSameFile(reference, object) || (Files.size(reference) == size && algorithm.hash(reference).equalsIgnoreCase(hash))) {
+                live.add(reference);
+            }
+        }
+        return live;
+    }
+
+    // Helper method to check that an object still has the content it was added with. Objects are hard linked into
+    // server directories, so anything writing into one of those files in place changes the object too. Size and
+    // modification time are compared with the stamp taken when the object was verified; only a mismatch costs a hash.
+    private boolean isIntact(HashAlgorithm algorithm, String hash, Path object) throws IOException {
+        Path stampFile = stampFile(algorithm, hash);
+        if (Files.exists(stampFile) && new String(Files.readAllBytes(stampFile), StandardCharsets.UTF_8).equals(stamp(object))) {
+            return true;
+        }
+        if (!algorithm.hash(object).equalsIgnoreCase(hash)) {
+            return false;
+        }
+        writeStamp(algorithm, hash, object);  // Touched but unchanged, or added by an older version
+        return true;
+    }
+
+    // Helper method to drop an object whose content no longer matches its hash; returns false if it was dropped
+    private boolean keepIfIntact(HashAlgorithm algorithm, String hash, Path object) throws IOException {
+        if (isIntact(algorithm, hash, object)) {
+            return true;
+        }
+        logger.warning("Artifact store: " + hash + " was modified in place, removing it.");
+        object.toFile().setWritable(true);
+        Files.deleteIfExists(object);
+        Files.deleteIfExists(stampFile(algorithm, hash));
+        return false;
+    }
+
+    private void writeStamp(HashAlgorithm algorithm, String hash, Path object) throws IOException {
+        Files.createDirectories(refsFolder);
+        Files.write(stampFile(algorithm, hash), stamp(object).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String stamp(Path object) throws IOException {
+        return Files.size(object) + " " + Files.getLastModifiedTime(object).toMillis();
+    }
+
+    private Path stampFile(HashAlgorithm algorithm, String hash) {
+        return refsFolder.resolve(algorithmFolder(algorithm) + "-" + hash.toLowerCase() + ".stamp");
+    }
+
+    // Helper method to append a reference to the object's refs file
+    private void addReference(HashAlgorithm algorithm, String hash, Path target) throws IOException {
+        Path refs = referencesFile(algorithm, hash);
+        Files.createDirectories(refsFolder);
+        if (Files.exists(refs) && Files.readAllLines(refs, StandardCharsets.UTF_8).contains(target.toString())) {
+            return;
+        }
+        Files.write(refs, (target + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // Helper method to rewrite the refs file with only the live references
+    private void writeReferences(HashAlgorithm algorithm, String hash, Set<Path> references) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Path reference : references) {
+            content.append(reference).append('\n');
+        }
+        Files.write(referencesFile(algorithm, hash), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path referencesFile(HashAlgorithm algorithm, String hash) {
+        return refsFolder.resolve(algorithmFolder(algorithm) + "-" + hash.toLowerCase() + ".refs");
+    }
+
+    // Helper method to list all objects below an algorithm folder
+    private static List<Path> listObjects(Path algorithmRoot) throws IOException {
+        List<Path> objects = new ArrayList<>();
+        try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(algorithmRoot)) {
+            for (Path prefix : prefixes) {
+                if (!Files.isDirectory(prefix)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(prefix)) {
+                    for (Path file : files) {
+                        if (Files.isRegularFile(file)) {
+                            objects.add(file);
+                        }
+                    }
+                }
+            }
+        }
+        return objects;
+    }
+
+    private static String algorithmFolder(HashAlgorithm algorithm) {
+        return algorithm.name().toLowerCase();
+    }
+
+    // Helper method to lock the store against other tool processes on the same host
+    private FileLock lock() throws IOException {
+        Files.createDirectories(root);
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            return new ClosingFileLock(channel, channel.lock());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Helper method to rename a file, atomically if the file system supports it
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException | FileAlreadyExistsException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // FileLock that also closes its channel when released
+    private static class ClosingFileLock extends FileLock {
+        private final FileLock lock;
+
+        ClosingFileLock(FileChannel channel, FileLock lock) {
+            super(channel, lock.position(), lock.size(), lock.isShared());
+            this.lock = lock;
+        }
+
+        @Override
+        public boolean isValid() {
+            return lock.isValid();
+        }
+
+        @Override
+        public void release() throws IOException {
+            try {
+                lock.release();
+            } finally {
+                channel().close();
+            }
+        }
+    }
+}
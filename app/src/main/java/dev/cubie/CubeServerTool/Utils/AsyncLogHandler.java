@@ -0,0 +1,294 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+// Handler that moves formatting and I/O of log records off the logging threads
+// Threads that log only put the record into a bounded lock-free queue (one CAS). One writer thread takes records out
+// in batches, hands them to the target handlers (console, CSV file) and flushes the targets at most once per flush
+// interval, so a download or install loop never waits for the disk. When the queue is full the OverflowPolicy decides:
+//   BLOCK       wait for space, nothing is lost
+//   DROP_DEBUG  drop records below INFO, wait for the rest
+//   SAMPLE      keep every n-th record below WARNING, wait for the rest
+// WARNING and SEVERE records are never dropped. Dropped records are counted and reported in the log itself.
+public class AsyncLogHandler extends Handler {
+
+    public enum OverflowPolicy { BLOCK, DROP_DEBUG, SAMPLE }
+
+    private static final int BATCH_SIZE = 256;
+
+    private final List<Handler> targets = new CopyOnWriteArrayList<>();
+    private final AtomicReferenceArray<LogRecord> slots;
+    private final AtomicLongArray sequences;  // Per slot: free for producer "pos" when == pos, readable when == pos + 1
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();  // Next position a producer claims
+    private long head = 0;  // Next position the writer reads (writer thread only)
+    private volatile long processed = 0;
+
+    private final long flushIntervalNanos;
+    private final OverflowPolicy policy;
+    private int sampleRate = 10;
+    private boolean inferCaller = true;
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long reportedDropped = 0;
+
+    private final Thread writer;
+    private volatile boolean waiting = false;
+    private volatile boolean flushRequested = false;
+    private volatile boolean closed = false;
+
+    // Constructor; capacity is rounded up to a power of two
+    public AsyncLogHandler(int capacity, long flushIntervalMillis, OverflowPolicy policy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.policy = policy;
+        setLevel(Level.OFF);  // Raised by addTarget()
+
+        this.writer = new Thread(this::run, "cst-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Adds a handler the writer thread passes the records to; set its level before adding it
+    public AsyncLogHandler addTarget(Handler target) {
+        targets.add(target);
+        if (target.getLevel().intValue() < getLevel().intValue()) {
+            setLevel(target.getLevel());  // Records no target wants are not even queued
+        }
+        return this;
+    }
+
+    // Method to set how many records below WARNING the SAMPLE policy keeps (1 of n) while the queue is full
+    public AsyncLogHandler sampleRate(int n) {
+        this.sampleRate = Math.max(1, n);
+        return this;
+    }
+
+    // Method to switch off resolving the calling class and method when no target prints them
+    public AsyncLogHandler inferCaller(boolean enabled) {
+        this.inferCaller = enabled;
+        return this;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        if (inferCaller) {
+            // The caller is found by walking the stack of the thread that asks, so it has to happen here and not on the
+            // writer thread
+            record.getSourceClassName();
+        }
+        if (closed) {
+            publishToTargets(record);
+            return;
+        }
+        if (!offer(record) && !overflow(record)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (waiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // Waits until everything logged so far is written and flushed
+    @Override
+    public void flush() {
+        long target = tail.get();
+        flushRequested = true;
+        LockSupport.unpark(writer);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while ((processed < target || flushRequested) && writer.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    // Writes the remaining records and closes the targets
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler target : targets) {
+            target.close();
+        }
+    }
+
+    // Records that were dropped because the queue was full
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // Records waiting for the writer
+    public int getQueued() {
+        return (int) (tail.get() - processed);
+    }
+
+    public List<Handler> getTargets() {
+        return new ArrayList<>(targets);
+    }
+
+    // Helper method to claim a slot; returns false if the queue is full
+    private boolean offer(LogRecord record) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, record);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;  // The writer has not freed this slot yet
+            }
+            // Otherwise another producer took the slot, try the next one
+        }
+    }
+
+    // Helper method to apply the overflow policy; returns false if the record is dropped
+    private boolean overflow(LogRecord record) {
+        int level = record.getLevel().intValue();
+        if (level < Level.WARNING.intValue()) {
+            if (policy == OverflowPolicy.DROP_DEBUG && level < Level.INFO.intValue()) {
+                return false;
+            }
+            if (policy == OverflowPolicy.SAMPLE && sampleCounter.getAndIncrement() % sampleRate != 0) {
+                return false;
+            }
+        }
+        while (!offer(record)) {
+            if (closed) {
+                publishToTargets(record);
+                return true;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        return true;
+    }
+
+    // Writer thread: batches records to the targets, flushes once per interval or when asked to
+    private void run() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        long lastFlush = System.nanoTime();
+        boolean dirty = false;
+        while (true) {
+            boolean urgent = false;
+            LogRecord record;
+            while (batch.size() < BATCH_SIZE && (record = poll()) != null) {
+                batch.add(record);
+            }
+            for (LogRecord next : batch) {
+                publishToTargets(next);
+                urgent |= next.getLevel().intValue() >= Level.SEVERE.intValue();
+            }
+            dirty |= !batch.isEmpty();
+            boolean drained = batch.size() < BATCH_SIZE;
+            batch.clear();
+            processed = head;
+            reportDropped();
+
+            long now = System.nanoTime();
+            boolean requested = flushRequested;
+            if ((dirty && (urgent || now - lastFlush >= flushIntervalNanos)) || (requested && drained)) {
+                flushTargets();
+                dirty = false;
+                lastFlush = now;
+                if (requested) {
+                    flushRequested = false;
+                }
+            }
+
+            if (drained) {
+                if (closed && isEmpty()) {
+                    flushTargets();
+                    return;
+                }
+                waiting = true;
+                if (isEmpty() && !closed && !flushRequested) {
+                    // Producers unpark us; the timeout covers the next flush and a wake-up that raced with "waiting"
+                    long untilFlush = dirty ? flushIntervalNanos - (now - lastFlush) : Long.MAX_VALUE;
+                    LockSupport.parkNanos(this, Math.max(1, Math.min(untilFlush, TimeUnit.MILLISECONDS.toNanos(50))));
+                }
+                waiting = false;
+            }
+        }
+    }
+
+    private LogRecord poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        LogRecord record = slots.get(index);
+        slots.set(index, null);
+        sequences.lazySet(index, head + slots.length());
+        head++;
+        return record;
+    }
+
+    private boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    private void publishToTargets(LogRecord record) {
+        for (Handler target : targets) {
+            try {
+                target.publish(record);
+            } catch (RuntimeException e) {
+                reportError("Log handler " + target.getClass().getSimpleName() + " failed", e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    private void flushTargets() {
+        for (Handler target : targets) {
+            try {
+                target.flush();
+            } catch (RuntimeException e) {
+                reportError("Log handler " + target.getClass().getSimpleName() + " failed", e, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    // Helper method to log how many records were dropped since the last report
+    private void reportDropped() {
+        long total = dropped.get();
+        if (total > reportedDropped) {
+            LogRecord record = new LogRecord(Level.WARNING, (total - reportedDropped)
+                    + " log records dropped, the log queue was full (policy " + policy + ").");
+            record.setSourceClassName(AsyncLogHandler.class.getName());
+            record.setSourceMethodName("publish");
+            reportedDropped = total;
+            publishToTargets(record);
+        }
+    }
+}
@@ -1,62 +1,369 @@
 package dev.cubie.CubeServerTool.Utils;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Handler;
 import java.util.logging.LogRecord;
+import java.util.zip.GZIPOutputStream;
 
 // CSVFileHandler for CSV formatting
+// Optionally rotates the file: when it reaches rotateAt() bytes or a new day starts, the file is renamed to
+// "<name>-<yyyy-MM-dd>-<n>.csv" and a new one is started. The rotated segment is gzipped on a background thread,
+// and the oldest segments are deleted while all of them together exceed the retention() budget. The handler itself
+// only renames and reopens, so a rotation costs a logging thread about as much as a flush.
+// With indexed(true) every segment gets a sparse LogIndex next to it, which LogQueryEngine uses to answer queries.
 public class CSVFileHandler extends Handler {
-    private final FileWriter writer;
+
+    private static final String HEADER = "Timestamp,Log Level,Message,Class,Method\n";
+    private static final long ROTATION_RETRY_MILLIS = 60 * 1000;  // Pause after a rotation failed, e.g. a locked file
+
+    // One compression thread for all handlers
+    private static final ExecutorService compressor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cst-log-compressor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final Path path;
+    private final String baseName;  // File name without ".csv"
+    private Writer writer;
+    private char[] chars = new char[512];  // Copy of the formatted line, so no String is created per record
+    private boolean autoFlush = true;  // Flush after every record; off when an AsyncLogHandler flushes in batches
+
+    private long maxBytes = 0;  // 0 = no size limit
+    private boolean daily = false;
+    private long retentionBytes = 0;  // 0 = keep every rotated segment
+    private LogIndex index;  // null = not indexed
+    private long written;  // Bytes in the current file
+    private LocalDate day;  // Day of the records in the current file
+    private long nextDayMillis;
+    private long retryRotationAt = 0;  // After a failed rotation the file keeps growing until then
 
     public CSVFileHandler(Path path) throws IOException {
-        this.writer = new FileWriter(path.toFile(), true);  // Append to the file
+        this.path = path;
+        String fileName = path.getFileName().toString();
+        this.baseName = fileName.endsWith(".csv") ? fileName.substring(0, fileName.length() - 4) : fileName;
 
-        // Write CSV header if the file is new
-        if (path.toFile().length() == 0) {
-            writer.append("Timestamp,Log Level,Message,Class,Method\n");
+        // A file left by an earlier run belongs to the day it was last written
+        long lastModified = Files.exists(path) && Files.size(path) > 0 ? Files.getLastModifiedTime(path).toMillis() : System.currentTimeMillis();
+        startDay(lastModified);
+        open();
+    }
+
+    // Method to rotate when the file reaches the given size
+    public CSVFileHandler rotateAt(long bytes) {
+        this.maxBytes = bytes;
+        return this;
+    }
+
+    // Method to rotate when the first record of a new day arrives
+    public CSVFileHandler rotateDaily(boolean enabled) {
+        this.daily = enabled;
+        return this;
+    }
+
+    // Method to write a LogIndex for every segment
+    public CSVFileHandler indexed(boolean enabled) throws IOException {
+        if (enabled && index == null) {
+            index = new LogIndex(LogIndex.indexFor(path));
+        } else if (!enabled && index != null) {
+            index.close();
+            index = null;
         }
+        return this;
+    }
+
+    // Method to limit the size of all rotated segments together; the oldest are deleted first
+    public CSVFileHandler retention(long bytes) {
+        this.retentionBytes = bytes;
+        // Also compresses segments an earlier run rotated but could not compress before it exited
+        compressor.execute(this::cleanUp);
+        return this;
     }
 
     @Override
-    public void publish(LogRecord record) {
+    public synchronized void publish(LogRecord record) {
         if (!isLoggable(record)) {
             return;
         }
 
         try {
-            String logEntry = String.format(
-                    "%1$tF %1$tT,%2$s,%3$s,%4$s,%5$s%n",
-                    record.getMillis(),
-                    record.getLevel(),
-                    record.getMessage().replaceAll("\\x1b\\[[\\d;]*m", "").replaceAll(",", ""),  // Remove colors and commas
-                    record.getSourceClassName(),
-                    record.getSourceMethodName()
-            );
-            writer.append(logEntry);
-            writer.flush();
+            // "Timestamp,Log Level,Message,Class,Method" without colors and commas in the message, see LogFormatter
+            StringBuilder logEntry = LogFormatter.formatCsv(record);
+            int length = logEntry.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            logEntry.getChars(0, length, chars, 0);
+            int bytes = utf8Length(chars, length);
+            boolean due = (daily && record.getMillis() >= nextDayMillis) || (maxBytes > 0 && written > HEADER.length() && written + bytes > maxBytes);
+            if (due && record.getMillis() >= retryRotationAt) {
+                try {
+                    rotate(record.getMillis());
+                } catch (IOException e) {
+                    e.printStackTrace();  // The record still goes into the file that could not be rotated
+                }
+            }
+            writer.write(chars, 0, length);
+            if (index != null) {
+                index.add(written, bytes, record.getMillis(), record.getLevel());
+            }
+            written += bytes;
+            if (autoFlush) {
+                flush();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    // Method to leave flushing to flush() calls
+    public CSVFileHandler autoFlush(boolean enabled) {
+        this.autoFlush = enabled;
+        return this;
+    }
+
+    // Closes the current file and starts a new one; the old one is compressed in the background
+    public synchronized void rotate() throws IOException {
+        rotate(System.currentTimeMillis());
+    }
+
     @Override
-    public void flush() {
+    public synchronized void flush() {
         try {
             writer.flush();
+            if (index != null) {
+                index.flush();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     @Override
-    public void close() throws SecurityException {
+    public synchronized void close() throws SecurityException {
         try {
             writer.close();
+            if (index != null) {
+                index.close();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    // Rotated segments of this log, oldest first (compressed or still waiting for compression)
+    public List<Path> getSegments() throws IOException {
+        return segmentsOf(path);
+    }
+
+    // Rotated segments of the log file at the given path, oldest first
+    public static List<Path> segmentsOf(Path logFile) throws IOException {
+        String fileName = logFile.getFileName().toString();
+        String baseName = fileName.endsWith(".csv") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(logFile.toAbsolutePath().getParent(), baseName + "-*.csv*")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".csv") || name.endsWith(".csv.gz")) {
+                    segments.add(file);
+                }
+            }
+        }
+        segments.sort(Comparator.comparing(CSVFileHandler::lastModified).thenComparing(Path::toString));
+        return segments;
+    }
+
+    private void open() throws IOException {
+        boolean isNew = !Files.exists(path) || Files.size(path) == 0;
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path.toFile(), true), StandardCharsets.UTF_8));  // Append to the file
+        this.written = isNew ? 0 : Files.size(path);
+
+        // Write CSV header if the file is new
+        if (isNew) {
+            writer.append(HEADER);
+            written = HEADER.length();
+        }
+    }
+
+    private void rotate(long now) throws IOException {
+        writer.close();
+        Path indexFile = LogIndex.indexFor(path);
+        if (index != null) {
+            index.close();
+        }
+        Path rotated = null;
+        boolean done = false;
+        try {
+            if (Files.size(path) > HEADER.length()) {
+                Path segment = nextSegmentName();
+                Files.move(path, segment, StandardCopyOption.ATOMIC_MOVE);
+                rotated = segment;
+                if (Files.exists(indexFile)) {
+                    try {
+                        Files.move(indexFile, LogIndex.indexFor(segment), StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException e) {
+                        Files.deleteIfExists(indexFile);  // Its offsets belong to the rotated file, not the new one
+                    }
+                }
+            } else {
+                Files.delete(path);  // Nothing but the header
+                Files.deleteIfExists(indexFile);
+            }
+            done = true;
+        } finally {
+            // Logging goes on either way: in a new file, or appended to the old one until the next attempt
+            if (done) {
+                startDay(now);
+                retryRotationAt = 0;
+            } else {
+                retryRotationAt = now + ROTATION_RETRY_MILLIS;
+            }
+            open();
+            if (index != null) {
+                index = new LogIndex(indexFile);
+            }
+        }
+
+        if (rotated != null) {
+            Path segment = rotated;
+            compressor.execute(() -> {
+                compress(segment);
+                cleanUp();
+            });
+        }
+    }
+
+    private void startDay(long millis) {
+        ZoneId zone = ZoneId.systemDefault();
+        day = Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+        nextDayMillis = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    // Helper method to find a free "<name>-<day>-<n>.csv"; the compressed name has to be free as well
+    private Path nextSegmentName() {
+        Path folder = path.toAbsolutePath().getParent();
+        for (int n = 1; ; n++) {
+            Path candidate = folder.resolve(baseName + "-" + day + "-" + n + ".csv");
+            if (!Files.exists(candidate) && !Files.exists(folder.resolve(candidate.getFileName() + ".gz"))) {
+                return candidate;
+            }
+        }
+    }
+
+    // Compressor thread: gzips a segment next to it and removes the original
+    private static void compress(Path segment) {
+        if (!Files.exists(segment)) {
+            return;  // Already compressed by an earlier clean-up
+        }
+        Path target = segment.resolveSibling(segment.getFileName() + ".gz");
+        Path temp = segment.resolveSibling(segment.getFileName() + ".gz.tmp");
+        try {
+            try (InputStream in = Files.newInputStream(segment);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            Files.setLastModifiedTime(temp, Files.getLastModifiedTime(segment));  // Keeps the order for retention
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(segment);
+        } catch (IOException e) {
+            System.err.println("Compressing log segment " + segment + " failed: " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Nothing left to do
+            }
+        }
+    }
+
+    // Compressor thread: compresses leftovers, then deletes the oldest segments while over the retention budget
+    private void cleanUp() {
+        try {
+            List<Path> segments = getSegments();
+            for (int i = 0; i < segments.size(); i++) {
+                Path segment = segments.get(i);
+                if (segment.getFileName().toString().endsWith(".csv")) {
+                    compress(segment);
+                    segments.set(i, segment.resolveSibling(segment.getFileName() + ".gz"));
+                }
+            }
+            if (retentionBytes <= 0) {
+                return;
+            }
+            long total = 0;
+            for (Path segment : segments) {
+                total += Files.exists(segment) ? Files.size(segment) : 0;
+            }
+            for (Path segment : segments) {
+                if (total <= retentionBytes) {
+                    break;
+                }
+                long size = Files.exists(segment) ? Files.size(segment) : 0;
+                Files.deleteIfExists(segment);
+                Files.deleteIfExists(LogIndex.indexFor(segment));
+                total -= size;
+            }
+        } catch (IOException e) {
+            System.err.println("Cleaning up log segments failed: " + e.getMessage());
+        }
+    }
+
+    // Helper method to count the UTF-8 bytes of a line; log lines are almost always plain ASCII
+    private static int utf8Length(char[] chars, int length) {
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                    bytes += 2;  // 4 bytes for the pair
+                    i++;
+                } else if (!Character.isSurrogate(c)) {  // A lone surrogate is written as '?'
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Waits until the background compression queued so far is done, e.g. before reading the segments
+    public static boolean awaitCompression(long timeoutMillis) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        compressor.execute(done::countDown);
+        return done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
 }
@@ -0,0 +1,181 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// Keeps the stdin of a server process open and writes commands to it from one writer thread
+// Any thread can queue commands; the writer takes everything that is queued at once and sends it with a single flush,
+// so a scripted import of thousands of commands costs a handful of pipe writes. An optional rate limit spreads the
+// commands out, so the server can work them off without falling behind on its ticks.
+public class CommandChannel implements AutoCloseable {
+
+    private static final Logger logger = LoggerUtility.getLogger(CommandChannel.class);
+    private static final int MAX_BATCH = 512;
+    private static final String STOP = new String("<stop>");  // Marker, compared by identity
+
+    private final OutputStream out;
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile long intervalNanos = 0;  // Minimum time between two commands, 0 = no limit
+    private volatile boolean closed = false;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    // Constructor
+    public CommandChannel(OutputStream stdin) {
+        this.out = new BufferedOutputStream(stdin, 8192);
+        this.writer = new Thread(this::run, "cst-command-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Method to limit the number of commands per second (0 = as fast as the pipe takes them)
+    public CommandChannel rateLimit(int commandsPerSecond) {
+        this.intervalNanos = commandsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / commandsPerSecond : 0;
+        return this;
+    }
+
+    // Queues a command; returns false if the channel is closed
+    public boolean send(String command) {
+        if (closed) {
+            return false;
+        }
+        queued.incrementAndGet();
+        queue.add(command);
+        return true;
+    }
+
+    // Queues several commands in order; returns false if the channel is closed
+    public boolean sendAll(Collection<String> commands) {
+        if (closed) {
+            return false;
+        }
+        queued.addAndGet(commands.size());
+        queue.addAll(commands);
+        return true;
+    }
+
+    // Waits until every queued command has been written (or dropped); returns false on timeout
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            while (written.get() + dropped.get() < queued.get()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    // Sends what is still queued, then closes stdin
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(STOP);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // Number of pipe flushes, i.e. batches
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    // Writer thread: one flush per batch, waits between commands only if a rate limit is set
+    private void run() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        long nextSlot = System.nanoTime();
+        boolean stop = false;
+        try {
+            while (!stop) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                for (String command : batch) {
+                    if (command == STOP) {
+                        stop = true;
+                        break;
+                    }
+                    long interval = intervalNanos;
+                    if (interval > 0) {
+                        long wait = nextSlot - System.nanoTime();
+                        if (wait > 0) {
+                            flush();  // Whatever is due goes out before we wait
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        nextSlot = Math.max(nextSlot, System.nanoTime()) + interval;
+                    }
+                    out.write(command.getBytes(StandardCharsets.UTF_8));
+                    out.write('\n');
+                    written.incrementAndGet();
+                }
+                flush();
+                batch.clear();
+                signalProgress();
+            }
+        } catch (IOException e) {
+            closed = true;
+            logger.warning("Command channel closed, the server no longer accepts input: " + e.getMessage());
+        } catch (InterruptedException e) {
+            closed = true;
+            Thread.currentThread().interrupt();
+        } finally {
+            // Commands that could not be written are counted, so awaitIdle() returns
+            long lost = queued.get() - written.get() - dropped.get();
+            if (lost > 0) {
+                dropped.addAndGet(lost);
+                logger.warning(lost + " queued commands were not sent.");
+            }
+            queue.clear();
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // Process is gone already
+            }
+            signalProgress();
+        }
+    }
+
+    private void flush() throws IOException {
+        out.flush();
+        flushes.incrementAndGet();
+    }
+
+    private synchronized void signalProgress() {
+        notifyAll();
+    }
+}
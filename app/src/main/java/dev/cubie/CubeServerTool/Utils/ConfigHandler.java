@@ -1,7 +1,6 @@
 package dev.cubie.CubeServerTool.Utils;
 
 import dev.cubie.CubeServerTool.Data.Config;
-import org.json.JSONObject;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -32,9 +31,30 @@ public class ConfigHandler {
             Config.logLevelConsole = properties.getProperty("logLevelConsole", "INFO");
             Config.logLevelCSV = properties.getProperty("logLevelCSV", "DEBUG");
             Config.detailedLog = Boolean.parseBoolean(properties.getProperty("detailedLog", "false"));
+            Config.asyncLogging = Boolean.parseBoolean(properties.getProperty("asyncLogging", "false"));
+            Config.logQueueSize = Integer.parseInt(properties.getProperty("logQueueSize", "8192").trim());
+            Config.logFlushInterval = Long.parseLong(properties.getProperty("logFlushInterval", "200").trim());
+            Config.logQueueFullPolicy = properties.getProperty("logQueueFullPolicy", "DROP_DEBUG");
+            Config.logMaxSizeMb = Long.parseLong(properties.getProperty("logMaxSizeMb", "50").trim());
+            Config.logRotateDaily = Boolean.parseBoolean(properties.getProperty("logRotateDaily", "true"));
+            Config.logRetentionMb = Long.parseLong(properties.getProperty("logRetentionMb", "500").trim());
+            Config.logSuppressRepeats = Boolean.parseBoolean(properties.getProperty("logSuppressRepeats", "true"));
+            Config.logRepeatLimit = Integer.parseInt(properties.getProperty("logRepeatLimit", "20").trim());
+            Config.logRepeatWindow = Long.parseLong(properties.getProperty("logRepeatWindow", "10").trim());
+            Config.eventLog = Boolean.parseBoolean(properties.getProperty("eventLog", "true"));
+            Config.eventLogSegments = Integer.parseInt(properties.getProperty("eventLogSegments", "32").trim());
+            Config.logLevels.clear();
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith("logLevel.")) {
+                    Config.logLevels.put(key.substring("logLevel.".length()), properties.getProperty(key));
+                }
+            }
 
 
             logger.config("Configuration loaded from: " + Config.configFilePath.toAbsolutePath());
+            LoggerUtility.setLevels(Config.logLevels);
+            LoggerUtility.configureAsync(Config.asyncLogging, Config.logQueueSize, Config.logFlushInterval, Config.logQueueFullPolicy);
+            LoggerUtility.configureSuppression(Config.logSuppressRepeats, Config.logRepeatLimit, Config.logRepeatWindow);
             LoggerUtility.updateLoggerConfig(Config.detailedLog, Config.logLevelConsole, Config.logLevelCSV, Config.logToFile);
 
 
@@ -92,6 +112,10 @@ public class ConfigHandler {
                 Files.createDirectories(Config.tempFolder);
                 logger.info("Created temp folder: " + Config.tempFolder.toAbsolutePath());
             }
+            if (!Files.exists(Config.storeFolder)) {
+                Files.createDirectories(Config.storeFolder);
+                logger.info("Created store folder: " + Config.storeFolder.toAbsolutePath());
+            }
         }
 
     // Update or add a property in the config file
@@ -115,11 +139,24 @@ public class ConfigHandler {
 
     // Methode, die die aktuelle Version ausliest
     public static String getLocalVersion() {
-        FileOperation result = FileOperation.getFile("/installerInfo.json").noLog().fetch();  // Reads the file from the resources folder
-
-        // Überprüfe den ResponseCode und lese die Datei, falls erfolgreich
+        String[] version = {"0.0.0"};
+        FileOperation result = FileOperation.getFile("/installerInfo.json").noLog()  // Reads the file from the resources folder
+                .fetchJson(reader -> {
+                    // Nur das Feld "version" lesen, der Rest wird übersprungen
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("version")) {
+                            version[0] = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                });
+
+        // Überprüfe den ResponseCode, nur ein vollständig gelesenes Dokument zählt
         if (result.getResponseCode() == 200) {
-            return new JSONObject(result.getContent()).optString("version", "0.0.0");
+            return version[0];
         }
 
         return "0.0.0";
@@ -0,0 +1,201 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+// Bounded ring buffer for the console lines of a server process
+// Writers (the stdout/stderr pumps) claim a sequence number with one atomic increment and never wait: when the ring is
+// full the oldest line is overwritten. Every subscriber reads at its own position on its own thread, so a slow logger or
+// parser only loses lines itself (counted in Subscription.getDropped()) and never slows down the process.
+public class ConsoleBuffer {
+
+    private static final Logger logger = LoggerUtility.getLogger(ConsoleBuffer.class);
+
+    private final AtomicReferenceArray<Line> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();  // Next sequence number to hand out
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+
+    // Constructor; capacity is rounded up to a power of two
+    public ConsoleBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    // Adds a line; never blocks
+    public void publish(String text, boolean error) {
+        long sequence = head.getAndIncrement();
+        slots.set((int) (sequence & mask), new Line(sequence, text, error, System.currentTimeMillis()));
+        for (Subscription subscription : subscriptions) {
+            subscription.wake();
+        }
+    }
+
+    // Marks the end of the output; subscribers finish once they have read everything
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.wake();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Delivers every line published from now on to the consumer, on a separate daemon thread
+    public Subscription subscribe(String name, Consumer<Line> consumer) {
+        Subscription subscription = new Subscription(name, consumer, head.get());
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    // Returns up to the last n lines still in the buffer, oldest first
+    public List<Line> tail(int n) {
+        long end = head.get();
+        long start = Math.max(0, Math.max(end - n, end - slots.length()));
+        List<Line> result = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            Line line = slots.get((int) (sequence & mask));
+            if (line != null && line.sequence == sequence) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    // Number of lines published so far
+    public long getPublished() {
+        return head.get();
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    // One console line
+    public static class Line {
+        public final long sequence;
+        public final String text;
+        public final boolean error;  // Line came from stderr
+        public final long timestamp;
+
+        Line(long sequence, String text, boolean error, long timestamp) {
+            this.sequence = sequence;
+            this.text = text;
+            this.error = error;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    // A reader with its own position and thread
+    public class Subscription implements AutoCloseable {
+        private final Consumer<Line> consumer;
+        private final Thread thread;
+        private long next;
+        private volatile long dropped = 0;
+        private volatile boolean waiting = false;
+        private volatile boolean cancelled = false;
+
+        private Subscription(String name, Consumer<Line> consumer, long start) {
+            this.consumer = consumer;
+            this.next = start;
+            this.thread = new Thread(this::run, name);
+            this.thread.setDaemon(true);
+        }
+
+        // Lines that were overwritten before this subscriber got to them
+        public long getDropped() {
+            return dropped;
+        }
+
+        // Waits until the subscriber has read everything up to close() of the buffer
+        public boolean await(long timeoutMillis) throws InterruptedException {
+            thread.join(timeoutMillis);
+            return !thread.isAlive();
+        }
+
+        // Stops the subscriber; lines not yet read are skipped
+        @Override
+        public void close() {
+            cancelled = true;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        private void wake() {
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void run() {
+            while (!cancelled) {
+                Line line = poll();
+                if (line != null) {
+                    try {
+                        consumer.accept(line);
+                    } catch (RuntimeException e) {
+                        logger.warning("Console subscriber " + thread.getName() + " failed: " + e);
+                    }
+                    continue;
+                }
+                if (closed && next >= head.get()) {
+                    break;
+                }
+                waiting = true;
+                if (poll(false) == null && !closed) {
+                    // Publishers unpark us; the timeout only covers a wake-up that raced with "waiting"
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(50));
+                }
+                waiting = false;
+            }
+            subscriptions.remove(this);
+        }
+
+        private Line poll() {
+            return poll(true);
+        }
+
+        // Helper method to read the line at "next"; skips ahead if the writers have lapped this reader
+        private Line poll(boolean advance) {
+            long published = head.get();
+            if (published - next > slots.length()) {
+                dropped += published - slots.length() - next;
+                next = published - slots.length();
+            }
+            if (next >= published) {
+                return null;
+            }
+            Line line = slots.get((int) (next & mask));
+            if (line == null || line.sequence < next) {
+                return null;  // Claimed but not yet written by the other pump
+            }
+            if (line.sequence > next) {
+                // Overwritten in between
+                dropped += line.sequence - next - slots.length() + 1;
+                next = line.sequence - slots.length() + 1;
+                return null;
+            }
+            if (advance) {
+                next++;
+            }
+            return line;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Watches the console of a Minecraft server for startup, lag and crash messages
+// Every rule has a plain-text marker that is checked with indexOf() first; the precompiled pattern only runs on lines
+// that contain the marker, so the thousands of ordinary lines per second cost one substring search per rule.
+// The built-in rules measure the startup time ("Done (12.345s)!"), count "Can't keep up!" lag events and detect
+// crashes; further rules can be added with addRule(). Callbacks run on the watcher's subscriber thread.
+// The built-in patterns are anchored to the log prefix of the server's own threads, so a player who types one of the
+// messages into the chat ("[Server thread/INFO]: <Alex> Done (5s)!") doesn't trigger them.
+public class ConsoleWatcher {
+
+    private static final Logger logger = LoggerUtility.getLogger(ConsoleWatcher.class);
+
+    // [12:00:00] [Server thread/INFO]: followed by the message
+    public static final String LOG_PREFIX = "^\\[[\\d:]+\\] \\[(?:Server thread|main|Server Watchdog)/(?:ERROR|FATAL|WARN|INFO)\\]: ";
+    // [12:00:00] [Server thread/INFO]: Done (12.345s)! For help, type "help"
+    public static final Pattern DONE = Pattern.compile(LOG_PREFIX + "Done \\((\\d+(?:[.,]\\d+)?)s\\)!");
+    // [12:00:00] [Server thread/WARN]: Can't keep up! Is the server overloaded? Running 5012ms or 100 ticks behind
+    public static final Pattern CANT_KEEP_UP = Pattern.compile(LOG_PREFIX + "Can't keep up!.*?Running (\\d+)ms or (\\d+) ticks behind");
+    // The report header is printed without a prefix, but only ever as a line of its own
+    public static final Pattern CRASH = Pattern.compile(
+            "^---- Minecraft Crash Report ----$|" + LOG_PREFIX + "(?:Encountered an unexpected exception"
+                    + "|Exception in server tick loop|Failed to start the minecraft server|A single server tick took"
+                    + "|This crash report has been saved to: (.+))");
+
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Long>> readyListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<LagEvent>> lagListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> crashListeners = new CopyOnWriteArrayList<>();
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    private volatile long startedAt = System.currentTimeMillis();
+    private volatile long lastLineAt = System.currentTimeMillis();
+    private volatile long startupMillis = -1;  // As reported by the server
+    private volatile long readyAfterMillis = -1;  // Wall clock from process start to the "Done" line
+    private final AtomicLong lagEvents = new AtomicLong();
+    private final AtomicLong lagMillisTotal = new AtomicLong();
+    private final AtomicLong ticksSkippedTotal = new AtomicLong();
+    private volatile long maxLagMillis = 0;
+    private volatile LagEvent lastLag;
+    private volatile String crashLine;
+    private volatile String crashReport;
+    private ConsoleBuffer.Subscription subscription;
+
+    // Constructor, with the built-in rules
+    public ConsoleWatcher() {
+        addRule("Done (", DONE, this::onDone);
+        addRule("Can't keep up!", CANT_KEEP_UP, this::onLag);
+        addRule("Crash Report", CRASH, this::onCrash);
+        addRule("unexpected exception", CRASH, this::onCrash);
+        addRule("server tick loop", CRASH, this::onCrash);
+        addRule("Failed to start", CRASH, this::onCrash);
+        addRule("single server tick", CRASH, this::onCrash);
+        addRule("crash report has been saved", CRASH, this::onCrash);
+    }
+
+    // Method to add a rule; the handler gets the matcher of every line that contains the marker and matches the pattern
+    public ConsoleWatcher addRule(String marker, Pattern pattern, Consumer<Matcher> handler) {
+        rules.add(new Rule(marker, pattern, handler));
+        return this;
+    }
+
+    // Method to get the startup time in milliseconds once the server is ready
+    public ConsoleWatcher onReady(Consumer<Long> listener) {
+        readyListeners.add(listener);
+        return this;
+    }
+
+    // Method to get every "Can't keep up!" message
+    public ConsoleWatcher onLag(Consumer<LagEvent> listener) {
+        lagListeners.add(listener);
+        return this;
+    }
+
+    // Method to get the first crash line
+    public ConsoleWatcher onCrash(Consumer<String> listener) {
+        crashListeners.add(listener);
+        return this;
+    }
+
+    // Starts watching the buffer; startedAt is when the process was started
+    public synchronized ConsoleWatcher attach(ConsoleBuffer buffer, long startedAt) {
+        if (subscription != null) {
+            subscription.close();
+        }
+        this.startedAt = startedAt;
+        this.subscription = buffer.subscribe("cst-console-watcher", this::accept);
+        return this;
+    }
+
+    // Checks one line against all rules
+    public void accept(ConsoleBuffer.Line line) {
+        lastLineAt = System.currentTimeMillis();
+        String text = line.text;
+        for (Rule rule : rules) {
+            if (text.contains(rule.marker)) {
+                Matcher matcher = rule.pattern.matcher(text);
+                if (matcher.find()) {
+                    rule.handler.accept(matcher);
+                }
+            }
+        }
+    }
+
+    // Waits until the server printed its "Done" line; returns false on timeout
+    public boolean awaitReady(long timeoutMillis) throws InterruptedException {
+        return ready.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isReady() {
+        return ready.getCount() == 0;
+    }
+
+    // Startup time as printed by the server, -1 before it is ready
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    // Time from starting the process until the server was ready (includes JVM start), -1 before it is ready
+    public long getReadyAfterMillis() {
+        return readyAfterMillis;
+    }
+
+    public long getLagEvents() {
+        return lagEvents.get();
+    }
+
+    public long getLagMillisTotal() {
+        return lagMillisTotal.get();
+    }
+
+    public long getTicksSkippedTotal() {
+        return ticksSkippedTotal.get();
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    public LagEvent getLastLag() {
+        return lastLag;
+    }
+
+    // Wall clock time of the last line the server printed
+    public long getLastLineAt() {
+        return lastLineAt;
+    }
+
+    public boolean hasCrashed() {
+        return crashLine != null;
+    }
+
+    public String getCrashLine() {
+        return crashLine;
+    }
+
+    // Path of the crash report, if the server printed one
+    public String getCrashReport() {
+        return crashReport;
+    }
+
+    private void onDone(Matcher matcher) {
+        if (isReady()) {
+            return;  // Some mods print their own "Done" lines later
+        }
+        startupMillis = Math.round(Double.parseDouble(matcher.group(1).replace(',', '.')) * 1000);
+        readyAfterMillis = System.currentTimeMillis() - startedAt;
+        ready.countDown();
+        logger.info("Server ready after " + startupMillis / 1000.0 + " s (" + readyAfterMillis / 1000.0 + " s since process start).");
+        for (Consumer<Long> listener : readyListeners) {
+            notify(listener, startupMillis);
+        }
+    }
+
+    private void onLag(Matcher matcher) {
+        LagEvent event = new LagEvent(System.currentTimeMillis(), Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)));
+        lagEvents.incrementAndGet();
+        lagMillisTotal.addAndGet(event.lagMillis);
+        ticksSkippedTotal.addAndGet(event.ticksBehind);
+        maxLagMillis = Math.max(maxLagMillis, event.lagMillis);
+        lastLag = event;
+        for (Consumer<LagEvent> listener : lagListeners) {
+            notify(listener, event);
+        }
+    }
+
+    private void onCrash(Matcher matcher) {
+        if (matcher.groupCount() > 0 && matcher.group(1) != null) {
+            crashReport = matcher.group(1).trim();
+        }
+        if (crashLine != null) {
+            return;  // Report only the first line of a crash
+        }
+        crashLine = matcher.group();
+        logger.severe("Server crash detected: " + crashLine);
+        for (Consumer<String> listener : crashListeners) {
+            notify(listener, crashLine);
+        }
+    }
+
+    private static <T> void notify(Consumer<T> listener, T value) {
+        try {
+            listener.accept(value);
+        } catch (RuntimeException e) {
+            logger.warning("Console watcher callback failed: " + e);
+        }
+    }
+
+    // One "Can't keep up!" message
+    public static class LagEvent {
+        public final long timestamp;
+        public final long lagMillis;
+        public final long ticksBehind;
+
+        LagEvent(long timestamp, long lagMillis, long ticksBehind) {
+            this.timestamp = timestamp;
+            this.lagMillis = lagMillis;
+            this.ticksBehind = ticksBehind;
+        }
+    }
+
+    private static class Rule {
+        final String marker;
+        final Pattern pattern;
+        final Consumer<Matcher> handler;
+
+        Rule(String marker, Pattern pattern, Consumer<Matcher> handler) {
+            this.marker = marker;
+            this.pattern = pattern;
+            this.handler = handler;
+        }
+    }
+}
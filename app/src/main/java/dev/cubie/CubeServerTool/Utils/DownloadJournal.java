@@ -0,0 +1,283 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import dev.cubie.CubeServerTool.Data.Config;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+// Sidecar journal for a ".part" file, by default in Config.tempFolder
+// Remembers where a download came from, its validators (ETag / Last-Modified) and which byte ranges are already on disk,
+// so an interrupted download can continue with Range requests instead of starting over.
+// The journal holds a lock on "<part>.lock" until it is closed: a second download of the same URL (another thread or
+// another tool process) gets a private ".part" file instead of writing into the one in use.
+public class DownloadJournal implements Closeable {
+
+    private static final Logger logger = LoggerUtility.getLogger(DownloadJournal.class);
+    private static final Set<String> lockedHere = ConcurrentHashMap.newKeySet();  // Lock files held by this process
+
+    private final Path partFile;
+    private final Path journalFile;
+    private final Path lockFile;
+    private FileLock lock;
+    private boolean shared = true;  // False for a private journal, which nobody resumes later
+
+    private String url;
+    private String etag;
+    private String lastModified;
+    private long contentLength = -1;
+    private final List<long[]> completed = new ArrayList<>();  // Sorted, merged [from, to) ranges
+
+    private DownloadJournal(Path folder, String name) {
+        this.partFile = folder.resolve(name + ".part");
+        this.journalFile = folder.resolve(name + ".part.journal");
+        this.lockFile = folder.resolve(name + ".part.lock");
+    }
+
+    // Opens and locks the journal for a URL in Config.tempFolder, loading the previous state if there is one
+    public static DownloadJournal open(String source) throws IOException {
+        return open(source, Config.tempFolder);
+    }
+
+    // Opens and locks the journal for a URL in the given folder
+    public static DownloadJournal open(String source, Path folder) throws IOException {
+        // Stable file names per URL, so a restarted install finds its own ".part" file again
+        String key = UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8)).toString().substring(0, 8);
+        String name = FileOperation.getBaseName(source) + "-" + key;
+
+        Files.createDirectories(folder);
+        DownloadJournal journal = new DownloadJournal(folder, name);
+        journal.lock = tryLock(journal.lockFile);
+        if (journal.lock == null) {
+            // Someone else is downloading the same URL right now; start a private download that isn't resumed
+            logger.fine(() -> "Download journal in use, using a private one: " + source);
+            journal = new DownloadJournal(folder, name + "-" + UUID.randomUUID().toString().substring(0, 8));
+            journal.lock = tryLock(journal.lockFile);
+            journal.shared = false;
+        }
+        journal.url = source;
+        journal.load();
+        return journal;
+    }
+
+    // Helper method to lock a file without waiting; returns null if it is locked by this or another process
+    private static FileLock tryLock(Path lockFile) throws IOException {
+        // Threads of this process are kept apart before the file is opened: on some systems closing any channel of a
+        // file drops all locks the process holds on it
+        String key = lockFile.toAbsolutePath().normalize().toString();
+        if (!lockedHere.add(key)) {
+            return null;
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return lock;
+            }
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            lockedHere.remove(key);
+            throw e;
+        }
+        lockedHere.remove(key);
+        return null;
+    }
+
+    // Helper method to read the journal file; a broken journal is treated like no journal
+    private void load() {
+        if (!Files.exists(journalFile) || !Files.exists(partFile)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+
+            if (!url.equals(properties.getProperty("url"))) {
+                return;
+            }
+            etag = properties.getProperty("etag");
+            lastModified = properties.getProperty("lastModified");
+            contentLength = Long.parseLong(properties.getProperty("contentLength", "-1"));
+
+            String ranges = properties.getProperty("ranges", "");
+            for (String range : ranges.split(",")) {
+                if (!range.isEmpty()) {
+                    String[] bounds = range.split("-");
+                    markCompleted(Long.parseLong(bounds[0]), Long.parseLong(bounds[1]));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Ignoring unreadable download journal: " + journalFile + " (" + e.getMessage() + ")");
+            completed.clear();
+        }
+    }
+
+    // Method to persist the journal (written to a temp file and renamed, so it is never half-written)
+    public synchronized void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        if (etag != null) properties.setProperty("etag", etag);
+        if (lastModified != null) properties.setProperty("lastModified", lastModified);
+        properties.setProperty("contentLength", String.valueOf(contentLength));
+
+        StringBuilder ranges = new StringBuilder();
+        for (long[] range : completed) {
+            if (ranges.length() > 0) ranges.append(',');
+            ranges.append(range[0]).append('-').append(range[1]);
+        }
+        properties.setProperty("ranges", ranges.toString());
+
+        Files.createDirectories(journalFile.getParent());
+        Path tempFile = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Partial download of " + url);
+        }
+        Files.move(tempFile, journalFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Returns true if the remote file is still the one the journal was written for
+    public synchronized boolean matches(String etag, String lastModified, long contentLength) {
+        if (this.etag == null && this.lastModified == null) {
+            return false;  // Without validators there is no safe way to resume
+        }
+        return this.contentLength == contentLength
+                && (this.etag == null || this.etag.equals(etag))
+                && (this.lastModified == null || this.lastModified.equals(lastModified));
+    }
+
+    // Method to start over for a (new) remote file
+    public synchronized void reset(String etag, String lastModified, long contentLength) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentLength = contentLength;
+        this.completed.clear();
+    }
+
+    // Method to record a finished byte range [from, to)
+    public synchronized void markCompleted(long from, long to) {
+        if (to <= from) {
+            return;
+        }
+        int i = 0;
+        while (i < completed.size() && completed.get(i)[1] < from) {
+            i++;
+        }
+        // Merge with all ranges that overlap or touch [from, to)
+        while (i < completed.size() && completed.get(i)[0] <= to) {
+            long[] existing = completed.remove(i);
+            from = Math.min(from, existing[0]);
+            to = Math.max(to, existing[1]);
+        }
+        completed.add(i, new long[] {from, to});
+    }
+
+    // Returns the byte ranges [from, to) that still have to be downloaded
+    public synchronized List<long[]> missingRanges() {
+        List<long[]> missing = new ArrayList<>();
+        long position = 0;
+        for (long[] range : completed) {
+            if (range[0] > position) {
+                missing.add(new long[] {position, range[0]});
+            }
+            position = Math.max(position, range[1]);
+        }
+        if (position < contentLength) {
+            missing.add(new long[] {position, contentLength});
+        }
+        return missing;
+    }
+
+    // Returns how many bytes from the start of the file are complete (the resume offset for a single stream)
+    public synchronized long completedPrefix() {
+        return !completed.isEmpty() && completed.get(0)[0] == 0 ? completed.get(0)[1] : 0;
+    }
+
+    // Returns the number of bytes already on disk
+    public synchronized long completedBytes() {
+        long total = 0;
+        for (long[] range : completed) {
+            total += range[1] - range[0];
+        }
+        return total;
+    }
+
+    // Returns the value for an If-Range header (the ETag, or Last-Modified if there is none)
+    public synchronized String getValidator() {
+        return etag != null ? etag : lastModified;
+    }
+
+    public synchronized long getContentLength() {
+        return contentLength;
+    }
+
+    public Path getPartFile() {
+        return partFile;
+    }
+
+    // Method to finish a complete download: moves the ".part" file to a name of its own, so nobody resumes into it
+    // once the lock is gone, and removes the journal; returns the downloaded file
+    public Path complete() throws IOException {
+        Path done = partFile.resolveSibling(partFile.getFileName() + "-" + UUID.randomUUID().toString().substring(0, 8));
+        Files.move(partFile, done, StandardCopyOption.REPLACE_EXISTING);
+        delete();
+        return done;
+    }
+
+    // Method to remove the journal once the download is complete
+    public void delete() {
+        try {
+            Files.deleteIfExists(journalFile);
+        } catch (IOException e) {
+            logger.warning("Failed to delete download journal: " + e.getMessage());
+        }
+    }
+
+    // Method to throw away both the journal and the partial file
+    public void discard() {
+        delete();
+        try {
+            Files.deleteIfExists(partFile);
+        } catch (IOException e) {
+            logger.warning("Failed to delete partial download: " + e.getMessage());
+        }
+    }
+
+    // Releases the lock; the empty lock file of a shared journal stays, deleting it would race with a process about to
+    // lock it. A private journal is removed with its ".part" file.
+    @Override
+    public void close() throws IOException {
+        if (lock == null) {
+            return;
+        }
+        try {
+            lock.release();
+        } finally {
+            lock.channel().close();
+            lock = null;
+            lockedHere.remove(lockFile.toAbsolutePath().normalize().toString());
+        }
+        if (!shared) {
+            discard();
+            Files.deleteIfExists(lockFile);
+        }
+    }
+}
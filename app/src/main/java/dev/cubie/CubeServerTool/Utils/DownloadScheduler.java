@@ -0,0 +1,383 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+// Runs many downloads (libraries, mods, assets) on a bounded pool with a cap per host
+// Jobs wait in a queue and are only started when both a worker and a slot for their host are free, so a long list for
+// one host never blocks the workers for the others. Downloads use keep-alive connections, failed jobs are retried with
+// exponential backoff, and the progress of all jobs is reported as one aggregate.
+public class DownloadScheduler implements AutoCloseable {
+
+    private static final Logger logger = LoggerUtility.getLogger(DownloadScheduler.class);
+
+    private final int maxParallel;
+    private final int perHostLimit;
+    private int retries = 3;
+    private long backoffMillis = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private Consumer<Progress> progressListener;
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timer;
+
+    // Guarded by "this"
+    private final Deque<Job> pending = new ArrayDeque<>();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private final Map<String, Job> jobsByTarget = new LinkedHashMap<>();
+    private int running = 0;
+    private int waitingForRetry = 0;
+    private int finished = 0;
+    private int failed = 0;
+    private long totalBytes = 0;  // Sum of the known sizes
+
+    private final AtomicLong bytesDone = new AtomicLong();
+
+    // Constructor
+    public DownloadScheduler(int maxParallel, int perHostLimit) {
+        this.maxParallel = Math.max(1, maxParallel);
+        this.perHostLimit = Math.max(1, perHostLimit);
+
+        // The JDK keeps at most "http.maxConnections" idle connections per host (default 5); keep all of ours
+        if (System.getProperty("http.maxConnections") == null && this.perHostLimit > 5) {
+            System.setProperty("http.maxConnections", String.valueOf(this.perHostLimit));
+        }
+
+        this.workers = Executors.newFixedThreadPool(this.maxParallel, daemonThreads("cst-download"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("cst-download-timer"));
+    }
+
+    // Method to set how often a failed job is tried again
+    public DownloadScheduler retries(int retries) {
+        this.retries = Math.max(0, retries);
+        return this;
+    }
+
+    // Method to set the delay before the first retry; it doubles with every further attempt
+    public DownloadScheduler backoff(long backoffMillis) {
+        this.backoffMillis = Math.max(0, backoffMillis);
+        return this;
+    }
+
+    // Method to receive the aggregate progress every half second (called from the timer thread)
+    public DownloadScheduler onProgress(Consumer<Progress> progressListener) {
+        this.progressListener = progressListener;
+        timer.scheduleAtFixedRate(() -> {
+            Consumer<Progress> listener = this.progressListener;
+            if (listener != null) {
+                listener.accept(getProgress());
+            }
+        }, 500, 500, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    // Method to print the aggregate progress as one console line
+    public DownloadScheduler showProgress() {
+        String timestamp = "[" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")) + "]";
+        return onProgress(progress -> {
+            System.out.printf("\r%s %sDOWNLOAD:%s %d/%d files, %s%s%s",
+                    timestamp, ConsoleColors.PURPLE_BRIGHT, ConsoleColors.RESET,
+                    progress.finished, progress.total,
+                    FileOperation.formatSize(progress.bytesDone),
+                    progress.bytesTotal > 0 ? " / " + FileOperation.formatSize(progress.bytesTotal) : "",
+                    progress.failed > 0 ? ", " + progress.failed + " failed" : "");
+            System.out.flush();
+        });
+    }
+
+    // Queues a job; while a job for the same target path is queued or running, the new one is ignored and the first
+    // one is returned. A finished job is replaced, so a target can be downloaded again later.
+    public synchronized Job submit(Job job) {
+        Job existing = jobsByTarget.get(job.target);
+        if (existing != null) {
+            if (existing.state != State.DONE && existing.state != State.FAILED) {
+                return existing;
+            }
+            // Take the old job out of the aggregate progress
+            finished--;
+            if (existing.state == State.FAILED) {
+                failed--;
+            }
+            if (existing.expectedSize > 0) {
+                totalBytes -= existing.expectedSize;
+            }
+            bytesDone.addAndGet(-existing.reportedBytes);
+        }
+        jobsByTarget.put(job.target, job);
+        if (job.expectedSize > 0) {
+            totalBytes += job.expectedSize;
+        }
+        job.scheduler = this;
+        pending.addLast(job);
+        dispatch();
+        return job;
+    }
+
+    // Queues a download of url to target
+    public Job submit(String url, String target) {
+        return submit(new Job(url, target));
+    }
+
+    // Waits until every job has succeeded or given up; returns true if all succeeded
+    public boolean awaitAll() throws InterruptedException {
+        synchronized (this) {
+            while (!pending.isEmpty() || running > 0 || waitingForRetry > 0) {
+                wait();
+            }
+        }
+        if (progressListener != null) {
+            progressListener.accept(getProgress());
+            System.out.println();
+        }
+        Progress progress = getProgress();
+        logger.info("Downloads finished: " + (progress.finished - progress.failed) + " of " + progress.total + " succeeded"
+                + (progress.failed > 0 ? ", " + progress.failed + " failed" : "") + ".");
+        return progress.failed == 0;
+    }
+
+    // Returns the jobs that gave up
+    public synchronized List<Job> getFailedJobs() {
+        List<Job> result = new ArrayList<>();
+        for (Job job : jobsByTarget.values()) {
+            if (job.state == State.FAILED) {
+                result.add(job);
+            }
+        }
+        return result;
+    }
+
+    public synchronized Progress getProgress() {
+        return new Progress(jobsByTarget.size(), finished, failed, running, bytesDone.get(), totalBytes);
+    }
+
+    // Stops the workers; running downloads are interrupted
+    @Override
+    public void close() {
+        progressListener = null;
+        workers.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    // Helper method to start queued jobs while there are free workers and free host slots (caller holds the lock)
+    private void dispatch() {
+        Iterator<Job> iterator = pending.iterator();
+        while (running < maxParallel && iterator.hasNext()) {
+            Job job = iterator.next();
+            int hostRunning = runningPerHost.getOrDefault(job.host, 0);
+            if (hostRunning >= perHostLimit) {
+                continue;  // Host is busy, try the next job
+            }
+            iterator.remove();
+            runningPerHost.put(job.host, hostRunning + 1);
+            running++;
+            job.state = State.RUNNING;
+            workers.execute(() -> run(job));
+        }
+    }
+
+    // Helper method to run one attempt of a job on a worker thread
+    private void run(Job job) {
+        job.attempts++;
+        int responseCode;
+        try {
+            // Library and asset targets live in nested folders that may not exist yet
+            Path parent = Paths.get(job.target).toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            FileOperation operation = FileOperation.getFile(job.url)
+                    .verify(job.hashAlgorithm, job.expectedHash)
+                    .expectSize(job.expectedSize)
+                    .skipIfMatches(job.target);
+            if (job.store != null) {
+                operation.useStore(job.store);
+            }
+            responseCode = operation
+                    .streaming().keepAlive()
+                    .onProgress(job::progress)
+                    .fetchBinary()
+                    .saveTo(job.target)
+                    .getResponseCode();
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Download of " + job.url + " failed: " + e);
+            responseCode = 500;
+        }
+        job.responseCode = responseCode;
+        finish(job, responseCode >= 200 && responseCode < 400);
+    }
+
+    // Helper method to book a finished attempt and either complete the job or schedule a retry
+    private synchronized void finish(Job job, boolean success) {
+        running--;
+        runningPerHost.merge(job.host, -1, Integer::sum);
+
+        if (success) {
+            job.state = State.DONE;
+            if (job.expectedSize > 0) {
+                job.progress(job.expectedSize);  // Skipped or linked files count as done as well
+            }
+            finished++;
+        } else if (job.attempts <= retries && isRetryable(job.responseCode) && !workers.isShutdown()) {
+            job.state = State.WAITING;
+            waitingForRetry++;
+            long delay = Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(job.attempts - 1, 16));
+            delay += ThreadLocalRandom.current().nextLong(delay / 4 + 1);  // Jitter, so retries don't come in waves
+            logger.warning("Download of " + job.url + " failed (response code " + job.responseCode + "), retrying in " + delay + " ms.");
+            timer.schedule(() -> requeue(job), delay, TimeUnit.MILLISECONDS);
+        } else {
+            job.state = State.FAILED;
+            finished++;
+            failed++;
+            logger.severe("Download of " + job.url + " failed after " + job.attempts + " attempts (response code " + job.responseCode + ").");
+        }
+        dispatch();
+        notifyAll();
+    }
+
+    private synchronized void requeue(Job job) {
+        waitingForRetry--;
+        job.state = State.QUEUED;
+        pending.addLast(job);
+        dispatch();
+        notifyAll();
+    }
+
+    // Client errors (except timeouts and rate limits) will not go away by asking again
+    private static boolean isRetryable(int responseCode) {
+        return responseCode >= 500 || responseCode == 408 || responseCode == 429 || responseCode == 0;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // State of a job
+    public enum State { QUEUED, RUNNING, WAITING, DONE, FAILED }
+
+    // One file to download
+    public static class Job {
+        private final String url;
+        private final String target;
+        private final String host;
+        private HashAlgorithm hashAlgorithm;
+        private String expectedHash;
+        private long expectedSize = -1;
+        private ArtifactStore store;
+
+        private volatile State state = State.QUEUED;
+        private volatile int attempts = 0;
+        private volatile int responseCode = 0;
+        private long reportedBytes = 0;  // Only touched by the worker running this job
+        private DownloadScheduler scheduler;
+
+        // Constructor
+        public Job(String url, String target) {
+            this.url = url;
+            this.target = target;
+            this.host = hostOf(url);
+        }
+
+        // Method to verify the download against a published hash
+        public Job verify(HashAlgorithm algorithm, String expectedHash) {
+            this.hashAlgorithm = expectedHash != null ? algorithm : null;
+            this.expectedHash = expectedHash;
+            return this;
+        }
+
+        // Method to verify the size; known sizes also make the aggregate progress exact
+        public Job expectSize(long expectedSize) {
+            this.expectedSize = expectedSize;
+            return this;
+        }
+
+        // Method to keep the verified file in the artifact store
+        public Job useStore(ArtifactStore store) {
+            this.store = store;
+            return this;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        // Helper method to turn the bytes on disk of this job into a delta of the aggregate
+        private void progress(long bytes) {
+            DownloadScheduler owner = scheduler;
+            if (owner != null) {
+                owner.bytesDone.addAndGet(bytes - reportedBytes);
+            }
+            reportedBytes = bytes;
+        }
+
+        private static String hostOf(String url) {
+            try {
+                URL parsed = new URL(url);
+                return parsed.getHost().toLowerCase() + ":" + (parsed.getPort() != -1 ? parsed.getPort() : parsed.getDefaultPort());
+            } catch (MalformedURLException e) {
+                return "";
+            }
+        }
+    }
+
+    // Aggregate progress of all jobs
+    public static class Progress {
+        public final int total;
+        public final int finished;  // Succeeded or failed
+        public final int failed;
+        public final int running;
+        public final long bytesDone;
+        public final long bytesTotal;  // Sum of the known sizes, 0 if no job has one
+
+        Progress(int total, int finished, int failed, int running, long bytesDone, long bytesTotal) {
+            this.total = total;
+            this.finished = finished;
+            this.failed = failed;
+            this.running = running;
+            this.bytesDone = bytesDone;
+            this.bytesTotal = bytesTotal;
+        }
+    }
+}
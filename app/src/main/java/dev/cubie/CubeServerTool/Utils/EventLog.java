@@ -0,0 +1,326 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+// Append-only binary log for captured console lines and tool events, read back with EventLogReader
+// Events are written straight into a memory-mapped segment file ("events-<n>.cstlog", fixed size, a new one when
+// full), without formatting, without Strings per record and without a write call. Segment layout:
+//   header   "CSTE", version byte, 3 bytes padding, segment start time (long millis)
+//   source   type 1, varint id, varint length, UTF-8 name            (once per source and segment)
+//   event    type 2, zigzag varint milliseconds since the previous event, level byte, varint source id,
+//            varint length, UTF-8 text
+//   end      type 0 (the rest of the file is still zero)
+// A typical console line costs 4-5 bytes plus its text. The type byte of a record is written last, so a reader
+// never sees half a record. Each segment defines its own sources and can be read on its own.
+public class EventLog implements AutoCloseable {
+
+    static final int MAGIC = 0x43535445;  // "CSTE"
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final byte END = 0;
+    static final byte SOURCE = 1;
+    static final byte EVENT = 2;
+    static final String SEGMENT_PREFIX = "events-";
+    static final String SEGMENT_SUFFIX = ".cstlog";
+
+    // Level byte: index in this table, LEVELS.length for any other level
+    static final Level[] LEVELS = {Level.SEVERE, Level.WARNING, Level.INFO, Level.CONFIG, Level.FINE, Level.FINER, Level.FINEST};
+
+    private final Path folder;
+    private final int segmentSize;
+    private final int maxPayload;  // Longer texts are cut, so one event always fits into an empty segment
+    private int keepSegments = 0;  // 0 = keep all
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int segmentNumber;
+    private long lastMillis;
+    private final Map<String, Integer> sources = new HashMap<>();
+    private long events = 0;
+    private long payloadBytes = 0;
+    private long closedBytes = 0;  // Used part of the segments before the current one
+    private boolean closed = false;
+
+    // Constructor; starts a new segment after the existing ones in the folder
+    public EventLog(Path folder, int segmentSize) throws IOException {
+        this.folder = folder;
+        this.segmentSize = Math.max(segmentSize, 4096);
+        this.maxPayload = Math.min(this.segmentSize / 4, 1024 * 1024);
+        Files.createDirectories(folder);
+        List<Path> existing = segments(folder);
+        this.segmentNumber = existing.isEmpty() ? 0 : numberOf(existing.get(existing.size() - 1));
+        openSegment(System.currentTimeMillis());
+    }
+
+    // Method to keep only the newest n segments; older ones are deleted when a new segment starts
+    public EventLog keepSegments(int n) {
+        this.keepSegments = n;
+        return this;
+    }
+
+    // Appends one event; safe to call from several threads
+    public synchronized void append(long millis, Level level, String source, CharSequence text) throws IOException {
+        if (closed) {
+            throw new IOException("Event log is closed");
+        }
+        if (text == null) {
+            text = "";
+        }
+        int sourceId = sourceId(source);
+        int textBytes = Math.min(utf8Length(text), maxPayload);
+        // type + timestamp + level + source id + length + text, with room for a source definition
+        int needed = 1 + 10 + 1 + 5 + 5 + textBytes + (sourceId < 0 ? 11 + utf8Length(source) : 0);
+        if (buffer.remaining() < needed + 1) {  // Keep one byte for the end marker
+            openSegment(millis);
+            sourceId = -1;  // Not defined in the new segment yet
+        }
+        if (sourceId < 0) {
+            sourceId = defineSource(source);
+        }
+
+        int start = buffer.position();
+        buffer.position(start + 1);
+        putVarLong((millis - lastMillis) << 1 ^ (millis - lastMillis) >> 63);  // Zigzag, the pumps may be slightly out of order
+        buffer.put(levelByte(level));
+        putVarInt(sourceId);
+        putVarInt(textBytes);
+        putUtf8(text, textBytes);
+        buffer.put(start, EVENT);
+        lastMillis = millis;
+        events++;
+        payloadBytes += textBytes;
+    }
+
+    // Writes the mapped pages to disk; the operating system does that on its own as well
+    public synchronized void flush() {
+        if (!closed) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        channel.close();
+        MappedBuffers.unmap(buffer);
+    }
+
+    // Handler that writes log records of this tool into the event log (source "cst" unless given)
+    public Handler handler(String source) {
+        return new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (!isLoggable(record)) {
+                    return;
+                }
+                try {
+                    append(record.getMillis(), record.getLevel(), source, LogFormatter.stripAnsi(record.getMessage()));
+                } catch (IOException e) {
+                    reportError("Writing to the event log failed", e, java.util.logging.ErrorManager.WRITE_FAILURE);
+                }
+            }
+
+            @Override
+            public void flush() {
+                EventLog.this.flush();
+            }
+
+            @Override
+            public void close() {
+                // The event log belongs to its creator
+            }
+        };
+    }
+
+    public synchronized long getEvents() {
+        return events;
+    }
+
+    // UTF-8 bytes of event text written so far
+    public synchronized long getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    // Bytes written to the segments so far, headers included (the files themselves are preallocated)
+    public synchronized long getWrittenBytes() {
+        return closedBytes + buffer.position();
+    }
+
+    public Path getFolder() {
+        return folder;
+    }
+
+    // Segment files of a folder, oldest first
+    public static List<Path> segments(Path folder) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(folder)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                if (numberOf(file) >= 0) {
+                    segments.add(file);
+                }
+            }
+        }
+        segments.sort((a, b) -> Integer.compare(numberOf(a), numberOf(b)));
+        return segments;
+    }
+
+    static int numberOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    static byte levelByte(Level level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i] == level) {
+                return (byte) i;
+            }
+        }
+        return (byte) LEVELS.length;
+    }
+
+    // Helper method to close the current segment and map a new one; the sources are defined again in it
+    private void openSegment(long millis) throws IOException {
+        if (channel != null) {
+            closedBytes += buffer.position();
+            buffer.force();
+            channel.close();
+            MappedBuffers.unmap(buffer);  // Otherwise it stays mapped until the GC runs, and Windows can't delete it
+            closed = true;  // Until the next segment is mapped; the old buffer must never be written again
+        }
+        segmentNumber++;
+        Path file = folder.resolve(SEGMENT_PREFIX + segmentNumber + SEGMENT_SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);  // Zero-filled, sparse until written
+        closed = false;
+        buffer.putInt(MAGIC).put(VERSION).put((byte) 0).put((byte) 0).put((byte) 0).putLong(millis);
+        lastMillis = millis;
+        sources.clear();
+        deleteOldSegments();
+    }
+
+    private void deleteOldSegments() throws IOException {
+        if (keepSegments <= 0) {
+            return;
+        }
+        List<Path> segments = segments(folder);
+        for (Path segment : segments.subList(0, Math.max(0, segments.size() - keepSegments))) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                // Still open somewhere else (e.g. a reader on Windows); tried again when the next segment starts
+            }
+        }
+    }
+
+    private int sourceId(String source) {
+        Integer id = sources.get(source);
+        return id != null ? id : -1;
+    }
+
+    private int defineSource(String source) {
+        int id = sources.size();
+        sources.put(source, id);
+        int length = utf8Length(source);
+        int start = buffer.position();
+        buffer.position(start + 1);
+        putVarInt(id);
+        putVarInt(length);
+        putUtf8(source, length);
+        buffer.put(start, SOURCE);
+        return id;
+    }
+
+    private void putVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    // Helper method to encode text as UTF-8 straight into the segment, stopping before "limit" bytes are exceeded
+    private void putUtf8(CharSequence text, int limit) {
+        int written = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (written + 1 > limit) break;
+                buffer.put((byte) c);
+                written += 1;
+            } else if (c < 0x800) {
+                if (written + 2 > limit) break;
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+                written += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                if (written + 4 > limit) break;
+                int code = Character.toCodePoint(c, text.charAt(++i));
+                buffer.put((byte) (0xF0 | code >> 18)).put((byte) (0x80 | code >> 12 & 0x3F))
+                        .put((byte) (0x80 | code >> 6 & 0x3F)).put((byte) (0x80 | code & 0x3F));
+                written += 4;
+            } else if (Character.isSurrogate(c)) {
+                if (written + 1 > limit) break;
+                buffer.put((byte) '?');  // Lone surrogate
+                written += 1;
+            } else {
+                if (written + 3 > limit) break;
+                buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+                written += 3;
+            }
+        }
+        // A character that did not fit leaves a gap; pad it, so the length prefix stays right
+        for (; written < limit; written++) {
+            buffer.put((byte) ' ');
+        }
+    }
+
+    static int utf8Length(CharSequence text) {
+        int length = text.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,284 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Reads the segments of an EventLog and exports them as CSV or JSON Lines
+// A segment that is still being written can be read as well; reading stops at the last complete record.
+// Usage: java -cp CubeServerTool.jar dev.cubie.CubeServerTool.Utils.EventLogReader <folder or segment> [csv|json] [output file]
+public class EventLogReader {
+
+    private final List<Path> segments;
+
+    // Reader for all segments of a folder, or for a single segment file
+    public EventLogReader(Path folderOrSegment) throws IOException {
+        this.segments = Files.isDirectory(folderOrSegment)
+                ? EventLog.segments(folderOrSegment)
+                : Collections.singletonList(folderOrSegment);
+    }
+
+    // Passes every event to the consumer, oldest first; returns the number of events
+    public long read(Consumer<Event> consumer) throws IOException {
+        long count = 0;
+        for (Path segment : segments) {
+            if (Files.exists(segment)) {  // May have been deleted by the writer in the meantime
+                count += readSegment(segment, consumer);
+            }
+        }
+        return count;
+    }
+
+    // Writes "Timestamp,Level,Source,Message" lines; fields are quoted where needed
+    public long exportCsv(Writer out) throws IOException {
+        out.write("Timestamp,Level,Source,Message\n");
+        StringBuilder line = new StringBuilder(256);
+        return export(event -> {
+            line.setLength(0);
+            appendTimestamp(line, event.millis);
+            line.append(',').append(event.level).append(',');
+            appendCsv(line, event.source);
+            line.append(',');
+            appendCsv(line, event.text);
+            line.append('\n');
+            return line;
+        }, out);
+    }
+
+    // Writes one JSON object per line: {"time":..., "timestamp":"...", "level":"...", "source":"...", "message":"..."}
+    public long exportJson(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        return export(event -> {
+            line.setLength(0);
+            line.append("{\"time\":").append(event.millis).append(",\"timestamp\":\"");
+            appendTimestamp(line, event.millis);
+            line.append("\",\"level\":\"").append(event.level).append("\",\"source\":");
+            appendJson(line, event.source);
+            line.append(",\"message\":");
+            appendJson(line, event.text);
+            line.append("}\n");
+            return line;
+        }, out);
+    }
+
+    public List<Path> getSegments() {
+        return segments;
+    }
+
+    // Helper method to write every event with the given formatter; IOExceptions of the writer are passed through
+    private long export(Function<Event, StringBuilder> format, Writer out) throws IOException {
+        IOException[] failure = new IOException[1];
+        long count = read(event -> {
+            if (failure[0] == null) {
+                try {
+                    StringBuilder text = format.apply(event);
+                    out.append(text);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        out.flush();
+        return count;
+    }
+
+    private static long readSegment(Path segment, Consumer<Event> consumer) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            if (channel.size() < EventLog.HEADER_SIZE) {
+                return 0;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());  // Stays valid after close
+        }
+        try {
+            return readSegment(segment, buffer, consumer);
+        } finally {
+            MappedBuffers.unmap(buffer);  // Events only hold copies; a mapped segment couldn't be deleted on Windows
+        }
+    }
+
+    private static long readSegment(Path segment, MappedByteBuffer buffer, Consumer<Event> consumer) throws IOException {
+        if (buffer.getInt() != EventLog.MAGIC) {
+            throw new IOException(segment.getFileName() + " is not an event log segment");
+        }
+        if (buffer.get() != EventLog.VERSION) {
+            throw new IOException(segment.getFileName() + " was written by an unknown version");
+        }
+        buffer.position(8);
+        long millis = buffer.getLong();
+
+        List<String> sources = new ArrayList<>();
+        byte[] bytes = new byte[512];
+        long count = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                byte type = buffer.get();
+                if (type == EventLog.SOURCE) {
+                    int id = getVarInt(buffer);
+                    int length = getVarInt(buffer);
+                    bytes = read(buffer, length, bytes);
+                    while (sources.size() <= id) {
+                        sources.add(null);
+                    }
+                    sources.set(id, new String(bytes, 0, length, StandardCharsets.UTF_8));
+                } else if (type == EventLog.EVENT) {
+                    long delta = getVarLong(buffer);
+                    millis += (delta >>> 1) ^ -(delta & 1);
+                    int level = buffer.get();
+                    int sourceId = getVarInt(buffer);
+                    int length = getVarInt(buffer);
+                    bytes = read(buffer, length, bytes);
+                    String source = sourceId >= 0 && sourceId < sources.size() ? sources.get(sourceId) : null;
+                    consumer.accept(new Event(millis, levelName(level), source != null ? source : "#" + sourceId,
+                            new String(bytes, 0, length, StandardCharsets.UTF_8)));
+                    count++;
+                } else {
+                    break;  // End of the written part (or a record that was not finished)
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            // Last record cut off by the end of the file
+        }
+        return count;
+    }
+
+    private static byte[] read(MappedByteBuffer buffer, int length, byte[] bytes) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        buffer.get(bytes, 0, length);
+        return bytes;
+    }
+
+    private static int getVarInt(MappedByteBuffer buffer) {
+        return (int) getVarLong(buffer);
+    }
+
+    private static long getVarLong(MappedByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new BufferUnderflowException();  // More than 10 bytes, not a varint
+    }
+
+    private static String levelName(int level) {
+        return level >= 0 && level < EventLog.LEVELS.length ? EventLog.LEVELS[level].getName() : "OTHER";
+    }
+
+    // "yyyy-MM-dd HH:mm:ss.SSS" like the CSV log, with milliseconds
+    private static void appendTimestamp(StringBuilder builder, long millis) {
+        LogFormatter.appendTimestamp(builder, millis);
+        int fraction = (int) Math.floorMod(millis, 1000L);
+        builder.append('.').append((char) ('0' + fraction / 100)).append((char) ('0' + fraction / 10 % 10)).append((char) ('0' + fraction % 10));
+    }
+
+    private static void appendCsv(StringBuilder builder, String text) {
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            builder.append(text);
+            return;
+        }
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                builder.append('"');
+            }
+            builder.append(c);
+        }
+        builder.append('"');
+    }
+
+    private static void appendJson(StringBuilder builder, String text) {
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else if (c == '\r') {
+                builder.append("\\r");
+            } else if (c == '\t') {
+                builder.append("\\t");
+            } else if (c < 0x20) {
+                builder.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    // One event
+    public static class Event {
+        public final long millis;
+        public final String level;  // Name of the level, "OTHER" for custom levels
+        public final String source;
+        public final String text;
+
+        Event(long millis, String level, String source, String text) {
+            this.millis = millis;
+            this.level = level;
+            this.source = source;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return source + " " + level + " " + text;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: EventLogReader <folder or segment> [csv|json] [output file]");
+            System.exit(2);
+        }
+        String format = args.length > 1 ? args[1] : "csv";
+        try {
+            EventLogReader reader = new EventLogReader(Paths.get(args[0]));
+            Writer out = args.length > 2
+                    ? Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)
+                    : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            long events = "json".equalsIgnoreCase(format) ? reader.exportJson(out) : reader.exportCsv(out);
+            out.flush();
+            if (args.length > 2) {
+                out.close();
+            }
+            System.err.println(events + " events from " + reader.getSegments().size() + " segments exported.");
+        } catch (IOException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
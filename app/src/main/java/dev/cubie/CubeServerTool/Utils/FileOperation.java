@@ -1,18 +1,28 @@
 package dev.cubie.CubeServerTool.Utils;
 
+import dev.cubie.CubeServerTool.Data.Config;
+
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.LongConsumer;
 import java.util.logging.Logger;
 
 public class FileOperation {
@@ -21,9 +31,32 @@ public class FileOperation {
     private Map<String, String> headers = new HashMap<>();
     private String content;
     private byte[] binaryContent;  // For binary files
+    private Path binaryFile;  // For binary files streamed to disk
+    private boolean streaming = false;  // If true, binary downloads go straight to a temp file
+    private int segments = 1;  // Number of parallel byte ranges for streaming downloads
+    private int retries = 0;  // Number of resume attempts for interrupted streaming downloads
+    private HashAlgorithm hashAlgorithm;  // Algorithm of the expected hash, null if downloads are not verified
+    private String expectedHash;
+    private long expectedSize = -1;
+    private boolean upToDate = false;  // True if the target file already matches, so nothing is downloaded
+    private ArtifactStore store;  // Shared store for verified downloads, null if not used
+    private boolean inStore = false;  // True if the verified artifact is already in the store
+    private String cachePath;  // HTTP cache file for fetch() and fetchJson(), set by cache() before fetching
+    private long cacheMaxAgeMillis;  // Max-age for cache entries without Cache-Control
+    private boolean keepAlive = false;  // If true, fully read connections are left to the JDK's keep-alive cache
+    private LongConsumer progressListener;  // Receives the bytes on disk during streaming downloads
     private int responseCode;
     private static final Logger logger = LoggerUtility.getLogger(FileOperation.class);
 
+    // Size of the direct buffer used for streaming downloads
+    private static final int STREAM_BUFFER_SIZE = 256 * 1024;
+
+    // Bytes between two journal checkpoints of a single-stream download
+    private static final long JOURNAL_INTERVAL = 4L * 1024 * 1024;
+
+    // Result of one streaming download attempt
+    private enum Outcome { DONE, RETRY, FALLBACK }
+
     // Static variable to control logging
     public static boolean noLog = false;  // If true, logs will be suppressed
 
@@ -50,11 +83,86 @@ public class FileOperation {
         return this;  // Ermöglicht method chaining
     }
 
+    // Method to stream binary downloads to a temp file instead of keeping them in memory
+    public FileOperation streaming() {
+        this.streaming = true;
+        return this;
+    }
+
+    // Method to split streaming downloads into parallel byte ranges (falls back to one stream if unsupported)
+    public FileOperation segments(int segments) {
+        this.segments = Math.max(1, segments);
+        return this;
+    }
+
+    // Method to resume interrupted streaming downloads up to the given number of times
+    public FileOperation retries(int retries) {
+        this.retries = Math.max(0, retries);
+        return this;
+    }
+
+    // Method to verify binary downloads against a published hash (computed while the bytes arrive)
+    public FileOperation verify(HashAlgorithm algorithm, String expectedHash) {
+        this.hashAlgorithm = expectedHash != null ? algorithm : null;  // Nothing published, nothing to verify
+        this.expectedHash = expectedHash;
+        return this;
+    }
+
+    // Method to verify the size of binary downloads
+    public FileOperation expectSize(long expectedSize) {
+        this.expectedSize = expectedSize;
+        return this;
+    }
+
+    // Method to skip the download if the destination already has the expected hash (and size)
+    // Sets the response code to 304; fetchBinary() and saveTo() then do nothing
+    public FileOperation skipIfMatches(String destinationPath) {
+        Path target = Paths.get(destinationPath);
+        if (hashAlgorithm == null || !Files.isRegularFile(target)) {
+            return this;
+        }
+        try {
+            if ((expectedSize < 0 || Files.size(target) == expectedSize)
+                    && hashAlgorithm.hash(target).equalsIgnoreCase(expectedHash)) {
+                upToDate = true;
+                responseCode = 304;
+                if (!noLog) logger.info("File is already up to date, skipping download: " + destinationPath);
+            }
+        } catch (IOException e) {
+            if (!noLog) logger.warning("Failed to hash existing file: " + e.getMessage());
+        }
+        return this;
+    }
+
+    // Method to leave fully read connections open, so the next request to the same host can reuse them
+    // Only useful when many files come from one host, e.g. through the DownloadScheduler
+    public FileOperation keepAlive() {
+        this.keepAlive = true;
+        return this;
+    }
+
+    // Method to get the number of bytes on disk while a streaming download runs (called from the downloading thread)
+    public FileOperation onProgress(LongConsumer progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    // Method to keep verified downloads in a content-addressed store and link them into place
+    // Only used together with verify(), because objects in the store are addressed by their hash
+    public FileOperation useStore(ArtifactStore store) {
+        this.store = store;
+        return this;
+    }
+
     // Method to fetch the file from a remote URL, local file, or resource folder
     public FileOperation fetch() {
         try {
             if (source.toLowerCase().startsWith("http://") || source.toLowerCase().startsWith("https://")) {
-                fetchFromUrl();
+                if (cachePath != null) {
+                    fetchFromUrlCached();
+                } else {
+                    fetchFromUrl();
+                }
             } else if (Files.exists(Paths.get(source))) {
                 fetchFromLocalFile();
             } else {
@@ -67,8 +175,45 @@ public class FileOperation {
         return this;
     }
 
+    // Method to parse a JSON document from a remote URL, local file, or resource folder while it is read
+    // The handler pulls the fields it needs straight from the stream, so neither the body string nor a JSON tree
+    // is built and getContent() stays null. URLs go through the HTTP cache if cache() was called before.
+    public FileOperation fetchJson(JsonReader.Handler handler) {
+        try {
+            if (source.toLowerCase().startsWith("http://") || source.toLowerCase().startsWith("https://")) {
+                if (cachePath != null) {
+                    parseFromUrlCached(handler);
+                } else {
+                    parseFromUrl(handler);
+                }
+            } else if (Files.exists(Paths.get(source))) {
+                parse(Files.newInputStream(Paths.get(source)), handler);
+                responseCode = 200;
+                if (!noLog) logger.info("Successfully parsed local file: " + source);
+            } else {
+                InputStream in = getClass().getResourceAsStream(source);
+                if (in == null) {
+                    throw new FileNotFoundException("Resource not found: " + source);
+                }
+                parse(in, handler);
+                responseCode = 200;
+                if (!noLog) logger.info("Successfully parsed resource: " + source);
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.severe("Parsing JSON failed: " + e.getMessage());
+            responseCode = 500;
+        }
+        return this;
+    }
+
     // Method to fetch the binary file from a remote URL
     public FileOperation fetchBinary() {
+        if (upToDate || isInStore()) {
+            return this;
+        }
+        if (streaming) {
+            return fetchStreaming(false);
+        }
         HttpURLConnection connection = null;
         try {
             URL url = new URL(source);
@@ -85,6 +230,7 @@ public class FileOperation {
 
             responseCode = connection.getResponseCode();
             if (responseCode >= 200 && responseCode < 300) {
+                MessageDigest digest = hashAlgorithm != null ? hashAlgorithm.newDigest() : null;
                 try (InputStream in = connection.getInputStream();
                      ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
 
@@ -92,9 +238,15 @@ public class FileOperation {
                     int bytesRead;
                     while ((bytesRead = in.read(tempBuffer)) != -1) {
                         buffer.write(tempBuffer, 0, bytesRead);
+                        if (digest != null) digest.update(tempBuffer, 0, bytesRead);
                     }
                     binaryContent = buffer.toByteArray();  // Store binary data
                 }
+                if (!checkIntegrity(binaryContent.length, digest)) {
+                    binaryContent = null;
+                    responseCode = 500;
+                    return this;
+                }
                 if (!noLog) logger.info("Successfully fetched URL: " + source);
             } else {
                 if (!noLog) logger.severe("Failed to fetch URL: " + source + " - Server returned an error.");
@@ -114,6 +266,12 @@ public class FileOperation {
 
     // Method to fetch the binary file from a remote URL with a visual progress bar (▓ and ░)
     public FileOperation fetchBinaryWithProgressBar() {
+        if (upToDate || isInStore()) {
+            return this;
+        }
+        if (streaming) {
+            return fetchStreaming(true);
+        }
         HttpURLConnection connection = null;
         try {
             URL url = new URL(source);
@@ -146,6 +304,7 @@ public class FileOperation {
 
                 if (!noLog) logger.info("Downloading file: " + fileName );
 
+                MessageDigest digest = hashAlgorithm != null ? hashAlgorithm.newDigest() : null;
                 try (InputStream in = connection.getInputStream();
                      ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
 
@@ -159,6 +318,7 @@ public class FileOperation {
 
                     while ((bytesRead = in.read(tempBuffer)) != -1) {
                         buffer.write(tempBuffer, 0, bytesRead);
+                        if (digest != null) digest.update(tempBuffer, 0, bytesRead);
                         totalBytesRead += bytesRead;
 
                         // Calculate progress in percentage
@@ -177,6 +337,11 @@ public class FileOperation {
                     System.out.println();  // Move to a new line after progress bar completion
 
                 }
+                if (!checkIntegrity(binaryContent.length, digest)) {
+                    binaryContent = null;
+                    responseCode = 500;
+                    return this;
+                }
                 if (!noLog) logger.info("Successfully fetched URL: " + source);
             } else {
                 if (!noLog) logger.severe("Failed to fetch URL: " + source + " - Server returned an error.");
@@ -192,6 +357,339 @@ public class FileOperation {
         return this;
     }
 
+    // Helper method to check the artifact store before any network I/O
+    private boolean isInStore() {
+        try {
+            if (store != null && hashAlgorithm != null && store.contains(hashAlgorithm, expectedHash)) {
+                inStore = true;
+                responseCode = 304;
+                if (!noLog) logger.info("Found in artifact store, skipping download: " + getBaseName(source));
+            }
+        } catch (IOException e) {
+            if (!noLog) logger.warning("Could not check the artifact store, downloading instead: " + e.getMessage());
+        }
+        return inStore;
+    }
+
+    // Method to run a streaming download, resuming from the journal and retrying interrupted transfers
+    private FileOperation fetchStreaming(boolean withProgressBar) {
+        for (int attempt = 0; ; attempt++) {
+            Outcome outcome = Outcome.FALLBACK;
+            try (DownloadJournal journal = DownloadJournal.open(source)) {
+                if (segments > 1) {
+                    outcome = fetchSegmented(journal, withProgressBar);
+                }
+                if (outcome == Outcome.FALLBACK) {
+                    outcome = fetchSingleStream(journal, withProgressBar);
+                }
+            } catch (IOException e) {
+                if (!noLog) logger.severe("Download journal failed: " + e.getMessage());
+                if (outcome != Outcome.DONE) {
+                    responseCode = 500;
+                    outcome = Outcome.RETRY;
+                }
+            }
+
+            if (outcome == Outcome.DONE || attempt >= retries) {
+                return this;
+            }
+            if (!noLog) logger.warning("Download interrupted, resuming (attempt " + (attempt + 1) + " of " + retries + "): " + source);
+            try {
+                Thread.sleep(1000L * (attempt + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return this;
+            }
+        }
+    }
+
+    // Method to download with parallel byte ranges into the journal's ".part" file
+    private Outcome fetchSegmented(DownloadJournal journal, boolean withProgressBar) {
+        SegmentedDownloader downloader = new SegmentedDownloader(source).headers(headers).segments(segments);
+        try {
+            long contentLength = downloader.probeRangeSupport();
+            if (contentLength < SegmentedDownloader.MIN_SEGMENTED_SIZE) {
+                if (!noLog) logger.fine(() -> "No byte range support or file too small, using a single stream: " + source);
+                return Outcome.FALLBACK;
+            }
+
+            if (journal.matches(downloader.getETag(), downloader.getLastModified(), contentLength)) {
+                if (!noLog) logger.info("Resuming download with " + formatSize(journal.completedBytes()) + " already on disk.");
+            } else {
+                journal.reset(downloader.getETag(), downloader.getLastModified(), contentLength);
+                Files.createDirectories(Config.tempFolder);
+                Files.deleteIfExists(journal.getPartFile());
+            }
+
+            String fileName = getFileNameFromUrl(new URL(source));
+            initialTimestamp = getFormattedTimestamp();
+
+            if (withProgressBar) {
+                if (!noLog) logger.info("File size: " + formatSize(contentLength));
+                if (!noLog) logger.info("Downloading file: " + fileName + " in " + segments + " segments");
+                printProgressBar(journal.completedBytes(), contentLength, 0, fileName);
+            }
+
+            MessageDigest digest = hashAlgorithm != null ? hashAlgorithm.newDigest() : null;
+            downloader.digest(digest);
+
+            int[] lastProgress = {0};
+            downloader.download(journal, written -> {
+                if (progressListener != null) {
+                    progressListener.accept(written);
+                }
+                int progress = (int) ((written * 100) / contentLength);
+                if (withProgressBar && progress / 10 > lastProgress[0] / 10) {
+                    lastProgress[0] = progress;
+                    printProgressBar(written, contentLength, progress, fileName);
+                }
+            });
+
+            if (withProgressBar) {
+                printProgressBar(contentLength, contentLength, 100, fileName);
+                System.out.println();  // Move to a new line after progress bar completion
+            }
+
+            if (!checkIntegrity(contentLength, digest)) {
+                journal.discard();
+                responseCode = 500;
+                return Outcome.RETRY;
+            }
+
+            binaryFile = journal.complete();
+            responseCode = 200;
+            if (!noLog) logger.info("Successfully fetched URL: " + source);
+            return Outcome.DONE;
+        } catch (IOException e) {
+            if (withProgressBar) System.out.println();
+            if (downloader.isRangeIgnored()) {
+                if (!noLog) logger.warning("Server ignored byte ranges, using a single stream: " + e.getMessage());
+                journal.discard();
+                return Outcome.FALLBACK;
+            }
+            if (!noLog) logger.severe("Fetching file failed: " + e.getMessage());
+            responseCode = 500;
+            return Outcome.RETRY;
+        }
+    }
+
+    // Method to download with one connection into the journal's ".part" file, continuing after the completed prefix
+    private Outcome fetchSingleStream(DownloadJournal journal, boolean withProgressBar) {
+        HttpURLConnection connection = null;
+        long position = 0;
+        long offset = 0;
+        boolean resumable = false;
+        boolean fullyRead = false;
+        try {
+            URL url = new URL(source);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("GET");
+
+            // Set headers
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            // Ask only for the missing tail; If-Range makes the server send the full file if it has changed
+            long completedPrefix = journal.completedPrefix();
+            if (completedPrefix > 0 && journal.getValidator() != null) {
+                connection.setRequestProperty("Range", "bytes=" + completedPrefix + "-");
+                connection.setRequestProperty("If-Range", journal.getValidator());
+            }
+
+            connection.setConnectTimeout(5000); // 5 seconds timeout
+            connection.connect();
+
+            responseCode = connection.getResponseCode();
+            if (responseCode < 200 || responseCode >= 300) {
+                if (!noLog) logger.severe("Failed to fetch URL: " + source + " - Server returned an error.");
+                return Outcome.DONE;
+            }
+
+            long contentLength;
+            if (responseCode == HttpURLConnection.HTTP_PARTIAL && completedPrefix > 0) {
+                offset = completedPrefix;
+                contentLength = journal.getContentLength();
+                responseCode = HttpURLConnection.HTTP_OK;  // The assembled file is a complete response
+                if (!noLog) logger.info("Resuming download at " + formatSize(offset) + " of " + formatSize(contentLength));
+            } else {
+                contentLength = connection.getContentLengthLong();
+                journal.reset(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), contentLength);
+            }
+            // Resuming later needs a validator and a known size
+            resumable = contentLength > 0 && journal.getValidator() != null;
+
+            if (withProgressBar) {
+                if (contentLength == -1) {
+                    if (!noLog) logger.severe("Could not determine file size.");
+                    return Outcome.DONE;
+                }
+                if (!noLog) logger.info("File size: " + formatSize(contentLength));
+            }
+
+            // Generate the timestamp once at the start
+            initialTimestamp = getFormattedTimestamp();
+
+            // Get the file name from the URL
+            String fileName = withProgressBar ? getFileNameFromUrl(url) : null;
+            if (withProgressBar && !noLog) logger.info("Downloading file: " + fileName );
+
+            Files.createDirectories(Config.tempFolder);
+            position = offset;
+            MessageDigest digest = hashAlgorithm != null ? hashAlgorithm.newDigest() : null;
+            try (InputStream in = connection.getInputStream();
+                 ReadableByteChannel src = Channels.newChannel(in);
+                 FileChannel out = FileChannel.open(journal.getPartFile(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+                if (offset == 0) {
+                    out.truncate(0);
+                }
+
+                ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+                long lastCheckpoint = position;
+
+                // On resume, the part already on disk has to go through the digest first
+                if (digest != null) {
+                    for (long hashed = 0; hashed < offset; buffer.clear()) {
+                        buffer.limit((int) Math.min(buffer.capacity(), offset - hashed));
+                        int bytes = out.read(buffer, hashed);
+                        if (bytes == -1) {
+                            throw new IOException("Partial download is shorter than its journal");
+                        }
+                        buffer.flip();
+                        digest.update(buffer);
+                        hashed += bytes;
+                    }
+                }
+                int lastProgress = fileName != null ? (int) ((position * 100) / contentLength) : 0;
+
+                if (fileName != null) printProgressBar(position, contentLength, lastProgress, fileName);
+
+                while (src.read(buffer) != -1) {
+                    buffer.flip();
+                    if (digest != null) digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        position += out.write(buffer, position);
+                    }
+                    buffer.clear();
+                    if (progressListener != null) {
+                        progressListener.accept(position);
+                    }
+
+                    // Checkpoint the journal every few MB, so a dropped connection loses little
+                    if (resumable && position - lastCheckpoint >= JOURNAL_INTERVAL) {
+                        out.force(false);
+                        journal.markCompleted(offset, position);
+                        journal.save();
+                        lastCheckpoint = position;
+                    }
+
+                    if (fileName != null) {
+                        // Calculate progress in percentage
+                        int progress = (int) ((position * 100) / contentLength);
+                        if (progress / 10 > lastProgress / 10) {
+                            lastProgress = progress;
+                            printProgressBar(position, contentLength, progress, fileName);
+                        }
+                    }
+                }
+
+                if (contentLength > 0 && position != contentLength) {
+                    throw new IOException("Connection closed after " + position + " of " + contentLength + " bytes");
+                }
+                fullyRead = true;
+
+                if (fileName != null) {
+                    printProgressBar(contentLength, contentLength, 100, fileName);
+                    System.out.println();  // Move to a new line after progress bar completion
+                }
+            }
+
+            if (!checkIntegrity(position, digest)) {
+                journal.discard();
+                responseCode = 500;
+                return Outcome.RETRY;
+            }
+
+            binaryFile = journal.complete();
+            if (!noLog) logger.info("Successfully fetched URL: " + source);
+            return Outcome.DONE;
+        } catch (IOException e) {
+            if (withProgressBar) System.out.println();
+            if (!noLog) logger.severe("Fetching file failed: " + e.getMessage());
+            responseCode = 500;
+
+            if (!resumable) {
+                journal.discard();
+                return Outcome.RETRY;
+            }
+            // Keep the ".part" file and record what made it to disk, so the next attempt can resume
+            try {
+                journal.markCompleted(offset, position);
+                journal.save();
+            } catch (IOException journalError) {
+                if (!noLog) logger.warning("Failed to save download journal: " + journalError.getMessage());
+            }
+            return Outcome.RETRY;
+        } finally {
+            release(connection, fullyRead);
+        }
+    }
+
+    // Helper method to close a connection; with keepAlive() a fully read one stays in the JDK's keep-alive cache
+    private void release(HttpURLConnection connection, boolean fullyRead) {
+        if (connection != null && !(keepAlive && fullyRead)) {
+            connection.disconnect();
+        }
+    }
+
+    // Helper method to compare size and hash of a finished download with the expected values
+    private boolean checkIntegrity(long size, MessageDigest digest) {
+        if (expectedSize >= 0 && size != expectedSize) {
+            if (!noLog) logger.severe("Size mismatch for " + source + ": expected " + expectedSize + " bytes, got " + size);
+            return false;
+        }
+        if (digest != null) {
+            String actualHash = HashAlgorithm.toHex(digest.digest());
+            if (!actualHash.equalsIgnoreCase(expectedHash)) {
+                if (!noLog) logger.severe(hashAlgorithm + " mismatch for " + source + ": expected " + expectedHash + ", got " + actualHash);
+                return false;
+            }
+            if (!noLog) logger.info(hashAlgorithm + " verified: " + actualHash);
+        }
+        return true;
+    }
+
+    // Helper method to move a finished ".part" file into place, atomically where the file system allows it
+    private static void moveIntoPlace(Path partFile, Path target) throws IOException {
+        try {
+            Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Temp folder lives on another file system: copy next to the target first, then rename
+            Path sibling = target.resolveSibling(target.getFileName() + ".part");
+            Files.copy(partFile, sibling, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(sibling, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(partFile);
+        }
+    }
+
+    // Helper method to replace a file through a temp file next to it. Writing in place would go through a hard link
+    // into the artifact store and change the object for every server directory that links it.
+    private static void writeIntoPlace(byte[] data, Path target) throws IOException {
+        Path absoluteTarget = target.toAbsolutePath();
+        Path temp = Files.createTempFile(absoluteTarget.getParent(), absoluteTarget.getFileName() + "-", ".tmp");
+        try {
+            Files.write(temp, data);
+            try {
+                Files.move(temp, absoluteTarget, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absoluteTarget, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
     // Helper method to print the progress bar with ▓ and ░ characters and the prefixed timestamp
     private void printProgressBar(long bytesRead, long totalBytes, int progress, String fileName) {
         int barLength = 30;  // Length of the progress bar
@@ -223,7 +721,7 @@ public class FileOperation {
     }
 
     // Helper method to format file sizes in a human-readable format (MB, GB, etc.)
-    private String formatSize(long sizeInBytes) {
+    static String formatSize(long sizeInBytes) {
         double size = sizeInBytes;
         String[] units = {"B", "KB", "MB", "GB", "TB"};
         int unitIndex = 0;
@@ -272,6 +770,62 @@ public class FileOperation {
             } else {
                 if (!noLog) logger.severe("Failed to fetch URL: " + source + " - Server returned an error.");
             }
+        } finally {
+            release(connection, content != null);
+        }
+    }
+
+    // Method to fetch from a URL through the HTTP cache
+    // A fresh entry is used without any network I/O, a stale one is revalidated with a conditional request
+    private void fetchFromUrlCached() throws IOException {
+        HttpCacheEntry entry = HttpCacheEntry.load(cachePath, source, cacheMaxAgeMillis);
+        if (entry.isFresh()) {
+            content = entry.readBody();
+            responseCode = 304;  // Set response code to indicate the file was loaded from cache
+            if (!noLog) logger.info("Using cached file: " + cachePath);
+            return;
+        }
+
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(source);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("GET");
+
+            // Set headers
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            entry.addValidators(connection);
+
+            connection.setConnectTimeout(5000); // 5 seconds timeout
+            connection.connect();
+
+            responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                content = entry.readBody();
+                entry.update(connection);
+                entry.save();
+                if (!noLog) logger.info("Cached file revalidated: " + cachePath);
+            } else if (responseCode >= 200 && responseCode < 300) {
+                content = readContentFromStream(connection.getInputStream());
+                entry.update(connection);
+                if (entry.isStorable()) {
+                    entry.writeBody(content);
+                    entry.save();
+                }
+                if (!noLog) logger.info("Successfully fetched URL: " + source);
+            } else {
+                if (!noLog) logger.severe("Failed to fetch URL: " + source + " - Server returned an error.");
+            }
+        } catch (IOException e) {
+            if (!entry.hasBody()) {
+                throw e;
+            }
+            // Offline or server down: a stale copy is better than nothing
+            content = entry.readBody();
+            responseCode = 304;
+            if (!noLog) logger.warning("Fetching " + source + " failed, using stale cached file: " + e.getMessage());
         } finally {
             if (connection != null) {
                 connection.disconnect();
@@ -279,6 +833,118 @@ public class FileOperation {
         }
     }
 
+    // Method to parse a JSON document from a URL while it streams in
+    private void parseFromUrl(JsonReader.Handler handler) throws IOException {
+        HttpURLConnection connection = openConnection();
+        boolean parsed = false;
+        try {
+            responseCode = connection.getResponseCode();
+            if (responseCode >= 200 && responseCode < 300) {
+                parse(connection.getInputStream(), handler);
+                parsed = true;
+                if (!noLog) logger.info("Successfully parsed URL: " + source);
+            } else {
+                if (!noLog) logger.severe("Failed to fetch URL: " + source + " - Server returned an error.");
+            }
+        } finally {
+            release(connection, parsed);
+        }
+    }
+
+    // Method to parse a JSON document from a URL through the HTTP cache (same rules as fetchFromUrlCached)
+    // A new body is copied into the cache while it is parsed, so it is only read once
+    private void parseFromUrlCached(JsonReader.Handler handler) throws IOException {
+        HttpCacheEntry entry = HttpCacheEntry.load(cachePath, source, cacheMaxAgeMillis);
+        if (entry.isFresh()) {
+            parse(entry.openBody(), handler);
+            responseCode = 304;  // Set response code to indicate the file was loaded from cache
+            if (!noLog) logger.info("Using cached file: " + cachePath);
+            return;
+        }
+
+        HttpURLConnection connection = null;
+        boolean parsing = false;  // Once the handler has seen data, falling back to the cache would feed it twice
+        try {
+            connection = openConnection();
+            entry.addValidators(connection);
+            connection.connect();
+
+            responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                entry.update(connection);
+                entry.save();
+                parsing = true;
+                parse(entry.openBody(), handler);
+                if (!noLog) logger.info("Cached file revalidated: " + cachePath);
+            } else if (responseCode >= 200 && responseCode < 300) {
+                entry.update(connection);
+                parsing = true;
+                if (entry.isStorable()) {
+                    parseAndStore(connection.getInputStream(), entry, handler);
+                } else {
+                    parse(connection.getInputStream(), handler);
+                }
+                if (!noLog) logger.info("Successfully parsed URL: " + source);
+            } else {
+                if (!noLog) logger.severe("Failed to fetch URL: " + source + " - Server returned an error.");
+            }
+        } catch (IOException e) {
+            if (parsing || !entry.hasBody()) {
+                throw e;
+            }
+            // Offline or server down: a stale copy is better than nothing
+            parse(entry.openBody(), handler);
+            responseCode = 304;
+            if (!noLog) logger.warning("Fetching " + source + " failed, using stale cached file: " + e.getMessage());
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    // Helper method to parse a body and write it to the cache at the same time
+    // The rest of the body is drained after the handler is done, so the cached copy is always complete
+    private static void parseAndStore(InputStream body, HttpCacheEntry entry, JsonReader.Handler handler) throws IOException {
+        boolean stored = false;
+        try (InputStream in = body;
+             OutputStream copy = entry.newBodyStream();
+             TeeInputStream tee = new TeeInputStream(in, copy)) {
+            parse(tee, reader -> {
+                handler.read(reader);
+                tee.drain();
+            });
+            stored = true;
+        } finally {
+            if (!stored) {
+                entry.discardBody();
+            }
+        }
+        entry.commitBody();
+        entry.save();
+    }
+
+    // Helper method to run a handler on a stream (the stream is closed afterwards)
+    private static void parse(InputStream in, JsonReader.Handler handler) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            handler.read(reader);
+        }
+    }
+
+    // Helper method to open a GET connection with the configured headers (not yet connected)
+    private HttpURLConnection openConnection() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(source).openConnection();
+        connection.setRequestMethod("GET");
+
+        // Set headers
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        connection.setConnectTimeout(5000); // 5 seconds timeout
+        return connection;
+    }
+
     // Method to fetch from a local file
     private void fetchFromLocalFile() throws IOException {
         content = new String(Files.readAllBytes(Paths.get(source)), StandardCharsets.UTF_8);
@@ -312,10 +978,40 @@ public class FileOperation {
 
     // Method to save the content (either binary or text) to a file
     public FileOperation saveTo(String destinationPath) {
-        if (binaryContent != null) {
+        if (upToDate) {
+            return this;  // Destination already matches, see skipIfMatches()
+        }
+        if (store != null && hashAlgorithm != null && (inStore || binaryFile != null || binaryContent != null)) {
+            // Put verified content into the artifact store and link it into place
+            try {
+                if (binaryFile == null && binaryContent != null) {
+                    binaryFile = Files.write(Files.createTempFile(Config.tempFolder, getBaseName(source) + "-", ".part"), binaryContent);
+                }
+                if (binaryFile != null) {
+                    store.addAndMaterialize(binaryFile, hashAlgorithm, expectedHash, Paths.get(destinationPath));
+                    binaryFile = null;
+                } else {
+                    store.materialize(hashAlgorithm, expectedHash, Paths.get(destinationPath));
+                }
+                if (!noLog) logger.info("Binary file linked from artifact store to: " + destinationPath);
+            } catch (IOException e) {
+                if (!noLog) logger.severe("Failed to save binary file from artifact store: " + e.getMessage());
+                responseCode = 500;
+            }
+        } else if (binaryFile != null) {
+            // Move streamed binary content into place
+            try {
+                moveIntoPlace(binaryFile, Paths.get(destinationPath));
+                binaryFile = null;
+                if (!noLog) logger.info("Binary file saved to: " + destinationPath);
+            } catch (IOException e) {
+                if (!noLog) logger.severe("Failed to save binary file: " + e.getMessage());
+                responseCode = 500;
+            }
+        } else if (binaryContent != null) {
             // Save binary content
-            try (OutputStream out = Files.newOutputStream(Paths.get(destinationPath), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                out.write(binaryContent);
+            try {
+                writeIntoPlace(binaryContent, Paths.get(destinationPath));
                 if (!noLog) logger.info("Binary file saved to: " + destinationPath);
             } catch (IOException e) {
                 if (!noLog) logger.severe("Failed to save binary file: " + e.getMessage());
@@ -323,7 +1019,7 @@ public class FileOperation {
         } else if (content != null) {
             // Save text content
             try {
-                Files.write(Paths.get(destinationPath), content.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                writeIntoPlace(content.getBytes(), Paths.get(destinationPath));
                 if (!noLog) logger.info("Text file saved to: " + destinationPath);
             } catch (IOException e) {
                 if (!noLog) logger.severe("Failed to save text file: " + e.getMessage());
@@ -335,7 +1031,15 @@ public class FileOperation {
     }
 
     // Method to cache the content
+    // Called before fetch(), URLs go through the HTTP cache (see fetchFromUrlCached); maxAgeMillis is then
+    // only used for responses without Cache-Control or Expires. Called after fetch(), the content is saved as before.
     public FileOperation cache(long maxAgeMillis, String cachePath) {
+        if (content == null && responseCode == 0) {
+            this.cachePath = cachePath;
+            this.cacheMaxAgeMillis = maxAgeMillis;
+            return this;
+        }
+
         File cacheFile = new File(cachePath);
         if (cacheFile.exists() && (System.currentTimeMillis() - cacheFile.lastModified() < maxAgeMillis)) {
             if (!noLog) logger.info("Using cached file: " + cachePath);
@@ -458,4 +1162,46 @@ public class FileOperation {
 
     }
 
+    // InputStream that copies everything read through it to an OutputStream
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int bytes = super.read(b, off, len);
+            if (bytes > 0) {
+                copy.write(b, off, bytes);
+            }
+            return bytes;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must still reach the copy
+            byte[] skipped = new byte[(int) Math.min(n, 8192)];
+            return Math.max(read(skipped, 0, skipped.length), 0);
+        }
+
+        // Method to read the rest of the stream, so the copy is complete
+        void drain() throws IOException {
+            byte[] rest = new byte[8192];
+            while (read(rest, 0, rest.length) != -1) {
+                // Copied by read()
+            }
+        }
+    }
 }
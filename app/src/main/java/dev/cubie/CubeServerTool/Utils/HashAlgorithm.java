@@ -0,0 +1,78 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Hash algorithms used to verify downloads (Mojang publishes SHA-1, other sources SHA-256 or SHA-512)
+public enum HashAlgorithm {
+
+    SHA1("SHA-1"),
+    SHA256("SHA-256"),
+    SHA512("SHA-512");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String algorithmName;
+
+    HashAlgorithm(String algorithmName) {
+        this.algorithmName = algorithmName;
+    }
+
+    // Creates a fresh digest for incremental hashing
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithmName);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java runtime has to provide SHA-1, SHA-256 and SHA-512
+            throw new IllegalStateException("Missing hash algorithm: " + algorithmName, e);
+        }
+    }
+
+    // Hashes a file and returns the lowercase hex digest
+    public String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    // Picks the algorithm from the length of a hex digest, or returns null if no algorithm matches
+    public static HashAlgorithm fromHexLength(int length) {
+        switch (length) {
+            case 40:
+                return SHA1;
+            case 64:
+                return SHA256;
+            case 128:
+                return SHA512;
+            default:
+                return null;
+        }
+    }
+
+    // Converts a digest to lowercase hex
+    public static String toHex(byte[] digest) {
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return algorithmName;
+    }
+}
@@ -0,0 +1,192 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Properties;
+
+// Metadata of one cached HTTP response, stored as "<cacheFile>.meta" next to the cached body
+// Holds the validators (ETag / Last-Modified) for conditional requests and the entry's own max-age
+public class HttpCacheEntry {
+
+    private final Path bodyFile;
+    private final Path metaFile;
+    private final long defaultMaxAgeMillis;
+
+    private String url;
+    private String etag;
+    private String lastModified;
+    private long storedAt = 0;        // When the body was last fetched or revalidated
+    private long maxAgeMillis = -1;   // Freshness lifetime from Cache-Control / Expires, -1 = use the default
+    private boolean noStore = false;
+    private boolean ownBody = false;  // True if the body file belongs to this URL (a cache file may be reused for another)
+
+    private HttpCacheEntry(Path bodyFile, long defaultMaxAgeMillis) {
+        this.bodyFile = bodyFile;
+        this.metaFile = Paths.get(bodyFile + ".meta");
+        this.defaultMaxAgeMillis = defaultMaxAgeMillis;
+    }
+
+    // Loads the entry for a cache file; a missing or broken meta file gives an empty (stale) entry
+    public static HttpCacheEntry load(String cachePath, String url, long defaultMaxAgeMillis) {
+        HttpCacheEntry entry = new HttpCacheEntry(Paths.get(cachePath), defaultMaxAgeMillis);
+        entry.url = url;
+        if (!Files.exists(entry.metaFile)) {
+            return entry;
+        }
+
+        Properties properties = new Properties();
+        try (BufferedReader reader = Files.newBufferedReader(entry.metaFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            if (url.equals(properties.getProperty("url"))) {
+                entry.ownBody = true;
+                entry.etag = properties.getProperty("etag");
+                entry.lastModified = properties.getProperty("lastModified");
+                entry.storedAt = Long.parseLong(properties.getProperty("storedAt", "0"));
+                entry.maxAgeMillis = Long.parseLong(properties.getProperty("maxAge", "-1"));
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Treat as not cached
+            entry.ownBody = false;
+        }
+        return entry;
+    }
+
+    // Returns true if there is a cached body for this URL; a body left by another URL counts as none
+    public boolean hasBody() {
+        return ownBody && Files.isRegularFile(bodyFile);
+    }
+
+    // Returns true if the cached body may be used without asking the server
+    public boolean isFresh() {
+        long maxAge = maxAgeMillis >= 0 ? maxAgeMillis : defaultMaxAgeMillis;
+        return hasBody() && System.currentTimeMillis() - storedAt < maxAge;
+    }
+
+    // Adds If-None-Match / If-Modified-Since to a request, so an unchanged resource costs only a 304
+    public void addValidators(HttpURLConnection connection) {
+        if (!hasBody()) {
+            return;
+        }
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+    }
+
+    // Takes validators and freshness lifetime from a 200 or 304 response
+    public void update(HttpURLConnection connection) {
+        String newEtag = connection.getHeaderField("ETag");
+        String newLastModified = connection.getHeaderField("Last-Modified");
+        // A 304 may omit validators that did not change
+        if (newEtag != null) etag = newEtag;
+        if (newLastModified != null) lastModified = newLastModified;
+
+        storedAt = System.currentTimeMillis();
+        maxAgeMillis = parseMaxAge(connection);
+    }
+
+    // Returns false if the server asked not to store the response (Cache-Control: no-store)
+    public boolean isStorable() {
+        return !noStore;
+    }
+
+    // Helper method to derive the freshness lifetime of a response
+    private long parseMaxAge(HttpURLConnection connection) {
+        noStore = false;
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-store")) {
+                    noStore = true;
+                    return 0;
+                } else if (directive.equals("no-cache")) {
+                    return 0;  // Always revalidate
+                } else if (directive.startsWith("max-age=")) {
+                    try {
+                        long maxAge = Long.parseLong(directive.substring(8).trim()) * 1000L;
+                        long age = connection.getHeaderFieldLong("Age", 0) * 1000L;
+                        return Math.max(0, maxAge - age);
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                }
+            }
+        }
+
+        long expires = connection.getHeaderFieldDate("Expires", 0);
+        if (expires > 0) {
+            long date = connection.getHeaderFieldDate("Date", System.currentTimeMillis());
+            return Math.max(0, expires - date);
+        }
+        return -1;  // Server said nothing, use the default
+    }
+
+    // Method to persist the metadata (written to a temp file and renamed)
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        if (etag != null) properties.setProperty("etag", etag);
+        if (lastModified != null) properties.setProperty("lastModified", lastModified);
+        properties.setProperty("storedAt", String.valueOf(storedAt));
+        properties.setProperty("maxAge", String.valueOf(maxAgeMillis));
+
+        Path tempFile = Paths.get(metaFile + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            properties.store(writer, "HTTP cache entry");
+        }
+        Files.move(tempFile, metaFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Reads the cached body
+    public String readBody() throws IOException {
+        return new String(Files.readAllBytes(bodyFile), StandardCharsets.UTF_8);
+    }
+
+    // Opens the cached body for streaming reads
+    public InputStream openBody() throws IOException {
+        return Files.newInputStream(bodyFile);
+    }
+
+    // Writes a new body (to a temp file first, so readers never see half a body)
+    public void writeBody(String content) throws IOException {
+        Files.write(tempBodyFile(), content.getBytes(StandardCharsets.UTF_8));
+        commitBody();
+    }
+
+    // Opens the temp file for a new body that is written while it streams in; commitBody() puts it in place
+    public OutputStream newBodyStream() throws IOException {
+        return Files.newOutputStream(tempBodyFile());
+    }
+
+    // Method to replace the cached body with the temp file written through newBodyStream()
+    public void commitBody() throws IOException {
+        Files.move(tempBodyFile(), bodyFile, StandardCopyOption.REPLACE_EXISTING);
+        ownBody = true;
+    }
+
+    // Method to drop a temp body that was not completed
+    public void discardBody() {
+        try {
+            Files.deleteIfExists(tempBodyFile());
+        } catch (IOException e) {
+            // Overwritten by the next attempt anyway
+        }
+    }
+
+    private Path tempBodyFile() {
+        return Paths.get(bodyFile + ".tmp");
+    }
+}
@@ -0,0 +1,360 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import dev.cubie.CubeServerTool.Data.Config;
+import dev.cubie.CubeServerTool.Data.ServerInstance;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Runs many server instances from one tool process (daemon mode)
+// Everything heavy exists once and is shared: the supervisor with its timer, the download scheduler, the artifact
+// store, one monitoring loop and one resource sampler. What an instance adds are the threads and buffers of its own process: two output
+// pumps, the console watcher, the command writer and the supervisor's monitor thread.
+public class InstanceManager implements AutoCloseable {
+
+    private static final Logger logger = LoggerUtility.getLogger(InstanceManager.class);
+
+    private final Map<String, ServerInstance> instances = new LinkedHashMap<>();
+    private final ProcessSupervisor supervisor = new ProcessSupervisor();
+    private final DownloadScheduler downloads = new DownloadScheduler(8, 4);
+    private ArtifactStore store = ArtifactStore.getDefault();
+    private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cst-instance-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ResourceSampler resources = new ResourceSampler(10, 360);  // One hour per instance
+    private final Map<String, Long> reportedLagEvents = new LinkedHashMap<>();
+    private final Set<String> reportedMemoryCreep = new HashSet<>();
+    private EventLog events;  // Console capture of all instances, opened with the first start
+    private boolean eventsFailed = false;
+    private Path eventFolder = Config.logFolder.resolve("events");
+
+    // Method to keep the console capture somewhere else than in the log folder; before the first start
+    public synchronized InstanceManager eventFolder(Path folder) {
+        this.eventFolder = folder;
+        return this;
+    }
+
+    // Method to keep verified jars in another artifact store than the default one; before the first install
+    public synchronized InstanceManager store(ArtifactStore store) {
+        this.store = store;
+        return this;
+    }
+
+    // Loads every "<name>.properties" in the folder; broken files are skipped with an error
+    public synchronized InstanceManager loadAll(Path folder) throws IOException {
+        Files.createDirectories(folder);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*.properties")) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);  // Stable order for start-up and status
+        for (Path file : files) {
+            try {
+                ServerInstance instance = ServerInstance.load(file);
+                instances.put(instance.getName(), instance);
+            } catch (IOException e) {
+                logger.severe("Skipping instance " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+        logger.info("Loaded " + instances.size() + " server instances from " + folder + ".");
+        return this;
+    }
+
+    // Registers an instance without a file
+    public synchronized InstanceManager add(ServerInstance instance) {
+        instances.put(instance.getName(), instance);
+        return this;
+    }
+
+    // Starts every instance with autostart=true; missing jars are downloaded first, all at once
+    public void startAutostart() {
+        List<ServerInstance> autostart = new ArrayList<>();
+        for (ServerInstance instance : getInstances()) {
+            if (instance.isAutostart()) {
+                autostart.add(instance);
+            }
+        }
+        install(autostart);
+        for (ServerInstance instance : autostart) {
+            start(instance.getName());
+        }
+    }
+
+    // Downloads the jars of instances with a jarUrl through the shared scheduler (an up-to-date jar is left alone)
+    // Jars with a jarHash go through the shared artifact store, so instances of the same version share one file.
+    // Returns false if a download failed.
+    public boolean install(List<ServerInstance> list) {
+        List<DownloadScheduler.Job> jobs = new ArrayList<>();
+        for (ServerInstance instance : list) {
+            if (instance.getJarUrl() == null || (instance.getJarHash() == null && Files.isRegularFile(instance.getJarPath()))) {
+                continue;  // Nothing to download from, or nothing to check an existing jar against
+            }
+            DownloadScheduler.Job job = new DownloadScheduler.Job(instance.getJarUrl(), instance.getJarPath().toString());
+            if (instance.getJarHash() != null) {
+                job.verify(HashAlgorithm.fromHexLength(instance.getJarHash().length()), instance.getJarHash()).useStore(getStore());
+            }
+            jobs.add(downloads.submit(job));
+        }
+        if (jobs.isEmpty()) {
+            return true;
+        }
+        try {
+            downloads.awaitAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        boolean installed = true;
+        for (DownloadScheduler.Job job : jobs) {
+            if (job.getState() != DownloadScheduler.State.DONE) {
+                logger.severe("Installing " + job.getTarget() + " failed (response code " + job.getResponseCode() + ").");
+                installed = false;
+            }
+        }
+        return installed;
+    }
+
+    // Starts an instance (or starts it again after a stop)
+    public boolean start(String name) {
+        ServerInstance instance = getInstance(name);
+        if (instance == null) {
+            logger.warning("Unknown instance: " + name);
+            return false;
+        }
+        if (!Files.isRegularFile(instance.getJarPath()) && instance.getJarUrl() != null) {
+            install(Collections.singletonList(instance));
+        }
+        if (!Files.isRegularFile(instance.getJarPath())) {
+            logger.severe("Cannot start " + name + ": no server jar in " + instance.getWorkDir());
+            return false;
+        }
+        try {
+            ProcessSupervisor.Server server = supervisor.get(name);
+            if (server == null) {
+                EventLog log = events();
+                supervisor.add(name, () -> instance.newProcessHandler().captureEvents(log, name), instance.restartPolicy());
+            } else if (server.getState() != ProcessSupervisor.State.RUNNING) {
+                server.restart();
+            }
+            return true;
+        } catch (IOException e) {
+            logger.severe("Starting " + name + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Stops an instance gracefully; it stays registered
+    public boolean stop(String name) {
+        ProcessSupervisor.Server server = supervisor.get(name);
+        if (server == null) {
+            return false;
+        }
+        server.stop();
+        return true;
+    }
+
+    // Stops and starts an instance
+    public boolean restart(String name) {
+        ProcessSupervisor.Server server = supervisor.get(name);
+        if (server == null) {
+            return start(name);
+        }
+        try {
+            server.restart();
+            return true;
+        } catch (IOException e) {
+            logger.severe("Restarting " + name + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Sends a console command to a running instance
+    public boolean send(String name, String command) {
+        ProcessSupervisor.Server server = supervisor.get(name);
+        if (server == null || server.getHandler() == null) {
+            return false;
+        }
+        try {
+            server.getHandler().sendCommand(command);
+            return true;
+        } catch (IOException e) {
+            logger.warning("Command for " + name + " not sent: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Returns the last console lines of an instance
+    public List<String> tail(String name, int lines) {
+        List<String> result = new ArrayList<>();
+        ProcessSupervisor.Server server = supervisor.get(name);
+        if (server != null && server.getHandler() != null && server.getHandler().getOutput() != null) {
+            for (ConsoleBuffer.Line line : server.getHandler().getOutput().tail(lines)) {
+                result.add(line.text);
+            }
+        }
+        return result;
+    }
+
+    // One status line per instance
+    public List<String> status() {
+        List<String> lines = new ArrayList<>();
+        for (ServerInstance instance : getInstances()) {
+            ProcessSupervisor.Server server = supervisor.get(instance.getName());
+            if (server == null) {
+                lines.add(instance.getName() + ": not started");
+                continue;
+            }
+            StringBuilder line = new StringBuilder(instance.getName()).append(": ").append(server.getState());
+            ProcessHandler handler = server.getHandler();
+            ResourceSampler.Samples samples = trackResources(server);
+            ResourceSampler.Snapshot current = samples != null ? samples.current() : null;
+            if (current != null) {
+                line.append(String.format(", %.0f %% CPU, %d MB RSS, %d threads", current.cpuPercent,
+                        current.rssKb / 1024, current.threads));
+            }
+            if (handler != null) {
+                ConsoleWatcher watcher = handler.getWatcher();
+                if (watcher.isReady()) {
+                    line.append(", ready after ").append(watcher.getStartupMillis() / 1000.0).append(" s");
+                }
+                if (watcher.getLagEvents() > 0) {
+                    line.append(", ").append(watcher.getLagEvents()).append(" lag events (max ")
+                            .append(watcher.getMaxLagMillis()).append(" ms)");
+                }
+            }
+            if (server.getRestarts() > 0) {
+                line.append(", ").append(server.getRestarts()).append(" restarts");
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    // Starts the shared monitoring loop: reports new lag events and memory creep of all instances every interval
+    public InstanceManager startMonitoring(long intervalSeconds) {
+        monitor.scheduleWithFixedDelay(this::checkInstances, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return this;
+    }
+
+    public synchronized List<ServerInstance> getInstances() {
+        return new ArrayList<>(instances.values());
+    }
+
+    public synchronized ServerInstance getInstance(String name) {
+        return instances.get(name);
+    }
+
+    public ProcessSupervisor getSupervisor() {
+        return supervisor;
+    }
+
+    // Shared download scheduler for installs and updates of all instances
+    public DownloadScheduler getDownloads() {
+        return downloads;
+    }
+
+    // Shared artifact store for the jars of all instances
+    public synchronized ArtifactStore getStore() {
+        return store;
+    }
+
+    // CPU, memory, thread and file samples of the running instances
+    public ResourceSampler getResources() {
+        return resources;
+    }
+
+    // Binary console capture of the instances (null if eventLog is off or the log could not be opened)
+    public synchronized EventLog getEvents() {
+        return events;
+    }
+
+    // Stops all instances and the shared services
+    @Override
+    public void close() {
+        monitor.shutdownNow();
+        resources.close();
+        supervisor.close();
+        downloads.close();
+        synchronized (this) {
+            if (events != null) {
+                try {
+                    events.close();
+                } catch (IOException e) {
+                    logger.warning("Closing the event log failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Helper method to open the shared event log on first use
+    private synchronized EventLog events() {
+        if (events == null && Config.eventLog && !eventsFailed) {
+            try {
+                events = new EventLog(eventFolder, 16 * 1024 * 1024).keepSegments(Config.eventLogSegments);
+            } catch (IOException e) {
+                logger.warning("Console capture is off, the event log could not be opened: " + e.getMessage());
+                eventsFailed = true;  // Not tried again for every start
+            }
+        }
+        return events;
+    }
+
+    private void checkInstances() {
+        for (ProcessSupervisor.Server server : supervisor.getServers()) {
+            ProcessHandler handler = server.getHandler();
+            if (handler == null) {
+                continue;
+            }
+            ConsoleWatcher watcher = handler.getWatcher();
+            long events = watcher.getLagEvents();
+            Long reported = reportedLagEvents.put(server.getName(), events);
+            if (reported != null && events > reported) {
+                logger.warning(server.getName() + " is lagging: " + (events - reported) + " new lag events, last "
+                        + watcher.getLastLag().lagMillis + " ms behind.");
+            }
+            checkMemoryCreep(server.getName(), trackResources(server));
+        }
+    }
+
+    // Helper method to sample the current process of a server; a restart brings a new pid
+    private ResourceSampler.Samples trackResources(ProcessSupervisor.Server server) {
+        ProcessHandler handler = server.getHandler();
+        Process process = handler != null ? handler.getProcess() : null;
+        if (process == null || !process.isAlive()) {
+            resources.untrack(server.getName());
+            return null;
+        }
+        return resources.track(server.getName(), process);
+    }
+
+    // Warns once when the RSS of an instance kept growing over the last hour (at least 30 min of samples)
+    private void checkMemoryCreep(String name, ResourceSampler.Samples samples) {
+        if (samples == null || samples.size() < 180) {
+            return;
+        }
+        ResourceSampler.Window window = samples.window(3600);
+        boolean creeping = window.rssSlopeKbPerHour > 256 * 1024;
+        if (creeping && reportedMemoryCreep.add(name)) {
+            logger.warning(name + " memory keeps growing: " + (long) (window.rssSlopeKbPerHour / 1024)
+                    + " MB per hour, now " + samples.current().rssKb / 1024 + " MB RSS (max "
+                    + (long) (window.rssKb.max / 1024) + " MB).");
+        } else if (!creeping) {
+            reportedMemoryCreep.remove(name);
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+// Pull parser for JSON documents, reading straight from a Reader with one fixed char buffer
+// The caller walks the document with beginObject()/nextName()/nextString()/... and skips everything it doesn't need
+// with skipValue(), which neither builds strings nor a tree. Object names are deduplicated through a small cache,
+// because documents like the Mojang manifest repeat the same few keys thousands of times.
+public class JsonReader implements Closeable {
+
+    // Callback that pulls the fields it needs from a document, see FileOperation.fetchJson()
+    @FunctionalInterface
+    public interface Handler {
+        void read(JsonReader reader) throws IOException;
+    }
+
+    // Kind of the next element in the document
+    public enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    // Scopes on the nesting stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;  // Name read, value not yet
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NAME_CACHE_SIZE = 64;  // Power of two
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private long offset = 0;  // Chars consumed before the current buffer, for error messages
+
+    private int[] stack = new int[32];
+    private int depth = 0;
+    private Token peeked;  // Set by peek(), cleared when the token is consumed
+
+    private final StringBuilder scratch = new StringBuilder();
+    private final String[] nameCache = new String[NAME_CACHE_SIZE];
+
+    // Constructor
+    public JsonReader(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    // Returns the kind of the next element without consuming it
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c;
+        switch (stack[depth - 1]) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') return peeked = Token.END_ARRAY;
+                if (c == -1) throw syntaxError("Unexpected end of document");
+                pos--;
+                return peeked = readValueToken();
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') return peeked = Token.END_ARRAY;
+                if (c != ',') throw syntaxError("Expected ',' or ']'");
+                return peeked = readValueToken();
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') return peeked = Token.END_OBJECT;
+                if (stack[depth - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') throw syntaxError("Expected ',' or '}'");
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') throw syntaxError("Expected a name");
+                stack[depth - 1] = DANGLING_NAME;
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') throw syntaxError("Expected ':'");
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return peeked = readValueToken();
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return peeked = readValueToken();
+            default:
+                if (nextNonWhitespace() != -1) throw syntaxError("Expected end of document");
+                return peeked = Token.END_DOCUMENT;
+        }
+    }
+
+    // Returns true if the current array or object has another element
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    // Returns the next object name
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readName();
+    }
+
+    // Returns the next string value; numbers are returned as written in the document
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            peeked = null;
+            return readQuoted();
+        }
+        if (token == Token.NUMBER) {
+            peeked = null;
+            return readLiteral();
+        }
+        throw unexpected("a string", token);
+    }
+
+    // Returns the next number (or numeric string) as a long, without building a string for plain integers
+    public long nextLong() throws IOException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            peeked = null;
+            return Long.parseLong(readQuoted());
+        }
+        if (token != Token.NUMBER) {
+            throw unexpected("a number", token);
+        }
+        peeked = null;
+
+        boolean negative = false;
+        long value = 0;
+        int digits = 0;
+        int c = peekChar();
+        if (c == '-') {
+            negative = true;
+            pos++;
+        }
+        try {
+            while ((c = peekChar()) >= '0' && c <= '9') {
+                pos++;
+                value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+                digits++;
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Number too large for a long at offset " + position());
+        }
+        if (c == '.' || c == 'e' || c == 'E') {
+            // Fraction or exponent: let Double do the parsing, but only accept whole numbers
+            double number = Double.parseDouble((negative ? "-" : "") + value + readLiteral());
+            if (number != (long) number) {
+                throw new NumberFormatException("Expected a whole number but was " + number + " at offset " + position());
+            }
+            return (long) number;
+        }
+        if (digits == 0) {
+            throw syntaxError("Expected a digit");
+        }
+        return negative ? -value : value;
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw new NumberFormatException("Number too large for an int: " + value);
+        }
+        return (int) value;
+    }
+
+    public double nextDouble() throws IOException {
+        Token token = peek();
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw unexpected("a number", token);
+        }
+        peeked = null;
+        return Double.parseDouble(token == Token.STRING ? readQuoted() : readLiteral());
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        if (peekChar() == 't') {
+            expectLiteral("true");
+            return true;
+        }
+        expectLiteral("false");
+        return false;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        expectLiteral("null");
+    }
+
+    // Skips the next value including everything nested in it; on a name, skips the name and its value
+    public void skipValue() throws IOException {
+        if (peek() == Token.NAME) {
+            peeked = null;
+            skipQuoted();
+        }
+        int count = 0;
+        do {
+            Token token = peek();
+            peeked = null;
+            switch (token) {
+                case BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    count++;
+                    break;
+                case BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    count++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    if (count == 0) {
+                        peeked = token;
+                        throw unexpected("a value", token);
+                    }
+                    depth--;
+                    count--;
+                    break;
+                case NAME:
+                case STRING:
+                    skipQuoted();
+                    break;
+                case NUMBER:
+                    skipLiteral();
+                    break;
+                case BOOLEAN:
+                    expectLiteral(peekChar() == 't' ? "true" : "false");
+                    break;
+                case NULL:
+                    expectLiteral("null");
+                    break;
+                default:
+                    peeked = token;
+                    throw unexpected("a value", token);
+            }
+        } while (count > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = null;
+        depth = 0;
+        in.close();
+    }
+
+    // Helper method to consume a token of the given kind
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw unexpected(expected.name(), token);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] larger = new int[depth * 2];
+            System.arraycopy(stack, 0, larger, 0, depth);
+            stack = larger;
+        }
+        stack[depth++] = scope;
+    }
+
+    // Helper method to classify the value starting at the next non-whitespace char
+    // Brackets and the opening quote are consumed, numbers and literals are left for the next*() methods
+    private Token readValueToken() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                pos--;
+                return Token.BOOLEAN;
+            case 'n':
+                pos--;
+                return Token.NULL;
+            case -1:
+                throw syntaxError("Unexpected end of document");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--;
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    // Helper method to read a name; names without escapes that fit the buffer come from the name cache
+    private String readName() throws IOException {
+        int start = pos;
+        for (int i = pos; i < limit; i++) {
+            char c = buffer[i];
+            if (c == '"') {
+                pos = i + 1;
+                return cachedName(start, i - start);
+            }
+            if (c == '\\') {
+                break;
+            }
+        }
+        return readQuoted();
+    }
+
+    // Helper method to look up a name in the cache, comparing chars so a hit allocates nothing
+    private String cachedName(int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String cached = nameCache[slot];
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            while (i < length && cached.charAt(i) == buffer[start + i]) {
+                i++;
+            }
+            if (i == length) {
+                return cached;
+            }
+        }
+        String name = new String(buffer, start, length);
+        nameCache[slot] = name;
+        return name;
+    }
+
+    // Helper method to read a string after its opening quote
+    private String readQuoted() throws IOException {
+        boolean built = false;
+        scratch.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    if (!built) {
+                        return new String(buffer, start, pos - start - 1);  // Fast path, no copy through scratch
+                    }
+                    scratch.append(buffer, start, pos - start - 1);
+                    return scratch.toString();
+                }
+                if (c == '\\') {
+                    scratch.append(buffer, start, pos - start - 1);
+                    scratch.append(readEscape());
+                    built = true;
+                    start = pos;  // readEscape() may have refilled the buffer
+                }
+            }
+            scratch.append(buffer, start, pos - start);
+            built = true;
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    // Helper method to skip a string after its opening quote
+    private void skipQuoted() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    readEscape();
+                }
+            }
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    // Helper method to decode one escape sequence after the backslash
+    private char readEscape() throws IOException {
+        int c = nextChar();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(nextChar(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    // Helper method to read a number or literal up to the next delimiter
+    private String readLiteral() throws IOException {
+        scratch.setLength(0);
+        int c;
+        while ((c = peekChar()) != -1 && !isDelimiter(c)) {
+            scratch.append((char) c);
+            pos++;
+        }
+        return scratch.toString();
+    }
+
+    private void skipLiteral() throws IOException {
+        int c;
+        while ((c = peekChar()) != -1 && !isDelimiter(c)) {
+            pos++;
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (nextChar() != literal.charAt(i)) {
+                throw syntaxError("Expected '" + literal + "'");
+            }
+        }
+        int c = peekChar();
+        if (c != -1 && !isDelimiter(c)) {
+            throw syntaxError("Expected '" + literal + "'");
+        }
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[pos++];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+    }
+
+    private int nextChar() throws IOException {
+        if (pos == limit && !fill()) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return buffer[pos++];
+    }
+
+    private int peekChar() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    // Helper method to refill the buffer once it is used up; returns false at the end of the input
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int read;
+        while ((read = in.read(buffer, 0, buffer.length)) == 0) {
+            // Readers may return 0 chars, try again
+        }
+        if (read == -1) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private long position() {
+        return offset + pos;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Malformed JSON: " + message + " at offset " + position());
+    }
+
+    private IOException unexpected(String expected, Token actual) {
+        return new IOException("Expected " + expected + " but was " + actual + " at offset " + position());
+    }
+}
@@ -0,0 +1,89 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Ordered set of JVM arguments where a later argument for the same option replaces the earlier one in place
+// "-Xmx4G" and "-Xmx8G" are the same option, as are "-XX:+AlwaysPreTouch" and "-XX:-AlwaysPreTouch" or
+// "-Dfoo=1" and "-Dfoo=2". All collector switches (-XX:+UseG1GC, -XX:+UseZGC, ...) count as one option, because
+// the JVM refuses to start with two of them. Arguments keep the position of their first occurrence, so unlock
+// flags stay in front of the experimental options that need them.
+public class JvmArguments {
+
+    private final Map<String, String> arguments = new LinkedHashMap<>();
+
+    // Adds or replaces one argument
+    public JvmArguments add(String argument) {
+        if (argument != null && !argument.trim().isEmpty()) {
+            arguments.put(keyOf(argument.trim()), argument.trim());
+        }
+        return this;
+    }
+
+    // Adds or replaces several arguments, in order
+    public JvmArguments addAll(Collection<String> arguments) {
+        for (String argument : arguments) {
+            add(argument);
+        }
+        return this;
+    }
+
+    // Removes an option, whatever its value
+    public JvmArguments remove(String argument) {
+        arguments.remove(keyOf(argument));
+        return this;
+    }
+
+    public boolean contains(String argument) {
+        return arguments.containsKey(keyOf(argument));
+    }
+
+    // Returns the argument currently set for the same option, or null
+    public String get(String argument) {
+        return arguments.get(keyOf(argument));
+    }
+
+    public List<String> toList() {
+        return new ArrayList<>(arguments.values());
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", arguments.values());
+    }
+
+    // Helper method to find the option an argument sets
+    static String keyOf(String argument) {
+        if (argument.startsWith("-XX:")) {
+            String option = argument.substring(4);
+            if (option.startsWith("+") || option.startsWith("-")) {
+                option = option.substring(1);
+            }
+            int equals = option.indexOf('=');
+            if (equals >= 0) {
+                option = option.substring(0, equals);
+            }
+            if (option.startsWith("Use") && option.endsWith("GC") && !option.equals("UseAdaptiveSizePolicyWithSystemGC")) {
+                return "-XX:<collector>";
+            }
+            return "-XX:" + option;
+        }
+        for (String prefix : new String[] {"-Xmx", "-Xms", "-Xss", "-Xmn"}) {
+            if (argument.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        if (argument.startsWith("-D")) {
+            int equals = argument.indexOf('=');
+            return equals >= 0 ? argument.substring(0, equals) : argument;
+        }
+        if (argument.startsWith("-agentlib:") || argument.startsWith("-javaagent:")) {
+            int equals = argument.indexOf('=');
+            return equals >= 0 ? argument.substring(0, equals) : argument;
+        }
+        return argument;
+    }
+}
@@ -0,0 +1,237 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.logging.Logger;
+
+// Builds the JVM arguments for a server from the host's RAM and cores and the memory budget of the server
+// Heap: -Xms = -Xmx (no resizing pauses), leaving room for metaspace, threads and direct buffers inside the budget.
+// Collector: G1 with the well-known Aikar flags (short pauses, large young generation, early mixed collections),
+// or generational ZGC for big heaps on Java 21+ with enough cores. AlwaysPreTouch and large pages are only used when
+// the host has the memory to back them.
+public class JvmTuningProfile {
+
+    private static final Logger logger = LoggerUtility.getLogger(JvmTuningProfile.class);
+
+    private static final long MB = 1024L * 1024;
+    private static final long GB = 1024 * MB;
+
+    // Garbage collector choice
+    public enum Collector { AUTO, G1, ZGC }
+
+    private long hostMemory;
+    private int hostCores;
+    private long memoryBudget = -1;  // Total memory the server process may use, -1 = derive from the host
+    private Collector collector = Collector.AUTO;
+    private int javaVersion;
+    private Boolean largePages;  // null = detect
+    private boolean preTouch = true;
+
+    // Creates a profile for this machine
+    public static JvmTuningProfile forHost() {
+        JvmTuningProfile profile = new JvmTuningProfile();
+        profile.hostMemory = detectHostMemory();
+        profile.hostCores = Runtime.getRuntime().availableProcessors();
+        profile.javaVersion = currentJavaVersion();
+        return profile;
+    }
+
+    // Method to override the host values (e.g. when the server runs in a container with other limits)
+    public JvmTuningProfile host(long memoryBytes, int cores) {
+        this.hostMemory = memoryBytes;
+        this.hostCores = cores;
+        return this;
+    }
+
+    // Method to set the memory budget of the server in MB
+    public JvmTuningProfile memoryBudgetMb(long megabytes) {
+        this.memoryBudget = megabytes * MB;
+        return this;
+    }
+
+    // Method to choose the collector instead of letting the profile decide
+    public JvmTuningProfile collector(Collector collector) {
+        this.collector = collector;
+        return this;
+    }
+
+    // Method to set the Java version that runs the server (defaults to the version running this tool)
+    public JvmTuningProfile javaVersion(int javaVersion) {
+        this.javaVersion = javaVersion;
+        return this;
+    }
+
+    // Method to force large pages on or off instead of detecting them
+    public JvmTuningProfile largePages(boolean enabled) {
+        this.largePages = enabled;
+        return this;
+    }
+
+    // Method to switch off AlwaysPreTouch (faster start, slower first minutes)
+    public JvmTuningProfile preTouch(boolean enabled) {
+        this.preTouch = enabled;
+        return this;
+    }
+
+    // Heap size in MB the profile will use
+    public long getHeapMb() {
+        long budget = effectiveBudget();
+        // Off-heap needs grow slower than the heap: 15 %, at least 256 MB and at most 1.5 GB
+        long overhead = Math.min(Math.max(budget * 15 / 100, 256 * MB), 1536 * MB);
+        return Math.max(512 * MB, budget - overhead) / MB;
+    }
+
+    // Collector the profile will use
+    public Collector getCollector() {
+        if (collector != Collector.AUTO) {
+            return collector;
+        }
+        // Generational ZGC (Java 21+) keeps pauses below a millisecond on big heaps, but needs spare cores
+        return javaVersion >= 21 && getHeapMb() >= 16 * 1024 && hostCores >= 8 ? Collector.ZGC : Collector.G1;
+    }
+
+    // Builds the arguments, in the order they have to appear on the command line
+    public JvmArguments build() {
+        long heapMb = getHeapMb();
+        Collector chosen = getCollector();
+        JvmArguments arguments = new JvmArguments()
+                .add("-Xms" + heapMb + "M")
+                .add("-Xmx" + heapMb + "M");
+
+        if (chosen == Collector.ZGC) {
+            arguments.add("-XX:+UseZGC");
+            if (javaVersion >= 21 && javaVersion < 23) {
+                arguments.add("-XX:+ZGenerational");  // Default from Java 23 on
+            }
+        } else {
+            addG1Flags(arguments, heapMb);
+        }
+
+        arguments.add("-XX:+DisableExplicitGC")  // Plugins calling System.gc() would stall the server
+                .add("-XX:+PerfDisableSharedMem");  // No hsperfdata writes on the tick thread
+
+        if (preTouch && heapMb * MB <= hostMemory * 3 / 4) {
+            arguments.add("-XX:+AlwaysPreTouch");
+        }
+        String pages = largePagesFlag(heapMb * MB);
+        if (pages != null) {
+            arguments.add(pages);
+        }
+
+        logger.fine(() -> "JVM profile: " + heapMb + " MB heap, " + chosen + ", host " + hostMemory / MB + " MB / "
+                + hostCores + " cores: " + arguments);
+        return arguments;
+    }
+
+    // Helper method to add the G1 settings; bigger heaps get a larger young generation and regions
+    private void addG1Flags(JvmArguments arguments, long heapMb) {
+        boolean large = heapMb > 12 * 1024;
+        arguments.add("-XX:+UseG1GC")
+                .add("-XX:+ParallelRefProcEnabled")
+                .add("-XX:MaxGCPauseMillis=200")
+                .add("-XX:+UnlockExperimentalVMOptions")  // Needed for the G1 new size percentages
+                .add("-XX:G1NewSizePercent=" + (large ? 40 : 30))
+                .add("-XX:G1MaxNewSizePercent=" + (large ? 50 : 40))
+                .add("-XX:G1HeapRegionSize=" + regionSizeMb(heapMb) + "M")
+                .add("-XX:G1ReservePercent=" + (large ? 15 : 20))
+                .add("-XX:G1HeapWastePercent=5")
+                .add("-XX:G1MixedGCCountTarget=4")
+                .add("-XX:InitiatingHeapOccupancyPercent=" + (large ? 20 : 15))
+                .add("-XX:G1MixedGCLiveThresholdPercent=90")
+                .add("-XX:G1RSetUpdatingPauseTimePercent=5")
+                .add("-XX:SurvivorRatio=32")
+                .add("-XX:MaxTenuringThreshold=1");
+    }
+
+    // Region size: 4 MB for small heaps, 8 MB from 4 GB, 16 MB above 12 GB (fewer humongous allocations for chunk buffers)
+    static long regionSizeMb(long heapMb) {
+        return heapMb > 12 * 1024 ? 16 : heapMb >= 4 * 1024 ? 8 : 4;
+    }
+
+    private long effectiveBudget() {
+        long reserve = Math.min(2 * GB, Math.max(hostMemory / 8, 512 * MB));  // For the OS and this tool
+        long available = Math.max(hostMemory - reserve, GB);
+        if (memoryBudget > 0) {
+            if (memoryBudget > available) {
+                logger.warning("Memory budget of " + memoryBudget / MB + " MB exceeds what the host can give ("
+                        + available / MB + " MB), using " + available / MB + " MB.");
+                return available;
+            }
+            return memoryBudget;
+        }
+        return Math.min(available / 2, 8 * GB);
+    }
+
+    // Helper method to decide on large pages: explicit huge pages if enough are reserved, otherwise transparent ones
+    private String largePagesFlag(long heapBytes) {
+        if (largePages != null) {
+            return largePages ? "-XX:+UseLargePages" : null;
+        }
+        if (!System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+            return null;  // Windows needs a policy setting, macOS has none
+        }
+        long hugePages = readMeminfo("HugePages_Free:");
+        long hugePageSize = readMeminfo("Hugepagesize:") * 1024;
+        if (hugePages > 0 && hugePages * hugePageSize >= heapBytes) {
+            return "-XX:+UseLargePages";
+        }
+        String mode = readFirstLine(Paths.get("/sys/kernel/mm/transparent_hugepage/enabled"));
+        if (mode != null && (mode.contains("[madvise]") || mode.contains("[always]"))) {
+            return "-XX:+UseTransparentHugePages";
+        }
+        return null;
+    }
+
+    private static long readMeminfo(String key) {
+        try {
+            List<String> lines = Files.readAllLines(Paths.get("/proc/meminfo"), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.startsWith(key)) {
+                    return Long.parseLong(line.substring(key.length()).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // Not available
+        }
+        return 0;
+    }
+
+    private static String readFirstLine(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            return lines.isEmpty() ? null : lines.get(0);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Helper method to read the physical memory (com.sun.management is not available on every JVM)
+    private static long detectHostMemory() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        for (String name : new String[] {"getTotalMemorySize", "getTotalPhysicalMemorySize"}) {
+            try {
+                Method method = Class.forName("com.sun.management.OperatingSystemMXBean").getMethod(name);
+                long value = (Long) method.invoke(os);
+                if (value > 0) {
+                    return value;
+                }
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // Try the next one
+            }
+        }
+        long meminfo = readMeminfo("MemTotal:") * 1024;
+        return meminfo > 0 ? meminfo : 4 * GB;
+    }
+
+    static int currentJavaVersion() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+    }
+}
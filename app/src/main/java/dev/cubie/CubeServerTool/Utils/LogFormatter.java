@@ -0,0 +1,186 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+// Formats log records for the console and the CSV file without String.format and regular expressions
+// Per record the only allocation left is the resulting String: the colored level prefixes are built once per level,
+// the timestamp text once per second (the format has no milliseconds) and the text is assembled in a StringBuilder
+// that every thread reuses. Color codes are removed by a hand-written scanner instead of replaceAll().
+public final class LogFormatter {
+
+    private static final int MAX_KEPT_CAPACITY = 16 * 1024;  // Builders that grew larger are not kept
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final Map<Level, String> LEVEL_PREFIXES = new ConcurrentHashMap<>();
+    private static final Map<Level, String> INSTALL_PREFIXES = new ConcurrentHashMap<>();
+    private static volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, "");
+
+    private LogFormatter() {
+    }
+
+    // "[2024-05-01 12:00:00] INFO: message" with colors
+    public static String formatConsole(LogRecord record) {
+        StringBuilder builder = builder();
+        builder.append(ConsoleColors.RESET).append('[');
+        appendTimestamp(builder, record.getMillis());
+        builder.append("] ")
+                .append(levelPrefix(record))
+                .append(record.getMessage())
+                .append(ConsoleColors.RESET);
+        return builder.toString();
+    }
+
+    // Second console line with the calling class and method (detailedLog)
+    public static String formatDetail(LogRecord record) {
+        StringBuilder builder = builder();
+        builder.append(ConsoleColors.RESET).append('[');
+        appendTimestamp(builder, record.getMillis());
+        builder.append("] ").append(ConsoleColors.CYAN).append("DETAIL").append(ConsoleColors.RESET)
+                .append(": ╙► ").append(ConsoleColors.CYAN).append(record.getSourceClassName())
+                .append(ConsoleColors.RESET).append(' ').append(record.getSourceMethodName());
+        return builder.toString();
+    }
+
+    // "2024-05-01 12:00:00,INFO,message,class,method" plus line separator; colors and commas are removed from the message
+    // The builder belongs to the calling thread and is reused by its next call.
+    public static StringBuilder formatCsv(LogRecord record) {
+        StringBuilder builder = builder();
+        appendTimestamp(builder, record.getMillis());
+        builder.append(',').append(record.getLevel().getName()).append(',');
+        appendStripped(builder, record.getMessage(), true);
+        builder.append(',').append(record.getSourceClassName())
+                .append(',').append(record.getSourceMethodName())
+                .append(LINE_SEPARATOR);
+        return builder;
+    }
+
+    // Removes color codes (ESC [ digits/semicolons m); returns the same String if there are none
+    public static String stripAnsi(String text) {
+        if (text == null || text.indexOf('\u001B') < 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        appendStripped(builder, text, false);
+        return builder.toString();
+    }
+
+    // Appends text without color codes, and optionally without commas
+    public static void appendStripped(StringBuilder builder, String text, boolean removeCommas) {
+        if (text == null) {
+            builder.append((String) null);
+            return;
+        }
+        int length = text.length();
+        int start = 0;  // Start of the run of plain characters not yet appended
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '\u001B' && i + 1 < length && text.charAt(i + 1) == '[') {
+                int end = i + 2;
+                while (end < length && (Character.isDigit(text.charAt(end)) || text.charAt(end) == ';')) {
+                    end++;
+                }
+                if (end < length && text.charAt(end) == 'm') {
+                    builder.append(text, start, i);
+                    i = end + 1;
+                    start = i;
+                    continue;
+                }
+            } else if (c == ',' && removeCommas) {
+                builder.append(text, start, i);
+                start = i + 1;
+            }
+            i++;
+        }
+        builder.append(text, start, length);
+    }
+
+    // Appends "yyyy-MM-dd HH:mm:ss" in the default time zone; the text is only rebuilt when the second changes
+    public static void appendTimestamp(StringBuilder builder, long millis) {
+        long second = Math.floorDiv(millis, 1000);
+        Timestamp current = timestamp;
+        if (current.second != second) {
+            current = new Timestamp(second, format(millis));
+            timestamp = current;
+        }
+        builder.append(current.text);
+    }
+
+    // Helper method to get the thread's builder, emptied
+    private static StringBuilder builder() {
+        StringBuilder builder = BUILDER.get();
+        if (builder.capacity() > MAX_KEPT_CAPACITY) {
+            builder = new StringBuilder(256);
+            BUILDER.set(builder);
+        }
+        builder.setLength(0);
+        return builder;
+    }
+
+    // Helper method for the colored "LEVEL: " part; INSTALL records (see LoggerUtility.install) have their own name
+    private static String levelPrefix(LogRecord record) {
+        Level level = record.getLevel();
+        boolean install = "INSTALL".equals(record.getLoggerName());
+        Map<Level, String> cache = install ? INSTALL_PREFIXES : LEVEL_PREFIXES;
+        String prefix = cache.get(level);
+        if (prefix == null) {
+            prefix = buildPrefix(level, install);
+            cache.put(level, prefix);
+        }
+        return prefix;
+    }
+
+    private static String buildPrefix(Level level, boolean install) {
+        String logLevelName = install ? "INSTALL" : level.getLocalizedName();
+        String color = install ? ConsoleColors.PURPLE : ConsoleColors.RESET;
+
+        if (level == Level.FINE || level == Level.CONFIG) {
+            logLevelName = ConsoleColors.CYAN + logLevelName + ConsoleColors.RESET;
+        } else if (level == Level.SEVERE) {
+            logLevelName = ConsoleColors.RED + logLevelName + ConsoleColors.RESET;
+        } else if (level == Level.WARNING) {
+            logLevelName = ConsoleColors.YELLOW + logLevelName + ConsoleColors.RESET;
+        } else if (level == Level.INFO) {
+            logLevelName = ConsoleColors.GREEN + logLevelName + ConsoleColors.RESET;
+        }
+        return color + logLevelName + ": ";
+    }
+
+    private static String format(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        StringBuilder text = new StringBuilder(19);
+        pad(text, time.getYear(), 4).append('-');
+        pad(text, time.getMonthValue(), 2).append('-');
+        pad(text, time.getDayOfMonth(), 2).append(' ');
+        pad(text, time.getHour(), 2).append(':');
+        pad(text, time.getMinute(), 2).append(':');
+        pad(text, time.getSecond(), 2);
+        return text.toString();
+    }
+
+    private static StringBuilder pad(StringBuilder builder, int value, int digits) {
+        String number = Integer.toString(value);
+        for (int i = number.length(); i < digits; i++) {
+            builder.append('0');
+        }
+        return builder.append(number);
+    }
+
+    // Text of one second
+    private static final class Timestamp {
+        final long second;
+        final String text;
+
+        Timestamp(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
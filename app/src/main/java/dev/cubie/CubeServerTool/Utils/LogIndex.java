@@ -0,0 +1,154 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+// Sparse index of a CSV log segment, written next to it as "<segment name>.idx"
+// The log is cut into blocks of up to BLOCK_RECORDS records or BLOCK_BYTES bytes. Per block the index stores its byte
+// range in the uncompressed CSV, the time range of its records and a bit mask of the levels that occur in it, 40 bytes
+// per block. A query reads the few KB of index and only touches blocks that can contain a match (see LogQueryEngine).
+public class LogIndex {
+
+    static final int BLOCK_RECORDS = 256;
+    static final int BLOCK_BYTES = 64 * 1024;
+
+    // Bits of the level mask, "other" is any custom level
+    private static final Level[] LEVELS = {Level.SEVERE, Level.WARNING, Level.INFO, Level.CONFIG, Level.FINE, Level.FINER, Level.FINEST};
+    private static final int OTHER = 1 << LEVELS.length;
+
+    private final DataOutputStream out;
+    private long blockStart = -1;
+    private long blockEnd;
+    private long minMillis;
+    private long maxMillis;
+    private int levelMask;
+    private int records;
+
+    // Opens the index of a segment for appending
+    public LogIndex(Path indexFile) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile.toFile(), true), 8 * 1024));
+    }
+
+    // Index file that belongs to a segment: "latest-log.csv" and "latest-log.csv.gz" both use "latest-log.idx"
+    public static Path indexFor(Path segment) {
+        String name = segment.getFileName().toString();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        if (name.endsWith(".csv")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        return segment.resolveSibling(name + ".idx");
+    }
+
+    // Adds a record that was written at [offset, offset + length) of the CSV
+    public void add(long offset, int length, long millis, Level level) throws IOException {
+        if (blockStart >= 0 && offset != blockEnd) {
+            finishBlock();  // Something was written in between (e.g. the header), start over
+        }
+        if (blockStart < 0) {
+            blockStart = offset;
+            minMillis = millis;
+            maxMillis = millis;
+        }
+        blockEnd = offset + length;
+        minMillis = Math.min(minMillis, millis);
+        maxMillis = Math.max(maxMillis, millis);
+        levelMask |= bitOf(level.intValue());
+        records++;
+        if (records >= BLOCK_RECORDS || blockEnd - blockStart >= BLOCK_BYTES) {
+            finishBlock();
+        }
+    }
+
+    // Writes the open block, if any
+    public void finishBlock() throws IOException {
+        if (blockStart < 0) {
+            return;
+        }
+        out.writeLong(blockStart);
+        out.writeLong(blockEnd);
+        out.writeLong(minMillis);
+        out.writeLong(maxMillis);
+        out.writeInt(levelMask);
+        out.writeInt(records);
+        blockStart = -1;
+        levelMask = 0;
+        records = 0;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    // Writes the open block and closes the file
+    public void close() throws IOException {
+        finishBlock();
+        out.close();
+    }
+
+    // Reads the blocks of an index; a missing index gives an empty list, a cut-off last entry is ignored
+    public static List<Block> read(Path indexFile) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        if (!Files.exists(indexFile)) {
+            return blocks;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            while (true) {
+                blocks.add(new Block(in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readInt(), in.readInt()));
+            }
+        } catch (EOFException e) {
+            return blocks;
+        }
+    }
+
+    // Bit of a level in the mask
+    static int bitOf(int levelValue) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].intValue() == levelValue) {
+                return 1 << i;
+            }
+        }
+        return OTHER;
+    }
+
+    // Mask of all levels at or above the given one; custom levels are always included
+    static int maskAtLeast(Level level) {
+        int mask = OTHER;
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].intValue() >= level.intValue()) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    // One indexed block of a segment
+    public static class Block {
+        public final long start;  // Byte offsets in the uncompressed CSV
+        public final long end;
+        public final long minMillis;
+        public final long maxMillis;
+        public final int levelMask;
+        public final int records;
+
+        Block(long start, long end, long minMillis, long maxMillis, int levelMask, int records) {
+            this.start = start;
+            this.end = end;
+            this.minMillis = minMillis;
+            this.maxMillis = maxMillis;
+            this.levelMask = levelMask;
+            this.records = records;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+
+// Answers queries like "level >= WARNING between T1 and T2 containing X" over the CSV logs, one page at a time
+// Segments are read oldest first: the rotated ones, then the current file. The LogIndex of a segment tells which
+// blocks can contain a match (time range and levels); only those are read. Uncompressed segments are memory-mapped
+// block range by block range, gzipped ones are streamed and the bytes before the first relevant block are skipped.
+// Ranges the index does not cover (the part written since the last index entry, or a log from before indexing) are
+// always read. A page ends with a cursor; passing it back continues right after the last row.
+// logviewer.html does not use it: the page parses a local file in the browser, and the tool has no HTTP server to
+// answer page requests from it.
+public class LogQueryEngine {
+
+    private static final int WINDOW = 64 * 1024 * 1024;  // Largest mapping at once
+    private static final int STREAM_CHUNK = 1024 * 1024;
+
+    private final Path logFile;
+
+    // Constructor; logFile is the current log (e.g. Config.logFilePath), rotated segments are found next to it
+    public LogQueryEngine(Path logFile) {
+        this.logFile = logFile;
+    }
+
+    // Returns the first page of matching rows
+    public Page find(Query query) throws IOException {
+        return find(query, null);
+    }
+
+    // Returns the page that starts at the cursor of the previous page
+    public Page find(Query query, String cursor) throws IOException {
+        List<Path> segments = new ArrayList<>(CSVFileHandler.segmentsOf(logFile));
+        if (Files.exists(logFile)) {
+            segments.add(logFile);
+        }
+
+        int first = 0;
+        long startOffset = 0;
+        if (cursor != null) {
+            int at = cursor.lastIndexOf('@');
+            try {
+                startOffset = at > 0 ? Long.parseLong(cursor.substring(at + 1)) : -1;
+            } catch (NumberFormatException e) {
+                startOffset = -1;
+            }
+            if (startOffset < 0) {
+                throw new IOException("Invalid log cursor: " + cursor);
+            }
+            String stem = cursor.substring(0, at);
+            first = -1;
+            for (int i = 0; i < segments.size(); i++) {
+                if (stemOf(segments.get(i)).equals(stem)) {
+                    first = i;
+                    break;
+                }
+            }
+            if (first < 0) {
+                throw new IOException("The log segment " + stem + " of this cursor no longer exists.");
+            }
+        }
+
+        Scan scan = new Scan(query);
+        for (int i = first; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            long stoppedAt = scanSegment(segment, i == first ? startOffset : 0, scan);
+            if (scan.rows.size() >= query.pageSize) {
+                return new Page(scan.rows, stemOf(segment) + "@" + stoppedAt, scan.scannedBytes, scan.skippedBytes);
+            }
+        }
+        return new Page(scan.rows, null, scan.scannedBytes, scan.skippedBytes);
+    }
+
+    // Helper method to read the relevant ranges of one segment; returns the offset of the first line not read
+    private long scanSegment(Path segment, long from, Scan scan) throws IOException {
+        boolean compressed = segment.getFileName().toString().endsWith(".gz");
+        long size = compressed ? Long.MAX_VALUE : Files.size(segment);
+        List<long[]> ranges = relevantRanges(LogIndex.read(LogIndex.indexFor(segment)), from, size, scan);
+
+        if (compressed) {
+            return scanStream(segment, ranges, scan);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            for (long[] range : ranges) {
+                long position = range[0];
+                long end = Math.min(range[1], size);
+                while (position < end) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, end - position));
+                    long next;
+                    try {
+                        next = scanLines(buffer, position, scan);
+                    } finally {
+                        // Rows are copies; a window left mapped until the GC runs would keep Windows from renaming
+                        // latest-log.csv on rotation
+                        MappedBuffers.unmap(buffer);
+                    }
+                    scan.scannedBytes += next - position;
+                    if (scan.full() || next == position) {
+                        return next;  // Page full, or a line without end (still being written)
+                    }
+                    position = next;
+                }
+            }
+        }
+        return size;
+    }
+
+    // Helper method for gzipped segments: decompresses up to the last relevant range, parsing only the relevant ones
+    private long scanStream(Path segment, List<long[]> ranges, Scan scan) throws IOException {
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(segment), 64 * 1024), 64 * 1024)) {
+            ByteBuffer buffer = ByteBuffer.allocate(STREAM_CHUNK);
+            long position = 0;
+            for (long[] range : ranges) {
+                position += skip(in, range[0] - position);
+                if (position < range[0]) {
+                    return position;  // Shorter than the index says
+                }
+                buffer.clear();
+                long bufferStart = position;
+                boolean eof = false;
+                while (!eof && bufferStart < range[1]) {
+                    int want = (int) Math.min(buffer.remaining(), range[1] - position);
+                    int read = want > 0 ? in.read(buffer.array(), buffer.position(), want) : 0;
+                    if (read < 0 || want == 0) {
+                        eof = true;  // End of the segment, or of a range that does not end with a line break
+                    } else {
+                        buffer.position(buffer.position() + read);
+                        position += read;
+                    }
+                    buffer.flip();
+                    long next = scanLines(buffer, bufferStart, scan);
+                    scan.scannedBytes += next - bufferStart;
+                    if (scan.full()) {
+                        return next;
+                    }
+                    // Keep the unfinished line for the next read
+                    buffer.position((int) (next - bufferStart));
+                    buffer.compact();
+                    bufferStart = next;
+                    if (buffer.position() == buffer.capacity()) {
+                        buffer = grow(buffer);
+                    }
+                }
+            }
+            return position;
+        }
+    }
+
+    // Helper method to turn the index into byte ranges to read: relevant blocks plus everything the index does not cover
+    private static List<long[]> relevantRanges(List<LogIndex.Block> blocks, long from, long size, Scan scan) {
+        List<long[]> ranges = new ArrayList<>();
+        long covered = 0;
+        for (LogIndex.Block block : blocks) {
+            if (block.start > covered) {
+                add(ranges, covered, block.start, from);  // Not indexed
+            }
+            if (scan.query.mayMatch(block)) {
+                add(ranges, block.start, block.end, from);
+            } else {
+                scan.skippedBytes += block.end - block.start;
+            }
+            covered = Math.max(covered, block.end);
+        }
+        if (covered < size) {
+            add(ranges, covered, size, from);  // Written after the last index entry
+        }
+        return ranges;
+    }
+
+    // Helper method to add a range, merged with the previous one and cut at the cursor position
+    private static void add(List<long[]> ranges, long start, long end, long from) {
+        start = Math.max(start, from);
+        if (end <= start) {
+            return;
+        }
+        long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+        if (last != null && last[1] == start) {
+            last[1] = end;
+        } else {
+            ranges.add(new long[] {start, end});
+        }
+    }
+
+    // Helper method to parse the complete lines in the buffer; returns the absolute offset of the first line not read
+    private static long scanLines(ByteBuffer buffer, long baseOffset, Scan scan) {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        int lineStart = start;
+        for (int i = start; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                scan.line(buffer, lineStart, i);
+                lineStart = i + 1;
+                if (scan.full()) {
+                    break;
+                }
+            }
+        }
+        return baseOffset + (lineStart - start);
+    }
+
+    private static long skip(InputStream in, long bytes) throws IOException {
+        long skipped = 0;
+        while (skipped < bytes) {
+            long step = in.skip(bytes - skipped);
+            if (step <= 0) {
+                if (in.read() < 0) {
+                    break;
+                }
+                step = 1;
+            }
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    // Segment name without ".gz", so a cursor stays valid when its segment gets compressed
+    private static String stemOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    // Filter and page size of a query
+    public static class Query {
+        private int minLevel = Level.ALL.intValue();
+        private int levelMask = LogIndex.maskAtLeast(Level.ALL);
+        private long from = Long.MIN_VALUE;
+        private long to = Long.MAX_VALUE;
+        private String text;
+        private int pageSize = 100;
+
+        // Method to only return records at or above a level
+        public Query minLevel(Level level) {
+            this.minLevel = level.intValue();
+            this.levelMask = LogIndex.maskAtLeast(level);
+            return this;
+        }
+
+        // Method to only return records between two times (epoch milliseconds, inclusive)
+        public Query between(long fromMillis, long toMillis) {
+            this.from = fromMillis;
+            this.to = toMillis;
+            return this;
+        }
+
+        // Method to only return records whose message contains the text (ignoring case)
+        public Query matching(String text) {
+            this.text = text == null || text.isEmpty() ? null : text.toLowerCase(Locale.ROOT);
+            return this;
+        }
+
+        public Query pageSize(int rows) {
+            this.pageSize = Math.max(1, rows);
+            return this;
+        }
+
+        boolean mayMatch(LogIndex.Block block) {
+            return block.maxMillis >= from && block.minMillis <= to && (block.levelMask & levelMask) != 0;
+        }
+    }
+
+    // One page of results
+    public static class Page {
+        private final List<Row> rows;
+        private final String nextCursor;
+        private final long scannedBytes;
+        private final long skippedBytes;
+
+        Page(List<Row> rows, String nextCursor, long scannedBytes, long skippedBytes) {
+            this.rows = rows;
+            this.nextCursor = nextCursor;
+            this.scannedBytes = scannedBytes;
+            this.skippedBytes = skippedBytes;
+        }
+
+        public List<Row> getRows() {
+            return rows;
+        }
+
+        // Cursor for the next page, null if this is the last one
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        // Bytes of log that were parsed for this page
+        public long getScannedBytes() {
+            return scannedBytes;
+        }
+
+        // Bytes of log the index allowed to skip
+        public long getSkippedBytes() {
+            return skippedBytes;
+        }
+    }
+
+    // One log record
+    public static class Row {
+        public final long millis;  // Second precision, as written to the CSV
+        public final String level;
+        public final String message;
+        public final String className;
+        public final String methodName;
+
+        Row(long millis, String level, String message, String className, String methodName) {
+            this.millis = millis;
+            this.level = level;
+            this.message = message;
+            this.className = className;
+            this.methodName = methodName;
+        }
+
+        @Override
+        public String toString() {
+            return level + " " + message;
+        }
+    }
+
+    // State of one find() call
+    private static class Scan {
+        final Query query;
+        final List<Row> rows = new ArrayList<>();
+        long scannedBytes;
+        long skippedBytes;
+        private byte[] line = new byte[512];
+        private long cachedSecond = -1;  // yyyyMMddHHmmss of the last parsed timestamp
+        private long cachedMillis;
+
+        Scan(Query query) {
+            this.query = query;
+        }
+
+        boolean full() {
+            return rows.size() >= query.pageSize;
+        }
+
+        // "yyyy-MM-dd HH:mm:ss,LEVEL,message,class,method"; the message has no commas, class and method neither
+        void line(ByteBuffer buffer, int start, int end) {
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            int length = end - start;
+            if (length < 21 || buffer.get(start) < '0' || buffer.get(start) > '9') {
+                return;  // Header or broken line
+            }
+            if (line.length < length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                line[i] = buffer.get(start + i);
+            }
+
+            int levelEnd = indexOf(line, 20, length, (byte) ',');
+            if (levelEnd < 0) {
+                return;
+            }
+            int level = levelValue(line, 20, levelEnd);
+            if (level != Integer.MIN_VALUE && level < query.minLevel) {
+                return;
+            }
+            long millis = parseTime(line);
+            if (millis < 0 || millis > query.to || millis + 999 < query.from) {
+                return;
+            }
+            int methodStart = lastIndexOf(line, levelEnd + 1, length, (byte) ',');
+            int classStart = methodStart > levelEnd + 1 ? lastIndexOf(line, levelEnd + 1, methodStart - 1, (byte) ',') : -1;
+            if (classStart < 0) {
+                return;
+            }
+            String message = new String(line, levelEnd + 1, classStart - levelEnd - 1, StandardCharsets.UTF_8);
+            if (query.text != null && !message.toLowerCase(Locale.ROOT).contains(query.text)) {
+                return;
+            }
+            rows.add(new Row(millis,
+                    new String(line, 20, levelEnd - 20, StandardCharsets.US_ASCII),
+                    message,
+                    new String(line, classStart + 1, methodStart - classStart - 1, StandardCharsets.UTF_8),
+                    new String(line, methodStart + 1, length - methodStart - 1, StandardCharsets.UTF_8)));
+        }
+
+        // Helper method to parse "yyyy-MM-dd HH:mm:ss" in the default time zone; -1 if it is not a timestamp
+        private long parseTime(byte[] bytes) {
+            long key = 0;
+            for (int i = 0; i < 19; i++) {
+                if (i == 4 || i == 7 || i == 10 || i == 13 || i == 16) {
+                    continue;
+                }
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                key = key * 10 + digit;
+            }
+            if (key != cachedSecond) {
+                try {
+                    LocalDateTime time = LocalDateTime.of((int) (key / 10000000000L), (int) (key / 100000000 % 100),
+                            (int) (key / 1000000 % 100), (int) (key / 10000 % 100), (int) (key / 100 % 100), (int) (key % 100));
+                    cachedMillis = time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    cachedSecond = key;
+                } catch (RuntimeException e) {
+                    return -1;
+                }
+            }
+            return cachedMillis;
+        }
+
+        // Level.getName() as written by LogFormatter; custom levels give MIN_VALUE and always pass
+        private static int levelValue(byte[] bytes, int start, int end) {
+            switch (end - start) {
+                case 4:
+                    if (matches(bytes, start, "INFO")) return Level.INFO.intValue();
+                    if (matches(bytes, start, "FINE")) return Level.FINE.intValue();
+                    break;
+                case 5:
+                    if (matches(bytes, start, "FINER")) return Level.FINER.intValue();
+                    break;
+                case 6:
+                    if (matches(bytes, start, "SEVERE")) return Level.SEVERE.intValue();
+                    if (matches(bytes, start, "CONFIG")) return Level.CONFIG.intValue();
+                    if (matches(bytes, start, "FINEST")) return Level.FINEST.intValue();
+                    break;
+                case 7:
+                    if (matches(bytes, start, "WARNING")) return Level.WARNING.intValue();
+                    break;
+                default:
+                    break;
+            }
+            return Integer.MIN_VALUE;
+        }
+
+        private static boolean matches(byte[] bytes, int start, String name) {
+            for (int i = 0; i < name.length(); i++) {
+                if (bytes[start + i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int indexOf(byte[] bytes, int from, int to, byte value) {
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == value) return i;
+            }
+            return -1;
+        }
+
+        private static int lastIndexOf(byte[] bytes, int from, int to, byte value) {
+            for (int i = to - 1; i >= from; i--) {
+                if (bytes[i] == value) return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+// Handler that lets only the first repeats of a message through and reports the rest as "repeated N times"
+// Messages are fingerprinted with every run of digits masked, so "Can't keep up! Running 2147ms behind" and
+// "... 2310ms behind" count as the same message. Per fingerprint at most "limit" records per window pass (sliding
+// window, estimated from the current and the previous window); the others are only counted. Once per window a summary
+// record per suppressed message is passed on, and another when the storm ends.
+// The counters live in a fixed table of parallel arrays: a message is looked up in PROBES neighbouring slots and, if
+// none is free, takes over the one seen least recently. Memory stays the same whatever the log is flooded with, and a
+// record costs one pass over its text plus a few array accesses.
+public class LogSuppressor extends Handler {
+
+    private static final int PROBES = 4;
+    private static final int MAX_SAMPLE = 200;  // Characters of the message repeated in a summary
+
+    // One sweep thread for all suppressors; it emits the summaries of storms that have ended
+    private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cst-log-suppressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Handler> targets = new CopyOnWriteArrayList<>();
+    private final int limit;
+    private final long windowMillis;
+    private final int mask;
+
+    // Counter table, one entry per slot
+    private final long[] keys;  // Fingerprint, 0 = free
+    private final long[] windowStart;
+    private final int[] current;  // Records in the current window (passed and suppressed)
+    private final int[] previous;  // Records in the window before
+    private final int[] suppressed;  // Suppressed since the last summary
+    private final long[] firstSuppressed;
+    private final long[] lastSeen;
+    private final LogRecord[] samples;  // First suppressed record, for the summary
+
+    private final List<LogRecord> summaries = new ArrayList<>();  // Waiting to be passed on outside the lock
+    private volatile boolean summariesPending = false;
+    private final AtomicLong totalSuppressed = new AtomicLong();
+    private final ScheduledFuture<?> sweep;
+    private volatile boolean closed = false;
+
+    // Constructor; slots is rounded up to a power of two, limit is the number of repeats passed per window
+    public LogSuppressor(int slots, int limit, long windowMillis) {
+        int size = Integer.highestOneBit(Math.max(PROBES, slots - 1)) << 1;
+        this.mask = size - 1;
+        this.limit = Math.max(1, limit);
+        this.windowMillis = Math.max(1, windowMillis);
+        this.keys = new long[size];
+        this.windowStart = new long[size];
+        this.current = new int[size];
+        this.previous = new int[size];
+        this.suppressed = new int[size];
+        this.firstSuppressed = new long[size];
+        this.lastSeen = new long[size];
+        this.samples = new LogRecord[size];
+        setLevel(Level.OFF);  // Raised by addTarget()
+
+        long period = Math.max(100, this.windowMillis / 2);
+        this.sweep = sweeper.scheduleAtFixedRate(() -> sweep(System.currentTimeMillis()), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Adds a handler that gets the records passed and the summaries; set its level before adding it
+    public LogSuppressor addTarget(Handler target) {
+        targets.add(target);
+        if (target.getLevel().intValue() < getLevel().intValue()) {
+            setLevel(target.getLevel());
+        }
+        return this;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        boolean pass = closed || admit(fingerprint(record.getMessage()), record);
+        publishSummaries();  // A summary of an evicted or ended storm goes before the record
+        if (pass) {
+            publishToTargets(record);
+        }
+    }
+
+    // Emits the summaries that are due, then flushes the targets
+    @Override
+    public void flush() {
+        sweep(System.currentTimeMillis());
+        for (Handler target : targets) {
+            target.flush();
+        }
+    }
+
+    // Emits every pending summary and closes the targets
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        sweep.cancel(false);
+        sweep(Long.MAX_VALUE);
+        for (Handler target : targets) {
+            target.close();
+        }
+    }
+
+    // Records suppressed so far
+    public long getSuppressed() {
+        return totalSuppressed.get();
+    }
+
+    public List<Handler> getTargets() {
+        return new ArrayList<>(targets);
+    }
+
+    // Fingerprint of a message: 64-bit FNV-1a over its characters, every run of digits counts as one '#'; never 0
+    static long fingerprint(String message) {
+        long hash = 0xcbf29ce484222325L;
+        if (message != null) {
+            boolean inNumber = false;
+            for (int i = 0; i < message.length(); i++) {
+                char c = message.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    if (inNumber) {
+                        continue;
+                    }
+                    inNumber = true;
+                    c = '#';
+                } else {
+                    inNumber = false;
+                }
+                hash ^= c;
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    // Counts the record in its slot; returns false if it is suppressed
+    private synchronized boolean admit(long key, LogRecord record) {
+        long now = record.getMillis();
+        int slot = slotOf(key, now);
+        lastSeen[slot] = Math.max(lastSeen[slot], now);
+
+        // Move the window along; a gap of two windows or more forgets the earlier ones
+        long elapsed = now - windowStart[slot];
+        if (elapsed >= windowMillis) {
+            long windows = elapsed / windowMillis;
+            previous[slot] = windows == 1 ? current[slot] : 0;
+            current[slot] = 0;
+            windowStart[slot] += windows * windowMillis;
+            elapsed -= windows * windowMillis;
+        }
+        // Sliding estimate: the part of the previous window that still overlaps, plus the current one
+        long recent = Math.max(0, elapsed);
+        long estimate = previous[slot] * (windowMillis - recent) / windowMillis + current[slot];
+        current[slot]++;
+        if (estimate < limit) {
+            if (suppressed[slot] > 0) {
+                summarize(slot, now);  // The storm is over, report it before the record passes
+            }
+            return true;
+        }
+        if (suppressed[slot] == 0) {
+            firstSuppressed[slot] = now;
+            record.getSourceClassName();  // Resolve the caller now, on the logging thread; once per summary, not per record
+            samples[slot] = record;
+        }
+        suppressed[slot]++;
+        totalSuppressed.incrementAndGet();
+        return false;
+    }
+
+    // Helper method to find the slot of a fingerprint, claiming a free one or the least recently seen one
+    private int slotOf(long key, long now) {
+        int home = (int) (key ^ key >>> 32) & mask;
+        int victim = home;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (home + i) & mask;
+            if (keys[slot] == key) {
+                return slot;
+            }
+            if (keys[slot] == 0) {
+                victim = slot;
+                break;
+            }
+            if (lastSeen[slot] < lastSeen[victim]) {
+                victim = slot;
+            }
+        }
+        if (keys[victim] != 0 && suppressed[victim] > 0) {
+            summarize(victim, lastSeen[victim]);  // Its count would be lost otherwise
+        }
+        keys[victim] = key;
+        windowStart[victim] = now;
+        current[victim] = 0;
+        previous[victim] = 0;
+        suppressed[victim] = 0;
+        lastSeen[victim] = now;
+        samples[victim] = null;
+        return victim;
+    }
+
+    // Sweep thread: summaries of messages suppressed for a window or more, and of storms that ended
+    private void sweep(long now) {
+        synchronized (this) {
+            for (int slot = 0; slot <= mask; slot++) {
+                if (suppressed[slot] > 0 && (now - firstSuppressed[slot] >= windowMillis || now - lastSeen[slot] >= windowMillis)) {
+                    summarize(slot, now);
+                }
+            }
+        }
+        publishSummaries();
+    }
+
+    // Helper method to queue the summary of a slot and reset its count; called with the lock held
+    private void summarize(int slot, long now) {
+        LogRecord sample = samples[slot];
+        int times = suppressed[slot];
+        long seconds = Math.max(1, (Math.min(now, lastSeen[slot]) - firstSuppressed[slot] + 999) / 1000);
+        String message = LogFormatter.stripAnsi(sample.getMessage());
+        if (message != null && message.length() > MAX_SAMPLE) {
+            message = message.substring(0, MAX_SAMPLE) + "...";
+        }
+
+        LogRecord summary = new LogRecord(sample.getLevel(), "Last message repeated " + times + " more times in " + seconds + " s: " + message);
+        summary.setLoggerName(sample.getLoggerName());
+        summary.setSourceClassName(sample.getSourceClassName());
+        summary.setSourceMethodName(sample.getSourceMethodName());
+        summary.setMillis(Math.min(now, lastSeen[slot]));
+        summaries.add(summary);
+        summariesPending = true;
+
+        suppressed[slot] = 0;
+        samples[slot] = null;
+    }
+
+    private void publishSummaries() {
+        if (!summariesPending) {
+            return;
+        }
+        List<LogRecord> due;
+        synchronized (this) {
+            due = new ArrayList<>(summaries);
+            summaries.clear();
+            summariesPending = false;
+        }
+        for (LogRecord summary : due) {
+            publishToTargets(summary);
+        }
+    }
+
+    private void publishToTargets(LogRecord record) {
+        for (Handler target : targets) {
+            target.publish(record);
+        }
+    }
+}
@@ -3,15 +3,26 @@ package dev.cubie.CubeServerTool.Utils;
 import dev.cubie.CubeServerTool.Data.Config;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
+// Every class gets its own Logger named after it, below the common parent "dev.cubie.CubeServerTool"
+// Only the parent has handlers; the others pass their records up. The parent's level is the lowest level a handler
+// accepts, so a disabled level is rejected by the first isLoggable() check of the calling class's logger, before
+// a LogRecord exists. Levels for single packages or classes come from "logLevel.<name>=<LEVEL>" entries in cst.conf.
 public class LoggerUtility {
 
-    private static Logger logger;
+    public static final String ROOT_LOGGER = "dev.cubie.CubeServerTool";
+
+    private static final Logger logger = Logger.getLogger(ROOT_LOGGER);
+    private static boolean configured = false;
+    // java.util.logging only keeps weak references; loggers with an own level are held here so the level stays
+    private static final Map<String, Logger> levelOverrides = new LinkedHashMap<>();
     private static boolean detailedLog = false; // Default: false
 
     // Standardwerte für LogLevel
@@ -19,18 +30,37 @@ public class LoggerUtility {
     private static Level logLevelCSV = Level.FINE;     // Default CSV log level
     private static boolean logToFile = false;           // Default log to file
 
-    // Get the logger instance
+    // Asynchronous logging: records are written by one background thread (see AsyncLogHandler)
+    private static boolean asyncLogging = false;
+    private static int asyncQueueSize = 8192;
+    private static long asyncFlushMillis = 200;
+    private static AsyncLogHandler.OverflowPolicy asyncPolicy = AsyncLogHandler.OverflowPolicy.DROP_DEBUG;
+    private static AsyncLogHandler asyncHandler;
+    private static boolean shutdownHookAdded = false;
+
+    // Repeated messages are summed up instead of written (see LogSuppressor)
+    private static boolean suppressRepeats = false;
+    private static int repeatLimit = 20;
+    private static long repeatWindowMillis = 10000;
+    private static LogSuppressor suppressor;
+
+    // Get the logger of a class
     public static Logger getLogger(Class<?> clazz) {
-        if (logger == null) {
-            logger = Logger.getLogger(clazz.getName());
+        ensureConfigured();
+        return Logger.getLogger(loggerName(clazz.getName()));
+    }
+
+    private static synchronized void ensureConfigured() {
+        if (!configured) {
+            configured = true;
             configureLogger();  // Configure with default values
         }
-        return logger;
     }
 
     // Configure logger with current settings
-    public static void configureLogger() {
-        logger.setLevel(Level.ALL);  // Capture all logs
+    public static synchronized void configureLogger() {
+        // Records below this level would be dropped by every handler, so the loggers reject them right away
+        logger.setLevel(logToFile && logLevelCSV.intValue() < logLevelConsole.intValue() ? logLevelCSV : logLevelConsole);
         logger.setUseParentHandlers(false);  // Disable default handlers
 
         // Console handler with default or configured log level
@@ -41,76 +71,90 @@ public class LoggerUtility {
                     return;
                 }
 
-                String logLevelName = record.getLevel().getLocalizedName();
-                String color = ConsoleColors.RESET;  // Default color
-
-                // Format INSTALL logs separately
-                if ("INSTALL".equals(record.getLoggerName())) {
-                    logLevelName = "INSTALL";
-                    color = ConsoleColors.PURPLE;  // Set a custom color for INSTALL
-                }
-
-                // Colorize log levels for console
-                if (record.getLevel() == Level.FINE) {
-                    logLevelName = ConsoleColors.CYAN + logLevelName + ConsoleColors.RESET;
-                } else if (record.getLevel() == Level.SEVERE) {
-                    logLevelName = ConsoleColors.RED + logLevelName + ConsoleColors.RESET;
-                } else if (record.getLevel() == Level.WARNING) {
-                    logLevelName = ConsoleColors.YELLOW + logLevelName + ConsoleColors.RESET;
-                } else if (record.getLevel() == Level.INFO) {
-                    logLevelName = ConsoleColors.GREEN + logLevelName + ConsoleColors.RESET;
-                } else if (record.getLevel() == Level.CONFIG) {
-                    logLevelName = ConsoleColors.CYAN + logLevelName + ConsoleColors.RESET;
-                }
-
-                // Format the message for console output
-                String formattedMessage = String.format(
-                        ConsoleColors.RESET + "[%1$tF %1$tT] " + color + logLevelName + ": %2$s" + ConsoleColors.RESET,
-                        record.getMillis(),
-                        record.getMessage()
-                );
-                System.out.println(formattedMessage);
+                // Colored "[date time] LEVEL: message", see LogFormatter
+                System.out.println(LogFormatter.formatConsole(record));
 
                 // Display detailed log info if enabled
                 if (detailedLog) {
-                    String debugInfo = String.format(
-                            ConsoleColors.RESET + "[%1$tF %1$tT] " + ConsoleColors.CYAN + "DETAIL" + ConsoleColors.RESET + ": ╙► " + ConsoleColors.CYAN + "%2$s" + ConsoleColors.RESET + " %3$s",
-                            record.getMillis(),
-                            record.getSourceClassName(),
-                            record.getSourceMethodName()
-                    );
-                    System.out.println(debugInfo);
+                    System.out.println(LogFormatter.formatDetail(record));
                 }
             }
         };
         consoleHandler.setLevel(logLevelConsole);  // Set console log level
-        logger.addHandler(consoleHandler);
 
         // FileHandler for CSV logs if enabled
+        CSVFileHandler csvFileHandler = null;
         if (logToFile) {
             try {
-                CSVFileHandler csvFileHandler = new CSVFileHandler(Config.logFilePath);
+                csvFileHandler = new CSVFileHandler(Config.logFilePath)
+                        .rotateAt(Config.logMaxSizeMb * 1024 * 1024)
+                        .rotateDaily(Config.logRotateDaily)
+                        .retention(Config.logRetentionMb * 1024 * 1024)
+                        .indexed(true);  // For LogQueryEngine
                 csvFileHandler.setLevel(logLevelCSV);  // Set CSV log level
-                logger.addHandler(csvFileHandler);
             } catch (IOException e) {
                 logger.log(Level.SEVERE, "Failed to create CSV log handler", e);
             }
         }
+
+        if (asyncLogging) {
+            // Console and CSV are written by the writer thread; the CSV file is flushed once per interval
+            asyncHandler = new AsyncLogHandler(asyncQueueSize, asyncFlushMillis, asyncPolicy)
+                    .inferCaller(detailedLog || csvFileHandler != null)  // Only these print class and method
+                    .addTarget(consoleHandler);
+            if (csvFileHandler != null) {
+                asyncHandler.addTarget(csvFileHandler.autoFlush(false));
+            }
+            addHandlers(asyncHandler);
+            closeOnExit();  // Write what is still queued when the tool exits
+        } else {
+            asyncHandler = null;
+            if (csvFileHandler != null) {
+                addHandlers(consoleHandler, csvFileHandler);
+            } else {
+                addHandlers(consoleHandler);
+            }
+        }
+    }
+
+    // Helper method to attach the handlers to the parent logger, behind the suppressor if repeats are suppressed
+    // The suppressor runs on the logging thread, so a flood of one message does not even reach the queue.
+    private static void addHandlers(Handler... handlers) {
+        if (suppressRepeats) {
+            suppressor = new LogSuppressor(1024, repeatLimit, repeatWindowMillis);
+            for (Handler handler : handlers) {
+                suppressor.addTarget(handler);
+            }
+            logger.addHandler(suppressor);
+            closeOnExit();  // Write the last summaries
+        } else {
+            suppressor = null;
+            for (Handler handler : handlers) {
+                logger.addHandler(handler);
+            }
+        }
+    }
+
+    private static void closeOnExit() {
+        if (!shutdownHookAdded) {
+            Runtime.getRuntime().addShutdownHook(new Thread(LoggerUtility::closeHandlers, "cst-log-shutdown"));
+            shutdownHookAdded = true;
+        }
     }
 
     // Custom method to log installation events
     public static void install(String message) {
         LogRecord record = new LogRecord(Level.INFO, message);  // Use INFO as the base level
         record.setLoggerName("INSTALL");
+        ensureConfigured();
         logger.log(record);
     }
 
     // Method to update logger configuration dynamically
     public static void updateLoggerConfig(boolean newDetailedLog, String newLogLevelConsole, String newLogLevelCSV, boolean newLogToFile) {
 
-        for (Handler handler : logger.getHandlers()) {
-            logger.removeHandler(handler);
-        }
+        closeHandlers();
+        configured = true;
 
         detailedLog = newDetailedLog;
         logLevelConsole = convertLogLevel(newLogLevelConsole);
@@ -121,11 +165,78 @@ public class LoggerUtility {
         configureLogger();
     }
 
+    // Method to set levels for packages or classes, e.g. "dev.cubie.CubeServerTool.Utils.FileOperation" -> "DEBUG"
+    // Names outside of dev.cubie.CubeServerTool are read relative to it ("Utils.FileOperation"). Replaces earlier overrides.
+    public static synchronized void setLevels(Map<String, String> levels) {
+        for (Logger overridden : levelOverrides.values()) {
+            overridden.setLevel(null);  // Inherit again
+        }
+        levelOverrides.clear();
+        for (Map.Entry<String, String> entry : levels.entrySet()) {
+            String name = entry.getKey().startsWith(ROOT_LOGGER) ? entry.getKey() : ROOT_LOGGER + "." + entry.getKey();
+            Logger overridden = Logger.getLogger(name);
+            overridden.setLevel(convertLogLevel(entry.getValue()));
+            levelOverrides.put(name, overridden);
+        }
+    }
+
+    // Method to set the asynchronous logging options; they take effect with the next updateLoggerConfig()
+    public static void configureAsync(boolean enabled, int queueSize, long flushIntervalMillis, String overflowPolicy) {
+        asyncLogging = enabled;
+        asyncQueueSize = queueSize;
+        asyncFlushMillis = flushIntervalMillis;
+        try {
+            asyncPolicy = AsyncLogHandler.OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log queue policy: " + overflowPolicy + ". Defaulting to BLOCK.");
+            asyncPolicy = AsyncLogHandler.OverflowPolicy.BLOCK;
+        }
+    }
+
+    // Method to set how often the same message (numbers aside) is written per window; takes effect with the next updateLoggerConfig()
+    public static void configureSuppression(boolean enabled, int limit, long windowSeconds) {
+        suppressRepeats = enabled;
+        repeatLimit = limit;
+        repeatWindowMillis = windowSeconds * 1000;
+    }
+
+    // The suppressor in front of the handlers, or null when every repeat is written
+    public static LogSuppressor getSuppressor() {
+        return suppressor;
+    }
+
+    // The asynchronous handler, or null when logging is synchronous
+    public static AsyncLogHandler getAsyncHandler() {
+        return asyncHandler;
+    }
+
+    // Helper method to remove and close the current handlers; queued records are written first
+    private static synchronized void closeHandlers() {
+        for (Handler handler : logger.getHandlers()) {
+            logger.removeHandler(handler);
+            handler.close();
+        }
+    }
+
+    // Helper method to place loggers of classes outside this tool (e.g. external modules) below the common parent too
+    private static String loggerName(String className) {
+        return className.startsWith(ROOT_LOGGER + ".") ? className : ROOT_LOGGER + "." + className;
+    }
+
     // Helper method to convert string log levels to Level
     private static Level convertLogLevel(String logLevel) {
-        switch (logLevel.toUpperCase()) {
+        switch (logLevel.trim().toUpperCase()) {
             case "DEBUG":
+            case "FINE":
                 return Level.FINE;
+            case "FINER":
+                return Level.FINER;
+            case "FINEST":
+                return Level.FINEST;
+            case "ALL":
+                return Level.ALL;
+            case "OFF":
+                return Level.OFF;
             case "INFO":
                 return Level.INFO;
             case "WARNING":
@@ -0,0 +1,41 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+// Helper for memory-mapped files
+// A mapping normally lives until the GC collects its buffer, and on Windows a mapped file can't be deleted, renamed
+// or replaced until then. Callers that know a buffer is no longer used release it right away with unmap().
+public class MappedBuffers {
+
+    private MappedBuffers() {
+    }
+
+    // Releases the mapping of a buffer; the buffer must not be touched afterwards
+    public static void unmap(MappedByteBuffer buffer) {
+        try {
+            // Java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            try {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // Unmapped by the GC later
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Unmapped by the GC later
+        }
+    }
+}
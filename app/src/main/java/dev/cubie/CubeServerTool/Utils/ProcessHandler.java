@@ -5,11 +5,15 @@ import dev.cubie.CubeServerTool.Data.Config;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
 public class ProcessHandler {
@@ -17,11 +21,22 @@ public class ProcessHandler {
     private String jarFile;
     private List<String> parameters = new ArrayList<>();  // Server-specific arguments
     private List<String> jvmArguments = new ArrayList<>();  // JVM-specific arguments
+    private JvmArguments inheritedArguments = new JvmArguments();  // JVM arguments of this tool, see create()
+    private JvmTuningProfile tuningProfile;  // Optional heap and GC settings for the server
     private boolean useConsole = false;  // Controls whether to use the console output
     private String workDir;  // Holds the working directory, defaults to Config.rootFolder
     private String loggerType = "default";  // Controls logging, independent of console output
     private boolean disableInput = false;  // Option to disable input
     private Process process;  // Reference to the running process
+    private int outputBufferSize = 4096;  // Lines kept in the console buffer
+    private ConsoleBuffer output;  // Console lines of the running process, if useConsole is false
+    private int commandRateLimit = 0;  // Commands per second, 0 = no limit
+    private CommandChannel commands;  // Open stdin of the running process, if input is disabled for the console
+    private final ConsoleWatcher watcher = new ConsoleWatcher();  // Startup, lag and crash detection on the console output
+    private EventLog eventLog;  // Optional binary capture of the console output
+    private int repeatLimit;  // Repeats of a console line logged per window, 0 = all
+    private long repeatWindowMillis;
+    private String eventSource;
 
     // Initialize logger
     private static final Logger logger = LoggerUtility.getLogger(ProcessHandler.class);
@@ -38,28 +53,25 @@ public class ProcessHandler {
         this.jarFile = jarFile;
         // By default, the workDir is set to Config.rootFolder (if not explicitly set)
         this.workDir = Config.rootFolder.toString();  // Uses Config.rootFolder as default
+        suppressRepeats(Config.logSuppressRepeats ? Config.logRepeatLimit : 0, Config.logRepeatWindow * 1000);
     }
 
     // Automatically populate JVM arguments from the current process
+    // Agents and debugger settings are left out, the server would clash with this tool over their ports and files.
     private void populateJvmArguments() {
-        // Get the JVM arguments passed to the current Java process
-        List<String> jvmArguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
-
-        // Create a map to store JVM arguments (to allow overriding)
-        Map<String, String> jvmArgsMap = new HashMap<>();
-
-        // Populate the map with default JVM arguments from the current process
-        for (String arg : jvmArguments) {
-            if (arg.startsWith("-")) {
-                String[] splitArg = arg.split("=", 2);
-                jvmArgsMap.put(splitArg[0], splitArg.length > 1 ? splitArg[1] : "");
+        // Get the JVM arguments passed to the current Java process, in their original order
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-") && !arg.startsWith("-agentlib:") && !arg.startsWith("-javaagent:")
+                    && !arg.startsWith("-Xrunjdwp") && !arg.equals("-Xdebug")) {
+                inheritedArguments.add(arg);
             }
         }
+    }
 
-        // Add the JVM arguments from the map to the ProcessHandler
-        for (Map.Entry<String, String> entry : jvmArgsMap.entrySet()) {
-            this.addJvmArgument(entry.getKey() + (entry.getValue().isEmpty() ? "" : "=" + entry.getValue()));
-        }
+    // Use a tuning profile for heap and GC; it overrides the inherited arguments, addJvmArgument() overrides both
+    public ProcessHandler tuning(JvmTuningProfile profile) {
+        this.tuningProfile = profile;
+        return this;
     }
 
     // Add JVM-specific arguments (e.g., "-Xmx1024M")
@@ -87,6 +99,37 @@ public class ProcessHandler {
         return this;
     }
 
+    // Method to set how many console lines are kept in memory for subscribers
+    public ProcessHandler outputBufferSize(int lines) {
+        this.outputBufferSize = lines;
+        return this;
+    }
+
+    // Method to log the same console line (numbers aside) at most "limit" times per window, 0 = log every line
+    // The rest is summed up in a "Last message repeated N more times" line, see LogSuppressor. The event log still gets every line.
+    public ProcessHandler suppressRepeats(int limit, long windowMillis) {
+        this.repeatLimit = limit;
+        this.repeatWindowMillis = windowMillis;
+        return this;
+    }
+
+    // Method to also capture every console line in an event log, under the given source name
+    // stdout lines are stored as INFO, stderr lines as WARNING. Only used if useConsole is false.
+    public ProcessHandler captureEvents(EventLog log, String source) {
+        this.eventLog = log;
+        this.eventSource = source;
+        return this;
+    }
+
+    // Method to limit how many commands per second are sent to the server
+    public ProcessHandler commandRateLimit(int commandsPerSecond) {
+        this.commandRateLimit = commandsPerSecond;
+        if (commands != null) {
+            commands.rateLimit(commandsPerSecond);
+        }
+        return this;
+    }
+
     // Method to disable console input
     public ProcessHandler disableInput() {
         this.disableInput = true;
@@ -107,12 +150,23 @@ public class ProcessHandler {
         } else {
             processBuilder.inheritIO();  // Eingabe und Ausgabe in die Konsole umleiten
         }
+        if (!useConsole) {
+            // Ausgabe selbst lesen, Eingabe bleibt wie oben eingestellt
+            processBuilder.redirectOutput(ProcessBuilder.Redirect.PIPE);
+            processBuilder.redirectError(ProcessBuilder.Redirect.PIPE);
+        }
 
+        long startedAt = System.currentTimeMillis();
         process = processBuilder.start();  // Start the process and save the reference
 
+        // Bei deaktivierter Konsoleingabe gehen Befehle über einen dauerhaft offenen Kanal an stdin
+        if (disableInput) {
+            commands = new CommandChannel(process.getOutputStream()).rateLimit(commandRateLimit);
+        }
+
         // Ausgabe manuell verarbeiten, wenn Konsole nicht verwendet wird
         if (!useConsole) {
-            handleProcessOutput(process);
+            handleProcessOutput(process, startedAt);
         }
 
         return process;
@@ -124,8 +178,28 @@ public class ProcessHandler {
         return this.process;
     }
 
+    // Method to retrieve the console buffer (null if the process writes to the console directly)
+    // Further consumers (tailers, parsers) subscribe here; they never block the process.
+    public ConsoleBuffer getOutput() {
+        return this.output;
+    }
+
+    // Method to retrieve the console watcher; register callbacks before start()
+    // It only sees the output if useConsole is false, otherwise the server writes to the console directly.
+    public ConsoleWatcher getWatcher() {
+        return this.watcher;
+    }
+
+    // Method to retrieve the command channel (null if input comes from the console)
+    public CommandChannel getCommandChannel() {
+        return this.commands;
+    }
+
     // Method to stop the process
     public void stop() {
+        if (commands != null) {
+            commands.close();  // Send what is still queued before the process goes away
+        }
         if (process != null && process.isAlive()) {
             process.destroy();  // Stop the process
             logger.info("Process stopped.");
@@ -133,29 +207,109 @@ public class ProcessHandler {
     }
 
     // Method to send a command to the running process
+    // The command is queued and written by the channel's writer thread; stdin stays open for the next one.
     public void sendCommand(String command) throws IOException {
         if (process != null && process.isAlive()) {
-            try (OutputStream os = process.getOutputStream()) {
-                os.write((command + "\n").getBytes());
-                os.flush();
+            if (commands == null) {
+                throw new IOException("Console input is enabled, commands can only be sent with disableInput()");
+            }
+            if (!commands.send(command)) {
+                throw new IOException("Command channel is closed");
+            }
+        }
+    }
+
+    // Method to send many commands (e.g. a whitelist sync) in one go; they are written in batches
+    public void sendCommands(Collection<String> commandList) throws IOException {
+        if (process != null && process.isAlive()) {
+            if (commands == null) {
+                throw new IOException("Console input is enabled, commands can only be sent with disableInput()");
+            }
+            if (!commands.sendAll(commandList)) {
+                throw new IOException("Command channel is closed");
             }
         }
     }
 
     // Handle the output of the process if useConsole is set to false
-    private void handleProcessOutput(Process process) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-             BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+    // stdout and stderr each get a pump thread that only moves lines into the console buffer, so neither pipe can fill
+    // up and stall the server. The configured logger is just another subscriber of that buffer.
+    private void handleProcessOutput(Process process, long startedAt) {
+        output = new ConsoleBuffer(outputBufferSize);
+        ConsoleBuffer buffer = output;
+        AtomicInteger openStreams = new AtomicInteger(2);
+
+        // Logger and watcher subscribe before the pumps start, so they see the first lines as well ("void" logs nothing)
+        watcher.attach(buffer, startedAt);
+        if (!"void".equalsIgnoreCase(loggerType)) {
+            LogSuppressor repeats = repeatLimit > 0 ? new LogSuppressor(256, repeatLimit, repeatWindowMillis).addTarget(logTarget()) : null;
+            ConsoleBuffer.Subscription logSubscription = buffer.subscribe("cst-console-log", line -> {
+                String message = line.error ? "[ERROR] " + line.text : line.text;
+                if (repeats == null) {
+                    logMessage(message);
+                    return;
+                }
+                LogRecord record = new LogRecord(line.error ? Level.WARNING : Level.INFO, message);
+                record.setMillis(line.timestamp);
+                repeats.publish(record);
+            });
+            reportDroppedLines(logSubscription, "logger", repeats);
+        }
+        if (eventLog != null) {
+            EventLog log = eventLog;
+            String source = eventSource;
+            ConsoleBuffer.Subscription eventSubscription = buffer.subscribe("cst-console-events", line -> {
+                try {
+                    log.append(line.timestamp, line.error ? Level.WARNING : Level.INFO, source, line.text);
+                } catch (IOException e) {
+                    logger.fine("Capturing console line failed: " + e.getMessage());
+                }
+            });
+            reportDroppedLines(eventSubscription, "event log", null);
+        }
+
+        startPump("cst-stdout-pump", process.getInputStream(), false, buffer, openStreams);
+        startPump("cst-stderr-pump", process.getErrorStream(), true, buffer, openStreams);
+    }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logMessage(line);  // Log the standard output
+    // Helper method to warn once the output has ended if a subscriber could not keep up
+    // A suppressor in front of the subscriber is closed then, which writes its last summaries.
+    private static void reportDroppedLines(ConsoleBuffer.Subscription logSubscription, String subscriber, LogSuppressor repeats) {
+        Thread reporter = new Thread(() -> {
+            try {
+                logSubscription.await(0);
+                if (repeats != null) {
+                    repeats.close();
+                }
+                if (logSubscription.getDropped() > 0) {
+                    logger.warning("Console output was too fast for the " + subscriber + ", " + logSubscription.getDropped() + " lines were skipped.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+        }, "cst-console-log-report");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
 
-            while ((line = errorReader.readLine()) != null) {
-                logMessage("[ERROR] " + line);  // Log the error output
+    // Helper method to start a thread that reads one stream line by line into the buffer until EOF
+    private static void startPump(String name, InputStream stream, boolean error, ConsoleBuffer buffer, AtomicInteger openStreams) {
+        Thread pump = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    buffer.publish(line, error);
+                }
+            } catch (IOException e) {
+                logger.fine("Console stream closed: " + e.getMessage());
+            } finally {
+                if (openStreams.decrementAndGet() == 0) {
+                    buffer.close();
+                }
             }
-        }
+        }, name);
+        pump.setDaemon(true);
+        pump.start();
     }
 
     // Method to set the logger type
@@ -165,6 +319,24 @@ public class ProcessHandler {
         return this;  // Return this to allow method chaining
     }
 
+    // Helper method for the handler behind the suppressor; passes lines and summaries on to logMessage()
+    private Handler logTarget() {
+        return new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logMessage(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
     // Method to log messages, independent of the console output
     private void logMessage(String message) {
         switch (loggerType.toLowerCase()) {
@@ -190,7 +362,7 @@ public class ProcessHandler {
 
         // Add Java and JVM arguments first
         command.add("java");
-        command.addAll(jvmArguments);  // Add JVM arguments (e.g., -Xms, -Xmx)
+        command.addAll(mergeJvmArguments());  // Add JVM arguments (e.g., -Xms, -Xmx)
 
         // Add the jar and any server-specific arguments
         command.add("-jar");
@@ -202,6 +374,17 @@ public class ProcessHandler {
         return command;
     }
 
+    // Merge the JVM arguments: inherited < tuning profile < explicit, a later one replaces the same option in place
+    private List<String> mergeJvmArguments() {
+        JvmArguments merged = new JvmArguments().addAll(inheritedArguments.toList());
+        if (tuningProfile != null) {
+            merged.addAll(tuningProfile.build().toList());
+        }
+        merged.addAll(jvmArguments);
+        logger.fine(() -> "JVM arguments: " + merged);
+        return merged.toList();
+    }
+
     // Main method to test the ProcessHandler class
     public static void main(String[] args) {
         try {
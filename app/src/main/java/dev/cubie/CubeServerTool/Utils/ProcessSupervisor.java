@@ -0,0 +1,408 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+// Keeps server processes running and restarts them according to their RestartPolicy
+// Every server is described by a factory that builds a fresh ProcessHandler per start. One monitor thread per server
+// waits for its exit and decides right away whether to restart, so a crash costs no more downtime than the policy asks
+// for. Stopping is graceful: "stop" on stdin, wait, then destroyForcibly(). A shutdown hook stops everything that is
+// still running when CubeServerTool exits, so no server JVM is left behind.
+public class ProcessSupervisor implements AutoCloseable {
+
+    private static final Logger logger = LoggerUtility.getLogger(ProcessSupervisor.class);
+
+    private final Map<String, Server> servers = new LinkedHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cst-supervisor-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread shutdownHook = new Thread(this::stopAll, "cst-supervisor-shutdown");
+    private long stopTimeoutMillis = 30_000;
+    private long hungCrashTimeoutMillis = 20_000;
+
+    // Constructor
+    public ProcessSupervisor() {
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    // Method to set how long a server may take to stop after "stop" before it is killed
+    public ProcessSupervisor stopTimeout(long millis) {
+        this.stopTimeoutMillis = millis;
+        return this;
+    }
+
+    // Method to set how long a server may keep running after it printed a crash (e.g. a hanging watchdog)
+    public ProcessSupervisor hungCrashTimeout(long millis) {
+        this.hungCrashTimeoutMillis = millis;
+        return this;
+    }
+
+    // Registers a server and starts it; the factory is called for every (re)start
+    // The handler should use disableInput() and useConsole(false), so it can be stopped gracefully and crashes are seen.
+    public synchronized Server add(String name, Supplier<ProcessHandler> factory, RestartPolicy policy) throws IOException {
+        if (servers.containsKey(name)) {
+            throw new IllegalArgumentException("Server already supervised: " + name);
+        }
+        Server server = new Server(name, factory, policy);
+        servers.put(name, server);
+        server.start();
+        return server;
+    }
+
+    public synchronized Server get(String name) {
+        return servers.get(name);
+    }
+
+    public synchronized List<Server> getServers() {
+        return new ArrayList<>(servers.values());
+    }
+
+    // Stops a server and removes it from supervision
+    public void remove(String name) {
+        Server server;
+        synchronized (this) {
+            server = servers.remove(name);
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    // Stops all servers in parallel
+    public void stopAll() {
+        List<Thread> stoppers = new ArrayList<>();
+        for (Server server : getServers()) {
+            Thread thread = new Thread(server::stop, "cst-stop-" + server.name);
+            thread.start();
+            stoppers.add(thread);
+        }
+        for (Thread thread : stoppers) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        stopAll();
+        timer.shutdownNow();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // Already shutting down
+        }
+    }
+
+    // State of a supervised server
+    public enum State { RUNNING, WAITING, STOPPING, STOPPED, GAVE_UP }
+
+    // One supervised server
+    public class Server {
+        private final String name;
+        private final Supplier<ProcessHandler> factory;
+        private final RestartPolicy policy;
+
+        private volatile ProcessHandler handler;
+        private volatile State state = State.STOPPED;
+        private volatile boolean stopRequested = false;
+        private volatile int restarts = 0;
+        private volatile int lastExitCode = 0;
+        private final Deque<Long> recentCrashes = new ArrayDeque<>();
+        private long nextBackoffMillis;
+        private ScheduledFuture<?> pendingRestart;
+        private long generation = 0;  // Counts starts and stops; a monitor only acts on an exit of its own generation
+
+        private Server(String name, Supplier<ProcessHandler> factory, RestartPolicy policy) {
+            this.name = name;
+            this.factory = factory;
+            this.policy = policy;
+            this.nextBackoffMillis = policy.initialBackoffMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getRestarts() {
+            return restarts;
+        }
+
+        public int getLastExitCode() {
+            return lastExitCode;
+        }
+
+        // Handler of the current (or last) process
+        public ProcessHandler getHandler() {
+            return handler;
+        }
+
+        // Stops the server gracefully and starts it again right away
+        public void restart() throws IOException {
+            stop();
+            synchronized (this) {
+                stopRequested = false;
+                nextBackoffMillis = policy.initialBackoffMillis;
+                recentCrashes.clear();
+            }
+            start();
+        }
+
+        // Stops the server for good: "stop" command, wait, then kill
+        public void stop() {
+            ProcessHandler current;
+            synchronized (this) {
+                stopRequested = true;
+                generation++;  // Retires the running process: its exit is no reason to restart, even if restart() follows
+                if (pendingRestart != null) {
+                    pendingRestart.cancel(false);
+                    pendingRestart = null;
+                }
+                current = handler;
+                if (state == State.RUNNING) {
+                    state = State.STOPPING;
+                }
+            }
+            Process process = current != null ? current.getProcess() : null;
+            if (process != null && process.isAlive()) {
+                stopProcess(current, process);
+            }
+            synchronized (this) {
+                if (state != State.GAVE_UP) {
+                    state = State.STOPPED;
+                }
+            }
+        }
+
+        private void stopProcess(ProcessHandler current, Process process) {
+            logger.info("Stopping " + name + "...");
+            try {
+                current.sendCommand("stop");
+                if (current.getCommandChannel() != null) {
+                    current.getCommandChannel().awaitIdle(1000);
+                }
+                if (process.waitFor(stopTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    logger.info(name + " stopped with exit code " + process.exitValue() + ".");
+                    return;
+                }
+                logger.warning(name + " did not stop within " + stopTimeoutMillis / 1000.0 + " s, killing it.");
+            } catch (IOException e) {
+                logger.warning("Could not send stop to " + name + " (" + e.getMessage() + "), killing it.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            kill(process);
+        }
+
+        private synchronized void start() throws IOException {
+            if (stopRequested) {
+                return;
+            }
+            Process running = handler != null ? handler.getProcess() : null;
+            if (running != null && running.isAlive()) {
+                throw new IOException(name + " is still running, not starting a second process");
+            }
+            pendingRestart = null;
+            long current = ++generation;
+            ProcessHandler next = factory.get();
+            next.getWatcher().onCrash(line -> killIfHung(next));
+            Process process = next.start();
+            handler = next;
+            state = State.RUNNING;
+            long startedAt = System.currentTimeMillis();
+            logger.info("Started " + name + (restarts > 0 ? " (restart " + restarts + ")" : "") + ".");
+
+            Thread monitor = new Thread(() -> monitor(process, startedAt, current), "cst-supervisor-" + name);
+            monitor.setDaemon(true);
+            monitor.start();
+        }
+
+        // Monitor thread: waits for the exit and applies the restart policy
+        private void monitor(Process process, long startedAt, long started) {
+            int exitCode;
+            try {
+                exitCode = process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            onExit(process, exitCode, System.currentTimeMillis() - startedAt, started);
+        }
+
+        private synchronized void onExit(Process process, int exitCode, long uptimeMillis, long started) {
+            if (started != generation || handler == null || handler.getProcess() != process) {
+                return;  // Stopped on purpose, or an older process that was already replaced
+            }
+            lastExitCode = exitCode;
+            boolean crashed = exitCode != 0 || handler.getWatcher().hasCrashed();
+            if (stopRequested) {
+                return;
+            }
+            if (!policy.shouldRestart(crashed)) {
+                state = State.STOPPED;
+                logger.info(name + " exited with code " + exitCode + ", not restarting.");
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            boolean quickExit = uptimeMillis < policy.stableAfterMillis;
+            if (!quickExit) {
+                nextBackoffMillis = policy.initialBackoffMillis;  // Ran long enough, start counting again
+            }
+            long delay = 0;
+            // A server that exits cleanly right after its start (e.g. eula=false) loops just like one that crashes,
+            // so quick exits count toward the cap and are always restarted with the backoff delay
+            if (crashed || quickExit) {
+                recentCrashes.addLast(now);
+                while (!recentCrashes.isEmpty() && now - recentCrashes.peekFirst() > policy.crashWindowMillis) {
+                    recentCrashes.removeFirst();
+                }
+                if (policy.maxCrashes > 0 && recentCrashes.size() > policy.maxCrashes) {
+                    state = State.GAVE_UP;
+                    logger.severe(name + " crashed or exited early " + recentCrashes.size() + " times within "
+                            + policy.crashWindowMillis / 1000 + " s, giving up.");
+                    return;
+                }
+                if (policy.backoff || quickExit) {
+                    delay = nextBackoffMillis;
+                    nextBackoffMillis = Math.min(policy.maxBackoffMillis, Math.max(1, nextBackoffMillis) * 2);
+                }
+            }
+
+            restarts++;
+            state = State.WAITING;
+            logger.warning(name + " exited with code " + exitCode + ", restarting"
+                    + (delay > 0 ? " in " + delay + " ms" : "") + ".");
+            long scheduled = generation;
+            pendingRestart = timer.schedule(() -> {
+                try {
+                    restartAfterExit(scheduled);
+                } catch (IOException | RuntimeException e) {
+                    synchronized (this) {
+                        state = State.GAVE_UP;
+                    }
+                    logger.severe("Restarting " + name + " failed: " + e.getMessage());
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        // Timer thread: starts the server again unless it was stopped or started in the meantime
+        private synchronized void restartAfterExit(long scheduled) throws IOException {
+            if (scheduled == generation) {
+                start();
+            }
+        }
+
+        // A server that printed a crash but keeps running (watchdog, stuck threads) is killed, so it can restart
+        // Only the anchored crash patterns of the ConsoleWatcher get here, and a server that is still printing after
+        // the timeout gets more time: it is only killed once it has been quiet for half the timeout.
+        private void killIfHung(ProcessHandler crashed) {
+            timer.schedule(() -> checkHung(crashed), hungCrashTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // Timer thread: kills the crashed process if it has gone quiet, otherwise checks again later
+        private void checkHung(ProcessHandler crashed) {
+            Process process = crashed.getProcess();
+            if (process == null || !process.isAlive() || handler != crashed || stopRequested) {
+                return;
+            }
+            long quietMillis = System.currentTimeMillis() - crashed.getWatcher().getLastLineAt();
+            long requiredQuietMillis = hungCrashTimeoutMillis / 2;
+            if (quietMillis < requiredQuietMillis) {
+                timer.schedule(() -> checkHung(crashed), requiredQuietMillis - quietMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            logger.warning(name + " is still running " + hungCrashTimeoutMillis / 1000.0 + " s after a crash and has been quiet for "
+                    + quietMillis / 1000.0 + " s, killing it.");
+            kill(process);
+        }
+    }
+
+    private static void kill(Process process) {
+        process.destroyForcibly();
+        try {
+            process.waitFor(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // When and how fast a server is restarted after it exits
+    public static class RestartPolicy {
+        private final boolean restartOnSuccess;
+        private final boolean restartOnFailure;
+        private final boolean backoff;
+        private long initialBackoffMillis = 1000;
+        private long maxBackoffMillis = 5 * 60 * 1000;
+        private long stableAfterMillis = 5 * 60 * 1000;  // Uptime after which the backoff starts over; shorter runs back off
+        private int maxCrashes = 0;  // 0 = no crash-loop cap
+        private long crashWindowMillis = 10 * 60 * 1000;
+
+        private RestartPolicy(boolean restartOnSuccess, boolean restartOnFailure, boolean backoff) {
+            this.restartOnSuccess = restartOnSuccess;
+            this.restartOnFailure = restartOnFailure;
+            this.backoff = backoff;
+        }
+
+        // Never restart
+        public static RestartPolicy never() {
+            return new RestartPolicy(false, false, false);
+        }
+
+        // Restart after every exit, right away unless the server exited before it ran stableAfter()
+        public static RestartPolicy always() {
+            return new RestartPolicy(true, true, false);
+        }
+
+        // Restart after a crash (exit code != 0 or a crash on the console), not after a clean stop; right away unless
+        // the server crashed before it ran stableAfter()
+        public static RestartPolicy onFailure() {
+            return new RestartPolicy(false, true, false);
+        }
+
+        // Restart after a crash, waiting twice as long after every crash in a row
+        public static RestartPolicy backoff(long initialMillis, long maxMillis) {
+            RestartPolicy policy = new RestartPolicy(false, true, true);
+            policy.initialBackoffMillis = initialMillis;
+            policy.maxBackoffMillis = maxMillis;
+            return policy;
+        }
+
+        // Method to give up after more than maxCrashes crashes or early exits within the window
+        public RestartPolicy maxCrashes(int maxCrashes, long windowMillis) {
+            this.maxCrashes = maxCrashes;
+            this.crashWindowMillis = windowMillis;
+            return this;
+        }
+
+        // Method to set the uptime after which the backoff starts over
+        public RestartPolicy stableAfter(long millis) {
+            this.stableAfterMillis = millis;
+            return this;
+        }
+
+        boolean shouldRestart(boolean crashed) {
+            return crashed ? restartOnFailure : restartOnSuccess;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+// Client for the Source RCON protocol, as spoken by Minecraft servers with enable-rcon=true
+// One authenticated connection is kept open and shared. A Minecraft server reads at most 1460 bytes per read() and drops
+// the connection unless that read holds exactly one packet, so every write carries a single packet and only one request
+// is outstanding at a time. Further commands wait in a queue and are sent as soon as the previous one is answered.
+// Packet layout (little endian): int length, int request id, int type, body as null-terminated string, one null byte.
+// A response longer than one packet arrives in several packets with the same id, and nothing marks the last one. So
+// once the first response packet is in, the server has read the command and a packet of an unknown type is sent after
+// it; the server answers that packet after the rest of the output, which ends the command.
+public class RconClient implements AutoCloseable {
+
+    private static final Logger logger = LoggerUtility.getLogger(RconClient.class);
+
+    static final int TYPE_RESPONSE = 0;
+    static final int TYPE_COMMAND = 2;
+    static final int TYPE_AUTH_RESPONSE = 2;
+    static final int TYPE_LOGIN = 3;
+    static final int TYPE_END_MARKER = 100;  // Unknown to the server, only used to find the end of a response
+
+    private static final int MAX_COMMAND_BYTES = 1446;  // Longest body a Minecraft server accepts
+    private static final int MAX_PACKET_BYTES = 64 * 1024 - 4;  // Fits the read buffer; Minecraft splits at 4096
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private long timeoutMillis = 5000;
+
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    // Guards queue, current and every write to the connection
+    private final Object lock = new Object();
+    private final Deque<Request> queue = new ArrayDeque<>();
+    private Request current;
+    private volatile SocketChannel channel;
+    private Thread reader;
+
+    // Constructor
+    public RconClient(String host, int port, String password) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+    }
+
+    // Method to set the timeout for connecting, logging in and for command()
+    public RconClient timeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    // Connects and logs in; later calls reuse the connection as long as it is open
+    public synchronized RconClient connect() throws IOException {
+        if (isConnected()) {
+            return this;
+        }
+        SocketChannel socket = SocketChannel.open();
+        try {
+            socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            socket.socket().connect(new InetSocketAddress(host, port), (int) timeoutMillis);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        channel = socket;
+        reader = new Thread(() -> readLoop(socket), "cst-rcon-" + host + ":" + port);
+        reader.setDaemon(true);
+        reader.start();
+
+        Request login = new Request(nextId.getAndIncrement(), -1, password.getBytes(StandardCharsets.UTF_8));
+        try {
+            synchronized (lock) {
+                current = login;
+                write(socket, packet(login.id, TYPE_LOGIN, login.body));
+            }
+            await(login.future);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        if (login.failed) {
+            close();
+            throw new IOException("RCON login to " + host + ":" + port + " failed: wrong password");
+        }
+        logger.fine("RCON connected to " + host + ":" + port);
+        return this;
+    }
+
+    // Sends a command and waits for the complete response
+    public String command(String command) throws IOException {
+        return await(commandAsync(command));
+    }
+
+    // Sends a command without waiting; it is queued behind the commands that are not answered yet
+    public CompletableFuture<String> commandAsync(String command) {
+        byte[] body = command.getBytes(StandardCharsets.UTF_8);
+        if (body.length > MAX_COMMAND_BYTES) {
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("RCON command longer than " + MAX_COMMAND_BYTES + " bytes"));
+            return failed;
+        }
+        try {
+            connect();
+        } catch (IOException e) {
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        int id = nextId.getAndAdd(2);
+        Request request = new Request(id, id + 1, body);
+        request.future.whenComplete((response, error) -> {
+            synchronized (lock) {
+                queue.remove(request);
+                if (current == request) {
+                    // Timed out while the server is still answering: the rest of its output would end up in the
+                    // next request, so the connection is given up
+                    current = null;
+                    closeQuietly(channel);
+                }
+            }
+        });
+        synchronized (lock) {
+            queue.add(request);
+            sendNext();
+        }
+        return request.future;
+    }
+
+    public boolean isConnected() {
+        SocketChannel socket = channel;
+        return socket != null && socket.isOpen();
+    }
+
+    // Closes the connection; requests still waiting fail
+    @Override
+    public synchronized void close() {
+        SocketChannel socket = channel;
+        channel = null;
+        closeQuietly(socket);
+        failAll(new IOException("RCON connection closed"));
+    }
+
+    // Reader thread: splits the stream into packets and hands them to the outstanding request
+    private void readLoop(SocketChannel socket) {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (true) {
+                if (socket.read(buffer) == -1) {
+                    throw new EOFException("RCON server closed the connection");
+                }
+                buffer.flip();
+                while (buffer.remaining() >= 4) {
+                    int length = buffer.getInt(buffer.position());
+                    if (length < 10 || length > MAX_PACKET_BYTES) {
+                        throw new IOException("Invalid RCON packet length: " + length);
+                    }
+                    if (buffer.remaining() < 4 + length) {
+                        break;  // Rest of the packet has not arrived yet
+                    }
+                    buffer.getInt();
+                    int id = buffer.getInt();
+                    int type = buffer.getInt();
+                    byte[] body = new byte[length - 10];
+                    buffer.get(body);
+                    buffer.get();  // Body terminator
+                    buffer.get();  // Empty string
+                    dispatch(socket, id, type, body);
+                }
+                buffer.compact();
+            }
+        } catch (IOException e) {
+            if (channel == socket) {
+                logger.warning("RCON connection to " + host + ":" + port + " lost: " + e.getMessage());
+            }
+            closeQuietly(socket);
+            failAll(e);
+        }
+    }
+
+    // Helper method to hand one packet to the outstanding request
+    private void dispatch(SocketChannel socket, int id, int type, byte[] body) throws IOException {
+        synchronized (lock) {
+            Request request = current;
+            if (request == null) {
+                return;  // Answer to a request that already timed out
+            }
+            if (request.markerId == -1) {
+                // Login: the server may send an empty response packet before the auth response
+                if (type == TYPE_AUTH_RESPONSE) {
+                    request.failed = id == -1;
+                    current = null;
+                    request.future.complete("");
+                }
+            } else if (id == request.id) {
+                request.response.append(new String(body, StandardCharsets.UTF_8));
+                if (!request.markerSent) {
+                    // The server has read the whole command, so the marker arrives in a read of its own
+                    request.markerSent = true;
+                    write(socket, packet(request.markerId, TYPE_END_MARKER, new byte[0]));
+                }
+            } else if (id == request.markerId) {
+                current = null;
+                request.future.complete(request.response.toString());
+                sendNext();
+            }
+        }
+    }
+
+    // Helper method to send the next queued command once nothing is outstanding; called with the lock held
+    private void sendNext() {
+        while (current == null && !queue.isEmpty()) {
+            Request request = queue.poll();
+            if (request.future.isDone()) {
+                continue;  // Timed out while waiting in the queue
+            }
+            SocketChannel socket = channel;
+            current = request;
+            try {
+                write(socket, packet(request.id, TYPE_COMMAND, request.body));
+            } catch (IOException e) {
+                // The reader thread fails everything that is still waiting once the channel is closed
+                current = null;
+                request.future.completeExceptionally(e);
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void failAll(IOException cause) {
+        List<Request> failed;
+        synchronized (lock) {
+            failed = new ArrayList<>(queue);
+            if (current != null) {
+                failed.add(current);
+            }
+            queue.clear();
+            current = null;
+        }
+        for (Request request : failed) {
+            request.future.completeExceptionally(cause);
+        }
+    }
+
+    private static void write(SocketChannel socket, ByteBuffer packet) throws IOException {
+        if (socket == null) {
+            throw new IOException("RCON is not connected");
+        }
+        while (packet.hasRemaining()) {
+            socket.write(packet);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+
+    private String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.completeExceptionally(e);
+            throw new IOException("RCON request timed out after " + timeoutMillis + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for RCON", e);
+        }
+    }
+
+    static ByteBuffer packet(int id, int type, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.allocate(14 + body.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(10 + body.length).putInt(id).putInt(type).put(body).put((byte) 0).put((byte) 0);
+        buffer.flip();
+        return buffer;
+    }
+
+    // One command; the response is collected until the end marker comes back
+    private static class Request {
+        final int id;
+        final int markerId;  // -1 for the login
+        final byte[] body;
+        final StringBuilder response = new StringBuilder();
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        boolean markerSent = false;
+        volatile boolean failed = false;
+
+        Request(int id, int markerId, byte[] body) {
+            this.id = id;
+            this.markerId = markerId;
+            this.body = body;
+        }
+    }
+}
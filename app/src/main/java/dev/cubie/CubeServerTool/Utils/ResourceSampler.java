@@ -0,0 +1,368 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Samples CPU, resident memory, threads and open files of server processes from /proc (Linux only)
+// One thread samples all processes on a fixed interval. Files are read into one reused byte buffer and parsed in
+// place, and samples go into fixed-size primitive ring buffers, so sampling dozens of servers allocates next to nothing.
+//   /proc/<pid>/stat    utime + stime (CPU ticks), num_threads
+//   /proc/<pid>/status  VmRSS
+//   /proc/<pid>/fd      one entry per open file descriptor
+public class ResourceSampler implements AutoCloseable {
+
+    private static final Logger logger = LoggerUtility.getLogger(ResourceSampler.class);
+
+    private static final Path PROC = Paths.get("/proc");
+    private static final double CLOCK_TICKS = 100.0;  // USER_HZ, 100 on every common Linux build
+
+    private final Map<String, Samples> processes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cst-resource-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final byte[] buffer = new byte[8192];  // Only used by the sampler thread
+    private final int capacity;
+
+    // Constructor; samples every intervalSeconds and keeps the last "capacity" samples per process
+    public ResourceSampler(long intervalSeconds, int capacity) {
+        this.capacity = capacity;
+        if (isSupported()) {
+            timer.scheduleAtFixedRate(this::sampleAll, 0, intervalSeconds, TimeUnit.SECONDS);
+        } else {
+            logger.fine("No /proc file system, resource sampling is disabled.");
+        }
+    }
+
+    public static boolean isSupported() {
+        return Files.isDirectory(PROC.resolve("self"));
+    }
+
+    // Starts sampling a process we started; a process already tracked under the name is replaced (e.g. after a restart)
+    public Samples track(String name, Process process) {
+        long pid = pidOf(process);
+        return pid > 0 ? track(name, pid) : null;
+    }
+
+    // Starts sampling any process by its pid, e.g. a server that was started outside this tool
+    public Samples track(String name, long pid) {
+        Samples current = processes.get(name);
+        if (current != null && current.pid == pid) {
+            return current;
+        }
+        Samples samples = new Samples(name, pid, capacity);
+        processes.put(name, samples);
+        return samples;
+    }
+
+    public void untrack(String name) {
+        processes.remove(name);
+    }
+
+    public Samples get(String name) {
+        return processes.get(name);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    // Sampler thread: one sample per process; processes that are gone are dropped
+    private void sampleAll() {
+        for (Samples samples : processes.values()) {
+            try {
+                if (!sample(samples)) {
+                    processes.remove(samples.name, samples);
+                }
+            } catch (RuntimeException e) {
+                logger.warning("Sampling " + samples.name + " failed: " + e);
+            }
+        }
+    }
+
+    // Helper method to take one sample; returns false if the process no longer exists
+    private boolean sample(Samples samples) {
+        Path dir = PROC.resolve(Long.toString(samples.pid));
+        long now = System.nanoTime();
+
+        // stat: "pid (comm) state ppid ..." - comm may contain spaces and brackets, so fields count from the last ')'
+        int length = read(dir.resolve("stat"));
+        if (length <= 0) {
+            return false;
+        }
+        int pos = lastIndexOf(buffer, length, (byte) ')') + 2;
+        long cpuTicks = 0;
+        int threads = 0;
+        for (int field = 3; field <= 20 && pos < length; field++) {
+            if (field == 14 || field == 15) {
+                cpuTicks += parseLong(buffer, pos, length);  // utime, stime
+            } else if (field == 20) {
+                threads = (int) parseLong(buffer, pos, length);
+            }
+            while (pos < length && buffer[pos] != ' ') pos++;
+            pos++;
+        }
+
+        // status: "VmRSS:\t  123456 kB"
+        long rssKb = 0;
+        length = read(dir.resolve("status"));
+        int rss = indexOf(buffer, length, VM_RSS);
+        if (rss >= 0) {
+            int start = rss + VM_RSS.length;
+            while (start < length && (buffer[start] == ' ' || buffer[start] == '\t')) start++;
+            rssKb = parseLong(buffer, start, length);
+        }
+
+        int fds = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir.resolve("fd"))) {
+            for (Path ignored : entries) {
+                fds++;
+            }
+        } catch (IOException e) {
+            fds = -1;  // Not ours to read (other user)
+        }
+
+        samples.add(now, cpuTicks, rssKb, threads, fds);
+        return true;
+    }
+
+    private static final byte[] VM_RSS = "VmRSS:".getBytes();
+
+    private int read(Path file) {
+        try (FileInputStream in = new FileInputStream(file.toFile())) {
+            int total = 0;
+            int read;
+            while (total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) > 0) {
+                total += read;
+            }
+            return total;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long parseLong(byte[] bytes, int pos, int length) {
+        long value = 0;
+        while (pos < length && bytes[pos] >= '0' && bytes[pos] <= '9') {
+            value = value * 10 + (bytes[pos++] - '0');
+        }
+        return value;
+    }
+
+    private static int lastIndexOf(byte[] bytes, int length, byte value) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (bytes[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte[] needle) {
+        outer:
+        for (int i = 0; i + needle.length <= length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (bytes[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // Helper method to get the pid of a process; Process.pid() only exists from Java 9 on
+    static long pidOf(Process process) {
+        try {
+            Method pid = Process.class.getMethod("pid");
+            return (Long) pid.invoke(process);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            try {
+                Field field = process.getClass().getDeclaredField("pid");  // java.lang.UNIXProcess on Java 8
+                field.setAccessible(true);
+                return field.getInt(process);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                return -1;
+            }
+        }
+    }
+
+    // Ring buffers of one process; written by the sampler thread, read by anyone
+    public static class Samples {
+        private final String name;
+        private final long pid;
+        private final long[] times;  // System.nanoTime()
+        private final double[] cpu;  // Percent of one core since the previous sample
+        private final long[] rssKb;
+        private final int[] threads;
+        private final int[] fds;
+        private long count = 0;
+        private long lastCpuTicks = -1;
+        private long lastTime;
+
+        Samples(String name, long pid, int capacity) {
+            this.name = name;
+            this.pid = pid;
+            this.times = new long[capacity];
+            this.cpu = new double[capacity];
+            this.rssKb = new long[capacity];
+            this.threads = new int[capacity];
+            this.fds = new int[capacity];
+        }
+
+        synchronized void add(long time, long cpuTicks, long rss, int threadCount, int fdCount) {
+            double cpuPercent = 0;
+            if (lastCpuTicks >= 0 && time > lastTime) {
+                double seconds = (time - lastTime) / 1e9;
+                cpuPercent = (cpuTicks - lastCpuTicks) / CLOCK_TICKS / seconds * 100;
+            }
+            lastCpuTicks = cpuTicks;
+            lastTime = time;
+
+            int slot = (int) (count % times.length);
+            times[slot] = time;
+            cpu[slot] = cpuPercent;
+            rssKb[slot] = rss;
+            threads[slot] = threadCount;
+            fds[slot] = fdCount;
+            count++;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getPid() {
+            return pid;
+        }
+
+        public synchronized int size() {
+            return (int) Math.min(count, times.length);
+        }
+
+        // Latest values, or null before the first sample
+        public synchronized Snapshot current() {
+            if (count == 0) {
+                return null;
+            }
+            int slot = (int) ((count - 1) % times.length);
+            return new Snapshot(cpu[slot], rssKb[slot], threads[slot], fds[slot]);
+        }
+
+        // Average, 95th percentile and maximum over the samples of the last windowSeconds
+        public synchronized Window window(long windowSeconds) {
+            int n = samplesWithin(windowSeconds);
+            double[] cpuValues = new double[n];
+            double[] rssValues = new double[n];
+            double[] threadValues = new double[n];
+            double[] fdValues = new double[n];
+            for (int i = 0; i < n; i++) {
+                int slot = (int) ((count - 1 - i) % times.length);
+                cpuValues[i] = cpu[slot];
+                rssValues[i] = rssKb[slot];
+                threadValues[i] = threads[slot];
+                fdValues[i] = fds[slot];
+            }
+            return new Window(n, new Stat(cpuValues), new Stat(rssValues), new Stat(threadValues), new Stat(fdValues),
+                    rssSlopeKbPerHour(n));
+        }
+
+        private int samplesWithin(long windowSeconds) {
+            int available = (int) Math.min(count, times.length);
+            long newest = times[(int) ((count - 1 + times.length) % times.length)];
+            long limit = TimeUnit.SECONDS.toNanos(windowSeconds);
+            int n = 0;
+            while (n < available && newest - times[(int) ((count - 1 - n) % times.length)] <= limit) {
+                n++;
+            }
+            return n;
+        }
+
+        // Least squares slope of the RSS over the newest n samples; a steady positive value is memory creep
+        private double rssSlopeKbPerHour(int n) {
+            if (n < 2) {
+                return 0;
+            }
+            long origin = times[(int) ((count - n) % times.length)];
+            double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+            for (int i = 0; i < n; i++) {
+                int slot = (int) ((count - n + i) % times.length);
+                double x = (times[slot] - origin) / 3.6e12;  // Hours
+                double y = rssKb[slot];
+                sumX += x;
+                sumY += y;
+                sumXX += x * x;
+                sumXY += x * y;
+            }
+            double denominator = n * sumXX - sumX * sumX;
+            return denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+        }
+    }
+
+    // Values of one sample
+    public static class Snapshot {
+        public final double cpuPercent;
+        public final long rssKb;
+        public final int threads;
+        public final int openFiles;  // -1 if the fd folder is not readable
+
+        Snapshot(double cpuPercent, long rssKb, int threads, int openFiles) {
+            this.cpuPercent = cpuPercent;
+            this.rssKb = rssKb;
+            this.threads = threads;
+            this.openFiles = openFiles;
+        }
+    }
+
+    // Statistics over a time window
+    public static class Window {
+        public final int samples;
+        public final Stat cpuPercent;
+        public final Stat rssKb;
+        public final Stat threads;
+        public final Stat openFiles;
+        public final double rssSlopeKbPerHour;
+
+        Window(int samples, Stat cpuPercent, Stat rssKb, Stat threads, Stat openFiles, double rssSlopeKbPerHour) {
+            this.samples = samples;
+            this.cpuPercent = cpuPercent;
+            this.rssKb = rssKb;
+            this.threads = threads;
+            this.openFiles = openFiles;
+            this.rssSlopeKbPerHour = rssSlopeKbPerHour;
+        }
+    }
+
+    // Average, 95th percentile and maximum of one metric
+    public static class Stat {
+        public final double avg;
+        public final double p95;
+        public final double max;
+
+        Stat(double[] values) {
+            if (values.length == 0) {
+                avg = p95 = max = 0;
+                return;
+            }
+            Arrays.sort(values);
+            double sum = 0;
+            for (double value : values) {
+                sum += value;
+            }
+            avg = sum / values.length;
+            p95 = values[Math.min(values.length - 1, (int) Math.ceil(values.length * 0.95) - 1)];
+            max = values[values.length - 1];
+        }
+    }
+}
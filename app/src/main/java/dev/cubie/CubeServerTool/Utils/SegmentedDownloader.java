@@ -0,0 +1,284 @@
+package dev.cubie.CubeServerTool.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+
+// Downloads a file in N parallel byte ranges and writes each range at its offset in the target file
+public class SegmentedDownloader {
+
+    // Never open more connections than this, whatever the segment count
+    public static final int MAX_PARALLEL = 8;
+
+    // Files below this size are not worth splitting
+    public static final long MIN_SEGMENTED_SIZE = 4L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int RANGE_ATTEMPTS = 3;  // Tries per range before the download fails
+    private static final Logger logger = LoggerUtility.getLogger(SegmentedDownloader.class);
+
+    private final String source;
+    private final Map<String, String> headers = new HashMap<>();
+    private int segments = 4;
+    private String etag;
+    private String lastModified;
+    private volatile boolean rangeIgnored = false;
+    private MessageDigest digest;  // Optional, fed in file order while the ranges arrive
+    private long hashedUpTo = 0;
+
+    // Constructor
+    public SegmentedDownloader(String source) {
+        this.source = source;
+    }
+
+    // Method to add headers sent with every range request
+    public SegmentedDownloader headers(Map<String, String> headers) {
+        this.headers.putAll(headers);
+        return this;
+    }
+
+    // Method to set the number of byte ranges
+    public SegmentedDownloader segments(int segments) {
+        this.segments = Math.max(1, segments);
+        return this;
+    }
+
+    // Method to hash the file while it is downloaded
+    // Ranges arrive out of order, so the digest trails behind the contiguous prefix that is already on disk
+    public SegmentedDownloader digest(MessageDigest digest) {
+        this.digest = digest;
+        return this;
+    }
+
+    // Sends a HEAD request and returns the content length if the server accepts byte ranges, otherwise -1
+    public long probeRangeSupport() throws IOException {
+        HttpURLConnection connection = open("HEAD");
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode < 200 || responseCode >= 300) {
+                return -1;
+            }
+            etag = connection.getHeaderField("ETag");
+            lastModified = connection.getHeaderField("Last-Modified");
+
+            String acceptRanges = connection.getHeaderField("Accept-Ranges");
+            if (acceptRanges == null || !acceptRanges.trim().equalsIgnoreCase("bytes")) {
+                return -1;
+            }
+            return connection.getContentLengthLong();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Getter for the ETag returned by probeRangeSupport()
+    public String getETag() {
+        return etag;
+    }
+
+    // Getter for the Last-Modified header returned by probeRangeSupport()
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    // Returns true if the server answered a range request with the full file
+    public boolean isRangeIgnored() {
+        return rangeIgnored;
+    }
+
+    // Downloads every range the journal is still missing into its ".part" file
+    // onProgress receives the total bytes on disk and is only ever called from the calling thread
+    public void download(DownloadJournal journal, LongConsumer onProgress) throws IOException {
+        List<long[]> ranges = split(journal.missingRanges());
+        hashedUpTo = 0;
+        if (ranges.isEmpty()) {
+            // Everything is on disk already (the last run ended between the final range and the move), only the
+            // digest still has to see it
+            try (FileChannel channel = FileChannel.open(journal.getPartFile(), StandardOpenOption.READ)) {
+                hashPrefix(channel, journal.completedPrefix());
+            }
+            if (onProgress != null) onProgress.accept(journal.completedBytes());
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(ranges.size(), MAX_PARALLEL), runnable -> {
+            Thread thread = new Thread(runnable, "cst-segment");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel channel = FileChannel.open(journal.getPartFile(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long[] range : ranges) {
+                futures.add(pool.submit(() -> {
+                    fetchRangeWithRetries(channel, range[0], range[1], journal);
+                    return null;
+                }));
+            }
+
+            // Wait for all ranges, report progress and checkpoint the journal meanwhile
+            long lastSave = System.currentTimeMillis();
+            for (Future<?> future : futures) {
+                while (true) {
+                    try {
+                        future.get(200, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        if (onProgress != null) onProgress.accept(journal.completedBytes());
+                        hashPrefix(channel, journal.completedPrefix());
+                        if (System.currentTimeMillis() - lastSave > 1000) {
+                            channel.force(false);
+                            journal.save();
+                            lastSave = System.currentTimeMillis();
+                        }
+                    }
+                }
+            }
+            if (onProgress != null) onProgress.accept(journal.completedBytes());
+            hashPrefix(channel, journal.completedPrefix());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Segmented download interrupted", e);
+        } finally {
+            pool.shutdownNow();
+            journal.save();  // Keep what made it to disk, even if a range failed
+        }
+
+        if (!journal.missingRanges().isEmpty()) {
+            throw new IOException("Segmented download incomplete: " + journal.completedBytes() + " of " + journal.getContentLength() + " bytes");
+        }
+    }
+
+    // Helper method to feed the digest with everything between the last hashed byte and the end of the contiguous prefix
+    // The bytes were just written, so they are read back from the page cache
+    private void hashPrefix(FileChannel channel, long prefix) throws IOException {
+        if (digest == null || prefix <= hashedUpTo) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (hashedUpTo < prefix) {
+            buffer.limit((int) Math.min(BUFFER_SIZE, prefix - hashedUpTo));
+            int bytes = channel.read(buffer, hashedUpTo);
+            if (bytes == -1) {
+                break;
+            }
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+            hashedUpTo += bytes;
+        }
+    }
+
+    // Helper method to cut the missing ranges into roughly "segments" pieces of at least 1 MB
+    private List<long[]> split(List<long[]> missing) {
+        long missingBytes = 0;
+        for (long[] range : missing) {
+            missingBytes += range[1] - range[0];
+        }
+        long pieceSize = Math.max(1024 * 1024, (missingBytes + segments - 1) / segments);
+
+        List<long[]> pieces = new ArrayList<>();
+        for (long[] range : missing) {
+            for (long from = range[0]; from < range[1]; from += pieceSize) {
+                pieces.add(new long[] {from, Math.min(range[1], from + pieceSize)});
+            }
+        }
+        return pieces;
+    }
+
+    // Helper method to fetch a range, trying again after an error response or a broken connection
+    // Only a 200 answer gives up right away, because then the server does not serve ranges for this file
+    private void fetchRangeWithRetries(FileChannel channel, long from, long to, DownloadJournal journal) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                fetchRange(channel, from, to, journal);
+                return;
+            } catch (IOException e) {
+                if (rangeIgnored || attempt >= RANGE_ATTEMPTS) {
+                    throw e;
+                }
+                logger.fine("Retrying range " + from + "-" + (to - 1) + " of " + source + ": " + e.getMessage());
+                Thread.sleep(500L * attempt);
+            }
+        }
+    }
+
+    // Fetches one byte range [from, to) and writes it at its offset with positional writes
+    private void fetchRange(FileChannel channel, long from, long to, DownloadJournal journal) throws IOException {
+        HttpURLConnection connection = open("GET");
+        connection.setRequestProperty("Range", "bytes=" + from + "-" + (to - 1));
+        String validator = journal.getValidator();
+        if (validator != null) {
+            connection.setRequestProperty("If-Range", validator);
+        }
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                // The whole file instead of the range: no range support after all, or the file changed (If-Range)
+                rangeIgnored = true;
+                throw new IOException("Server ignored range " + from + "-" + (to - 1) + " (response code " + responseCode + ")");
+            }
+            if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Range " + from + "-" + (to - 1) + " failed with response code " + responseCode);
+            }
+
+            try (InputStream in = connection.getInputStream();
+                 ReadableByteChannel src = Channels.newChannel(in)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                long position = from;
+                while (position < to && src.read(buffer) != -1) {
+                    buffer.flip();
+                    // Never write past the end of this range, even if the server sends more
+                    if (buffer.remaining() > to - position) {
+                        buffer.limit((int) (to - position));
+                    }
+                    long chunkStart = position;
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    journal.markCompleted(chunkStart, position);
+                    buffer.clear();
+                }
+                if (position != to) {
+                    throw new IOException("Range " + from + "-" + (to - 1) + " ended early at " + position);
+                }
+            }
+            logger.fine(() -> "Fetched range " + from + "-" + (to - 1) + " of " + source);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Helper method to open a connection with the configured headers
+    private HttpURLConnection open(String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(source).openConnection();
+        connection.setRequestMethod(method);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        connection.setConnectTimeout(5000); // 5 seconds timeout
+        return connection;
+    }
+}
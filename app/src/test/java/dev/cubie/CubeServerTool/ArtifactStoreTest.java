@@ -0,0 +1,137 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.ArtifactStore;
+import dev.cubie.CubeServerTool.Utils.FileOperation;
+import dev.cubie.CubeServerTool.Utils.HashAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArtifactStoreTest {
+
+    @TempDir
+    Path temp;
+
+    // Writes a file and returns its SHA-1
+    private static String write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return HashAlgorithm.SHA1.hash(file);
+    }
+
+    @Test
+    void testAddAndMaterialize() throws Exception {
+        ArtifactStore store = new ArtifactStore(temp.resolve("store"));
+        Path download = temp.resolve("downloads/server.jar");
+        String hash = write(download, "server jar");
+
+        Path object = store.add(download, HashAlgorithm.SHA1, hash);
+        assertTrue(store.contains(HashAlgorithm.SHA1, hash));
+        assertEquals(store.objectPath(HashAlgorithm.SHA1, hash), object);
+        assertFalse(Files.exists(download));
+
+        Path first = temp.resolve("lobby/server.jar");
+        Path second = temp.resolve("survival/server.jar");
+        store.materialize(HashAlgorithm.SHA1, hash, first);
+        store.materialize(HashAlgorithm.SHA1, hash, second);
+        store.materialize(HashAlgorithm.SHA1, hash, second);  // Already in place
+        assertEquals("server jar", new String(Files.readAllBytes(first), StandardCharsets.UTF_8));
+        assertEquals(hash, HashAlgorithm.SHA1.hash(second));
+        assertTrue(Files.isWritable(first));  // A server may replace its own jar
+
+        // Adding the same content again keeps the existing object and drops the new file
+        Path again = temp.resolve("downloads/again.jar");
+        write(again, "server jar");
+        assertEquals(object, store.add(again, HashAlgorithm.SHA1, hash));
+        assertFalse(Files.exists(again));
+    }
+
+    @Test
+    void testAddRejectsWrongHash() throws Exception {
+        ArtifactStore store = new ArtifactStore(temp.resolve("store"));
+        Path download = temp.resolve("downloads/server.jar");
+        write(download, "server jar");
+        String other = HashAlgorithm.SHA1.hash(Files.write(temp.resolve("other"), "something else".getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(IOException.class, () -> store.add(download, HashAlgorithm.SHA1, other));
+        assertFalse(store.contains(HashAlgorithm.SHA1, other));
+        assertTrue(Files.exists(download));
+        assertThrows(IOException.class, () -> store.materialize(HashAlgorithm.SHA1, other, temp.resolve("lobby/server.jar")));
+    }
+
+    @Test
+    void testGcRemovesOnlyUnreferencedObjects() throws Exception {
+        ArtifactStore store = new ArtifactStore(temp.resolve("store"));
+        String kept = write(temp.resolve("downloads/kept.jar"), "kept");
+        String deleted = write(temp.resolve("downloads/deleted.jar"), "deleted");
+        String replaced = write(temp.resolve("downloads/replaced.jar"), "replaced");
+        store.add(temp.resolve("downloads/kept.jar"), HashAlgorithm.SHA1, kept);
+        store.add(temp.resolve("downloads/deleted.jar"), HashAlgorithm.SHA1, deleted);
+        store.add(temp.resolve("downloads/replaced.jar"), HashAlgorithm.SHA1, replaced);
+        store.materialize(HashAlgorithm.SHA1, kept, temp.resolve("lobby/kept.jar"));
+        store.materialize(HashAlgorithm.SHA1, deleted, temp.resolve("lobby/deleted.jar"));
+        store.materialize(HashAlgorithm.SHA1, replaced, temp.resolve("lobby/replaced.jar"));
+        assertEquals(0, store.gc());
+
+        Files.delete(temp.resolve("lobby/deleted.jar"));
+        // Replaced by a different file of the same size: neither a link to the object nor a copy of it anymore
+        Files.delete(temp.resolve("lobby/replaced.jar"));
+        Files.write(temp.resolve("lobby/replaced.jar"), "REPLACED".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, store.gc());
+        assertTrue(store.contains(HashAlgorithm.SHA1, kept));
+        assertFalse(store.contains(HashAlgorithm.SHA1, deleted));
+        assertFalse(store.contains(HashAlgorithm.SHA1, replaced));
+        assertEquals("REPLACED", new String(Files.readAllBytes(temp.resolve("lobby/replaced.jar")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testObjectModifiedThroughALinkIsDropped() throws Exception {
+        ArtifactStore store = new ArtifactStore(temp.resolve("store"));
+        String hash = write(temp.resolve("downloads/server.jar"), "server jar");
+        store.add(temp.resolve("downloads/server.jar"), HashAlgorithm.SHA1, hash);
+        Path lobby = temp.resolve("lobby/server.jar");
+        store.materialize(HashAlgorithm.SHA1, hash, lobby);
+        assertEquals(0, store.gc());
+
+        // Same size, written in place: the object behind the link changes with it
+        Files.write(lobby, "SERVER JAR".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(lobby, FileTime.fromMillis(Files.getLastModifiedTime(lobby).toMillis() + 5000));
+
+        assertEquals(1, store.gc());  // The same-inode reference no longer keeps it
+        assertFalse(store.contains(HashAlgorithm.SHA1, hash));
+        assertThrows(IOException.class, () -> store.materialize(HashAlgorithm.SHA1, hash, temp.resolve("survival/server.jar")));
+        assertEquals("SERVER JAR", new String(Files.readAllBytes(lobby), StandardCharsets.UTF_8));
+
+        // Adding the real content again brings the object back
+        write(temp.resolve("downloads/server.jar"), "server jar");
+        store.addAndMaterialize(temp.resolve("downloads/server.jar"), HashAlgorithm.SHA1, hash, temp.resolve("survival/server.jar"));
+        assertTrue(store.contains(HashAlgorithm.SHA1, hash));
+        assertEquals(hash, HashAlgorithm.SHA1.hash(temp.resolve("survival/server.jar")));
+    }
+
+    @Test
+    void testSaveToDoesNotWriteThroughALink() throws Exception {
+        ArtifactStore store = new ArtifactStore(temp.resolve("store"));
+        String hash = write(temp.resolve("downloads/server.properties"), "motd=A");
+        store.add(temp.resolve("downloads/server.properties"), HashAlgorithm.SHA1, hash);
+        Path lobby = temp.resolve("lobby/server.properties");
+        Path survival = temp.resolve("survival/server.properties");
+        store.materialize(HashAlgorithm.SHA1, hash, lobby);
+        store.materialize(HashAlgorithm.SHA1, hash, survival);
+
+        write(temp.resolve("edited.properties"), "motd=B");
+        FileOperation.getFile(temp.resolve("edited.properties").toString()).noLog().fetch().saveTo(lobby.toString());
+
+        assertEquals("motd=B", new String(Files.readAllBytes(lobby), StandardCharsets.UTF_8).trim());
+        assertEquals("motd=A", new String(Files.readAllBytes(survival), StandardCharsets.UTF_8));
+        assertTrue(store.contains(HashAlgorithm.SHA1, hash));
+    }
+}
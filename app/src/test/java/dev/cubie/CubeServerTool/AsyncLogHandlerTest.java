@@ -0,0 +1,128 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.AsyncLogHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLogHandlerTest {
+
+    // Collects records; can be held up to fill the queue
+    private static class CollectingHandler extends Handler {
+        final List<LogRecord> records = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch release;
+        final CountDownLatch entered = new CountDownLatch(1);  // Counted down once the writer is inside publish()
+        volatile int flushes = 0;
+
+        CollectingHandler(CountDownLatch release) {
+            this.release = release;
+            setLevel(Level.ALL);
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    void testAllRecordsOfAllThreadsArriveInOrder() throws Exception {
+        CollectingHandler target = new CollectingHandler(new CountDownLatch(0));
+        AsyncLogHandler handler = new AsyncLogHandler(64, 50, AsyncLogHandler.OverflowPolicy.BLOCK).addTarget(target);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String name = "t" + t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    handler.publish(new LogRecord(Level.FINE, name + " " + i));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        handler.flush();
+
+        assertEquals(20000, target.records.size());
+        assertEquals(0L, handler.getDropped());
+        assertTrue(target.flushes > 0);
+        int[] next = new int[4];
+        for (LogRecord record : target.records) {
+            String[] parts = record.getMessage().split(" ");
+            int thread = parts[0].charAt(1) - '0';
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+        handler.close();
+    }
+
+    @Test
+    void testDropDebugKeepsWarningsWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingHandler target = new CollectingHandler(release);
+        AsyncLogHandler handler = new AsyncLogHandler(16, 50, AsyncLogHandler.OverflowPolicy.DROP_DEBUG).addTarget(target);
+
+        // Hold the writer inside the target first, so it can't make room while the queue is filled
+        handler.publish(new LogRecord(Level.FINE, "first"));
+        assertTrue(target.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.FINE, "debug " + i));
+        }
+        Thread warner = new Thread(() -> handler.publish(new LogRecord(Level.WARNING, "important")));
+        warner.start();
+        warner.join(200);
+        assertTrue(warner.isAlive(), "WARNING must wait for space instead of being dropped");
+
+        release.countDown();
+        warner.join(5000);
+        handler.close();
+
+        assertTrue(handler.getDropped() > 0);
+        assertTrue(target.records.stream().anyMatch(record -> record.getMessage().equals("important")));
+        assertTrue(target.records.stream().anyMatch(record -> record.getMessage().contains("log records dropped")));
+        assertEquals(0, handler.getQueued());
+    }
+
+    @Test
+    void testCallerIsTheLoggingClassNotTheWriterThread() {
+        CollectingHandler target = new CollectingHandler(new CountDownLatch(0));
+        AsyncLogHandler handler = new AsyncLogHandler(16, 50, AsyncLogHandler.OverflowPolicy.BLOCK).addTarget(target);
+        Logger logger = Logger.getLogger("AsyncLogHandlerTest");
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+
+        logger.info("hello");
+        handler.close();
+        logger.removeHandler(handler);
+
+        assertEquals(1, target.records.size());
+        assertEquals(AsyncLogHandlerTest.class.getName(), target.records.get(0).getSourceClassName());
+        assertEquals("testCallerIsTheLoggingClassNotTheWriterThread", target.records.get(0).getSourceMethodName());
+    }
+}
@@ -0,0 +1,118 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.CSVFileHandler;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSVFileHandlerTest {
+
+    @Test
+    void testRotatesBySizeAndCompressesSegments() throws Exception {
+        Path folder = Files.createTempDirectory("cst-log-rotation");
+        Path log = folder.resolve("latest-log.csv");
+        CSVFileHandler handler = new CSVFileHandler(log).rotateAt(4096).rotateDaily(false);
+        for (int i = 0; i < 500; i++) {
+            handler.publish(record(Level.INFO, "line " + i, System.currentTimeMillis()));
+        }
+        handler.close();
+        assertTrue(CSVFileHandler.awaitCompression(10000));
+
+        List<Path> segments = handler.getSegments();
+        assertTrue(segments.size() >= 4, segments.size() + " segments");
+        List<String> lines = new ArrayList<>();
+        for (Path segment : segments) {
+            assertTrue(segment.getFileName().toString().endsWith(".csv.gz"), segment.toString());
+            lines.addAll(readLines(segment));
+        }
+        lines.addAll(Files.readAllLines(log, StandardCharsets.UTF_8));
+
+        // Every segment starts with the header, and no line is lost or duplicated
+        int next = 0;
+        for (String line : lines) {
+            if (line.startsWith("Timestamp,")) {
+                continue;
+            }
+            assertTrue(line.contains(",INFO,line " + next + ","), line);
+            next++;
+        }
+        assertEquals(500, next);
+        assertTrue(Files.size(log) <= 4096);
+    }
+
+    @Test
+    void testRetentionDeletesOldestSegments() throws Exception {
+        Path folder = Files.createTempDirectory("cst-log-retention");
+        CSVFileHandler handler = new CSVFileHandler(folder.resolve("latest-log.csv")).rotateAt(2048).retention(1500);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 30; i++) {
+                handler.publish(record(Level.WARNING, "round " + round + " entry " + i + " " + Math.random(), System.currentTimeMillis()));
+            }
+            Thread.sleep(20);  // Distinct modification times
+        }
+        handler.close();
+        assertTrue(CSVFileHandler.awaitCompression(10000));
+
+        long total = 0;
+        for (Path segment : handler.getSegments()) {
+            total += Files.size(segment);
+        }
+        assertTrue(total <= 1500, "segments use " + total + " bytes");
+        assertFalse(handler.getSegments().isEmpty());
+        // The newest segment is kept
+        List<String> newest = readLines(handler.getSegments().get(handler.getSegments().size() - 1));
+        assertTrue(newest.get(newest.size() - 1).contains("round 9") || newest.get(newest.size() - 1).contains("round 8"));
+    }
+
+    @Test
+    void testRotatesWhenTheDayChanges() throws Exception {
+        Path folder = Files.createTempDirectory("cst-log-daily");
+        Path log = folder.resolve("latest-log.csv");
+        CSVFileHandler handler = new CSVFileHandler(log).rotateDaily(true);
+        long now = System.currentTimeMillis();
+        handler.publish(record(Level.INFO, "today", now));
+        handler.publish(record(Level.INFO, "tomorrow", now + 24 * 60 * 60 * 1000L));
+        handler.close();
+        assertTrue(CSVFileHandler.awaitCompression(10000));
+
+        List<Path> segments = handler.getSegments();
+        assertEquals(1, segments.size());
+        String today = LocalDate.now(ZoneId.systemDefault()).toString();
+        assertEquals("latest-log-" + today + "-1.csv.gz", segments.get(0).getFileName().toString());
+        assertTrue(readLines(segments.get(0)).get(1).contains(",today,"));
+        assertTrue(Files.readAllLines(log, StandardCharsets.UTF_8).get(1).contains(",tomorrow,"));
+    }
+
+    private static LogRecord record(Level level, String message, long millis) {
+        LogRecord record = new LogRecord(level, message);
+        record.setMillis(millis);
+        record.setSourceClassName("Test");
+        record.setSourceMethodName("run");
+        return record;
+    }
+
+    private static List<String> readLines(Path gzip) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(gzip)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
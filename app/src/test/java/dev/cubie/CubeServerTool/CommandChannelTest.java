@@ -0,0 +1,76 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.CommandChannel;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandChannelTest {
+
+    @Test
+    void testCommandsFromManyThreadsAreWrittenInBatches() throws Exception {
+        ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+        CommandChannel channel = new CommandChannel(stdin);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2500; i++) {
+                    channel.send("whitelist add player" + thread + "_" + i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<String> script = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            script.add("lp user player" + i + " permission set build true");
+        }
+        channel.sendAll(script);
+
+        assertTrue(channel.awaitIdle(10000));
+        assertEquals(11000L, channel.getWritten());
+        assertTrue(channel.getFlushes() < 11000, "expected batched writes, got " + channel.getFlushes() + " flushes");
+
+        // Later commands still arrive, stdin stays open
+        assertTrue(channel.send("save-all"));
+        channel.close();
+        assertFalse(channel.send("stop"));
+
+        String[] lines = new String(stdin.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(11001, lines.length);
+        Set<String> unique = new HashSet<>();
+        for (String line : lines) {
+            unique.add(line);
+        }
+        assertEquals(11001, unique.size());
+        assertEquals("save-all", lines[lines.length - 1]);
+    }
+
+    @Test
+    void testRateLimitSpreadsCommands() throws Exception {
+        ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+        CommandChannel channel = new CommandChannel(stdin).rateLimit(100);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 21; i++) {
+            channel.send("say " + i);
+        }
+        assertTrue(channel.awaitIdle(5000));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        channel.close();
+
+        assertTrue(elapsedMillis >= 180, "21 commands at 100/s took only " + elapsedMillis + " ms");
+        assertEquals(21L, channel.getWritten());
+    }
+}
@@ -0,0 +1,78 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.ConsoleBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsoleBufferTest {
+
+    @Test
+    void testSubscriberReceivesLinesOfBothWritersInOrder() throws Exception {
+        ConsoleBuffer buffer = new ConsoleBuffer(1 << 16);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        ConsoleBuffer.Subscription subscription = buffer.subscribe("test-subscriber", line -> received.add(line.text));
+
+        Thread out = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) buffer.publish("out " + i, false);
+        });
+        Thread err = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) buffer.publish("err " + i, true);
+        });
+        out.start();
+        err.start();
+        out.join();
+        err.join();
+        buffer.close();
+
+        assertTrue(subscription.await(10000));
+        assertEquals(0L, subscription.getDropped());
+        assertEquals(40000, received.size());
+
+        // Each writer's lines keep their order
+        int nextOut = 0;
+        int nextErr = 0;
+        for (String line : received) {
+            if (line.startsWith("out ")) {
+                assertEquals("out " + nextOut++, line);
+            } else {
+                assertEquals("err " + nextErr++, line);
+            }
+        }
+    }
+
+    @Test
+    void testSlowSubscriberDoesNotBlockWriter() throws Exception {
+        ConsoleBuffer buffer = new ConsoleBuffer(64);
+        AtomicLong seen = new AtomicLong();
+        ConsoleBuffer.Subscription slow = buffer.subscribe("slow-subscriber", line -> {
+            seen.incrementAndGet();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+            buffer.publish("spam " + i, false);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        buffer.close();
+
+        assertTrue(elapsedMillis < 2000, "writer took " + elapsedMillis + " ms");
+        assertTrue(slow.await(10000));
+        assertTrue(slow.getDropped() > 0);
+        assertEquals(100000L, seen.get() + slow.getDropped());
+
+        List<ConsoleBuffer.Line> tail = buffer.tail(10);
+        assertEquals(10, tail.size());
+        assertEquals("spam 99999", tail.get(9).text);
+    }
+}
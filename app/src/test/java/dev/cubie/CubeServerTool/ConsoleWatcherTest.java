@@ -0,0 +1,104 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.ConsoleBuffer;
+import dev.cubie.CubeServerTool.Utils.ConsoleWatcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsoleWatcherTest {
+
+    @Test
+    void testDetectsStartupLagAndCrash() throws Exception {
+        ConsoleBuffer buffer = new ConsoleBuffer(256);
+        List<Long> ready = Collections.synchronizedList(new ArrayList<>());
+        List<String> crashes = Collections.synchronizedList(new ArrayList<>());
+        List<String> joins = Collections.synchronizedList(new ArrayList<>());
+
+        ConsoleWatcher watcher = new ConsoleWatcher()
+                .onReady(ready::add)
+                .onCrash(crashes::add)
+                .addRule("joined the game", Pattern.compile("(\\w+) joined the game"), matcher -> joins.add(matcher.group(1)));
+        watcher.attach(buffer, System.currentTimeMillis());
+
+        buffer.publish("[12:00:00] [Server thread/INFO]: Starting minecraft server version 1.21.1", false);
+        buffer.publish("[12:00:09] [Server thread/INFO]: Done (8.532s)! For help, type \"help\"", false);
+        buffer.publish("[12:00:10] [Server thread/INFO]: Steve joined the game", false);
+        buffer.publish("[12:01:00] [Server thread/WARN]: Can't keep up! Is the server overloaded? Running 2041ms or 40 ticks behind", false);
+        buffer.publish("[12:02:00] [Server thread/WARN]: Can't keep up! Is the server overloaded? Running 5012ms or 100 ticks behind", false);
+        buffer.publish("[12:03:00] [Server thread/ERROR]: Encountered an unexpected exception", true);
+        buffer.publish("[12:03:00] [Server thread/ERROR]: This crash report has been saved to: ./crash-reports/crash-2024.txt", true);
+        buffer.close();
+
+        assertTrue(watcher.awaitReady(5000));
+        waitFor(() -> watcher.getCrashReport() != null);
+
+        assertEquals(8532L, watcher.getStartupMillis());
+        assertTrue(watcher.getReadyAfterMillis() >= 0);
+        assertEquals(1, ready.size());
+        assertEquals(2L, watcher.getLagEvents());
+        assertEquals(7053L, watcher.getLagMillisTotal());
+        assertEquals(140L, watcher.getTicksSkippedTotal());
+        assertEquals(5012L, watcher.getMaxLagMillis());
+        assertTrue(watcher.hasCrashed());
+        assertEquals("[12:03:00] [Server thread/ERROR]: Encountered an unexpected exception", watcher.getCrashLine());
+        assertEquals("./crash-reports/crash-2024.txt", watcher.getCrashReport());
+        assertEquals(1, crashes.size());
+        assertEquals("Steve", joins.get(0));
+    }
+
+    @Test
+    void testOrdinaryLinesDoNotMatch() {
+        ConsoleWatcher watcher = new ConsoleWatcher();
+        String[] lines = {
+                "[12:00:00] [Server thread/INFO]: Preparing spawn area: 83%",
+                "[12:00:00] [Server thread/INFO]: <Alex> Done (with the farm)!",
+                "[12:00:00] [Server thread/INFO]: <Alex> I can't keep up!"
+        };
+        ConsoleBuffer buffer = new ConsoleBuffer(16);
+        for (String text : lines) {
+            buffer.publish(text, false);
+        }
+        for (ConsoleBuffer.Line line : buffer.tail(16)) {
+            watcher.accept(line);
+        }
+        assertFalse(watcher.isReady());
+        assertEquals(0L, watcher.getLagEvents());
+        assertFalse(watcher.hasCrashed());
+    }
+
+    @Test
+    void testChatLinesDoNotTrigger() {
+        ConsoleWatcher watcher = new ConsoleWatcher();
+        String[] lines = {
+                "[12:00:00] [Server thread/INFO]: <Alex> Done (8.532s)! For help, type \"help\"",
+                "[12:00:00] [Server thread/INFO]: <Alex> Can't keep up! Is the server overloaded? Running 5012ms or 100 ticks behind",
+                "[12:00:00] [Server thread/INFO]: <Alex> Encountered an unexpected exception",
+                "[12:00:00] [Async Chat Thread - #0/INFO]: [Not Secure] <Alex> Exception in server tick loop",
+                "[12:00:00] [Server thread/INFO]: [Alex: ---- Minecraft Crash Report ----]",
+                "[12:00:00] [Server thread/INFO]: Alex whispers to you: This crash report has been saved to: nowhere"
+        };
+        ConsoleBuffer buffer = new ConsoleBuffer(16);
+        for (String text : lines) {
+            buffer.publish(text, false);
+        }
+        for (ConsoleBuffer.Line line : buffer.tail(16)) {
+            watcher.accept(line);
+        }
+        assertFalse(watcher.isReady());
+        assertEquals(0L, watcher.getLagEvents());
+        assertFalse(watcher.hasCrashed());
+        assertNull(watcher.getCrashReport());
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package dev.cubie.CubeServerTool;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.cubie.CubeServerTool.Data.Config;
+import dev.cubie.CubeServerTool.Utils.FileOperation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+// Compares the in-memory download path with the streaming one (throughput, peak heap and peak RSS)
+// Usage: DownloadBenchmark [sizeInMB] [legacy|streaming|both]
+// Peak RSS (VmHWM) is per process, so run "legacy" and "streaming" in separate JVMs for a clean comparison.
+public class DownloadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int sizeInMB = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        String mode = args.length > 1 ? args[1] : "both";
+
+        // Random payload, served in 1 MB chunks so the server side stays small
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(42).nextBytes(chunk);
+        long totalSize = (long) sizeInMB * chunk.length;
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/artifact.jar", exchange -> {
+            exchange.sendResponseHeaders(200, totalSize);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < sizeInMB; i++) {
+                    out.write(chunk);
+                }
+            }
+        });
+        server.start();
+
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/artifact.jar";
+        Path target = Config.tempFolder.resolve("benchmark-artifact.jar");
+        FileOperation.noLog = true;
+
+        try {
+            if (!"streaming".equals(mode)) {
+                run("legacy", url, target, totalSize, false);
+            }
+            if (!"legacy".equals(mode)) {
+                run("streaming", url, target, totalSize, true);
+            }
+        } finally {
+            server.stop(0);
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private static void run(String name, String url, Path target, long totalSize, boolean streaming) throws IOException {
+        System.gc();
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+        for (MemoryPoolMXBean pool : pools) {
+            pool.resetPeakUsage();
+        }
+
+        long start = System.nanoTime();
+        FileOperation operation = FileOperation.getFile(url);
+        if (streaming) {
+            operation.streaming();
+        }
+        operation.fetchBinary().saveTo(target.toString());
+        long elapsed = System.nanoTime() - start;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        double seconds = elapsed / 1_000_000_000.0;
+        System.out.printf("%-10s size=%d MB  time=%.2f s  throughput=%.1f MB/s  peakHeap=%d MB  peakRSS=%s  saved=%d MB%n",
+                name,
+                totalSize >> 20,
+                seconds,
+                (totalSize >> 20) / seconds,
+                peakHeap >> 20,
+                readPeakRss(),
+                Files.size(target) >> 20);
+    }
+
+    // Reads the resident set high-water mark of this JVM (Linux only)
+    private static String readPeakRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    return line.substring(6).trim();
+                }
+            }
+        } catch (IOException e) {
+            // Not on Linux
+        }
+        return "n/a";
+    }
+}
@@ -0,0 +1,130 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.DownloadJournal;
+import dev.cubie.CubeServerTool.Utils.FileOperation;
+import dev.cubie.CubeServerTool.Utils.HashAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadJournalTest {
+
+    @TempDir
+    Path temp;
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        new Random(11).nextBytes(data);
+        return data;
+    }
+
+    private static String sha1(byte[] data) throws Exception {
+        return HashAlgorithm.toHex(MessageDigest.getInstance("SHA-1").digest(data));
+    }
+
+    @Test
+    void testInterruptedDownloadResumesWithRange() throws Exception {
+        byte[] data = payload(3 * 1024 * 1024 + 17);
+        Path target = temp.resolve("resume-test.jar");
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, true, 0).etag("\"v1\"").cutNextResponse(1024 * 1024)) {
+            FileOperation result = FileOperation.getFile(stub.url())
+                    .streaming()
+                    .retries(1)
+                    .verify(HashAlgorithm.SHA1, sha1(data))
+                    .fetchBinary()
+                    .saveTo(target.toString());
+
+            assertEquals(200, result.getResponseCode());
+            assertArrayEquals(data, Files.readAllBytes(target));
+
+            // The second request only asks for what is missing, and only if the file is still the same
+            List<String> requests = stub.requests();
+            assertEquals(2, requests.size());
+            assertEquals("- -", requests.get(0));
+            String[] resume = requests.get(1).split(" ");
+            assertTrue(resume[0].matches("bytes=\\d+-"), requests.get(1));
+            long offset = Long.parseLong(resume[0].substring(6, resume[0].length() - 1));
+            assertTrue(offset > 0 && offset <= 1024 * 1024, requests.get(1));
+            assertEquals("\"v1\"", resume[1]);
+        }
+    }
+
+    @Test
+    void testServerIgnoringRangeStartsOver() throws Exception {
+        byte[] data = payload(2 * 1024 * 1024);
+        Path target = temp.resolve("ignored-range-test.jar");
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, false, 0).etag("\"v1\"").cutNextResponse(512 * 1024)) {
+            FileOperation result = FileOperation.getFile(stub.url())
+                    .streaming()
+                    .retries(1)
+                    .verify(HashAlgorithm.SHA1, sha1(data))
+                    .fetchBinary()
+                    .saveTo(target.toString());
+
+            // The server answered the Range request with the whole file, which replaces the partial one
+            assertEquals(200, result.getResponseCode());
+            assertArrayEquals(data, Files.readAllBytes(target));
+            List<String> requests = stub.requests();
+            assertEquals(2, requests.size());
+            assertTrue(requests.get(1).startsWith("bytes="), requests.get(1));
+        }
+    }
+
+    @Test
+    void testFullyCompletedJournalFinishesWithoutDownloading() throws Exception {
+        byte[] data = payload(5 * 1024 * 1024);
+        Path target = temp.resolve("completed-test.jar");
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, true, 0).etag("\"v1\"")) {
+            // A run that wrote every range but ended before the part file was moved into place
+            try (DownloadJournal journal = DownloadJournal.open(stub.url())) {
+                journal.reset("\"v1\"", null, data.length);
+                Files.createDirectories(journal.getPartFile().getParent());
+                Files.write(journal.getPartFile(), data);
+                journal.markCompleted(0, data.length);
+                journal.save();
+            }
+
+            FileOperation result = FileOperation.getFile(stub.url())
+                    .streaming()
+                    .segments(4)
+                    .verify(HashAlgorithm.SHA1, sha1(data))
+                    .fetchBinary()
+                    .saveTo(target.toString());
+
+            assertEquals(200, result.getResponseCode());
+            assertArrayEquals(data, Files.readAllBytes(target));
+            assertTrue(stub.requests().isEmpty(), stub.requests().toString());
+        }
+    }
+
+    @Test
+    void testSecondDownloadOfTheSameUrlGetsItsOwnPartFile() throws Exception {
+        String url = "http://127.0.0.1:1/artifact.jar";
+        Path shared;
+        try (DownloadJournal first = DownloadJournal.open(url, temp)) {
+            shared = first.getPartFile();
+            try (DownloadJournal second = DownloadJournal.open(url, temp)) {
+                assertNotEquals(shared, second.getPartFile());
+                Files.write(second.getPartFile(), new byte[] {1, 2, 3});
+            }
+        }
+        try (DownloadJournal again = DownloadJournal.open(url, temp)) {
+            assertEquals(shared, again.getPartFile());  // Free again, and still the name to resume from
+        }
+        // The private journal cleaned up after itself, only the shared lock file is left
+        try (Stream<Path> files = Files.list(temp)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
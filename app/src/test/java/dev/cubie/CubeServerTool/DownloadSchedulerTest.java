@@ -0,0 +1,115 @@
+package dev.cubie.CubeServerTool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.cubie.CubeServerTool.Utils.DownloadScheduler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadSchedulerTest {
+
+    @TempDir
+    Path temp;
+
+    // Serves /file/<n> (n bytes of 'x'), /flaky (500 on the first request per client, then 200) and 404 otherwise
+    // and records the highest number of requests in flight at the same time
+    private static class Server implements AutoCloseable {
+        final HttpServer server;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final ConcurrentHashMap<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+
+        Server() throws Exception {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+        }
+
+        private void handle(HttpExchange exchange) throws java.io.IOException {
+            int now = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(now, Math::max);
+            try {
+                String path = exchange.getRequestURI().getPath();
+                int hit = hits.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+                Thread.sleep(20);
+                byte[] body;
+                if (path.startsWith("/file/")) {
+                    body = new byte[Integer.parseInt(path.substring(6))];
+                    java.util.Arrays.fill(body, (byte) 'x');
+                } else if (path.equals("/flaky") && hit > 1) {
+                    body = "ok".getBytes();
+                } else {
+                    exchange.sendResponseHeaders(path.equals("/flaky") ? 500 : 404, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testDownloadsRespectPerHostLimit() throws Exception {
+        Path folder = temp.resolve("scheduler-test");
+        try (Server server = new Server(); DownloadScheduler scheduler = new DownloadScheduler(8, 3)) {
+            for (int i = 1; i <= 30; i++) {
+                scheduler.submit(new DownloadScheduler.Job(server.url("/file/" + i * 100), folder.resolve("f" + i).toString())
+                        .expectSize(i * 100));
+            }
+            // Same target again is ignored
+            scheduler.submit(server.url("/file/100"), folder.resolve("f1").toString());
+
+            assertTrue(scheduler.awaitAll());
+            assertEquals(30, scheduler.getProgress().total);
+            assertEquals(46500L, scheduler.getProgress().bytesDone);
+            assertTrue(server.maxInFlight.get() <= 3, "at most 3 requests per host, saw " + server.maxInFlight.get());
+            for (int i = 1; i <= 30; i++) {
+                assertEquals((long) i * 100, Files.size(folder.resolve("f" + i)));
+            }
+        }
+    }
+
+    @Test
+    void testRetriesServerErrorsButNotMissingFiles() throws Exception {
+        Path folder = temp.resolve("scheduler-test");
+        try (Server server = new Server(); DownloadScheduler scheduler = new DownloadScheduler(4, 2).retries(2).backoff(10)) {
+            DownloadScheduler.Job flaky = scheduler.submit(server.url("/flaky"), folder.resolve("flaky").toString());
+            DownloadScheduler.Job missing = scheduler.submit(server.url("/missing"), folder.resolve("missing").toString());
+
+            assertFalse(scheduler.awaitAll());
+            assertEquals(DownloadScheduler.State.DONE, flaky.getState());
+            assertEquals(2, flaky.getAttempts());
+            assertEquals(DownloadScheduler.State.FAILED, missing.getState());
+            assertEquals(1, missing.getAttempts());
+            assertEquals(404, missing.getResponseCode());
+            assertEquals(1, scheduler.getFailedJobs().size());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.AsyncLogHandler;
+import dev.cubie.CubeServerTool.Utils.CSVFileHandler;
+import dev.cubie.CubeServerTool.Utils.EventLog;
+import dev.cubie.CubeServerTool.Utils.EventLogReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Ingest rate of captured console lines: the handler chain (Logger -> CSVFileHandler, synchronous and through the
+// AsyncLogHandler) against EventLog.append(). Reports MB/s of console text and the bytes written to disk per line.
+// Usage: EventLogBenchmark [lines]
+public class EventLogBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        String[] console = sampleLines();
+        long textBytes = 0;
+        for (int i = 0; i < lines; i++) {
+            textBytes += console[i % console.length].getBytes(StandardCharsets.UTF_8).length;
+        }
+        System.out.println(lines + " console lines, " + (textBytes / 1024 / 1024) + " MB of text");
+
+        for (int round = 0; round < 2; round++) {  // The first round warms up the JIT
+            boolean report = round == 1;
+            runHandler("Logger + CSV (sync)", lines, console, textBytes, report, false);
+            runHandler("Logger + CSV (async)", lines, console, textBytes, report, true);
+            runEventLog("EventLog", lines, console, textBytes, report);
+        }
+    }
+
+    private static void runHandler(String name, int lines, String[] console, long textBytes, boolean report, boolean async) throws IOException {
+        Path folder = Files.createTempDirectory("cst-bench-csv");
+        CSVFileHandler csv = new CSVFileHandler(folder.resolve("latest-log.csv")).autoFlush(!async);
+        Handler handler = async ? new AsyncLogHandler(8192, 200, AsyncLogHandler.OverflowPolicy.BLOCK).addTarget(csv) : csv;
+        Logger logger = Logger.getLogger("cst-bench-" + name);
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < lines; i++) {
+            logger.info(console[i % console.length]);  // What ProcessHandler.logMessage() does per line
+        }
+        handler.flush();  // Waits until the async writer has caught up
+        long nanos = System.nanoTime() - start;
+
+        logger.removeHandler(handler);
+        handler.close();
+        if (report) {
+            print(name, lines, textBytes, nanos, size(folder));
+        }
+        delete(folder);
+    }
+
+    private static void runEventLog(String name, int lines, String[] console, long textBytes, boolean report) throws IOException {
+        Path folder = Files.createTempDirectory("cst-bench-events");
+        EventLog log = new EventLog(folder, 16 * 1024 * 1024);
+
+        long start = System.nanoTime();
+        long millis = System.currentTimeMillis();
+        for (int i = 0; i < lines; i++) {
+            log.append(millis + i / 50, i % 20 == 0 ? Level.WARNING : Level.INFO, i % 3 == 0 ? "survival" : "lobby", console[i % console.length]);
+        }
+        log.flush();
+        long nanos = System.nanoTime() - start;
+        long written = log.getWrittenBytes();  // Segments are preallocated, their file size says nothing
+        log.close();
+
+        if (report) {
+            long events = new EventLogReader(folder).read(event -> { });
+            if (events != lines) {
+                throw new IllegalStateException("Read back " + events + " of " + lines + " events");
+            }
+            print(name, lines, textBytes, nanos, written);
+        }
+        delete(folder);
+    }
+
+    private static void print(String name, int lines, long textBytes, long nanos, long diskBytes) {
+        System.out.printf("%-22s %8.1f MB/s | %6d ns per line | %5.1f bytes on disk per line%n",
+                name,
+                textBytes / 1024.0 / 1024.0 / (nanos / 1e9),
+                nanos / lines,
+                (double) diskBytes / lines);
+    }
+
+    // Typical server console output
+    private static String[] sampleLines() {
+        return new String[]{
+                "[12:00:01] [Server thread/INFO]: Preparing spawn area: 83%",
+                "[12:00:02] [Server thread/INFO]: Steve[/127.0.0.1:53122] logged in with entity id 187 at (12.5, 64.0, -30.5)",
+                "[12:00:02] [Server thread/WARN]: Can't keep up! Is the server overloaded? Running 2147ms or 42 ticks behind",
+                "[12:00:03] [Async Chat Thread - #0/INFO]: <Steve> hallo zusammen, wer kommt mit in den Nether? ä",
+                "[12:00:04] [Server thread/INFO]: Saving chunks for level 'ServerLevel[world]'/minecraft:overworld",
+        };
+    }
+
+    private static long size(Path folder) throws IOException {
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path file : stream) {
+                total += Files.size(file);
+            }
+        }
+        return total;
+    }
+
+    private static void delete(Path folder) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path file : stream) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(folder);
+    }
+}
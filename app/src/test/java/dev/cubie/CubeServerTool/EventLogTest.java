@@ -0,0 +1,188 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.EventLog;
+import dev.cubie.CubeServerTool.Utils.EventLogReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLogTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private static List<EventLogReader.Event> readAll(Path folder) throws Exception {
+        List<EventLogReader.Event> events = new ArrayList<>();
+        new EventLogReader(folder).read(events::add);
+        return events;
+    }
+
+    @Test
+    void testRoundTripKeepsTimeLevelSourceAndText() throws Exception {
+        Path folder = Files.createTempDirectory("cst-events");
+        try (EventLog log = new EventLog(folder, 64 * 1024)) {
+            log.append(START, Level.INFO, "lobby", "[Server thread/INFO]: Done (3.2s)!");
+            log.append(START + 5, Level.WARNING, "survival", "Can't keep up! ä € \uD83D\uDE00");
+            log.append(START + 2, Level.SEVERE, "lobby", "out of order");  // Pumps of stdout and stderr may overtake each other
+            log.append(START + 90_000_000L, Level.parse("850"), "lobby", "");
+        }
+
+        List<EventLogReader.Event> events = readAll(folder);
+        assertEquals(4, events.size());
+        assertEquals(START, events.get(0).millis);
+        assertEquals("INFO", events.get(0).level);
+        assertEquals("lobby", events.get(0).source);
+        assertEquals("[Server thread/INFO]: Done (3.2s)!", events.get(0).text);
+        assertEquals("survival", events.get(1).source);
+        assertEquals("Can't keep up! ä € \uD83D\uDE00", events.get(1).text);
+        assertEquals(START + 2, events.get(2).millis);
+        assertEquals("SEVERE", events.get(2).level);
+        assertEquals(START + 90_000_000L, events.get(3).millis);
+        assertEquals("OTHER", events.get(3).level);
+        assertEquals("", events.get(3).text);
+    }
+
+    @Test
+    void testRecordsAreCompact() throws Exception {
+        Path folder = Files.createTempDirectory("cst-events");
+        try (EventLog log = new EventLog(folder, 1024 * 1024)) {
+            for (int i = 0; i < 1000; i++) {
+                log.append(START + i * 10L, Level.INFO, "lobby", "0123456789");
+            }
+            assertEquals(1000, log.getEvents());
+            assertEquals(10_000, log.getPayloadBytes());
+        }
+        // Type, time delta, level, source id and length take 5 bytes next to the 10 bytes of text
+        long used = 0;
+        byte[] segment = Files.readAllBytes(EventLog.segments(folder).get(0));
+        for (int i = segment.length - 1; i >= 0; i--) {
+            if (segment[i] != 0) {
+                used = i + 1;
+                break;
+            }
+        }
+        assertTrue(used <= 16 + 9 + 1000 * 15 + 10, "used " + used);  // The first delta is from the segment start
+    }
+
+    @Test
+    void testRollsOverToNewSegmentsAndDeletesOldOnes() throws Exception {
+        Path folder = Files.createTempDirectory("cst-events");
+        try (EventLog log = new EventLog(folder, 8 * 1024).keepSegments(3)) {
+            for (int i = 0; i < 2000; i++) {
+                log.append(START + i, Level.INFO, i % 2 == 0 ? "a" : "b", "line " + i);
+            }
+        }
+        List<Path> segments = EventLog.segments(folder);
+        assertEquals(3, segments.size());
+
+        // Every segment defines its sources again, so the remaining ones can be read without the deleted ones
+        List<EventLogReader.Event> events = readAll(folder);
+        assertFalse(events.isEmpty());
+        int first = Integer.parseInt(events.get(0).text.substring(5));
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals("line " + (first + i), events.get(i).text);
+            assertEquals(START + first + i, events.get(i).millis);
+            assertEquals((first + i) % 2 == 0 ? "a" : "b", events.get(i).source);
+        }
+        assertEquals(1999, first + events.size() - 1);
+    }
+
+    @Test
+    void testContinuesAfterExistingSegments() throws Exception {
+        Path folder = Files.createTempDirectory("cst-events");
+        try (EventLog log = new EventLog(folder, 8 * 1024)) {
+            log.append(START, Level.INFO, "a", "first run");
+        }
+        try (EventLog log = new EventLog(folder, 8 * 1024)) {
+            log.append(START + 1, Level.INFO, "a", "second run");
+        }
+        List<EventLogReader.Event> events = readAll(folder);
+        assertEquals(2, events.size());
+        assertEquals("first run", events.get(0).text);
+        assertEquals("second run", events.get(1).text);
+    }
+
+    @Test
+    void testLongTextIsCut() throws Exception {
+        Path folder = Files.createTempDirectory("cst-events");
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 10_000) {
+            text.append("€");
+        }
+        try (EventLog log = new EventLog(folder, 8 * 1024)) {
+            log.append(START, Level.INFO, "a", text);
+            log.append(START, Level.INFO, "a", "after");
+        }
+        List<EventLogReader.Event> events = readAll(folder);
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).text.length() < 2048);
+        assertTrue(events.get(0).text.startsWith("€€€"));
+        assertEquals("after", events.get(1).text);
+    }
+
+    @Test
+    void testReadsSegmentWhileItIsWritten() throws Exception {
+        Path folder = Files.createTempDirectory("cst-events");
+        try (EventLog log = new EventLog(folder, 64 * 1024)) {
+            log.append(START, Level.INFO, "a", "one");
+            log.flush();
+            assertEquals(1, readAll(folder).size());
+            log.append(START, Level.INFO, "a", "two");
+            assertEquals(2, readAll(folder).size());
+        }
+    }
+
+    @Test
+    void testExportsCsvAndJson() throws Exception {
+        Path folder = Files.createTempDirectory("cst-events");
+        try (EventLog log = new EventLog(folder, 64 * 1024)) {
+            log.append(START + 7, Level.INFO, "lobby", "plain");
+            log.append(START + 8, Level.WARNING, "lobby", "a, \"quoted\"\ttext");
+        }
+        EventLogReader reader = new EventLogReader(folder);
+
+        StringWriter csv = new StringWriter();
+        assertEquals(2, reader.exportCsv(csv));
+        String[] lines = csv.toString().split("\n");
+        assertEquals("Timestamp,Level,Source,Message", lines[0]);
+        assertTrue(lines[1].endsWith(".007,INFO,lobby,plain"), lines[1]);
+        assertTrue(lines[2].endsWith(",WARNING,lobby,\"a, \"\"quoted\"\"\ttext\""), lines[2]);
+
+        StringWriter json = new StringWriter();
+        assertEquals(2, reader.exportJson(json));
+        lines = json.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"time\":" + (START + 7) + ",\"timestamp\":\""), lines[0]);
+        assertTrue(lines[1].endsWith("\"level\":\"WARNING\",\"source\":\"lobby\",\"message\":\"a, \\\"quoted\\\"\\ttext\"}"), lines[1]);
+    }
+
+    @Test
+    void testHandlerWritesLogRecords() throws Exception {
+        Path folder = Files.createTempDirectory("cst-events");
+        Logger logger = Logger.getLogger("cst-event-log-test");
+        logger.setUseParentHandlers(false);
+        try (EventLog log = new EventLog(folder, 64 * 1024)) {
+            logger.addHandler(log.handler("cst"));
+            logger.warning("\u001B[31mcolored\u001B[0m warning");
+        }
+        List<EventLogReader.Event> events = readAll(folder);
+        assertEquals(1, events.size());
+        assertEquals("cst", events.get(0).source);
+        assertEquals("WARNING", events.get(0).level);
+        assertEquals("colored warning", events.get(0).text);
+    }
+
+    @Test
+    void testAppendAfterCloseFails() throws Exception {
+        EventLog log = new EventLog(Files.createTempDirectory("cst-events"), 8 * 1024);
+        log.close();
+        assertThrows(java.io.IOException.class, () -> log.append(START, Level.INFO, "a", "late"));
+    }
+}
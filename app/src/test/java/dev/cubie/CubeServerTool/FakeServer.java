@@ -0,0 +1,101 @@
+package dev.cubie.CubeServerTool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+// Stand-in for a server jar, used by the ProcessSupervisor tests
+// Counts its starts in the working directory, crashes (exit code 1) for the first N starts given as argument and
+// otherwise prints a Minecraft style "Done" line and runs until it reads "stop". With "ignore-stop" it never exits.
+// With "exit" it exits with code 0 right away, like a server without an accepted EULA.
+// With "hang-<millis>" it prints a crash after the "Done" line, keeps printing for that long and then hangs silently.
+public class FakeServer {
+
+    public static void main(String[] args) throws IOException {
+        Path counter = Paths.get("starts");
+        int starts = Files.exists(counter) ? Integer.parseInt(new String(Files.readAllBytes(counter)).trim()) : 0;
+        Files.write(counter, String.valueOf(++starts).getBytes());
+
+        if (args.length > 0 && args[0].equals("exit")) {
+            System.out.println("[12:00:00] [main/WARN]: You need to agree to the EULA in order to run the server.");
+            return;
+        }
+        if (args.length > 0 && args[0].startsWith("hang-")) {
+            hang(Long.parseLong(args[0].substring(5)));
+            return;
+        }
+        int crashes = args.length > 0 && !args[0].equals("ignore-stop") ? Integer.parseInt(args[0]) : 0;
+        if (starts <= crashes) {
+            System.out.println("[12:00:00] [Server thread/ERROR]: Encountered an unexpected exception");
+            System.exit(1);
+        }
+        System.out.println("[12:00:00] [Server thread/INFO]: Done (0.123s)! For help, type \"help\"");
+        boolean ignoreStop = args.length > 0 && args[0].equals("ignore-stop");
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.equals("stop") && !ignoreStop) {
+                System.out.println("[12:00:00] [Server thread/INFO]: Stopping server");
+                System.exit(0);
+            }
+        }
+        while (ignoreStop) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void hang(long printMillis) {
+        System.out.println("[12:00:00] [Server thread/INFO]: Done (0.123s)! For help, type \"help\"");
+        System.out.println("[12:00:01] [Server thread/ERROR]: Encountered an unexpected exception");
+        long end = System.currentTimeMillis() + printMillis;
+        try {
+            while (System.currentTimeMillis() < end) {
+                System.out.println("[12:00:01] [Server thread/INFO]: Saving chunks");
+                Thread.sleep(100);
+            }
+            Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException ignored) {
+            // Killed
+        }
+    }
+
+    // Writes a runnable jar with this class into the folder
+    public static Path writeJar(Path folder) throws IOException {
+        Files.createDirectories(folder);
+        Path jar = folder.resolve("fake-server.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, FakeServer.class.getName());
+        String entry = FakeServer.class.getName().replace('.', '/') + ".class";
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            out.putNextEntry(new JarEntry(entry));
+            out.write(readAll(FakeServer.class.getResourceAsStream("/" + entry)));
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    private static byte[] readAll(java.io.InputStream in) throws IOException {
+        try (java.io.InputStream stream = in) {
+            java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = stream.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            return buffer.toByteArray();
+        }
+    }
+}
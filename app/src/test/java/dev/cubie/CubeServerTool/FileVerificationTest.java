@@ -0,0 +1,111 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.FileOperation;
+import dev.cubie.CubeServerTool.Utils.HashAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileVerificationTest {
+
+    @TempDir
+    Path temp;
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        new Random(5).nextBytes(data);
+        return data;
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HashAlgorithm.toHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+
+    @Test
+    void testHashMismatchFails() throws Exception {
+        byte[] data = payload(256 * 1024);
+        String wrongHash = sha256(new byte[] {1, 2, 3});
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, false, 0)) {
+            for (boolean streaming : new boolean[] {false, true}) {
+                Path target = temp.resolve("mismatch-" + streaming + ".jar");
+                FileOperation operation = FileOperation.getFile(stub.url()).verify(HashAlgorithm.SHA256, wrongHash);
+                if (streaming) {
+                    operation.streaming();
+                }
+                FileOperation result = operation.fetchBinary().saveTo(target.toString());
+
+                assertEquals(500, result.getResponseCode());
+                assertFalse(Files.exists(target), "streaming " + streaming);
+            }
+        }
+    }
+
+    @Test
+    void testSizeMismatchFails() throws Exception {
+        byte[] data = payload(64 * 1024);
+        Path target = temp.resolve("size-mismatch.jar");
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, false, 0)) {
+            FileOperation result = FileOperation.getFile(stub.url())
+                    .streaming()
+                    .verify(HashAlgorithm.SHA256, sha256(data))
+                    .expectSize(data.length + 1)
+                    .fetchBinary()
+                    .saveTo(target.toString());
+
+            assertEquals(500, result.getResponseCode());
+            assertFalse(Files.exists(target));
+        }
+    }
+
+    @Test
+    void testSkipIfMatchesSkipsTheDownload() throws Exception {
+        byte[] data = payload(128 * 1024);
+        Path target = temp.resolve("up-to-date.jar");
+        Files.write(target, data);
+        long modified = Files.getLastModifiedTime(target).toMillis();
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, false, 0)) {
+            FileOperation result = FileOperation.getFile(stub.url())
+                    .streaming()
+                    .verify(HashAlgorithm.SHA256, sha256(data))
+                    .expectSize(data.length)
+                    .skipIfMatches(target.toString())
+                    .fetchBinary()
+                    .saveTo(target.toString());
+
+            assertEquals(304, result.getResponseCode());
+            assertTrue(stub.requests().isEmpty());
+            assertEquals(modified, Files.getLastModifiedTime(target).toMillis());
+        }
+    }
+
+    @Test
+    void testSkipIfMatchesDownloadsChangedFile() throws Exception {
+        byte[] data = payload(128 * 1024);
+        Path target = temp.resolve("outdated.jar");
+        byte[] old = data.clone();
+        old[1000] ^= 1;  // Same size, different content
+        Files.write(target, old);
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, false, 0)) {
+            FileOperation result = FileOperation.getFile(stub.url())
+                    .streaming()
+                    .verify(HashAlgorithm.SHA256, sha256(data))
+                    .skipIfMatches(target.toString())
+                    .fetchBinary()
+                    .saveTo(target.toString());
+
+            assertEquals(200, result.getResponseCode());
+            assertEquals(1, stub.requests().size());
+            assertArrayEquals(data, Files.readAllBytes(target));
+        }
+    }
+}
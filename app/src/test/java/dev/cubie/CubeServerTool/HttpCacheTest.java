@@ -0,0 +1,176 @@
+package dev.cubie.CubeServerTool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.cubie.CubeServerTool.Utils.FileOperation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpCacheTest {
+
+    @TempDir
+    Path temp;
+
+    // Serves a JSON document with an ETag and the given Cache-Control, answering matching If-None-Match with 304
+    private static class CachingStub implements AutoCloseable {
+        final HttpServer server;
+        final List<String> requests = new ArrayList<>();  // If-None-Match of every request, "-" if missing
+        volatile String body = "{\"version\":1}";
+        volatile String etag = "\"v1\"";
+        volatile String cacheControl;
+        volatile String age;
+
+        CachingStub() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+        }
+
+        synchronized int requests() {
+            return requests.size();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            synchronized (this) {
+                requests.add(ifNoneMatch != null ? ifNoneMatch : "-");
+            }
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (cacheControl != null) exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+            if (age != null) exchange.getResponseHeaders().add("Age", age);
+
+            if (etag.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+
+    private FileOperation fetch(String url, long maxAgeMillis) {
+        return FileOperation.getFile(url).cache(maxAgeMillis, temp.resolve("cache.json").toString()).fetch();
+    }
+
+    @Test
+    void testFreshEntryIsUsedWithoutRequest() throws Exception {
+        try (CachingStub stub = new CachingStub()) {
+            stub.cacheControl = "public, max-age=600";
+            assertEquals(200, fetch(stub.url("/manifest.json"), 0).getResponseCode());
+
+            FileOperation cached = fetch(stub.url("/manifest.json"), 0);  // The server's max-age wins over the default
+            assertEquals(304, cached.getResponseCode());
+            assertEquals("{\"version\":1}\n", cached.getContent());
+            assertEquals(1, stub.requests());
+        }
+    }
+
+    @Test
+    void testDefaultMaxAgeAppliesWithoutCacheControl() throws Exception {
+        try (CachingStub stub = new CachingStub()) {
+            fetch(stub.url("/manifest.json"), 60000);
+            assertEquals(304, fetch(stub.url("/manifest.json"), 60000).getResponseCode());
+            assertEquals(1, stub.requests());
+
+            fetch(stub.url("/manifest.json"), 0);  // Expired right away: revalidated
+            assertEquals(2, stub.requests());
+        }
+    }
+
+    @Test
+    void testStaleEntryIsRevalidated() throws Exception {
+        try (CachingStub stub = new CachingStub()) {
+            stub.cacheControl = "max-age=60";
+            stub.age = "60";  // Already as old as it may get in a shared cache
+            fetch(stub.url("/manifest.json"), 60000);
+
+            FileOperation revalidated = fetch(stub.url("/manifest.json"), 60000);
+            assertEquals(304, revalidated.getResponseCode());
+            assertEquals("{\"version\":1}\n", revalidated.getContent());
+            assertEquals(2, stub.requests());
+            assertEquals("\"v1\"", stub.requests.get(1));
+
+            // A changed resource comes with a new body and replaces the cached one
+            stub.cacheControl = "no-cache";
+            stub.etag = "\"v2\"";
+            stub.body = "{\"version\":2}";
+            FileOperation changed = fetch(stub.url("/manifest.json"), 60000);
+            assertEquals(200, changed.getResponseCode());
+            assertEquals("{\"version\":2}\n", changed.getContent());
+            assertEquals("{\"version\":2}\n", new String(Files.readAllBytes(temp.resolve("cache.json")), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testNoStoreIsNotCached() throws Exception {
+        try (CachingStub stub = new CachingStub()) {
+            stub.cacheControl = "no-store";
+            assertEquals(200, fetch(stub.url("/manifest.json"), 60000).getResponseCode());
+            assertFalse(Files.exists(temp.resolve("cache.json")));
+
+            assertEquals(200, fetch(stub.url("/manifest.json"), 60000).getResponseCode());
+            assertEquals(2, stub.requests());
+            assertEquals("-", stub.requests.get(1));
+        }
+    }
+
+    @Test
+    void testStaleCopyIsUsedWhenTheServerIsDown() throws Exception {
+        String url;
+        try (CachingStub stub = new CachingStub()) {
+            url = stub.url("/manifest.json");
+            stub.cacheControl = "no-cache";
+            fetch(url, 60000);
+        }
+        FileOperation offline = fetch(url, 60000);
+        assertEquals(304, offline.getResponseCode());
+        assertEquals("{\"version\":1}\n", offline.getContent());
+    }
+
+    @Test
+    void testCacheFileOfAnotherUrlIsNotUsed() throws Exception {
+        String other;
+        try (CachingStub stub = new CachingStub()) {
+            stub.cacheControl = "max-age=600";
+            fetch(stub.url("/version_manifest.json"), 60000);
+
+            // Same cache file, different URL: neither fresh nor revalidated with the other URL's ETag
+            stub.body = "{\"version\":2}";
+            other = stub.url("/version_manifest_v2.json");
+            FileOperation result = fetch(other, 60000);
+            assertEquals(200, result.getResponseCode());
+            assertEquals("{\"version\":2}\n", result.getContent());
+            assertEquals("-", stub.requests.get(1));
+        }
+        // And no stale fallback either once the cache file belongs to the other URL
+        try (CachingStub stub = new CachingStub()) {
+            stub.cacheControl = "no-cache";
+            fetch(stub.url("/a.json"), 60000);
+        }
+        assertEquals(500, fetch(other.replace("version_manifest_v2", "b"), 60000).getResponseCode());
+    }
+}
@@ -0,0 +1,99 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Data.ServerInstance;
+import dev.cubie.CubeServerTool.Utils.ArtifactStore;
+import dev.cubie.CubeServerTool.Utils.HashAlgorithm;
+import dev.cubie.CubeServerTool.Utils.InstanceManager;
+import dev.cubie.CubeServerTool.Utils.ProcessSupervisor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstanceManagerTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void testRunsSeveralInstancesFromOneProcess() throws Exception {
+        Path instances = temp.resolve("instances-test");
+        Files.createDirectories(instances);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path workDir = temp.resolve("instance-" + i);
+            Path jar = FakeServer.writeJar(workDir);
+            Files.deleteIfExists(workDir.resolve("starts"));
+            Files.write(instances.resolve("server" + i + ".properties"), Collections.singletonList(
+                    "workDir=" + workDir.toString().replace('\\', '/') + "\njar=" + jar.getFileName() + "\nparameters=0\nrestart=never"));
+            names.add("server" + i);
+        }
+        Files.write(instances.resolve("broken.properties"), Collections.singletonList("memoryMb=lots"));
+
+        try (InstanceManager manager = new InstanceManager().eventFolder(temp.resolve("events")).loadAll(instances)) {
+            assertEquals(3, manager.getInstances().size());
+            manager.startAutostart();
+
+            for (String name : names) {
+                ProcessSupervisor.Server server = manager.getSupervisor().get(name);
+                assertNotNull(server);
+                assertTrue(server.getHandler().getWatcher().awaitReady(20000));
+            }
+            assertTrue(manager.status().get(0).startsWith("server0: RUNNING, ready after"));
+            assertTrue(manager.tail("server1", 5).get(0).contains("Done"));
+
+            assertTrue(manager.stop("server1"));
+            assertEquals(ProcessSupervisor.State.STOPPED, manager.getSupervisor().get("server1").getState());
+            assertTrue(manager.start("server1"));
+            assertTrue(manager.getSupervisor().get("server1").getHandler().getWatcher().awaitReady(20000));
+
+            assertFalse(manager.start("missing"));
+            assertNotNull(manager.getEvents());
+        }
+        for (String name : names) {
+            ServerInstance instance = ServerInstance.load(instances.resolve(name + ".properties"));
+            assertEquals(0L, instance.getMemoryMb());
+        }
+    }
+
+    @Test
+    void testInstallsJarsThroughTheSharedStore() throws Exception {
+        byte[] jar = Files.readAllBytes(FakeServer.writeJar(temp.resolve("build")));
+        String sha1 = HashAlgorithm.toHex(MessageDigest.getInstance("SHA-1").digest(jar));
+        Path instances = temp.resolve("instances-install");
+        Files.createDirectories(instances);
+
+        try (RangeHttpStub stub = new RangeHttpStub(jar, true, 0)) {
+            for (int i = 0; i < 2; i++) {
+                Files.write(instances.resolve("server" + i + ".properties"), Collections.singletonList(
+                        "workDir=" + temp.resolve("instance-" + i).toString().replace('\\', '/') + "\njarUrl=" + stub.url()
+                                + "\njarHash=" + sha1 + "\nparameters=0\nrestart=never\nautostart=false"));
+            }
+            Files.write(instances.resolve("broken.properties"), Collections.singletonList("jarHash=abc"));
+
+            ArtifactStore store = new ArtifactStore(temp.resolve("store"));
+            try (InstanceManager manager = new InstanceManager().store(store).eventFolder(temp.resolve("events")).loadAll(instances)) {
+                assertEquals(2, manager.getInstances().size());
+                assertTrue(manager.install(manager.getInstances()));
+
+                Path first = manager.getInstance("server0").getJarPath();
+                Path second = manager.getInstance("server1").getJarPath();
+                assertArrayEquals(jar, Files.readAllBytes(first));
+                assertTrue(store.contains(HashAlgorithm.SHA1, sha1));
+                assertTrue(Files.isSameFile(first, second));  // Both linked from the one object in the store
+
+                // An instance whose jar is gone gets it again when it is started
+                Files.delete(first);
+                assertTrue(manager.start("server0"));
+                assertTrue(manager.getSupervisor().get("server0").getHandler().getWatcher().awaitReady(20000));
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.JsonReader;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Compares the org.json path (body read into a String, then a JSONObject tree) with the JsonReader pull parser
+// on a document shaped like Mojang's version_manifest.json. Reports latency percentiles and bytes allocated per parse.
+// Usage: JsonParseBenchmark [legacy|streaming|both] [iterations] [manifest.json]
+// Without a file, a synthetic manifest with 800 versions is used (about the size of the real one).
+public class JsonParseBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "both";
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        byte[] document = args.length > 2 ? Files.readAllBytes(Paths.get(args[2])) : syntheticManifest(800);
+        System.out.println("Document: " + document.length / 1024 + " KB, " + iterations + " iterations");
+
+        if (!"streaming".equals(mode)) {
+            run("org.json", document, iterations, JsonParseBenchmark::parseLegacy);
+        }
+        if (!"legacy".equals(mode)) {
+            run("JsonReader", document, iterations, JsonParseBenchmark::parseStreaming);
+        }
+    }
+
+    private interface Parser {
+        int parse(InputStream in) throws IOException;
+    }
+
+    private static void run(String name, byte[] document, int iterations, Parser parser) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // Warm up, so the JIT has compiled both paths
+        int versions = 0;
+        for (int i = 0; i < Math.max(200, iterations / 4); i++) {
+            versions = parser.parse(new ByteArrayInputStream(document));
+        }
+
+        long[] latencies = new long[iterations];
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            parser.parse(new ByteArrayInputStream(document));
+            latencies[i] = System.nanoTime() - start;
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-10s %d versions | p50 %.3f ms | p99 %.3f ms | %d KB allocated per parse%n",
+                name, versions,
+                latencies[iterations / 2] / 1e6,
+                latencies[(int) (iterations * 0.99)] / 1e6,
+                allocated / iterations / 1024);
+    }
+
+    // Same steps as before: read all lines into a String, build the tree, walk "versions"
+    private static int parseLegacy(InputStream in) throws IOException {
+        StringBuilder contentBuilder = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                contentBuilder.append(line).append("\n");
+            }
+        }
+        JSONArray versions = new JSONObject(contentBuilder.toString()).getJSONArray("versions");
+        int count = 0;
+        for (int i = 0; i < versions.length(); i++) {
+            JSONObject version = versions.getJSONObject(i);
+            if (version.getString("id") != null && version.getString("type") != null && version.getString("url") != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Pull only id/type/url from "versions", as MinecraftVanilla does
+    private static int parseStreaming(InputStream in) throws IOException {
+        int count = 0;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("versions")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String id = null, type = null, url = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "id": id = reader.nextString(); break;
+                            case "type": type = reader.nextString(); break;
+                            case "url": url = reader.nextString(); break;
+                            default: reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    if (id != null && type != null && url != null) {
+                        count++;
+                    }
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        return count;
+    }
+
+    // Builds a manifest with the same structure and field sizes as the real one
+    static byte[] syntheticManifest(int versions) {
+        StringBuilder json = new StringBuilder("{\"latest\": {\"release\": \"1.21.1\", \"snapshot\": \"24w33a\"}, \"versions\": [");
+        for (int i = 0; i < versions; i++) {
+            if (i > 0) json.append(", ");
+            String id = i % 5 == 0 ? "1." + (i / 40) + "." + (i % 10) : (20 + i / 52) + "w" + (i % 52) + "a";
+            String hash = String.format("%040x", (long) id.hashCode() * 2654435761L & 0xffffffffffL);
+            json.append("{\"id\": \"").append(id).append("\", ")
+                .append("\"type\": \"").append(i % 5 == 0 ? "release" : "snapshot").append("\", ")
+                .append("\"url\": \"https://piston-meta.mojang.com/v1/packages/").append(hash).append('/').append(id).append(".json\", ")
+                .append("\"time\": \"2024-08-08T12:24:45+00:00\", ")
+                .append("\"releaseTime\": \"2024-08-08T12:24:45+00:00\", ")
+                .append("\"sha1\": \"").append(hash).append("\", ")
+                .append("\"complianceLevel\": 1}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.JsonReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonReaderTest {
+
+    // Reader that hands out one char per read() call, so every token crosses a buffer boundary
+    private static Reader trickle(String json) {
+        return new StringReader(json) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+    }
+
+    @Test
+    void testReadsNestedDocument() throws Exception {
+        String json = "{\"name\": \"a \\\"quoted\\\" \\u00e4\\n\", \"size\": 12345678901, \"ok\": true, \"none\": null,"
+                + " \"list\": [1, -2.5e3, \"x\"], \"empty\": {}}";
+        for (Reader source : new Reader[] {new StringReader(json), trickle(json)}) {
+            try (JsonReader reader = new JsonReader(source)) {
+                reader.beginObject();
+                assertEquals("name", reader.nextName());
+                assertEquals("a \"quoted\" ä\n", reader.nextString());
+                assertEquals("size", reader.nextName());
+                assertEquals(12345678901L, reader.nextLong());
+                assertEquals("ok", reader.nextName());
+                assertTrue(reader.nextBoolean());
+                assertEquals("none", reader.nextName());
+                assertEquals(JsonReader.Token.NULL, reader.peek());
+                reader.nextNull();
+                assertEquals("list", reader.nextName());
+                reader.beginArray();
+                assertEquals(1, reader.nextInt());
+                assertEquals(-2500.0, reader.nextDouble());
+                assertEquals("x", reader.nextString());
+                assertFalse(reader.hasNext());
+                reader.endArray();
+                assertEquals("empty", reader.nextName());
+                reader.beginObject();
+                assertFalse(reader.hasNext());
+                reader.endObject();
+                reader.endObject();
+                assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+            }
+        }
+    }
+
+    @Test
+    void testSkipValueSkipsNestedValues() throws Exception {
+        String json = "{\"skip\": {\"a\": [1, {\"b\": \"]}\\\"\"}], \"c\": false}, \"keep\": \"yes\", \"tail\": [[]]}";
+        try (JsonReader reader = new JsonReader(trickle(json))) {
+            reader.beginObject();
+            assertEquals("skip", reader.nextName());
+            reader.skipValue();
+            assertEquals("keep", reader.nextName());
+            assertEquals("yes", reader.nextString());
+            reader.skipValue();  // Name and value of "tail"
+            assertFalse(reader.hasNext());
+            reader.endObject();
+        }
+    }
+
+    @Test
+    void testRejectsMalformedDocuments() {
+        for (String json : new String[] {"{\"a\" 1}", "[1 2]", "{\"a\": tru}", "{\"a\": \"open", "[1,"}) {
+            assertThrows(IOException.class, () -> {
+                try (JsonReader reader = new JsonReader(new StringReader(json))) {
+                    reader.skipValue();
+                    reader.peek();
+                }
+            }, json);
+        }
+    }
+
+    @Test
+    void testTypeMismatchIsReported() throws Exception {
+        try (JsonReader reader = new JsonReader(new StringReader("{\"a\": [1]}"))) {
+            reader.beginObject();
+            reader.nextName();
+            assertThrows(IOException.class, reader::nextString);
+        }
+    }
+}
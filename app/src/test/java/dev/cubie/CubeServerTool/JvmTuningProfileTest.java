@@ -0,0 +1,75 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.JvmArguments;
+import dev.cubie.CubeServerTool.Utils.JvmTuningProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JvmTuningProfileTest {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @Test
+    void testMergeKeepsOrderAndReplacesSameOption() {
+        JvmArguments arguments = new JvmArguments()
+                .addAll(Arrays.asList("-Xmx1G", "-XX:+UseParallelGC", "-Dfile.encoding=UTF-8", "-XX:+UnlockExperimentalVMOptions"))
+                .addAll(Arrays.asList("-Xmx6G", "-XX:+UseG1GC", "-XX:G1NewSizePercent=30", "-XX:-UnlockExperimentalVMOptions"))
+                .add("-Dfile.encoding=ISO-8859-1");
+
+        assertEquals(Arrays.asList("-Xmx6G", "-XX:+UseG1GC", "-Dfile.encoding=ISO-8859-1",
+                "-XX:-UnlockExperimentalVMOptions", "-XX:G1NewSizePercent=30"), arguments.toList());
+        assertEquals("-XX:+UseG1GC", arguments.get("-XX:+UseZGC"));
+    }
+
+    @Test
+    void testSmallServerGetsG1WithAikarFlags() {
+        List<String> arguments = JvmTuningProfile.forHost()
+                .host(16 * GB, 4)
+                .memoryBudgetMb(6 * 1024)
+                .javaVersion(21)
+                .largePages(false)
+                .build().toList();
+
+        assertEquals("-Xms5222M", arguments.get(0));
+        assertEquals("-Xmx5222M", arguments.get(1));
+        assertTrue(arguments.contains("-XX:+UseG1GC"));
+        assertTrue(arguments.contains("-XX:G1HeapRegionSize=8M"));
+        assertTrue(arguments.contains("-XX:+AlwaysPreTouch"));
+        assertFalse(arguments.contains("-XX:+UseLargePages"));
+        assertTrue(arguments.indexOf("-XX:+UnlockExperimentalVMOptions") < arguments.indexOf("-XX:G1NewSizePercent=30"));
+    }
+
+    @Test
+    void testLargeServerOnModernJavaGetsZgc() {
+        JvmTuningProfile profile = JvmTuningProfile.forHost()
+                .host(64 * GB, 16)
+                .memoryBudgetMb(24 * 1024)
+                .javaVersion(21)
+                .largePages(true);
+        List<String> arguments = profile.build().toList();
+
+        assertEquals(JvmTuningProfile.Collector.ZGC, profile.getCollector());
+        assertTrue(arguments.contains("-XX:+UseZGC"));
+        assertTrue(arguments.contains("-XX:+ZGenerational"));
+        assertTrue(arguments.contains("-XX:+UseLargePages"));
+        assertFalse(arguments.contains("-XX:+UseG1GC"));
+
+        // Same budget on Java 17: G1 with the settings for big heaps
+        List<String> java17 = profile.javaVersion(17).build().toList();
+        assertTrue(java17.contains("-XX:+UseG1GC"));
+        assertTrue(java17.contains("-XX:G1HeapRegionSize=16M"));
+        assertTrue(java17.contains("-XX:G1NewSizePercent=40"));
+    }
+
+    @Test
+    void testBudgetIsCappedByHostMemory() {
+        JvmTuningProfile profile = JvmTuningProfile.forHost().host(4 * GB, 2).memoryBudgetMb(8 * 1024).largePages(false);
+        // 4 GB host keeps 512 MB for the system, the rest minus off-heap room is heap
+        assertTrue(profile.getHeapMb() <= 3584 - 256);
+        assertEquals("-Xmx" + profile.getHeapMb() + "M", profile.build().get("-Xmx"));
+    }
+}
@@ -0,0 +1,108 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.ConsoleColors;
+import dev.cubie.CubeServerTool.Utils.LogFormatter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+// Compares the former log formatting (String.format, replaceAll) with LogFormatter for console and CSV lines.
+// Reports latency percentiles and bytes allocated per record on the formatting thread.
+// Usage: LogFormatBenchmark [iterations]
+public class LogFormatBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        LogRecord[] records = sampleRecords();
+        System.out.println(records.length + " different records, " + iterations + " iterations");
+
+        run("console (String.format)", records, iterations, record -> legacyConsole(record).length());
+        run("console (LogFormatter)", records, iterations, record -> LogFormatter.formatConsole(record).length());
+        run("csv (replaceAll)", records, iterations, record -> legacyCsv(record).length());
+        run("csv (LogFormatter)", records, iterations, record -> LogFormatter.formatCsv(record).length());
+    }
+
+    private static void run(String name, LogRecord[] records, int iterations, ToIntFunction<LogRecord> formatter) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // Warm up, so the JIT has compiled both paths
+        int characters = 0;
+        for (int i = 0; i < Math.max(20000, iterations / 4); i++) {
+            characters += formatter.applyAsInt(records[i % records.length]);
+        }
+
+        long[] latencies = new long[iterations];
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            characters += formatter.applyAsInt(records[i % records.length]);
+            latencies[i] = System.nanoTime() - start;
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-24s p50 %5d ns | p99 %6d ns | %5d bytes allocated per record (%d)%n",
+                name,
+                latencies[iterations / 2],
+                latencies[(int) (iterations * 0.99)],
+                allocated / iterations,
+                characters % 10);
+    }
+
+    // Typical records: download progress, install steps with colors, warnings
+    private static LogRecord[] sampleRecords() {
+        LogRecord[] records = new LogRecord[4];
+        records[0] = new LogRecord(Level.FINE, "Downloaded libraries/com/google/guava/guava/32.1.2-jre/guava-32.1.2-jre.jar (2.9 MB)");
+        records[1] = new LogRecord(Level.INFO, "Installing " + ConsoleColors.GREEN + "1.21.1" + ConsoleColors.RESET + ", step 3/7");
+        records[1].setLoggerName("INSTALL");
+        records[2] = new LogRecord(Level.WARNING, "Checksum mismatch, retrying download of server.jar");
+        records[3] = new LogRecord(Level.INFO, "Server started in 12.4 s");
+        for (LogRecord record : records) {
+            record.setSourceClassName("dev.cubie.CubeServerTool.Utils.FileOperation");
+            record.setSourceMethodName("saveTo");
+        }
+        return records;
+    }
+
+    // Console line as LoggerUtility formatted it before LogFormatter
+    static String legacyConsole(LogRecord record) {
+        String logLevelName = record.getLevel().getLocalizedName();
+        String color = ConsoleColors.RESET;
+        if ("INSTALL".equals(record.getLoggerName())) {
+            logLevelName = "INSTALL";
+            color = ConsoleColors.PURPLE;
+        }
+        if (record.getLevel() == Level.FINE) {
+            logLevelName = ConsoleColors.CYAN + logLevelName + ConsoleColors.RESET;
+        } else if (record.getLevel() == Level.SEVERE) {
+            logLevelName = ConsoleColors.RED + logLevelName + ConsoleColors.RESET;
+        } else if (record.getLevel() == Level.WARNING) {
+            logLevelName = ConsoleColors.YELLOW + logLevelName + ConsoleColors.RESET;
+        } else if (record.getLevel() == Level.INFO) {
+            logLevelName = ConsoleColors.GREEN + logLevelName + ConsoleColors.RESET;
+        } else if (record.getLevel() == Level.CONFIG) {
+            logLevelName = ConsoleColors.CYAN + logLevelName + ConsoleColors.RESET;
+        }
+        return String.format(
+                ConsoleColors.RESET + "[%1$tF %1$tT] " + color + logLevelName + ": %2$s" + ConsoleColors.RESET,
+                record.getMillis(),
+                record.getMessage()
+        );
+    }
+
+    // CSV line as CSVFileHandler formatted it before LogFormatter
+    static String legacyCsv(LogRecord record) {
+        return String.format(
+                "%1$tF %1$tT,%2$s,%3$s,%4$s,%5$s%n",
+                record.getMillis(),
+                record.getLevel(),
+                record.getMessage().replaceAll("\\x1b\\[[\\d;]*m", "").replaceAll(",", ""),
+                record.getSourceClassName(),
+                record.getSourceMethodName()
+        );
+    }
+}
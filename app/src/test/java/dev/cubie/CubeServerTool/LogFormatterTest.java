@@ -0,0 +1,65 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.ConsoleColors;
+import dev.cubie.CubeServerTool.Utils.LogFormatter;
+import org.junit.jupiter.api.Test;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogFormatterTest {
+
+    @Test
+    void testConsoleLineMatchesStringFormat() {
+        for (Level level : new Level[] {Level.SEVERE, Level.WARNING, Level.INFO, Level.CONFIG, Level.FINE, Level.FINER}) {
+            for (String loggerName : new String[] {"dev.cubie.CubeServerTool", "INSTALL"}) {
+                LogRecord record = record(level, "100% done, " + ConsoleColors.RED + "red" + ConsoleColors.RESET);
+                record.setLoggerName(loggerName);
+                assertEquals(LogFormatBenchmark.legacyConsole(record), LogFormatter.formatConsole(record));
+                // Same second, now from the cached timestamp
+                assertEquals(LogFormatBenchmark.legacyConsole(record), LogFormatter.formatConsole(record));
+            }
+        }
+    }
+
+    @Test
+    void testCsvLineMatchesRegexVersion() {
+        String[] messages = {
+                "plain",
+                "a,b,,c",
+                ConsoleColors.ORANGE + "orange" + ConsoleColors.RESET + ", then " + ConsoleColors.GREEN + "green",
+                "broken \u001B[12 escape \u001B[ and \u001Bx",
+                "\u001B[0m",
+                null
+        };
+        for (String message : messages) {
+            LogRecord record = record(Level.WARNING, message);
+            record.setSourceClassName("dev.cubie.CubeServerTool.Example");
+            record.setSourceMethodName("run");
+            if (message != null) {
+                assertEquals(LogFormatBenchmark.legacyCsv(record), LogFormatter.formatCsv(record).toString());
+            } else {
+                assertTrue(LogFormatter.formatCsv(record).toString().contains(",WARNING,null,"));  // replaceAll() threw here
+            }
+        }
+        assertNull(LogFormatter.stripAnsi(null));
+        assertEquals("no colors", LogFormatter.stripAnsi("no colors"));
+        assertEquals("x,y", LogFormatter.stripAnsi(ConsoleColors.CYAN + "x," + ConsoleColors.RESET + "y"));
+    }
+
+    @Test
+    void testTimestampFollowsTheRecordTime() {
+        long base = 1_700_000_000_000L;
+        for (long offset : new long[] {0, 999, 1000, 1001, -1, 86_400_000}) {
+            LogRecord record = record(Level.INFO, "tick");
+            record.setMillis(base + offset);
+            assertEquals(LogFormatBenchmark.legacyConsole(record), LogFormatter.formatConsole(record));
+        }
+    }
+
+    private static LogRecord record(Level level, String message) {
+        return new LogRecord(level, message);
+    }
+}
@@ -0,0 +1,107 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.CSVFileHandler;
+import dev.cubie.CubeServerTool.Utils.LogQueryEngine;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogQueryEngineTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final Level[] LEVELS = {Level.FINE, Level.INFO, Level.INFO, Level.FINE, Level.CONFIG, Level.WARNING};
+
+    // 20000 records one second apart; every 97th is SEVERE, one in six WARNING, the rest below
+    // The rotated segments are gzipped and streamed, the current file is memory-mapped.
+    private static Path writeLog() throws Exception {
+        Path folder = Files.createTempDirectory("cst-log-query");
+        Path log = folder.resolve("latest-log.csv");
+        CSVFileHandler handler = new CSVFileHandler(log).rotateAt(256 * 1024).indexed(true).autoFlush(false);
+        for (int i = 0; i < 20000; i++) {
+            Level level = i % 97 == 0 ? Level.SEVERE : LEVELS[i % LEVELS.length];
+            LogRecord record = new LogRecord(level, "record " + i + (i % 10 == 0 ? " Download failed" : " ok") + " ä");
+            record.setMillis(START + i * 1000L);
+            record.setSourceClassName("dev.cubie.CubeServerTool.Test");
+            record.setSourceMethodName("run");
+            handler.publish(record);
+        }
+        handler.close();
+        assertTrue(CSVFileHandler.awaitCompression(10000));
+        assertTrue(handler.getSegments().size() > 3);
+        assertTrue(Files.size(log) > 0);
+        return log;
+    }
+
+    private static List<Integer> expected(int from, int to, Level minLevel, boolean failedOnly) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            Level level = i % 97 == 0 ? Level.SEVERE : LEVELS[i % LEVELS.length];
+            if (level.intValue() >= minLevel.intValue() && (!failedOnly || i % 10 == 0)) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    private static List<Integer> collect(LogQueryEngine engine, LogQueryEngine.Query query) throws Exception {
+        List<Integer> result = new ArrayList<>();
+        String cursor = null;
+        do {
+            LogQueryEngine.Page page = engine.find(query, cursor);
+            assertTrue(page.getRows().size() <= 50);
+            for (LogQueryEngine.Row row : page.getRows()) {
+                result.add(Integer.parseInt(row.message.split(" ")[1]));
+                assertTrue(row.message.endsWith("ä"));
+                assertEquals("run", row.methodName);
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return result;
+    }
+
+    @Test
+    void testLevelTimeAndTextFilterOverAllSegments() throws Exception {
+        LogQueryEngine engine = new LogQueryEngine(writeLog());
+
+        LogQueryEngine.Query query = new LogQueryEngine.Query().minLevel(Level.WARNING)
+                .between(START + 3000 * 1000L, START + 15000 * 1000L).matching("download FAILED").pageSize(50);
+        assertEquals(expected(3000, 15000, Level.WARNING, true), collect(engine, query));
+
+        LogQueryEngine.Query severe = new LogQueryEngine.Query().minLevel(Level.SEVERE).pageSize(50);
+        assertEquals(expected(0, 19999, Level.SEVERE, false), collect(engine, severe));
+    }
+
+    @Test
+    void testIndexSkipsBlocksOutsideTheTimeRange() throws Exception {
+        LogQueryEngine engine = new LogQueryEngine(writeLog());
+
+        LogQueryEngine.Query query = new LogQueryEngine.Query().between(START + 10000 * 1000L, START + 10099 * 1000L).pageSize(500);
+        LogQueryEngine.Page page = engine.find(query);
+        assertEquals(100, page.getRows().size());
+        assertNull(page.getNextCursor());
+        assertEquals(START + 10000 * 1000L, page.getRows().get(0).millis);
+        assertTrue(page.getSkippedBytes() > 10 * page.getScannedBytes(),
+                "scanned " + page.getScannedBytes() + ", skipped " + page.getSkippedBytes());
+
+        assertEquals(expected(0, 19999, Level.INFO, true),
+                collect(engine, new LogQueryEngine.Query().minLevel(Level.INFO).matching("failed").pageSize(50)));
+    }
+
+    @Test
+    void testMalformedCursorIsRejected() throws Exception {
+        Path folder = Files.createTempDirectory("cst-log-cursor");
+        LogQueryEngine engine = new LogQueryEngine(folder.resolve("latest-log.csv"));
+        LogQueryEngine.Query query = new LogQueryEngine.Query();
+        for (String cursor : new String[] {"", "latest-log", "@12", "latest-log@", "latest-log@x", "latest-log@-5"}) {
+            assertThrows(IOException.class, () -> engine.find(query, cursor), cursor);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.LogSuppressor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogSuppressorTest {
+
+    private final long start = System.currentTimeMillis();  // Per test; records in the past would be summed up by the sweep thread
+
+    // Target that keeps what it gets
+    private static class Collector extends Handler {
+        final List<LogRecord> records = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void publish(LogRecord record) {
+            if (isLoggable(record)) {
+                records.add(record);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        List<String> messages() {
+            List<String> messages = new ArrayList<>();
+            synchronized (records) {
+                for (LogRecord record : records) {
+                    messages.add(record.getMessage());
+                }
+            }
+            return messages;
+        }
+
+        // Sum of the counts in the summaries
+        long summarized() {
+            long total = 0;
+            for (String message : messages()) {
+                if (message.startsWith("Last message repeated ")) {
+                    total += Long.parseLong(message.split(" ")[3]);
+                }
+            }
+            return total;
+        }
+    }
+
+    private static LogRecord record(Level level, String message, long millis) {
+        LogRecord record = new LogRecord(level, message);
+        record.setMillis(millis);
+        return record;
+    }
+
+    @Test
+    void testNumbersDoNotMakeMessagesDifferent() {
+        Collector collector = new Collector();
+        LogSuppressor suppressor = new LogSuppressor(64, 3, 60000).addTarget(collector);
+        for (int i = 0; i < 100; i++) {
+            suppressor.publish(record(Level.WARNING, "Can't keep up! Running " + (2000 + i * 17) + "ms or " + i + " ticks behind", start + i));
+            suppressor.publish(record(Level.INFO, "Saving chunks for level overworld", start + i));
+        }
+        assertEquals(6, collector.records.size());
+        assertEquals(194, suppressor.getSuppressed());
+        suppressor.close();
+        assertEquals(8, collector.records.size());
+        assertEquals(194, collector.summarized());
+    }
+
+    @Test
+    void testSummaryNamesCountAndMessage() {
+        Collector collector = new Collector();
+        LogSuppressor suppressor = new LogSuppressor(64, 5, 1000).addTarget(collector);
+        for (int i = 0; i < 1000; i++) {
+            suppressor.publish(record(Level.SEVERE, "\u001B[31mTicking entity failed\u001B[0m", start));
+        }
+        assertEquals(5, collector.records.size());
+        suppressor.close();
+
+        LogRecord summary = collector.records.get(5);
+        assertEquals(Level.SEVERE, summary.getLevel());
+        assertEquals("Last message repeated 995 more times in 1 s: Ticking entity failed", summary.getMessage());
+    }
+
+    @Test
+    void testMessagesPassAgainWhenTheStormIsOver() {
+        Collector collector = new Collector();
+        LogSuppressor suppressor = new LogSuppressor(64, 2, 1000).addTarget(collector);
+        for (int i = 0; i < 50; i++) {
+            suppressor.publish(record(Level.INFO, "lag spike", start + i));
+        }
+        suppressor.publish(record(Level.INFO, "lag spike", start + 5000));  // Two windows later, nothing counts anymore
+
+        List<String> messages = collector.messages();
+        assertEquals(4, messages.size());
+        assertEquals("lag spike", messages.get(0));
+        assertEquals("lag spike", messages.get(1));
+        assertTrue(messages.get(2).startsWith("Last message repeated 48 more times"), messages.get(2));
+        assertEquals("lag spike", messages.get(3));
+        suppressor.close();
+    }
+
+    @Test
+    void testSlidingWindowKeepsLimitAcrossTheBoundary() {
+        Collector collector = new Collector();
+        LogSuppressor suppressor = new LogSuppressor(64, 10, 1000).addTarget(collector);
+        // 10 records in one window, 9 of them at its end, and 10 at the start of the next: a fixed window would pass all
+        // 20, the sliding one still counts 99 % of the previous window and lets one more through
+        suppressor.publish(record(Level.INFO, "same", start));
+        for (int i = 0; i < 9; i++) {
+            suppressor.publish(record(Level.INFO, "same", start + 990));
+        }
+        for (int i = 0; i < 10; i++) {
+            suppressor.publish(record(Level.INFO, "same", start + 1010));
+        }
+        assertEquals(11, collector.records.size());
+        suppressor.close();
+    }
+
+    @Test
+    void testFlushReportsLongStorms() {
+        Collector collector = new Collector();
+        LogSuppressor suppressor = new LogSuppressor(64, 1, 1000).addTarget(collector);
+        long past = System.currentTimeMillis() - 5000;
+        for (int i = 0; i < 10; i++) {
+            suppressor.publish(record(Level.INFO, "storm", past + i));
+        }
+        suppressor.flush();
+        assertEquals(9, collector.summarized());
+        assertEquals("storm", collector.messages().get(0));
+        suppressor.close();
+        assertEquals(9, collector.summarized());  // Nothing left
+    }
+
+    @Test
+    void testFixedTableLosesNoCounts() {
+        Collector collector = new Collector();
+        LogSuppressor suppressor = new LogSuppressor(16, 3, 60000).addTarget(collector);
+        // A few spamming messages between many different ones, far more than the table has slots
+        int records = 0;
+        for (int round = 0; round < 50; round++) {
+            for (int message = 0; message < 40; message++) {
+                String cold = "message " + (char) ('a' + round % 26) + (char) ('a' + round / 26) + (char) ('a' + message % 26) + (char) ('a' + message / 26);
+                suppressor.publish(record(Level.INFO, cold, start + records++));
+                suppressor.publish(record(Level.WARNING, "spam " + (char) ('a' + message % 3), start + records++));
+            }
+        }
+        suppressor.close();
+        long passed = collector.records.size() - collector.messages().stream().filter(m -> m.startsWith("Last message repeated ")).count();
+        assertEquals(records, passed + collector.summarized());
+        assertTrue(suppressor.getSuppressed() > records / 3);  // The spam stays in the table and is held back
+        assertEquals(suppressor.getSuppressed(), collector.summarized());
+    }
+
+    @Test
+    void testRecordsBelowTheTargetLevelAreIgnored() {
+        Collector collector = new Collector();
+        collector.setLevel(Level.INFO);
+        LogSuppressor suppressor = new LogSuppressor(64, 1, 1000).addTarget(collector);
+        for (int i = 0; i < 10; i++) {
+            suppressor.publish(record(Level.FINE, "debug", start));
+        }
+        assertEquals(0, collector.records.size());
+        assertEquals(0, suppressor.getSuppressed());
+        suppressor.close();
+    }
+}
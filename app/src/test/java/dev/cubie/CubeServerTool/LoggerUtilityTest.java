@@ -0,0 +1,61 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.FileOperation;
+import dev.cubie.CubeServerTool.Utils.LoggerUtility;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoggerUtilityTest {
+
+    @Test
+    void testEveryClassGetsItsOwnLoggerBelowTheCommonParent() {
+        Logger own = LoggerUtility.getLogger(LoggerUtilityTest.class);
+        Logger other = LoggerUtility.getLogger(FileOperation.class);
+        Logger external = LoggerUtility.getLogger(String.class);
+
+        assertEquals(LoggerUtilityTest.class.getName(), own.getName());
+        assertEquals(FileOperation.class.getName(), other.getName());
+        assertEquals(LoggerUtility.ROOT_LOGGER + ".java.lang.String", external.getName());
+        for (Logger logger : new Logger[] {own, other, external}) {
+            Logger parent = logger.getParent();
+            while (parent != null && !parent.getName().equals(LoggerUtility.ROOT_LOGGER)) {
+                parent = parent.getParent();
+            }
+            assertNotNull(parent, logger.getName() + " is not below " + LoggerUtility.ROOT_LOGGER);
+            assertEquals(0, logger.getHandlers().length);
+        }
+    }
+
+    @Test
+    void testPackageLevelsOverrideTheParent() {
+        Logger utils = LoggerUtility.getLogger(FileOperation.class);
+        Logger own = LoggerUtility.getLogger(LoggerUtilityTest.class);
+        Level parentLevel = Logger.getLogger(LoggerUtility.ROOT_LOGGER).getLevel();
+
+        Map<String, String> levels = new HashMap<>();
+        levels.put("Utils", "WARNING");
+        levels.put(LoggerUtilityTest.class.getName(), "DEBUG");
+        LoggerUtility.setLevels(levels);
+        try {
+            assertFalse(utils.isLoggable(Level.INFO));
+            assertTrue(utils.isLoggable(Level.WARNING));
+            assertTrue(own.isLoggable(Level.FINE));
+
+            // A disabled level never calls the supplier
+            AtomicInteger built = new AtomicInteger();
+            utils.fine(() -> "expensive " + built.incrementAndGet());
+            assertEquals(0, built.get());
+        } finally {
+            LoggerUtility.setLevels(new HashMap<>());
+        }
+        assertEquals(parentLevel.intValue() <= Level.INFO.intValue(), utils.isLoggable(Level.INFO));
+        assertEquals(parentLevel.intValue() <= Level.FINE.intValue(), own.isLoggable(Level.FINE));
+    }
+}
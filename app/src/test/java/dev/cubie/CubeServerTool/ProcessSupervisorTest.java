@@ -0,0 +1,152 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.ProcessHandler;
+import dev.cubie.CubeServerTool.Utils.ProcessSupervisor;
+import dev.cubie.CubeServerTool.Utils.ProcessSupervisor.RestartPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessSupervisorTest {
+
+    @TempDir
+    Path temp;
+
+    private static Supplier<ProcessHandler> fakeServer(Path folder, String argument) throws Exception {
+        Path jar = FakeServer.writeJar(folder);
+        Files.deleteIfExists(folder.resolve("starts"));
+        return () -> new ProcessHandler(jar.toString())
+                .workDir(folder)
+                .addParameter(argument)
+                .useConsole(false)
+                .useLogger("void")
+                .disableInput();
+    }
+
+    @Test
+    void testRestartsAfterCrashAndStopsGracefully() throws Exception {
+        Path folder = temp.resolve("supervisor-crash");
+        try (ProcessSupervisor supervisor = new ProcessSupervisor()) {
+            ProcessSupervisor.Server server = supervisor.add("crashy", fakeServer(folder, "2"), RestartPolicy.onFailure());
+
+            waitFor(() -> server.getHandler().getWatcher().isReady(), 20000);
+            assertEquals(2, server.getRestarts());
+            assertEquals(ProcessSupervisor.State.RUNNING, server.getState());
+
+            Process process = server.getHandler().getProcess();
+            server.stop();
+            assertFalse(process.isAlive());
+            assertEquals(0, process.exitValue());
+            assertEquals(ProcessSupervisor.State.STOPPED, server.getState());
+            assertEquals(2, server.getRestarts());
+        }
+    }
+
+    @Test
+    void testCrashLoopGivesUp() throws Exception {
+        Path folder = temp.resolve("supervisor-loop");
+        try (ProcessSupervisor supervisor = new ProcessSupervisor()) {
+            ProcessSupervisor.Server server = supervisor.add("loop", fakeServer(folder, "100"),
+                    RestartPolicy.backoff(10, 100).maxCrashes(2, 60000));
+
+            waitFor(() -> server.getState() == ProcessSupervisor.State.GAVE_UP, 20000);
+            assertEquals(ProcessSupervisor.State.GAVE_UP, server.getState());
+            assertEquals(2, server.getRestarts());
+            assertEquals(1, server.getLastExitCode());
+        }
+    }
+
+    @Test
+    void testQuickCleanExitsBackOffAndGiveUp() throws Exception {
+        Path folder = temp.resolve("supervisor-eula");
+        try (ProcessSupervisor supervisor = new ProcessSupervisor()) {
+            long start = System.currentTimeMillis();
+            ProcessSupervisor.Server server = supervisor.add("eula", fakeServer(folder, "exit"),
+                    RestartPolicy.always().maxCrashes(2, 60000));
+
+            waitFor(() -> server.getState() == ProcessSupervisor.State.GAVE_UP, 20000);
+            assertEquals(ProcessSupervisor.State.GAVE_UP, server.getState());
+            assertEquals(0, server.getLastExitCode());
+            assertEquals(2, server.getRestarts());
+            assertEquals("3", new String(Files.readAllBytes(folder.resolve("starts"))).trim());
+            assertTrue(System.currentTimeMillis() - start >= 3000);  // 1 s, then 2 s before the restarts
+        }
+    }
+
+    @Test
+    void testServerIgnoringStopIsKilled() throws Exception {
+        Path folder = temp.resolve("supervisor-stuck");
+        try (ProcessSupervisor supervisor = new ProcessSupervisor().stopTimeout(500)) {
+            ProcessSupervisor.Server server = supervisor.add("stuck", fakeServer(folder, "ignore-stop"), RestartPolicy.always());
+            waitFor(() -> server.getHandler().getWatcher().isReady(), 20000);
+
+            Process process = server.getHandler().getProcess();
+            long start = System.currentTimeMillis();
+            server.stop();
+            assertFalse(process.isAlive());
+            assertTrue(System.currentTimeMillis() - start < 15000);
+            assertEquals(0, server.getRestarts());
+        }
+    }
+
+    @Test
+    void testHungServerIsKilledOnlyOnceItIsQuiet() throws Exception {
+        Path folder = temp.resolve("supervisor-hung");
+        try (ProcessSupervisor supervisor = new ProcessSupervisor().hungCrashTimeout(400)) {
+            ProcessSupervisor.Server server = supervisor.add("hung", fakeServer(folder, "hang-2000"), RestartPolicy.never());
+            waitFor(() -> server.getHandler().getWatcher().hasCrashed(), 20000);
+            long crashedAt = System.currentTimeMillis();
+            Process process = server.getHandler().getProcess();
+
+            // Past the timeout, but the server is still printing
+            Thread.sleep(1000);
+            assertTrue(process.isAlive());
+
+            waitFor(() -> !process.isAlive(), 20000);
+            assertFalse(process.isAlive());
+            assertTrue(System.currentTimeMillis() - crashedAt >= 2000);
+        }
+    }
+
+    @Test
+    void testRestartNeverStartsASecondProcess() throws Exception {
+        Path folder = temp.resolve("supervisor-restart");
+        List<Process> processes = new ArrayList<>();
+        try (ProcessSupervisor supervisor = new ProcessSupervisor()) {
+            ProcessSupervisor.Server server = supervisor.add("always", fakeServer(folder, "0"), RestartPolicy.always());
+            waitFor(() -> server.getHandler().getWatcher().isReady(), 20000);
+            processes.add(server.getHandler().getProcess());
+
+            // The old process exits with 0 while restart() runs; "always" must not schedule a restart of its own
+            for (int i = 0; i < 3; i++) {
+                server.restart();
+                waitFor(() -> server.getHandler().getWatcher().isReady(), 20000);
+                processes.add(server.getHandler().getProcess());
+            }
+            Thread.sleep(1500);  // Time for a stray restart to show up
+
+            assertEquals("4", new String(Files.readAllBytes(folder.resolve("starts"))).trim());
+            assertSame(processes.get(3), server.getHandler().getProcess());
+            for (Process process : processes.subList(0, 3)) {
+                assertFalse(process.isAlive());
+            }
+            assertEquals(ProcessSupervisor.State.RUNNING, server.getState());
+            assertEquals(0, server.getRestarts());
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package dev.cubie.CubeServerTool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Small in-process HTTP server that serves one payload, optionally with byte range support
+// and a per-connection bandwidth limit (to make parallel segments measurable on localhost)
+// For resume tests it can send an ETag, honour If-Range, cut off the next response and record the Range headers it got
+public class RangeHttpStub implements AutoCloseable {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final byte[] payload;
+    private final boolean acceptRanges;
+    private final long bytesPerSecond;
+    private volatile String etag;
+    private volatile int cutAfter = -1;  // The next GET response breaks off after this many bytes, -1 = never
+    private volatile int failStatus = -1;  // The next GET is answered with this status and no body, -1 = never
+    private final List<String> requests = new ArrayList<>();
+
+    public RangeHttpStub(byte[] payload, boolean acceptRanges, long bytesPerSecond) throws IOException {
+        this.payload = payload;
+        this.acceptRanges = acceptRanges;
+        this.bytesPerSecond = bytesPerSecond;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/artifact.jar", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    // Sends this ETag with every response and only honours ranges whose If-Range matches it
+    public RangeHttpStub etag(String etag) {
+        this.etag = etag;
+        return this;
+    }
+
+    // Breaks off the next GET response after the given number of bytes
+    public RangeHttpStub cutNextResponse(int bytes) {
+        this.cutAfter = bytes;
+        return this;
+    }
+
+    // Answers the next GET with the given status, like an overloaded server or proxy
+    public RangeHttpStub failNextResponse(int status) {
+        this.failStatus = status;
+        return this;
+    }
+
+    // The "Range" and "If-Range" headers of every GET so far, as "<range> <if-range>" ("-" if missing)
+    public List<String> requests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/artifact.jar";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (acceptRanges) {
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        }
+        if (etag != null) {
+            exchange.getResponseHeaders().add("ETag", etag);
+        }
+
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(payload.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        int from = 0;
+        int to = payload.length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        synchronized (requests) {
+            requests.add((range != null ? range : "-") + " " + (ifRange != null ? ifRange : "-"));
+        }
+        int fail = failStatus;
+        failStatus = -1;
+        if (fail > 0) {
+            exchange.sendResponseHeaders(fail, -1);
+            exchange.close();
+            return;
+        }
+
+        boolean unchanged = ifRange == null || ifRange.equals(etag);
+        if (acceptRanges && range != null && unchanged) {
+            Matcher matcher = RANGE.matcher(range);
+            if (matcher.matches()) {
+                from = Integer.parseInt(matcher.group(1));
+                if (!matcher.group(2).isEmpty()) {
+                    to = Math.min(to, Integer.parseInt(matcher.group(2)));
+                }
+                status = 206;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + to + "/" + payload.length);
+            }
+        }
+
+        int length = to - from + 1;
+        int cut = cutAfter;
+        cutAfter = -1;
+        exchange.sendResponseHeaders(status, length);
+        if (cut >= 0 && cut < length) {
+            // Send the first bytes and drop the connection, like a network failure in the middle of a download
+            OutputStream out = exchange.getResponseBody();
+            out.write(payload, from, cut);
+            out.flush();
+            throw new IOException("Response cut off after " + cut + " bytes");
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            int chunk = 16 * 1024;
+            long start = System.nanoTime();
+            for (int offset = 0; offset < length; offset += chunk) {
+                out.write(payload, from + offset, Math.min(chunk, length - offset));
+                throttle(start, offset + chunk);
+            }
+        }
+    }
+
+    // Sleeps until the connection is back under its bandwidth limit
+    private void throttle(long start, long sent) {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        long expectedNanos = sent * 1_000_000_000L / bytesPerSecond;
+        long sleepMillis = (expectedNanos - (System.nanoTime() - start)) / 1_000_000L;
+        if (sleepMillis > 0) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
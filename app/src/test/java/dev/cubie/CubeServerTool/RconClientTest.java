@@ -0,0 +1,84 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.RconClient;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RconClientTest {
+
+    @Test
+    void testQueuedCommandsShareOneConnection() throws Exception {
+        try (RconStub stub = new RconStub("secret", true);
+             RconClient client = new RconClient("127.0.0.1", stub.port(), "secret").connect()) {
+
+            List<CompletableFuture<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                responses.add(client.commandAsync("echo reply " + i));
+            }
+            for (int i = 0; i < 500; i++) {
+                assertEquals("reply " + i, responses.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals("again", client.command("echo again"));
+            assertEquals(1, stub.connections.get());
+            assertEquals(0, stub.dropped.get());
+        }
+    }
+
+    @Test
+    void testFragmentedResponseIsJoined() throws Exception {
+        try (RconStub stub = new RconStub("secret", true);
+             RconClient client = new RconClient("127.0.0.1", stub.port(), "secret")) {
+            String response = client.command("big 10000");
+            assertEquals(10000, response.length());
+            for (int i = 4090; i < 4100; i++) {
+                assertEquals((char) ('a' + i % 26), response.charAt(i));
+            }
+            assertEquals("", client.command("list"));
+            assertEquals(0, stub.dropped.get());
+        }
+    }
+
+    @Test
+    void testStubDropsTwoPacketsInOneRead() throws Exception {
+        // A client that writes a command and its end marker together loses the connection on a Minecraft server
+        try (RconStub stub = new RconStub("secret", true);
+             Socket socket = new Socket("127.0.0.1", stub.port())) {
+            socket.setTcpNoDelay(true);
+            socket.getOutputStream().write(packet(1, 3, "secret"));
+            assertEquals(14, socket.getInputStream().read(new byte[14]));
+
+            ByteBuffer both = ByteBuffer.allocate(2 * 14 + 4);
+            both.put(packet(2, 2, "list")).put(packet(3, 100, ""));
+            socket.getOutputStream().write(both.array());
+            assertEquals(-1, socket.getInputStream().read());
+            assertEquals(1, stub.dropped.get());
+        }
+    }
+
+    @Test
+    void testWrongPasswordFails() throws Exception {
+        try (RconStub stub = new RconStub("secret")) {
+            RconClient client = new RconClient("127.0.0.1", stub.port(), "wrong");
+            assertThrows(IOException.class, client::connect);
+            assertFalse(client.isConnected());
+        }
+    }
+
+    private static byte[] packet(int id, int type, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(14 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(10 + bytes.length).putInt(id).putInt(type).put(bytes).put((byte) 0).put((byte) 0);
+        return buffer.array();
+    }
+}
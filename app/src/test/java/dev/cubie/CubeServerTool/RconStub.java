@@ -0,0 +1,135 @@
+package dev.cubie.CubeServerTool;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Small in-process RCON server that behaves like a Minecraft server:
+// "echo <text>" answers <text>, "big <n>" answers n characters split into 4096 byte packets,
+// unknown packet types are answered with "Unknown request <type>".
+// With onePacketPerRead it also reads like a Minecraft server: at most 1460 bytes per read, and the connection is
+// dropped unless that read holds exactly one packet.
+public class RconStub implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final String password;
+    private final boolean onePacketPerRead;
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger dropped = new AtomicInteger();
+
+    public RconStub(String password) throws IOException {
+        this(password, false);
+    }
+
+    public RconStub(String password, boolean onePacketPerRead) throws IOException {
+        this.password = password;
+        this.onePacketPerRead = onePacketPerRead;
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::acceptLoop);
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        try {
+            while (!server.isClosed()) {
+                Socket socket = server.accept();
+                connections.incrementAndGet();
+                executor.execute(() -> handle(socket));
+            }
+        } catch (IOException ignored) {
+            // Closed
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            boolean authenticated = false;
+            while (true) {
+                ByteBuffer packet = onePacketPerRead ? readOne(in) : readNext(in);
+                if (packet == null) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                int id = packet.getInt();
+                int type = packet.getInt();
+                byte[] body = new byte[packet.remaining() - 2];
+                packet.get(body);
+                String text = new String(body, StandardCharsets.UTF_8);
+
+                if (type == 3) {
+                    authenticated = text.equals(password);
+                    out.write(packet(authenticated ? id : -1, 2, ""));
+                } else if (!authenticated) {
+                    out.write(packet(-1, 2, ""));
+                } else if (type == 2) {
+                    String response = text.startsWith("echo ") ? text.substring(5) : "";
+                    if (text.startsWith("big ")) {
+                        StringBuilder big = new StringBuilder();
+                        for (int i = 0; i < Integer.parseInt(text.substring(4)); i++) big.append((char) ('a' + i % 26));
+                        response = big.toString();
+                    }
+                    int offset = 0;
+                    do {
+                        int end = Math.min(response.length(), offset + 4096);
+                        out.write(packet(id, 0, response.substring(offset, end)));
+                        offset = end;
+                    } while (offset < response.length());
+                } else {
+                    out.write(packet(id, 0, "Unknown request " + Integer.toHexString(type)));
+                }
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // Client went away
+        }
+    }
+
+    // Reads the next packet from the stream, however it was split into reads
+    private static ByteBuffer readNext(DataInputStream in) throws IOException {
+        byte[] packet = new byte[Integer.reverseBytes(in.readInt())];
+        in.readFully(packet);
+        return ByteBuffer.wrap(packet).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Reads one packet with a single read, or returns null where a Minecraft server would drop the connection
+    private static ByteBuffer readOne(DataInputStream in) throws IOException {
+        byte[] buffer = new byte[1460];
+        int read = in.read(buffer, 0, buffer.length);
+        if (read < 14) {
+            if (read == -1) {
+                throw new IOException("Closed");
+            }
+            return null;
+        }
+        ByteBuffer packet = ByteBuffer.wrap(buffer, 0, read).order(ByteOrder.LITTLE_ENDIAN);
+        return packet.getInt() == read - 4 ? packet.slice().order(ByteOrder.LITTLE_ENDIAN) : null;
+    }
+
+    private static byte[] packet(int id, int type, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(14 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(10 + bytes.length).putInt(id).putInt(type).put(bytes).put((byte) 0).put((byte) 0);
+        return buffer.array();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        executor.shutdownNow();
+    }
+}
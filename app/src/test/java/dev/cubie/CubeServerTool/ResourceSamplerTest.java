@@ -0,0 +1,67 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.ResourceSampler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ResourceSamplerTest {
+
+    @Test
+    void testSamplesBusyAndIdleProcess() throws Exception {
+        assumeTrue(ResourceSampler.isSupported());
+        Process busy = new ProcessBuilder("sh", "-c", "while :; do :; done").start();
+        Process idle = new ProcessBuilder("sleep", "30").start();
+        try (ResourceSampler sampler = new ResourceSampler(1, 8)) {
+            ResourceSampler.Samples busySamples = sampler.track("busy", busy);
+            ResourceSampler.Samples idleSamples = sampler.track("idle", idle);
+            assertNotNull(busySamples);
+            assertSame(busySamples, sampler.track("busy", busy));
+
+            waitForSamples(busySamples, 4);
+            waitForSamples(idleSamples, 4);
+
+            ResourceSampler.Snapshot current = busySamples.current();
+            assertTrue(current.rssKb > 0);
+            assertTrue(current.threads >= 1);
+            assertTrue(current.openFiles >= 3);  // stdin, stdout, stderr
+
+            ResourceSampler.Window window = busySamples.window(60);
+            assertTrue(window.samples >= 4);
+            assertTrue(window.cpuPercent.avg > 50, "busy loop CPU: " + window.cpuPercent.avg);
+            assertTrue(window.cpuPercent.max >= window.cpuPercent.p95);
+            assertTrue(window.cpuPercent.p95 >= window.cpuPercent.avg * 0.5);
+            assertTrue(idleSamples.window(60).cpuPercent.max < 10);
+        } finally {
+            busy.destroyForcibly();
+            idle.destroyForcibly();
+        }
+    }
+
+    @Test
+    void testRingKeepsOnlyTheNewestSamplesAndDropsExitedProcesses() throws Exception {
+        assumeTrue(ResourceSampler.isSupported());
+        Process idle = new ProcessBuilder("sleep", "30").start();
+        try (ResourceSampler sampler = new ResourceSampler(1, 2)) {
+            ResourceSampler.Samples samples = sampler.track("idle", idle);
+            waitForSamples(samples, 2);
+            Thread.sleep(1500);
+            assertEquals(2, samples.size());
+
+            idle.destroyForcibly().waitFor();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (sampler.get("idle") != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            assertNull(sampler.get("idle"));
+        }
+    }
+
+    private static void waitForSamples(ResourceSampler.Samples samples, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (samples.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+    }
+}
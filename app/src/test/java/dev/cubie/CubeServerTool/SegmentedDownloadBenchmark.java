@@ -0,0 +1,43 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Data.Config;
+import dev.cubie.CubeServerTool.Utils.FileOperation;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Measures the speedup of segmented downloads per segment count against a bandwidth-limited local stub
+// Usage: SegmentedDownloadBenchmark [sizeInMB] [perConnectionMBps]
+public class SegmentedDownloadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int sizeInMB = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int perConnectionMBps = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        byte[] data = new byte[sizeInMB * 1024 * 1024];
+        new Random(1).nextBytes(data);
+        Path target = Config.tempFolder.resolve("segmented-benchmark.jar");
+        FileOperation.noLog = true;
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, true, perConnectionMBps * 1024L * 1024L)) {
+            double baseline = 0;
+            for (int segments : new int[] {1, 2, 4, 8}) {
+                long start = System.nanoTime();
+                FileOperation.getFile(stub.url())
+                        .streaming()
+                        .segments(segments)
+                        .fetchBinary()
+                        .saveTo(target.toString());
+                double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+                if (segments == 1) {
+                    baseline = seconds;
+                }
+                System.out.printf("segments=%d  time=%.2f s  throughput=%.1f MB/s  speedup=%.2fx%n",
+                        segments, seconds, sizeInMB / seconds, baseline / seconds);
+            }
+        } finally {
+            Files.deleteIfExists(target);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Utils.FileOperation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedDownloaderTest {
+
+    @TempDir
+    Path temp;
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        new Random(7).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    void testSegmentedDownloadMatchesPayload() throws Exception {
+        byte[] data = payload(10 * 1024 * 1024 + 123);
+        Path target = temp.resolve("segmented-test.jar");
+
+        for (int segments : new int[] {2, 3, 8}) {
+            try (RangeHttpStub stub = new RangeHttpStub(data, true, 0)) {
+                FileOperation result = FileOperation.getFile(stub.url())
+                        .streaming()
+                        .segments(segments)
+                        .fetchBinary()
+                        .saveTo(target.toString());
+
+                assertEquals(200, result.getResponseCode());
+                assertArrayEquals(data, Files.readAllBytes(target));
+            }
+        }
+        Files.deleteIfExists(target);
+    }
+
+    @Test
+    void testFallbackWithoutRangeSupport() throws Exception {
+        byte[] data = payload(6 * 1024 * 1024);
+        Path target = temp.resolve("single-stream-test.jar");
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, false, 0)) {
+            FileOperation result = FileOperation.getFile(stub.url())
+                    .streaming()
+                    .segments(4)
+                    .fetchBinary()
+                    .saveTo(target.toString());
+
+            assertEquals(200, result.getResponseCode());
+            assertArrayEquals(data, Files.readAllBytes(target));
+        }
+        Files.deleteIfExists(target);
+    }
+
+    @Test
+    void testFailedRangeIsRetried() throws Exception {
+        byte[] data = payload(6 * 1024 * 1024);
+        Path target = temp.resolve("retried-range-test.jar");
+
+        try (RangeHttpStub stub = new RangeHttpStub(data, true, 0).failNextResponse(503)) {
+            FileOperation result = FileOperation.getFile(stub.url())
+                    .streaming()
+                    .segments(3)
+                    .fetchBinary()
+                    .saveTo(target.toString());
+
+            // The 503 costs one more request for that range, not a fallback to a single stream
+            assertEquals(200, result.getResponseCode());
+            assertArrayEquals(data, Files.readAllBytes(target));
+            assertEquals(4, stub.requests().size());
+            for (String request : stub.requests()) {
+                assertTrue(request.startsWith("bytes="), request);
+            }
+        }
+        Files.deleteIfExists(target);
+    }
+}
@@ -0,0 +1,67 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Data.VersionCatalog;
+import dev.cubie.CubeServerTool.Data.VersionCatalogSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionCatalogSnapshotTest {
+
+    @TempDir
+    Path temp;
+
+    private static VersionCatalog catalog(int versions) {
+        VersionCatalog.Builder builder = new VersionCatalog.Builder().createdAt(1234567890L);
+        for (int i = 0; i < versions; i++) {
+            String sha1 = i % 3 == 0 ? null : String.format("%040x", i * 7919L);
+            builder.add("1." + i, i % 4 == 0 ? "release" : "snapshot",
+                    "https://piston-meta.mojang.com/v1/packages/" + String.format("%08x", i) + "/1." + i + ".json",
+                    "2024-08-08T12:24:45+00:00", "2024-08-0" + (i % 9 + 1) + "T00:00:00+00:00", sha1);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void testRoundTrip() throws Exception {
+        Path file = temp.resolve("snapshot-test_versions.bin");
+        VersionCatalog original = catalog(800);
+        VersionCatalogSnapshot.write(original, file);
+
+        VersionCatalog restored = VersionCatalogSnapshot.read(file);
+        assertNotNull(restored);
+        assertEquals(original.size(), restored.size());
+        assertEquals(1234567890L, restored.getCreatedAt());
+        for (int i = 0; i < original.size(); i++) {
+            VersionCatalog.Entry a = original.getAll().get(i);
+            VersionCatalog.Entry b = restored.getAll().get(i);
+            assertEquals(a.id, b.id);
+            assertEquals(a.type, b.type);
+            assertEquals(a.url, b.url);
+            assertEquals(a.time, b.time);
+            assertEquals(a.releaseTime, b.releaseTime);
+            assertEquals(a.sha1, b.sha1);
+        }
+        assertEquals(original.getIds("release").length, restored.getIds("release").length);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testCorruptSnapshotIsIgnored() throws Exception {
+        Path file = temp.resolve("snapshot-test_versions.bin");
+        VersionCatalogSnapshot.write(catalog(10), file);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 5] ^= 0x55;
+        Files.write(file, bytes);
+        assertNull(VersionCatalogSnapshot.read(file));
+
+        Files.write(file, new byte[] {1, 2, 3});
+        assertNull(VersionCatalogSnapshot.read(file));
+        Files.deleteIfExists(file);
+    }
+}
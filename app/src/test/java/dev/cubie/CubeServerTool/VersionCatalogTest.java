@@ -0,0 +1,126 @@
+package dev.cubie.CubeServerTool;
+
+import dev.cubie.CubeServerTool.Data.VersionCatalog;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionCatalogTest {
+
+    private static VersionCatalog catalog() {
+        return new VersionCatalog.Builder()
+                .add("24w33a", "snapshot", "https://example.com/24w33a.json", "t", "r")
+                .add("1.21.1", "release", "https://example.com/1.21.1.json", "t", "r", "0123456789abcdef0123456789abcdef01234567")
+                .add("1.21", "Release", "https://example.com/1.21.json", "t", "r")
+                .add("b1.7.3", "old_beta", "https://example.com/b1.7.3.json", "t", "r")
+                .add("1.21", "release", "https://example.com/duplicate.json", "t", "r")
+                .build();
+    }
+
+    @Test
+    void testLookupById() {
+        VersionCatalog catalog = catalog();
+        assertEquals(5, catalog.size());
+        assertEquals("https://example.com/1.21.1.json", catalog.get("1.21.1").url);
+        assertEquals("0123456789abcdef0123456789abcdef01234567", catalog.get("1.21.1").sha1);
+        assertNull(catalog.get("24w33a").sha1);
+        assertEquals("https://example.com/1.21.json", catalog.get("1.21").url);  // The first entry of an id wins
+        assertNull(catalog.get("1.22"));
+    }
+
+    @Test
+    void testTypeListsKeepCatalogOrder() {
+        VersionCatalog catalog = catalog();
+        assertArrayEquals(new String[] {"1.21.1", "1.21", "1.21"}, catalog.getIds("release"));
+        assertArrayEquals(new String[] {"1.21.1", "1.21", "1.21"}, catalog.getIds("Release"));  // Like Config.selectedType
+        assertArrayEquals(new String[] {"24w33a"}, catalog.getIds("snapshot"));
+        assertEquals(5, catalog.getIds("All").length);
+        assertEquals(5, catalog.getIds(null).length);
+        assertEquals(0, catalog.getIds("alpha").length);
+        assertSame(catalog.getAll(), catalog.getByType("all"));
+        assertEquals("old_beta", catalog.getByType("OLD_BETA").get(0).type);
+    }
+
+    @Test
+    void testListsCannotBeChangedFromOutside() {
+        VersionCatalog catalog = catalog();
+        catalog.getIds("release")[0] = "changed";
+        assertEquals("1.21.1", catalog.getIds("release")[0]);
+        assertThrows(UnsupportedOperationException.class, () -> catalog.getAll().clear());
+        assertThrows(UnsupportedOperationException.class, () -> catalog.getByType("snapshot").clear());
+    }
+
+    @Test
+    void testSharedCatalogIsLoadedOnce() {
+        String key = "catalog-test-" + System.nanoTime();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(VersionCatalog.get(key, () -> {
+            loads.incrementAndGet();
+            return null;  // Download failed: nothing is cached
+        }));
+        VersionCatalog first = VersionCatalog.get(key, () -> {
+            loads.incrementAndGet();
+            return catalog();
+        });
+        assertSame(first, VersionCatalog.get(key, () -> {
+            loads.incrementAndGet();
+            return catalog();
+        }));
+        assertEquals(2, loads.get());
+
+        VersionCatalog.invalidate(key);
+        assertNotSame(first, VersionCatalog.get(key, VersionCatalogTest::catalog));
+        VersionCatalog.put(key, first);
+        assertSame(first, VersionCatalog.get(key, VersionCatalogTest::catalog));
+        VersionCatalog.invalidate(key);
+    }
+
+    @Test
+    void testConcurrentCallersShareOneLoadOutsideTheMap() throws Exception {
+        String key = "catalog-test-" + System.nanoTime();
+        String inner = key + "-inner";
+        AtomicInteger loads = new AtomicInteger();
+        List<VersionCatalog> results = Collections.synchronizedList(new ArrayList<>());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> results.add(VersionCatalog.get(key, () -> {
+                loads.incrementAndGet();
+                try {
+                    Thread.sleep(200);  // A download
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                // A loader may need another catalog; inside computeIfAbsent this was a recursive update
+                assertNotNull(VersionCatalog.get(inner, VersionCatalogTest::catalog));
+                return catalog();
+            }))));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(8, results.size());
+        for (VersionCatalog result : results) {
+            assertSame(results.get(0), result);
+        }
+        VersionCatalog.invalidate(key);
+        VersionCatalog.invalidate(inner);
+    }
+
+    @Test
+    void testAge() {
+        VersionCatalog old = new VersionCatalog.Builder().createdAt(System.currentTimeMillis() - 60000).build();
+        assertTrue(old.isOlderThan(30000));
+        assertFalse(old.isOlderThan(120000));
+        assertEquals(0, old.size());
+    }
+}